@@ -0,0 +1,147 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.benchmark;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.handler.LinkEnterEventHandler;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.core.events.EventsManagerImpl;
+import org.matsim.core.events.handler.EventHandler;
+import org.matsim.vehicles.Vehicle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the cost of dispatching events to handlers in {@link EventsManagerImpl} against calling the
+ * handleEvent methods through reflection (which is what the events manager used to do for all event types
+ * not listed in its hard-coded fast path) and against calling them directly.  Note that the numbers for the
+ * events manager also contain the lookup of the handlers for the event class and the synchronization on the handler.
+ * <p></p>
+ * Run with <code>java -cp matsim-benchmark.jar org.matsim.benchmark.EventsDispatchBenchmark</code>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventsDispatchBenchmark {
+
+	public static class CustomEvent extends Event {
+		public CustomEvent(double time) {
+			super(time);
+		}
+		@Override
+		public String getEventType() {
+			return "custom";
+		}
+	}
+
+	public interface CustomEventHandler extends EventHandler {
+		void handleEvent(CustomEvent event);
+	}
+
+	public static class CountingHandler implements LinkEnterEventHandler, CustomEventHandler {
+		long count = 0;
+		@Override
+		public void handleEvent(LinkEnterEvent event) {
+			this.count++;
+		}
+		@Override
+		public void handleEvent(CustomEvent event) {
+			this.count++;
+		}
+		@Override
+		public void reset(int iteration) {
+			this.count = 0;
+		}
+	}
+
+	private CountingHandler handler;
+	private EventsManagerImpl events;
+	private Method linkEnterMethod;
+	private Method customMethod;
+	private LinkEnterEvent linkEnterEvent;
+	private CustomEvent customEvent;
+
+	@Setup
+	public void setup() throws NoSuchMethodException {
+		this.handler = new CountingHandler();
+		this.events = new EventsManagerImpl();
+		this.events.addHandler(this.handler);
+		this.linkEnterMethod = LinkEnterEventHandler.class.getMethod("handleEvent", LinkEnterEvent.class);
+		this.customMethod = CustomEventHandler.class.getMethod("handleEvent", CustomEvent.class);
+		this.linkEnterEvent = new LinkEnterEvent(1.0, Id.create("v", Vehicle.class), Id.create("l", Link.class));
+		this.customEvent = new CustomEvent(1.0);
+		// fill the handler cache of the events manager
+		this.events.processEvent(this.linkEnterEvent);
+		this.events.processEvent(this.customEvent);
+	}
+
+	@Benchmark
+	public long eventsManagerKnownEvent() {
+		this.events.processEvent(this.linkEnterEvent);
+		return this.handler.count;
+	}
+
+	@Benchmark
+	public long eventsManagerCustomEvent() {
+		this.events.processEvent(this.customEvent);
+		return this.handler.count;
+	}
+
+	@Benchmark
+	public long reflectionKnownEvent() throws Exception {
+		this.linkEnterMethod.invoke(this.handler, this.linkEnterEvent);
+		return this.handler.count;
+	}
+
+	@Benchmark
+	public long reflectionCustomEvent() throws Exception {
+		this.customMethod.invoke(this.handler, this.customEvent);
+		return this.handler.count;
+	}
+
+	@Benchmark
+	public long directCall() {
+		this.handler.handleEvent(this.customEvent);
+		return this.handler.count;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(EventsDispatchBenchmark.class.getSimpleName()).build()).run();
+	}
+}
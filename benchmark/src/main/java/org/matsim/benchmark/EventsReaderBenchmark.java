@@ -0,0 +1,156 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.ActivityEndEvent;
+import org.matsim.api.core.v01.events.ActivityStartEvent;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.PersonArrivalEvent;
+import org.matsim.api.core.v01.events.PersonDepartureEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.events.EventsManagerImpl;
+import org.matsim.core.events.EventsReaderBinary;
+import org.matsim.core.events.MatsimEventsReader;
+import org.matsim.core.events.algorithms.EventWriterBinary;
+import org.matsim.core.events.algorithms.EventWriterXML;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.vehicles.Vehicle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares reading the same (uncompressed) events from xml and from the binary format of {@link EventWriterBinary}.
+ * The events resemble those of a car-only simulation, i.e. they are dominated by link enter and leave events.
+ * The benchmark reports the time to read all events; divide the number of events by it for the throughput.
+ * <p></p>
+ * Run with <code>java -cp matsim-benchmark.jar org.matsim.benchmark.EventsReaderBenchmark</code>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class EventsReaderBenchmark {
+
+	private static final int NUMBER_OF_EVENTS = 1000000;
+
+	public static class CountingHandler implements BasicEventHandler {
+		long count = 0;
+		@Override
+		public void handleEvent(Event event) {
+			this.count++;
+		}
+		@Override
+		public void reset(int iteration) {
+			this.count = 0;
+		}
+	}
+
+	private byte[] xml;
+	private byte[] binary;
+
+	@Setup
+	public void setup() {
+		ByteArrayOutputStream xmlStream = new ByteArrayOutputStream();
+		EventWriterXML xmlWriter = new EventWriterXML(xmlStream);
+		ByteArrayOutputStream binaryStream = new ByteArrayOutputStream();
+		EventWriterBinary binaryWriter = new EventWriterBinary(binaryStream);
+		double time = 6 * 3600;
+		for (int i = 0; i < NUMBER_OF_EVENTS; i++) {
+			Event event = createEvent(i, time);
+			xmlWriter.handleEvent(event);
+			binaryWriter.handleEvent(event);
+			if (i % 10 == 0) {
+				time++;
+			}
+		}
+		xmlWriter.closeFile();
+		binaryWriter.closeFile();
+		this.xml = xmlStream.toByteArray();
+		this.binary = binaryStream.toByteArray();
+	}
+
+	private static Event createEvent(int i, double time) {
+		int agent = (i / 20) % 50000;
+		Id<Person> person = Id.createPersonId(agent);
+		Id<Vehicle> vehicle = Id.createVehicleId(agent);
+		Id<Link> link = Id.createLinkId(i % 100000);
+		switch (i % 20) {
+		case 0:
+			return new ActivityEndEvent(time, person, link, null, "home");
+		case 1:
+			return new PersonDepartureEvent(time, person, link, "car");
+		case 2:
+			return new VehicleEntersTrafficEvent(time, person, link, vehicle, "car", 1.0);
+		case 17:
+			return new VehicleLeavesTrafficEvent(time, person, link, vehicle, "car", 1.0);
+		case 18:
+			return new PersonArrivalEvent(time, person, link, "car");
+		case 19:
+			return new ActivityStartEvent(time, person, link, null, "work");
+		default:
+			return i % 2 == 0 ? new LinkLeaveEvent(time, vehicle, link) : new LinkEnterEvent(time, vehicle, link);
+		}
+	}
+
+	@Benchmark
+	public long readXml() {
+		EventsManagerImpl events = new EventsManagerImpl();
+		CountingHandler handler = new CountingHandler();
+		events.addHandler(handler);
+		new MatsimEventsReader(events).readStream(new ByteArrayInputStream(this.xml));
+		return handler.count;
+	}
+
+	@Benchmark
+	public long readBinary() {
+		EventsManagerImpl events = new EventsManagerImpl();
+		CountingHandler handler = new CountingHandler();
+		events.addHandler(handler);
+		new EventsReaderBinary(events).parse(new ByteArrayInputStream(this.binary));
+		return handler.count;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(EventsReaderBenchmark.class.getSimpleName()).build()).run();
+	}
+}
@@ -0,0 +1,305 @@
+/*
+ * Copyright (C) Schweizerische Bundesbahnen SBB, 2018.
+ */
+
+package ch.sbb.matsim.routing.pt.raptor;
+
+import ch.sbb.matsim.routing.pt.raptor.SwissRailRaptorCore.TreeArrays;
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.core.utils.geometry.CoordUtils;
+import org.matsim.matrices.FloatMatrix;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Calculates zone-to-zone skim matrices for public transport with SwissRailRaptor.
+ *
+ * For every origin zone, a least-cost tree is calculated from each of the zone's coordinates for several departure
+ * times between <code>minDepartureTime</code> and <code>maxDepartureTime</code>. The stops within the search radius
+ * of a coordinate (see {@link RaptorParameters#getSearchRadius()}) are used as access and egress stops, reached by
+ * walking the beeline distance. For every destination coordinate, the egress stop with the earliest arrival is used.
+ * The matrices contain the averages over all origin coordinates, destination coordinates and departure times for
+ * which a connection was found, and {@link Float#POSITIVE_INFINITY} if none was found at all.
+ *
+ * The origin zones are distributed over several threads, which share the {@link SwissRailRaptorData} but each use
+ * their own {@link SwissRailRaptorCore}. The trees are not converted into {@link SwissRailRaptorCore.TravelInfo}
+ * objects, and every thread only writes the rows of its origin zones into the matrices.
+ */
+public final class PtSkimMatrices {
+
+    private static final Logger log = Logger.getLogger(PtSkimMatrices.class);
+
+    private PtSkimMatrices() {
+    }
+
+    /**
+     * @param coordsPerZone the zones, each with one or more coordinates, e.g. randomly chosen within the zone or
+     * weighted by population.
+     * @param stepSize_seconds the time between two departure times. Departures are sampled from
+     * <code>minDepartureTime</code> up to and including <code>maxDepartureTime</code>.
+     * @throws IllegalArgumentException if the schedule has no stops served by a route, or a zone has no coordinates.
+     */
+    public static <T> PtIndicators<T> calculateSkimMatrices(SwissRailRaptorData raptorData, Map<T, Coord[]> coordsPerZone,
+                                                            double minDepartureTime, double maxDepartureTime, double stepSize_seconds,
+                                                            RaptorParameters parameters, int numberOfThreads) {
+        if (stepSize_seconds <= 0) {
+            throw new IllegalArgumentException("stepSize_seconds must be positive, but is " + stepSize_seconds);
+        }
+        if (raptorData.stopsQT.size() == 0) {
+            throw new IllegalArgumentException("the transit schedule has no stops served by any route.");
+        }
+        for (Map.Entry<T, Coord[]> e : coordsPerZone.entrySet()) {
+            if (e.getValue() == null || e.getValue().length == 0) {
+                throw new IllegalArgumentException("zone " + e.getKey() + " has no coordinates.");
+            }
+        }
+        List<T> zones = new ArrayList<>(coordsPerZone.keySet());
+        PtIndicators<T> pti = new PtIndicators<>(zones);
+
+        log.info("collecting access and egress stops for " + zones.size() + " zones...");
+        ZoneStops[] zoneStops = new ZoneStops[zones.size()];
+        for (int i = 0; i < zones.size(); i++) {
+            zoneStops[i] = new ZoneStops(coordsPerZone.get(zones.get(i)), raptorData, parameters);
+        }
+
+        int departureCount = (int) Math.floor((maxDepartureTime - minDepartureTime) / stepSize_seconds) + 1;
+        double[] departureTimes = new double[departureCount];
+        for (int i = 0; i < departureCount; i++) {
+            departureTimes[i] = minDepartureTime + i * stepSize_seconds;
+        }
+
+        log.info("calculating pt skims for " + zones.size() + " zones and " + departureCount + " departure times using " + numberOfThreads + " threads...");
+        AtomicInteger nextOrigin = new AtomicInteger(0);
+        AtomicInteger threadCount = new AtomicInteger(0);
+        ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads, runnable -> {
+            Thread thread = new Thread(runnable, "PtSkimMatrices_" + threadCount.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<?>> futures = new ArrayList<>(numberOfThreads);
+            for (int i = 0; i < numberOfThreads; i++) {
+                futures.add(executor.submit(new RowCalculator<>(raptorData, zoneStops, departureTimes, parameters, pti, nextOrigin)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+        log.info("calculating pt skims done.");
+        return pti;
+    }
+
+    /**
+     * The skim matrices, indexed by origin zone (rows) and destination zone (columns).
+     */
+    public static final class PtIndicators<T> {
+        /** The door-to-door travel time, including access, waiting at the first stop, and egress. */
+        public final FloatMatrix<T> travelTimeMatrix;
+        public final FloatMatrix<T> inVehicleTimeMatrix;
+        public final FloatMatrix<T> accessTimeMatrix;
+        public final FloatMatrix<T> egressTimeMatrix;
+        /** The time between arriving at the first stop and the departure of the first pt vehicle. */
+        public final FloatMatrix<T> waitingTimeMatrix;
+        public final FloatMatrix<T> transferCountMatrix;
+        /** The distance travelled in pt vehicles. */
+        public final FloatMatrix<T> inVehicleDistanceMatrix;
+        /** The share of all combinations of origin coordinates, destination coordinates and departure times for which a connection was found. */
+        public final FloatMatrix<T> dataCountMatrix;
+
+        PtIndicators(Collection<T> zones) {
+            this.travelTimeMatrix = new FloatMatrix<>(zones, 0);
+            this.inVehicleTimeMatrix = new FloatMatrix<>(zones, 0);
+            this.accessTimeMatrix = new FloatMatrix<>(zones, 0);
+            this.egressTimeMatrix = new FloatMatrix<>(zones, 0);
+            this.waitingTimeMatrix = new FloatMatrix<>(zones, 0);
+            this.transferCountMatrix = new FloatMatrix<>(zones, 0);
+            this.inVehicleDistanceMatrix = new FloatMatrix<>(zones, 0);
+            this.dataCountMatrix = new FloatMatrix<>(zones, 0);
+        }
+    }
+
+    /**
+     * The walk to or from the nearby stops of a zone's coordinates, the same way as {@link DefaultRaptorStopFinder}
+     * finds them without intermodal access and egress.
+     */
+    private static final class ZoneStops {
+        final List<List<InitialStop>> stopsPerCoord = new ArrayList<>();
+        final int[][] stopIndicesPerCoord;
+        final double[][] walkTimesPerCoord;
+
+        ZoneStops(Coord[] coords, SwissRailRaptorData data, RaptorParameters parameters) {
+            this.stopIndicesPerCoord = new int[coords.length][];
+            this.walkTimesPerCoord = new double[coords.length][];
+            double distanceFactor = data.config.getBeelineWalkDistanceFactor();
+            double walkCost_per_s = -parameters.getMarginalUtilityOfTravelTime_utl_s(TransportMode.walk);
+            for (int c = 0; c < coords.length; c++) {
+                Coord coord = coords[c];
+                Collection<TransitStopFacility> stops = data.stopsQT.getDisk(coord.getX(), coord.getY(), parameters.getSearchRadius());
+                if (stops.size() < 2) {
+                    TransitStopFacility nearestStop = data.stopsQT.getClosest(coord.getX(), coord.getY());
+                    double nearestDistance = CoordUtils.calcEuclideanDistance(coord, nearestStop.getCoord());
+                    stops = data.stopsQT.getDisk(coord.getX(), coord.getY(), nearestDistance + parameters.getExtensionRadius());
+                }
+                List<InitialStop> initialStops = new ArrayList<>(stops.size());
+                int[] stopIndices = new int[stops.size()];
+                double[] walkTimes = new double[stops.size()];
+                for (TransitStopFacility stop : stops) {
+                    Integer stopIndex = data.stopFacilityIndices.get(stop);
+                    if (stopIndex == null) {
+                        continue; // a stop which is not served by any route
+                    }
+                    double beelineDistance = CoordUtils.calcEuclideanDistance(stop.getCoord(), coord);
+                    double walkTime = Math.ceil(beelineDistance / parameters.getBeelineWalkSpeed());
+                    stopIndices[initialStops.size()] = stopIndex;
+                    walkTimes[initialStops.size()] = walkTime;
+                    initialStops.add(new InitialStop(stop, walkTime * walkCost_per_s, walkTime, beelineDistance * distanceFactor, TransportMode.walk));
+                }
+                this.stopsPerCoord.add(initialStops);
+                this.stopIndicesPerCoord[c] = Arrays.copyOf(stopIndices, initialStops.size());
+                this.walkTimesPerCoord[c] = Arrays.copyOf(walkTimes, initialStops.size());
+            }
+        }
+    }
+
+    private static final class RowCalculator<T> implements Runnable {
+        private final ZoneStops[] zoneStops;
+        private final double[] departureTimes;
+        private final RaptorParameters parameters;
+        private final PtIndicators<T> pti;
+        private final AtomicInteger nextOrigin;
+
+        private final SwissRailRaptorCore raptor;
+        private final TreeArrays tree;
+        // the sums per destination zone of the current origin zone
+        private final double[] travelTimes;
+        private final double[] inVehicleTimes;
+        private final double[] accessTimes;
+        private final double[] egressTimes;
+        private final double[] waitingTimes;
+        private final double[] transferCounts;
+        private final double[] inVehicleDistances;
+        private final int[] counts;
+
+        RowCalculator(SwissRailRaptorData data, ZoneStops[] zoneStops, double[] departureTimes, RaptorParameters parameters, PtIndicators<T> pti, AtomicInteger nextOrigin) {
+            this.zoneStops = zoneStops;
+            this.departureTimes = departureTimes;
+            this.parameters = parameters;
+            this.pti = pti;
+            this.nextOrigin = nextOrigin;
+            this.raptor = new SwissRailRaptorCore(data);
+            this.tree = new TreeArrays(data);
+            int zoneCount = zoneStops.length;
+            this.travelTimes = new double[zoneCount];
+            this.inVehicleTimes = new double[zoneCount];
+            this.accessTimes = new double[zoneCount];
+            this.egressTimes = new double[zoneCount];
+            this.waitingTimes = new double[zoneCount];
+            this.transferCounts = new double[zoneCount];
+            this.inVehicleDistances = new double[zoneCount];
+            this.counts = new int[zoneCount];
+        }
+
+        @Override
+        public void run() {
+            int origin;
+            while ((origin = this.nextOrigin.getAndIncrement()) < this.zoneStops.length) {
+                calcRow(origin);
+            }
+        }
+
+        private void calcRow(int origin) {
+            Arrays.fill(this.travelTimes, 0);
+            Arrays.fill(this.inVehicleTimes, 0);
+            Arrays.fill(this.accessTimes, 0);
+            Arrays.fill(this.egressTimes, 0);
+            Arrays.fill(this.waitingTimes, 0);
+            Arrays.fill(this.transferCounts, 0);
+            Arrays.fill(this.inVehicleDistances, 0);
+            Arrays.fill(this.counts, 0);
+
+            ZoneStops originStops = this.zoneStops[origin];
+            for (List<InitialStop> accessStops : originStops.stopsPerCoord) {
+                if (accessStops.isEmpty()) {
+                    continue;
+                }
+                for (double departureTime : this.departureTimes) {
+                    this.raptor.calcLeastCostTree(departureTime, accessStops, this.parameters, this.tree);
+                    for (int destination = 0; destination < this.zoneStops.length; destination++) {
+                        addDestination(departureTime, destination);
+                    }
+                }
+            }
+
+            int combinations = this.departureTimes.length * originStops.stopsPerCoord.size();
+            for (int destination = 0; destination < this.zoneStops.length; destination++) {
+                int count = this.counts[destination];
+                float dataCount = (float) count / (combinations * this.zoneStops[destination].stopsPerCoord.size());
+                this.pti.dataCountMatrix.getData()[origin][destination] = dataCount;
+                setAverage(this.pti.travelTimeMatrix, origin, destination, this.travelTimes, count);
+                setAverage(this.pti.inVehicleTimeMatrix, origin, destination, this.inVehicleTimes, count);
+                setAverage(this.pti.accessTimeMatrix, origin, destination, this.accessTimes, count);
+                setAverage(this.pti.egressTimeMatrix, origin, destination, this.egressTimes, count);
+                setAverage(this.pti.waitingTimeMatrix, origin, destination, this.waitingTimes, count);
+                setAverage(this.pti.transferCountMatrix, origin, destination, this.transferCounts, count);
+                setAverage(this.pti.inVehicleDistanceMatrix, origin, destination, this.inVehicleDistances, count);
+            }
+        }
+
+        private void addDestination(double departureTime, int destination) {
+            ZoneStops destinationStops = this.zoneStops[destination];
+            TreeArrays tree = this.tree;
+            for (int c = 0; c < destinationStops.stopIndicesPerCoord.length; c++) {
+                int[] stopIndices = destinationStops.stopIndicesPerCoord[c];
+                double[] walkTimes = destinationStops.walkTimesPerCoord[c];
+                int bestStopIndex = -1;
+                double bestWalkTime = 0;
+                double bestArrivalTime = Double.POSITIVE_INFINITY;
+                for (int i = 0; i < stopIndices.length; i++) {
+                    int stopIndex = stopIndices[i];
+                    if (tree.reachedStops.get(stopIndex)) {
+                        double arrivalTime = tree.ptArrivalTimes[stopIndex] + walkTimes[i];
+                        if (arrivalTime < bestArrivalTime) {
+                            bestArrivalTime = arrivalTime;
+                            bestStopIndex = stopIndex;
+                            bestWalkTime = walkTimes[i];
+                        }
+                    }
+                }
+                if (bestStopIndex >= 0) {
+                    double accessTime = tree.accessTimes[bestStopIndex];
+                    this.travelTimes[destination] += bestArrivalTime - departureTime;
+                    this.inVehicleTimes[destination] += tree.inVehicleTimes[bestStopIndex];
+                    this.accessTimes[destination] += accessTime;
+                    this.egressTimes[destination] += bestWalkTime;
+                    this.waitingTimes[destination] += tree.ptDepartureTimes[bestStopIndex] - (departureTime + accessTime);
+                    this.transferCounts[destination] += tree.transferCounts[bestStopIndex];
+                    this.inVehicleDistances[destination] += tree.inVehicleDistances[bestStopIndex];
+                    this.counts[destination]++;
+                }
+            }
+        }
+
+        private static void setAverage(FloatMatrix<?> matrix, int origin, int destination, double[] sums, int count) {
+            matrix.getData()[origin][destination] = count == 0 ? Float.POSITIVE_INFINITY : (float) (sums[destination] / count);
+        }
+    }
+}
@@ -220,10 +220,7 @@ public class SwissRailRaptor implements TransitRouter {
     }
 
     public Map<Id<TransitStopFacility>, SwissRailRaptorCore.TravelInfo> calcTree(Collection<TransitStopFacility> fromStops, double departureTime, RaptorParameters parameters) {
-        if (this.data.config.getOptimization() != RaptorStaticConfig.RaptorOptimization.OneToAllRouting && !this.treeWarningShown) {
-            log.warn("SwissRailRaptorData was not initialized with full support for tree calculations and may result in unexpected results. Use `RaptorStaticConfig.setOptimization(RaptorOptimization.OneToAllRouting)` to fix this issue.");
-            this.treeWarningShown = true;
-        }
+        checkTreeSupport();
         List<InitialStop> accessStops = new ArrayList<>();
         for (TransitStopFacility stop : fromStops) {
             accessStops.add(new InitialStop(stop, 0, 0, 0, null));
@@ -241,6 +238,39 @@ public class SwissRailRaptor implements TransitRouter {
         return this.raptor.calcLeastCostTree(departureTime, accessStops, parameters);
     }
 
+    /**
+     * Calculates for every stop the Pareto set of journeys with respect to departure time, arrival time and number
+     * of transfers, for all departures between <code>earliestDepartureTime</code> and <code>latestDepartureTime</code>.
+     *
+     * @see SwissRailRaptorCore#calcProfile(double, double, Collection, int)
+     */
+    public Map<Id<TransitStopFacility>, List<SwissRailRaptorCore.ProfileEntry>> calcProfile(TransitStopFacility fromStop, double earliestDepartureTime, double latestDepartureTime, int maxTransfers) {
+        return this.calcProfile(Collections.singletonList(fromStop), earliestDepartureTime, latestDepartureTime, maxTransfers);
+    }
+
+    public Map<Id<TransitStopFacility>, List<SwissRailRaptorCore.ProfileEntry>> calcProfile(Collection<TransitStopFacility> fromStops, double earliestDepartureTime, double latestDepartureTime, int maxTransfers) {
+        checkTreeSupport();
+        List<InitialStop> accessStops = new ArrayList<>();
+        for (TransitStopFacility stop : fromStops) {
+            accessStops.add(new InitialStop(stop, 0, 0, 0, null));
+        }
+        return this.raptor.calcProfile(earliestDepartureTime, latestDepartureTime, accessStops, maxTransfers);
+    }
+
+    public Map<Id<TransitStopFacility>, List<SwissRailRaptorCore.ProfileEntry>> calcProfile(Facility fromFacility, double earliestDepartureTime, double latestDepartureTime, int maxTransfers, Person person) {
+        checkTreeSupport();
+        RaptorParameters parameters = this.parametersForPerson.getRaptorParameters(person);
+        List<InitialStop> accessStops = findAccessStops(fromFacility, person, earliestDepartureTime, parameters);
+        return this.raptor.calcProfile(earliestDepartureTime, latestDepartureTime, accessStops, maxTransfers);
+    }
+
+    private void checkTreeSupport() {
+        if (this.data.config.getOptimization() != RaptorStaticConfig.RaptorOptimization.OneToAllRouting && !this.treeWarningShown) {
+            log.warn("SwissRailRaptorData was not initialized with full support for tree calculations and may result in unexpected results. Use `RaptorStaticConfig.setOptimization(RaptorOptimization.OneToAllRouting)` to fix this issue.");
+            this.treeWarningShown = true;
+        }
+    }
+
     public SwissRailRaptorData getUnderlyingData() {
         return this.data;
     }
@@ -4,9 +4,7 @@
 
 package ch.sbb.matsim.routing.pt.raptor;
 
-import ch.sbb.matsim.routing.pt.raptor.SwissRailRaptorData.RRoute;
 import ch.sbb.matsim.routing.pt.raptor.SwissRailRaptorData.RRouteStop;
-import ch.sbb.matsim.routing.pt.raptor.SwissRailRaptorData.RTransfer;
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.TransportMode;
@@ -50,6 +48,11 @@ public class SwissRailRaptorCore {
     private final PathElement[] tmpArrivalPathPerStop; // only used to ensure parallel update
     private final BitSet tmpImprovedStops; // only used to ensure parallel update
 
+    // labels of the profile queries per round, i.e. per number of pt legs. Only allocated when needed.
+    private double[][] profileArrivalTimes = new double[0][]; // per route stop, arriving by a pt vehicle
+    private double[][] profileBoardingTimes = new double[0][]; // per route stop, ready to board a pt vehicle
+    private double[][] profileStopArrivalTimes = new double[0][]; // per stop facility
+
     public SwissRailRaptorCore(SwissRailRaptorData data) {
         this.data = data;
         this.arrivalPathPerRouteStop = new PathElement[data.countRouteStops];
@@ -137,10 +140,9 @@ public class SwissRailRaptorCore {
                     // if it's intermodal, we still start here, as we might transfer to another close-by but non-intermodal stop.
                     continue;
                 }
-                RRoute route = this.data.routes[routeStop.transitRouteIndex];
-                double depOffset = routeStop.departureOffset;
+                double depOffset = this.data.routeStopDepartureOffsets[routeStopIndex];
 
-                int departureIndex = findNextDepartureIndex(route, routeStop, arrivalTime);
+                int departureIndex = findNextDepartureIndex(this.data.routeStopRouteIndices[routeStopIndex], routeStopIndex, arrivalTime);
                 if (departureIndex >= 0) {
                     double nextDepartureTimeAtStop = this.data.departures[departureIndex] + depOffset;
                     double waitingTime = nextDepartureTimeAtStop - arrivalTime;
@@ -166,10 +168,11 @@ public class SwissRailRaptorCore {
                         this.arrivalPathPerRouteStop[routeStopIndex] = pe;
                         this.leastArrivalCostAtRouteStop[routeStopIndex] = xCost;
                         this.improvedRouteStopIndices.set(routeStopIndex);
-                        if (xCost < this.leastArrivalCostAtStop[toRouteStop.stopFacilityIndex]) {
-                            this.improvedStops.set(toRouteStop.stopFacilityIndex);
-                            this.arrivalPathPerStop[toRouteStop.stopFacilityIndex] = pe;
-                            this.leastArrivalCostAtStop[toRouteStop.stopFacilityIndex] = xCost;
+                        int stopFacilityIndex = this.data.routeStopStopFacilityIndices[routeStopIndex];
+                        if (xCost < this.leastArrivalCostAtStop[stopFacilityIndex]) {
+                            this.improvedStops.set(stopFacilityIndex);
+                            this.arrivalPathPerStop[stopFacilityIndex] = pe;
+                            this.leastArrivalCostAtStop[stopFacilityIndex] = xCost;
                         }
                     }
                 } else if (isIntermodalAccess) {
@@ -185,10 +188,11 @@ public class SwissRailRaptorCore {
                         this.arrivalPathPerRouteStop[routeStopIndex] = pe;
                         this.leastArrivalCostAtRouteStop[routeStopIndex] = arrivalCost;
                         this.improvedRouteStopIndices.set(routeStopIndex);
-                        if (arrivalCost < this.leastArrivalCostAtStop[toRouteStop.stopFacilityIndex]) {
-                            this.improvedStops.set(toRouteStop.stopFacilityIndex);
-                            this.arrivalPathPerStop[toRouteStop.stopFacilityIndex] = pe;
-                            this.leastArrivalCostAtStop[toRouteStop.stopFacilityIndex] = arrivalCost;
+                        int stopFacilityIndex = this.data.routeStopStopFacilityIndices[routeStopIndex];
+                        if (arrivalCost < this.leastArrivalCostAtStop[stopFacilityIndex]) {
+                            this.improvedStops.set(stopFacilityIndex);
+                            this.arrivalPathPerStop[stopFacilityIndex] = pe;
+                            this.leastArrivalCostAtStop[stopFacilityIndex] = arrivalCost;
                         }
                     }
                 }
@@ -286,9 +290,11 @@ public class SwissRailRaptorCore {
                         // this is the last stop of a route
                         continue;
                     }
-                    RRoute route = this.data.routes[routeStop.transitRouteIndex];
-                    double depOffset = routeStop.departureOffset;
-                    for (int depIndex = route.indexFirstDeparture; depIndex < route.indexFirstDeparture + route.countDepartures; depIndex++) {
+                    int routeIndex = this.data.routeStopRouteIndices[routeStopIndex];
+                    int firstDepartureIndex = this.data.routeFirstDepartureIndices[routeIndex];
+                    int lastDepartureIndex = firstDepartureIndex + this.data.routeCountDepartures[routeIndex];
+                    double depOffset = this.data.routeStopDepartureOffsets[routeStopIndex];
+                    for (int depIndex = firstDepartureIndex; depIndex < lastDepartureIndex; depIndex++) {
                         double depTimeAtStart = this.data.departures[depIndex];
                         double depTimeAtStop = depTimeAtStart + depOffset;
                         if (depTimeAtStop >= earliestTimeAtStop && depTimeAtStop <= latestTimeAtStop) {
@@ -339,8 +345,9 @@ public class SwissRailRaptorCore {
                 PathElement pe = new PathElement(null, toRouteStop, depAtRouteStop.depTime, depAtRouteStop.depTime, arrivalTime, arrivalCost, 0, depAtRouteStop.accessStop.distance, 0, true, depAtRouteStop.accessStop);
                 this.arrivalPathPerRouteStop[routeStopIndex] = pe;
                 this.leastArrivalCostAtRouteStop[routeStopIndex] = arrivalCost;
-                this.arrivalPathPerStop[toRouteStop.stopFacilityIndex] = pe;
-                this.leastArrivalCostAtStop[toRouteStop.stopFacilityIndex] = arrivalCost;
+                int stopFacilityIndex = this.data.routeStopStopFacilityIndices[routeStopIndex];
+                this.arrivalPathPerStop[stopFacilityIndex] = pe;
+                this.leastArrivalCostAtStop[stopFacilityIndex] = arrivalCost;
                 this.improvedRouteStopIndices.set(routeStopIndex);
                 initialStopsPerStartPath.put(pe, depAtRouteStop.accessStop);
             }
@@ -457,6 +464,64 @@ public class SwissRailRaptorCore {
     }
 
     public Map<Id<TransitStopFacility>, TravelInfo> calcLeastCostTree(double depTime, Collection<InitialStop> startStops, RaptorParameters parameters) {
+        exploreLeastCostTree(depTime, startStops, parameters);
+
+        // collect information for each stop
+        Map<Id<TransitStopFacility>, TravelInfo> result = new HashMap<>();
+        for (Map.Entry<TransitStopFacility, Integer> e : this.data.stopFacilityIndices.entrySet()) {
+            TransitStopFacility stop = e.getKey();
+            int index = e.getValue();
+            PathElement destination = this.arrivalPathPerStop[index];
+            if (destination != null) {
+                TravelInfo ti = getTravelInfo(destination, parameters);
+                result.put(stop.getId(), ti);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Calculates the same tree as {@link #calcLeastCostTree(double, Collection, RaptorParameters)}, but writes the
+     * travel information into the arrays of <code>result</code> instead of creating a {@link TravelInfo} per stop.
+     * Only stops reached with at least one pt leg are marked as reached. Meant for callers calculating many trees,
+     * like {@link PtSkimMatrices}.
+     */
+    void calcLeastCostTree(double depTime, Collection<InitialStop> startStops, RaptorParameters parameters, TreeArrays result) {
+        exploreLeastCostTree(depTime, startStops, parameters);
+
+        result.reachedStops.clear();
+        for (int stopIndex = 0; stopIndex < this.data.countStops; stopIndex++) {
+            PathElement destination = this.arrivalPathPerStop[stopIndex];
+            if (destination == null) {
+                continue;
+            }
+            double inVehicleTime = 0;
+            double inVehicleDistance = 0;
+            PathElement firstStage = destination;
+            PathElement secondStage = null;
+            while (firstStage.comingFrom != null) {
+                if (!firstStage.isTransfer) {
+                    inVehicleTime += firstStage.arrivalTime - firstStage.boardingTime;
+                    inVehicleDistance += firstStage.distance;
+                }
+                secondStage = firstStage;
+                firstStage = firstStage.comingFrom;
+            }
+            if (Double.isNaN(destination.firstDepartureTime)) {
+                // no actual pt-leg, likely a start stop or a stop reachable by walking
+                continue;
+            }
+            result.reachedStops.set(stopIndex);
+            result.accessTimes[stopIndex] = firstStage.initialStop.accessTime;
+            result.ptDepartureTimes[stopIndex] = destination.firstDepartureTime;
+            result.ptArrivalTimes[stopIndex] = destination.arrivalTime;
+            result.inVehicleTimes[stopIndex] = inVehicleTime;
+            result.inVehicleDistances[stopIndex] = inVehicleDistance;
+            result.transferCounts[stopIndex] = getTransferCount(destination, secondStage);
+        }
+    }
+
+    private void exploreLeastCostTree(double depTime, Collection<InitialStop> startStops, RaptorParameters parameters) {
         reset();
 
         BitSet initialRouteStopIndices = new BitSet();
@@ -469,13 +534,14 @@ public class SwissRailRaptorCore {
                 RRouteStop toRouteStop = this.data.routeStops[routeStopIndex];
                 PathElement pe = new PathElement(null, toRouteStop, Double.NaN, Double.NaN, arrivalTime, arrivalCost, 0, stop.distance, 0, true, stop);
                 this.arrivalPathPerRouteStop[routeStopIndex] = pe;
-                this.arrivalPathPerStop[toRouteStop.stopFacilityIndex] = pe;
+                int stopFacilityIndex = this.data.routeStopStopFacilityIndices[routeStopIndex];
+                this.arrivalPathPerStop[stopFacilityIndex] = pe;
                 this.leastArrivalCostAtRouteStop[routeStopIndex] = arrivalCost;
-                this.leastArrivalCostAtStop[toRouteStop.stopFacilityIndex] = arrivalCost;
+                this.leastArrivalCostAtStop[stopFacilityIndex] = arrivalCost;
                 this.improvedRouteStopIndices.set(routeStopIndex);
                 // this is special: make sure we can transfer even at the start stop
                 initialRouteStopIndices.set(routeStopIndex);
-                initialStopIndices.set(toRouteStop.stopFacilityIndex);
+                initialStopIndices.set(stopFacilityIndex);
             }
         }
 
@@ -506,21 +572,259 @@ public class SwissRailRaptorCore {
                 break;
             }
         }
+    }
 
-        // collect information for each stop
-        Map<Id<TransitStopFacility>, TravelInfo> result = new HashMap<>();
+    /**
+     * Calculates the profiles from the start stops to all stops for all departures between <code>earliestDepTime</code>
+     * and <code>latestDepTime</code>, using the range variant of RAPTOR (rRAPTOR, see Delling et al.).
+     *
+     * The departures are handled from the latest to the earliest one. The labels are not reset between departures,
+     * as an arrival time reachable when departing later is also reachable when departing earlier. So every departure
+     * only needs to explore the connections which improve on the later departures, and only the improving journeys
+     * are recorded. This makes the result a Pareto set over departure time (later is better), arrival time (earlier
+     * is better) and number of transfers (less is better).
+     *
+     * In contrast to the other calculations, this works with time and not with cost, so the {@link RaptorParameters}
+     * are not needed.
+     *
+     * @param maxTransfers the maximal number of transfers between pt legs; the labels are kept for every number of
+     * transfers, so the memory required grows linearly with it.
+     * @return for each reached stop, the journeys ordered by descending departure time, and for the same departure
+     * time by ascending number of transfers. The start stops and stops which are only reachable by walking are not
+     * contained.
+     */
+    public Map<Id<TransitStopFacility>, List<ProfileEntry>> calcProfile(double earliestDepTime, double latestDepTime, Collection<InitialStop> startStops, int maxTransfers) {
+        int maxRounds = maxTransfers + 1;
+        resetProfileLabels(maxRounds);
+
+        Map<TransitStopFacility, InitialStop> initialStops = new HashMap<>();
+        for (InitialStop stop : startStops) {
+            InitialStop alternative = initialStops.get(stop.stop);
+            if (alternative == null || stop.accessTime < alternative.accessTime) {
+                initialStops.put(stop.stop, stop);
+            }
+        }
+        double[] depTimes = collectProfileDepartureTimes(initialStops.values(), earliestDepTime, latestDepTime);
+
+        @SuppressWarnings("unchecked")
+        List<ProfileEntry>[] profiles = new List[this.data.countStops];
+        BitSet improvedBoarding = new BitSet(this.data.countRouteStops);
+        BitSet improvedArrivals = new BitSet(this.data.countRouteStops);
+        BitSet improvedStops = new BitSet(this.data.countStops);
+        // everything which changed in the last round, to be copied over to the next round
+        BitSet changedBoarding = new BitSet(this.data.countRouteStops);
+        BitSet changedArrivals = new BitSet(this.data.countRouteStops);
+        BitSet changedStops = new BitSet(this.data.countStops);
+
+        for (int d = depTimes.length - 1; d >= 0; d--) {
+            double depTime = depTimes[d];
+            improvedBoarding.clear();
+            changedBoarding.clear();
+            changedArrivals.clear();
+            changedStops.clear();
+
+            // round 0: access to the start stops, and walking from there to other stops
+            double[] boardingTimes = this.profileBoardingTimes[0];
+            double[] stopArrivalTimes = this.profileStopArrivalTimes[0];
+            for (InitialStop stop : initialStops.values()) {
+                int[] routeStopIndices = this.data.routeStopsPerStopFacility.get(stop.stop);
+                if (routeStopIndices != null) {
+                    double arrivalTime = depTime + stop.accessTime;
+                    // so round trips back to the start stop are never recorded
+                    int stopIndex = this.data.stopFacilityIndices.get(stop.stop);
+                    if (arrivalTime < stopArrivalTimes[stopIndex]) {
+                        stopArrivalTimes[stopIndex] = arrivalTime;
+                        changedStops.set(stopIndex);
+                    }
+                    for (int routeStopIndex : routeStopIndices) {
+                        if (arrivalTime < boardingTimes[routeStopIndex]) {
+                            boardingTimes[routeStopIndex] = arrivalTime;
+                            improvedBoarding.set(routeStopIndex);
+                        }
+                    }
+                }
+            }
+            BitSet accessRouteStops = (BitSet) improvedBoarding.clone();
+            handleProfileTransfers(boardingTimes, accessRouteStops, boardingTimes, improvedBoarding, null, null);
+            changedBoarding.or(improvedBoarding);
+
+            for (int k = 1; k <= maxRounds; k++) {
+                // first stage (according to paper): what is reachable with k - 1 pt legs, is also reachable with k pt legs
+                copyImprovedLabels(this.profileBoardingTimes[k - 1], this.profileBoardingTimes[k], changedBoarding);
+                copyImprovedLabels(this.profileArrivalTimes[k - 1], this.profileArrivalTimes[k], changedArrivals);
+                copyImprovedLabels(this.profileStopArrivalTimes[k - 1], this.profileStopArrivalTimes[k], changedStops);
+
+                // second stage: process routes
+                improvedArrivals.clear();
+                improvedStops.clear();
+                exploreProfileRoutes(improvedBoarding, this.profileBoardingTimes[k - 1], this.profileArrivalTimes[k], improvedArrivals, this.profileStopArrivalTimes[k], improvedStops);
+
+                // third stage: handle transfers
+                improvedBoarding.clear();
+                handleProfileTransfers(this.profileArrivalTimes[k], improvedArrivals, this.profileBoardingTimes[k], improvedBoarding, this.profileStopArrivalTimes[k], improvedStops);
+
+                changedBoarding.or(improvedBoarding);
+                changedArrivals.or(improvedArrivals);
+                changedStops.or(improvedStops);
+                for (int stopIndex = improvedStops.nextSetBit(0); stopIndex >= 0; stopIndex = improvedStops.nextSetBit(stopIndex + 1)) {
+                    List<ProfileEntry> profile = profiles[stopIndex];
+                    if (profile == null) {
+                        profile = new ArrayList<>(4);
+                        profiles[stopIndex] = profile;
+                    }
+                    profile.add(new ProfileEntry(depTime, this.profileStopArrivalTimes[k][stopIndex], k - 1));
+                }
+
+                // final stage: check stop criterion. Labels which changed must still be copied to the next rounds.
+                if (changedBoarding.isEmpty() && changedArrivals.isEmpty() && changedStops.isEmpty()) {
+                    break;
+                }
+            }
+        }
+
+        // collect the profiles for each stop
+        Map<Id<TransitStopFacility>, List<ProfileEntry>> result = new HashMap<>();
         for (Map.Entry<TransitStopFacility, Integer> e : this.data.stopFacilityIndices.entrySet()) {
-            TransitStopFacility stop = e.getKey();
-            int index = e.getValue();
-            PathElement destination = this.arrivalPathPerStop[index];
-            if (destination != null) {
-                TravelInfo ti = getTravelInfo(destination, parameters);
-                result.put(stop.getId(), ti);
+            List<ProfileEntry> profile = profiles[e.getValue()];
+            if (profile != null) {
+                result.put(e.getKey().getId(), profile);
             }
         }
         return result;
     }
 
+    private void resetProfileLabels(int maxRounds) {
+        if (this.profileBoardingTimes.length < maxRounds + 1) {
+            this.profileBoardingTimes = new double[maxRounds + 1][this.data.countRouteStops];
+            this.profileArrivalTimes = new double[maxRounds + 1][this.data.countRouteStops];
+            this.profileStopArrivalTimes = new double[maxRounds + 1][this.data.countStops];
+        }
+        for (int k = 0; k <= maxRounds; k++) {
+            Arrays.fill(this.profileBoardingTimes[k], Double.POSITIVE_INFINITY);
+            Arrays.fill(this.profileArrivalTimes[k], Double.POSITIVE_INFINITY);
+            Arrays.fill(this.profileStopArrivalTimes[k], Double.POSITIVE_INFINITY);
+        }
+    }
+
+    /**
+     * @return the sorted, distinct times at which one has to leave the start to catch a departure, either at one of
+     * the start stops or at a stop which can be reached from there by walking.
+     */
+    private double[] collectProfileDepartureTimes(Collection<InitialStop> startStops, double earliestDepTime, double latestDepTime) {
+        double[] depTimes = new double[16];
+        int count = 0;
+        for (InitialStop stop : startStops) {
+            int[] routeStopIndices = this.data.routeStopsPerStopFacility.get(stop.stop);
+            if (routeStopIndices == null) {
+                continue;
+            }
+            for (int routeStopIndex : routeStopIndices) {
+                int firstTransferIndex = this.data.routeStopFirstTransferIndices[routeStopIndex];
+                int lastTransferIndex = firstTransferIndex + this.data.routeStopCountTransfers[routeStopIndex];
+                for (int transferIndex = firstTransferIndex - 1; transferIndex < lastTransferIndex; transferIndex++) {
+                    int depRouteStopIndex = routeStopIndex;
+                    double timeToRouteStop = stop.accessTime;
+                    if (transferIndex >= firstTransferIndex) {
+                        depRouteStopIndex = this.data.transferToRouteStops[transferIndex];
+                        timeToRouteStop += this.data.transferTimes[transferIndex];
+                    }
+                    RRouteStop depRouteStop = this.data.routeStops[depRouteStopIndex];
+                    if (depRouteStop.routeStop == depRouteStop.route.getStops().get(depRouteStop.route.getStops().size() - 1)) {
+                        // this is the last stop of a route
+                        continue;
+                    }
+                    int routeIndex = this.data.routeStopRouteIndices[depRouteStopIndex];
+                    int firstDepartureIndex = this.data.routeFirstDepartureIndices[routeIndex];
+                    int lastDepartureIndex = firstDepartureIndex + this.data.routeCountDepartures[routeIndex];
+                    double depOffset = this.data.routeStopDepartureOffsets[depRouteStopIndex];
+                    for (int depIndex = firstDepartureIndex; depIndex < lastDepartureIndex; depIndex++) {
+                        double depTime = this.data.departures[depIndex] + depOffset - timeToRouteStop;
+                        if (depTime >= earliestDepTime && depTime <= latestDepTime) {
+                            if (count == depTimes.length) {
+                                depTimes = Arrays.copyOf(depTimes, count * 2);
+                            }
+                            depTimes[count++] = depTime;
+                        }
+                    }
+                }
+            }
+        }
+        Arrays.sort(depTimes, 0, count);
+        int distinctCount = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinctCount == 0 || depTimes[i] != depTimes[distinctCount - 1]) {
+                depTimes[distinctCount++] = depTimes[i];
+            }
+        }
+        return Arrays.copyOf(depTimes, distinctCount);
+    }
+
+    private static void copyImprovedLabels(double[] fromLabels, double[] toLabels, BitSet changed) {
+        for (int index = changed.nextSetBit(0); index >= 0; index = changed.nextSetBit(index + 1)) {
+            if (fromLabels[index] < toLabels[index]) {
+                toLabels[index] = fromLabels[index];
+            } else {
+                changed.clear(index);
+            }
+        }
+    }
+
+    private void exploreProfileRoutes(BitSet improvedBoarding, double[] boardingTimes, double[] arrivalTimes, BitSet improvedArrivals, double[] stopArrivalTimes, BitSet improvedStops) {
+        for (int firstRouteStopIndex = improvedBoarding.nextSetBit(0); firstRouteStopIndex >= 0; firstRouteStopIndex = improvedBoarding.nextSetBit(firstRouteStopIndex + 1)) {
+            int routeIndex = this.data.routeStopRouteIndices[firstRouteStopIndex];
+            int lastRouteStopIndex = this.data.routeFirstRouteStopIndices[routeIndex] + this.data.routeCountRouteStops[routeIndex] - 1;
+            int departureIndex = -1;
+            for (int routeStopIndex = firstRouteStopIndex; routeStopIndex <= lastRouteStopIndex; routeStopIndex++) {
+                if (departureIndex >= 0) {
+                    double arrivalTime = this.data.departures[departureIndex] + this.data.routeStopArrivalOffsets[routeStopIndex];
+                    if (arrivalTime < arrivalTimes[routeStopIndex]) {
+                        arrivalTimes[routeStopIndex] = arrivalTime;
+                        improvedArrivals.set(routeStopIndex);
+                        int stopFacilityIndex = this.data.routeStopStopFacilityIndices[routeStopIndex];
+                        if (arrivalTime < stopArrivalTimes[stopFacilityIndex]) {
+                            stopArrivalTimes[stopFacilityIndex] = arrivalTime;
+                            improvedStops.set(stopFacilityIndex);
+                        }
+                    }
+                }
+                // check if we can catch an earlier departure here
+                double boardingTime = boardingTimes[routeStopIndex];
+                if (departureIndex < 0 || boardingTime < this.data.departures[departureIndex] + this.data.routeStopDepartureOffsets[routeStopIndex]) {
+                    int earlierDepartureIndex = Double.isInfinite(boardingTime) ? -1 : findNextDepartureIndex(routeIndex, routeStopIndex, boardingTime);
+                    if (earlierDepartureIndex >= 0 && (departureIndex < 0 || earlierDepartureIndex < departureIndex)) {
+                        departureIndex = earlierDepartureIndex;
+                    }
+                }
+            }
+            firstRouteStopIndex = lastRouteStopIndex; // we've handled this route, so we can skip its other route stops
+        }
+    }
+
+    private void handleProfileTransfers(double[] arrivalTimes, BitSet arrivalRouteStops, double[] boardingTimes, BitSet improvedBoarding, double[] stopArrivalTimes, BitSet improvedStops) {
+        for (int routeStopIndex = arrivalRouteStops.nextSetBit(0); routeStopIndex >= 0; routeStopIndex = arrivalRouteStops.nextSetBit(routeStopIndex + 1)) {
+            int fromStopFacilityIndex = this.data.routeStopStopFacilityIndices[routeStopIndex];
+            double arrivalTime = arrivalTimes[routeStopIndex];
+            int firstTransferIndex = this.data.routeStopFirstTransferIndices[routeStopIndex];
+            int lastTransferIndex = firstTransferIndex + this.data.routeStopCountTransfers[routeStopIndex];
+            for (int transferIndex = firstTransferIndex; transferIndex < lastTransferIndex; transferIndex++) {
+                int toRouteStopIndex = this.data.transferToRouteStops[transferIndex];
+                double newArrivalTime = arrivalTime + this.data.transferTimes[transferIndex];
+                if (newArrivalTime < boardingTimes[toRouteStopIndex]) {
+                    boardingTimes[toRouteStopIndex] = newArrivalTime;
+                    improvedBoarding.set(toRouteStopIndex);
+                }
+                if (stopArrivalTimes != null) {
+                    // walking to another route stop at the same stop facility does not get us anywhere
+                    int toStopFacilityIndex = this.data.routeStopStopFacilityIndices[toRouteStopIndex];
+                    if (toStopFacilityIndex != fromStopFacilityIndex && newArrivalTime < stopArrivalTimes[toStopFacilityIndex]) {
+                        stopArrivalTimes[toStopFacilityIndex] = newArrivalTime;
+                        improvedStops.set(toStopFacilityIndex);
+                    }
+                }
+            }
+        }
+    }
+
     private TravelInfo getTravelInfo(PathElement destination, RaptorParameters parameters) {
         PathElement firstStage = destination;
         PathElement secondStage = null;
@@ -541,6 +845,12 @@ public class SwissRailRaptorCore {
         double waitingCost = waitingTime * -parameters.getMarginalUtilityOfWaitingPt_utl_s();
 
         double travelCost = destination.arrivalTravelCost - firstStage.arrivalTravelCost - waitingCost;
+        int transferCount = getTransferCount(destination, secondStage);
+        Id<TransitStopFacility> departureStopId = firstStage.toRouteStop.routeStop.getStopFacility().getId();
+        return new TravelInfo(departureStopId, departureTimeAtFirstStop, arrivalTimeAtLastStop, travelCost, accessTime, accessCost, transferCount, waitingTime, waitingCost, destination);
+    }
+
+    private static int getTransferCount(PathElement destination, PathElement secondStage) {
         int transferCount = destination.transferCount;
         if (destination.isTransfer && transferCount > 0) {
             transferCount--; // do not count this as transfer, as the router would merge it with the egress walk
@@ -548,8 +858,7 @@ public class SwissRailRaptorCore {
         if (secondStage != null && secondStage.isTransfer && transferCount > 0) {
             transferCount--; // the first "leg" is a transfer, do not count it as such as the router would merge it with the access walk
         }
-        Id<TransitStopFacility> departureStopId = firstStage.toRouteStop.routeStop.getStopFacility().getId();
-        return new TravelInfo(departureStopId, departureTimeAtFirstStop, arrivalTimeAtLastStop, travelCost, accessTime, accessCost, transferCount, waitingTime, waitingCost, destination);
+        return transferCount;
     }
 
     private void exploreRoutes(RaptorParameters parameters) {
@@ -565,27 +874,26 @@ public class SwissRailRaptorCore {
 
         int routeIndex = -1;
         for (int firstRouteStopIndex = this.improvedRouteStopIndices.nextSetBit(0); firstRouteStopIndex >= 0; firstRouteStopIndex = this.improvedRouteStopIndices.nextSetBit(firstRouteStopIndex+1)) {
-            RRouteStop firstRouteStop = this.data.routeStops[firstRouteStopIndex];
-            if (firstRouteStop.transitRouteIndex == routeIndex) {
+            int tmpRouteIndex = this.data.routeStopRouteIndices[firstRouteStopIndex];
+            if (tmpRouteIndex == routeIndex) {
                 continue; // we've handled this route already
             }
-            int tmpRouteIndex = firstRouteStop.transitRouteIndex;
 
             // for each relevant route, step along route and look for new/improved connections
-            RRoute route = this.data.routes[tmpRouteIndex];
+            int lastRouteStopIndex = this.data.routeFirstRouteStopIndices[tmpRouteIndex] + this.data.routeCountRouteStops[tmpRouteIndex] - 1;
 
-            // firstRouteStop is the first RouteStop in the route we can board in this round
+            // firstRouteStopIndex is the first RouteStop in the route we can board in this round
             // figure out which departure we can take
             PathElement boardingPE = this.arrivalPathPerRouteStop[firstRouteStopIndex];
             double agentFirstArrivalTime = boardingPE.arrivalTime;
-            int currentDepartureIndex = findNextDepartureIndex(route, firstRouteStop, agentFirstArrivalTime);
+            int currentDepartureIndex = findNextDepartureIndex(tmpRouteIndex, firstRouteStopIndex, agentFirstArrivalTime);
             if (currentDepartureIndex >= 0) {
                 double currentDepartureTime = this.data.departures[currentDepartureIndex];
                 double currentAgentBoardingTime;
                 double currentTravelCostWhenBoarding;
                 double currentTransferCostWhenBoarding;
                 {
-                    double vehicleArrivalTime = currentDepartureTime + firstRouteStop.arrivalOffset;
+                    double vehicleArrivalTime = currentDepartureTime + this.data.routeStopArrivalOffsets[firstRouteStopIndex];
                     currentAgentBoardingTime = (agentFirstArrivalTime < vehicleArrivalTime) ? vehicleArrivalTime : agentFirstArrivalTime;
                     double waitingTime = currentAgentBoardingTime - agentFirstArrivalTime;
                     double waitingCost = -marginalUtilityOfWaitingPt_utl_s * waitingTime;
@@ -601,9 +909,8 @@ public class SwissRailRaptorCore {
 
                 double marginalUtilityOfTravelTime_utl_s = parameters.getMarginalUtilityOfTravelTime_utl_s(boardingPE.toRouteStop.mode);
 
-                for (int toRouteStopIndex = firstRouteStopIndex + 1; toRouteStopIndex < route.indexFirstRouteStop + route.countRouteStops; toRouteStopIndex++) {
-                    RRouteStop toRouteStop = this.data.routeStops[toRouteStopIndex];
-                    double arrivalTime = currentDepartureTime + toRouteStop.arrivalOffset;
+                for (int toRouteStopIndex = firstRouteStopIndex + 1; toRouteStopIndex <= lastRouteStopIndex; toRouteStopIndex++) {
+                    double arrivalTime = currentDepartureTime + this.data.routeStopArrivalOffsets[toRouteStopIndex];
                     double inVehicleTime = arrivalTime - currentAgentBoardingTime;
                     double inVehicleCost = inVehicleTime * -marginalUtilityOfTravelTime_utl_s;
                     double arrivalTravelCost = currentTravelCostWhenBoarding + inVehicleCost;
@@ -611,14 +918,15 @@ public class SwissRailRaptorCore {
                     double previousArrivalCost = this.leastArrivalCostAtRouteStop[toRouteStopIndex];
                     double totalArrivalCost = arrivalTravelCost + arrivalTransferCost;
                     if (totalArrivalCost <= previousArrivalCost) {
-                        double distance = toRouteStop.distanceAlongRoute - boardingPE.toRouteStop.distanceAlongRoute;
-                        PathElement pe = new PathElement(boardingPE, toRouteStop, firstDepartureTime, currentAgentBoardingTime, arrivalTime, arrivalTravelCost, arrivalTransferCost, distance, boardingPE.transferCount, false, null);
+                        double distance = this.data.routeStopDistancesAlongRoute[toRouteStopIndex] - this.data.routeStopDistancesAlongRoute[boardingPE.toRouteStop.index];
+                        PathElement pe = new PathElement(boardingPE, this.data.routeStops[toRouteStopIndex], firstDepartureTime, currentAgentBoardingTime, arrivalTime, arrivalTravelCost, arrivalTransferCost, distance, boardingPE.transferCount, false, null);
                         this.arrivalPathPerRouteStop[toRouteStopIndex] = pe;
                         this.leastArrivalCostAtRouteStop[toRouteStopIndex] = totalArrivalCost;
-                        if (totalArrivalCost <= this.leastArrivalCostAtStop[toRouteStop.stopFacilityIndex]) {
-                            this.leastArrivalCostAtStop[toRouteStop.stopFacilityIndex] = totalArrivalCost;
-                            this.arrivalPathPerStop[toRouteStop.stopFacilityIndex] = pe;
-                            this.improvedStops.set(toRouteStop.stopFacilityIndex);
+                        int toStopFacilityIndex = this.data.routeStopStopFacilityIndices[toRouteStopIndex];
+                        if (totalArrivalCost <= this.leastArrivalCostAtStop[toStopFacilityIndex]) {
+                            this.leastArrivalCostAtStop[toStopFacilityIndex] = totalArrivalCost;
+                            this.arrivalPathPerStop[toStopFacilityIndex] = pe;
+                            this.improvedStops.set(toStopFacilityIndex);
                             checkForBestArrival(toRouteStopIndex, totalArrivalCost);
                         }
                     } else /*if (previousArrivalCost < arrivalCost)*/ {
@@ -626,10 +934,10 @@ public class SwissRailRaptorCore {
                         // check if we can depart also with better cost, if yes, switch to this connection
                         PathElement alternativeBoardingPE = this.arrivalPathPerRouteStop[toRouteStopIndex];
                         double alternativeAgentFirstArrivalTime = alternativeBoardingPE.arrivalTime;
-                        int alternativeDepartureIndex = findNextDepartureIndex(route, toRouteStop, alternativeAgentFirstArrivalTime);
+                        int alternativeDepartureIndex = findNextDepartureIndex(tmpRouteIndex, toRouteStopIndex, alternativeAgentFirstArrivalTime);
                         if (alternativeDepartureIndex >= 0) {
                             double alternativeDepartureTime = this.data.departures[alternativeDepartureIndex];
-                            double alternativeVehicleArrivalTime = alternativeDepartureTime + toRouteStop.arrivalOffset;
+                            double alternativeVehicleArrivalTime = alternativeDepartureTime + this.data.routeStopArrivalOffsets[toRouteStopIndex];
                             double alternativeAgentBoardingTime = (alternativeAgentFirstArrivalTime < alternativeVehicleArrivalTime) ? alternativeVehicleArrivalTime : alternativeAgentFirstArrivalTime;
                             double alternativeWaitingTime = alternativeAgentBoardingTime - alternativeAgentFirstArrivalTime;
                             double alternativeWaitingCost = -marginalUtilityOfWaitingPt_utl_s * alternativeWaitingTime;
@@ -643,7 +951,7 @@ public class SwissRailRaptorCore {
                                     // but set the boarding info back to the original boarding of this route
                                     alternativeBoardingPE = alternativeBoardingPE.comingFrom;
                                     alternativeAgentFirstArrivalTime = alternativeBoardingPE.arrivalTime;
-                                    alternativeVehicleArrivalTime = alternativeDepartureTime + alternativeBoardingPE.toRouteStop.arrivalOffset;
+                                    alternativeVehicleArrivalTime = alternativeDepartureTime + this.data.routeStopArrivalOffsets[alternativeBoardingPE.toRouteStop.index];
                                     alternativeAgentBoardingTime = (alternativeAgentFirstArrivalTime < alternativeVehicleArrivalTime) ? alternativeVehicleArrivalTime : alternativeAgentFirstArrivalTime;
 
                                     alternativeWaitingTime = alternativeAgentBoardingTime - alternativeAgentFirstArrivalTime;
@@ -674,10 +982,10 @@ public class SwissRailRaptorCore {
         }
     }
 
-    private int findNextDepartureIndex(RRoute route, RRouteStop routeStop, double time) {
-        double depTimeAtRouteStart = time - routeStop.departureOffset;
-        int fromIndex = route.indexFirstDeparture;
-        int toIndex = fromIndex + route.countDepartures;
+    private int findNextDepartureIndex(int routeIndex, int routeStopIndex, double time) {
+        double depTimeAtRouteStart = time - this.data.routeStopDepartureOffsets[routeStopIndex];
+        int fromIndex = this.data.routeFirstDepartureIndices[routeIndex];
+        int toIndex = fromIndex + this.data.routeCountDepartures[routeIndex];
         int pos = Arrays.binarySearch(this.data.departures, fromIndex, toIndex, depTimeAtRouteStart);
         if (pos < 0) {
             // binarySearch returns (-(insertion point) - 1) if the element was not found, which will happen most of the times.
@@ -726,24 +1034,24 @@ public class SwissRailRaptorCore {
             if (totalArrivalCost > this.bestArrivalCost) {
                 continue;
             }
-            RRouteStop fromRouteStop = fromPE.toRouteStop; // this is the route stop we arrive with least cost at stop
-            int firstTransferIndex = fromRouteStop.indexFirstTransfer;
-            int lastTransferIndex = firstTransferIndex + fromRouteStop.countTransfers;
+            int fromRouteStopIndex = fromPE.toRouteStop.index; // this is the route stop we arrive with least cost at stop
+            int firstTransferIndex = this.data.routeStopFirstTransferIndices[fromRouteStopIndex];
+            int lastTransferIndex = firstTransferIndex + this.data.routeStopCountTransfers[fromRouteStopIndex];
             for (int transferIndex = firstTransferIndex; transferIndex < lastTransferIndex; transferIndex++) {
-                RTransfer transfer = this.data.transfers[transferIndex];
-                int toRouteStopIndex = transfer.toRouteStop;
-                double newArrivalTime = arrivalTime + transfer.transferTime;
-                double newArrivalTravelCost = arrivalTravelCost - transfer.transferTime * margUtilityTransitWalk;
+                int toRouteStopIndex = this.data.transferToRouteStops[transferIndex];
+                double transferTime = this.data.transferTimes[transferIndex];
+                double newArrivalTime = arrivalTime + transferTime;
+                double newArrivalTravelCost = arrivalTravelCost - transferTime * margUtilityTransitWalk;
                 double newArrivalTransferCost = Double.isFinite(fromPE.firstDepartureTime) ? calcTransferCost (transferCostBase, transferCostPerHour, transferCostMin, transferCostMax, newArrivalTime - fromPE.firstDepartureTime) * (fromPE.transferCount + 1) : 0;
                 double newTotalArrivalCost = newArrivalTravelCost + newArrivalTransferCost;
                 double prevLeastArrivalCost = this.leastArrivalCostAtRouteStop[toRouteStopIndex];
                 if (newTotalArrivalCost < prevLeastArrivalCost || (!strict && newTotalArrivalCost <= prevLeastArrivalCost)) {
                     RRouteStop toRouteStop = this.data.routeStops[toRouteStopIndex];
-                    PathElement pe = new PathElement(fromPE, toRouteStop, fromPE.firstDepartureTime, Double.NaN, newArrivalTime, newArrivalTravelCost, newArrivalTransferCost, transfer.transferDistance, fromPE.transferCount + 1, true, null);
+                    PathElement pe = new PathElement(fromPE, toRouteStop, fromPE.firstDepartureTime, Double.NaN, newArrivalTime, newArrivalTravelCost, newArrivalTransferCost, this.data.transferDistances[transferIndex], fromPE.transferCount + 1, true, null);
                     this.arrivalPathPerRouteStop[toRouteStopIndex] = pe;
                     this.leastArrivalCostAtRouteStop[toRouteStopIndex] = newTotalArrivalCost;
                     this.improvedRouteStopIndices.set(toRouteStopIndex);
-                    int toStopFacilityIndex = toRouteStop.stopFacilityIndex;
+                    int toStopFacilityIndex = this.data.routeStopStopFacilityIndices[toRouteStopIndex];
                     prevLeastArrivalCost = this.leastArrivalCostAtStop[toStopFacilityIndex];
                     if (newTotalArrivalCost < prevLeastArrivalCost || (!strict && newTotalArrivalCost <= prevLeastArrivalCost)) {
                         // store it in tmp only. We don't want that this PE is used by a stop processed later in the same round. ("parallel update")
@@ -898,6 +1206,59 @@ public class SwissRailRaptorCore {
         }
     }
 
+    /**
+     * A journey in a profile calculated by {@link #calcProfile(double, double, Collection, int)}.
+     */
+    public static final class ProfileEntry {
+        /** The time of departure at the start, i.e. before the access to the first stop. */
+        public final double departureTime;
+        /** The time of arrival at the stop. */
+        public final double arrivalTime;
+        public final int transferCount;
+
+        ProfileEntry(double departureTime, double arrivalTime, int transferCount) {
+            this.departureTime = departureTime;
+            this.arrivalTime = arrivalTime;
+            this.transferCount = transferCount;
+        }
+
+        /** The time from the departure at the start until the arrival at the stop, including access and waiting times. */
+        public double getTravelTime() {
+            return this.arrivalTime - this.departureTime;
+        }
+
+        @Override
+        public String toString() {
+            return "[departureTime=" + Time.writeTime(this.departureTime) + "]"
+                    + "[arrivalTime=" + Time.writeTime(this.arrivalTime) + "]"
+                    + "[transferCount=" + this.transferCount + "]";
+        }
+    }
+
+    /**
+     * The travel information of a tree, per stop index, see
+     * {@link #calcLeastCostTree(double, Collection, RaptorParameters, TreeArrays)}.
+     */
+    static final class TreeArrays {
+        final BitSet reachedStops;
+        final double[] accessTimes;
+        final double[] ptDepartureTimes;
+        final double[] ptArrivalTimes;
+        final double[] inVehicleTimes;
+        final double[] inVehicleDistances;
+        final int[] transferCounts;
+
+        TreeArrays(SwissRailRaptorData data) {
+            this.reachedStops = new BitSet(data.countStops);
+            this.accessTimes = new double[data.countStops];
+            this.ptDepartureTimes = new double[data.countStops];
+            this.ptArrivalTimes = new double[data.countStops];
+            this.inVehicleTimes = new double[data.countStops];
+            this.inVehicleDistances = new double[data.countStops];
+            this.transferCounts = new int[data.countStops];
+        }
+    }
+
     public static final class TravelInfo {
         public final Id<TransitStopFacility> departureStop;
         public final int transferCount;
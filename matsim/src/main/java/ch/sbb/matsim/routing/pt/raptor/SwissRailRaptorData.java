@@ -23,6 +23,9 @@ import org.matsim.pt.transitSchedule.api.TransitRouteStop;
 import org.matsim.pt.transitSchedule.api.TransitSchedule;
 import org.matsim.pt.transitSchedule.api.TransitStopFacility;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -42,45 +45,121 @@ public class SwissRailRaptorData {
     final RaptorStaticConfig config;
     final int countStops;
     final int countRouteStops;
-    final RRoute[] routes;
+    final int countRoutes;
     final double[] departures; // in the RAPTOR paper, this is usually called "trips", but I stick with the MATSim nomenclature
     final RRouteStop[] routeStops; // list of all route stops
-    final RTransfer[] transfers;
     final Map<TransitStopFacility, Integer> stopFacilityIndices;
     final Map<TransitStopFacility, int[]> routeStopsPerStopFacility;
     final QuadTree<TransitStopFacility> stopsQT;
     final Map<String, Map<String, QuadTree<TransitStopFacility>>> stopFilterAttribute2Value2StopsQT;
 
-    private SwissRailRaptorData(RaptorStaticConfig config, int countStops,
-                                RRoute[] routes, double[] departures, RRouteStop[] routeStops,
-                                RTransfer[] transfers, Map<TransitStopFacility, Integer> stopFacilityIndices,
+    // routes, route stops and transfers are stored with one array per field, so the inner loops of SwissRailRaptorCore
+    // only load the values they actually need into the cache. The RRouteStop objects only reference the schedule.
+    final int[] routeFirstRouteStopIndices;
+    final int[] routeCountRouteStops;
+    final int[] routeFirstDepartureIndices;
+    final int[] routeCountDepartures;
+    final int[] routeStopRouteIndices;
+    final int[] routeStopStopFacilityIndices;
+    final double[] routeStopArrivalOffsets;
+    final double[] routeStopDepartureOffsets;
+    final double[] routeStopDistancesAlongRoute;
+    final int[] routeStopFirstTransferIndices;
+    final int[] routeStopCountTransfers;
+    final int[] transferToRouteStops;
+    final double[] transferTimes;
+    final double[] transferDistances;
+
+    /**
+     * The route stops must be ordered by route, and the departures by route in the same order. The transfers must be
+     * ordered by the route stop they start at, <code>routeStopCountTransfers</code> contains the number of transfers
+     * per route stop. The remaining fields of the routes and route stops are derived from the transit schedule.
+     */
+    /*package*/ SwissRailRaptorData(RaptorStaticConfig config, int countStops, double[] departures, RRouteStop[] routeStops,
+                                double[] routeStopDistancesAlongRoute, int[] routeStopCountTransfers,
+                                int[] transferToRouteStops, double[] transferTimes, double[] transferDistances,
+                                Map<TransitStopFacility, Integer> stopFacilityIndices,
                                 Map<TransitStopFacility, int[]> routeStopsPerStopFacility, QuadTree<TransitStopFacility> stopsQT) {
         this.config = config;
         this.countStops = countStops;
         this.countRouteStops = routeStops.length;
-        this.routes = routes;
         this.departures = departures;
         this.routeStops = routeStops;
-        this.transfers = transfers;
         this.stopFacilityIndices = stopFacilityIndices;
         this.routeStopsPerStopFacility = routeStopsPerStopFacility;
         this.stopsQT = stopsQT;
         this.stopFilterAttribute2Value2StopsQT = new HashMap<String, Map<String, QuadTree<TransitStopFacility>>>();
+        this.routeStopDistancesAlongRoute = routeStopDistancesAlongRoute;
+        this.routeStopCountTransfers = routeStopCountTransfers;
+        this.transferToRouteStops = transferToRouteStops;
+        this.transferTimes = transferTimes;
+        this.transferDistances = transferDistances;
+
+        int countRoutes = 0;
+        for (int i = 0; i < routeStops.length; i++) {
+            if (i == 0 || routeStops[i].route != routeStops[i - 1].route) {
+                countRoutes++;
+            }
+        }
+        this.countRoutes = countRoutes;
+        this.routeFirstRouteStopIndices = new int[countRoutes];
+        this.routeCountRouteStops = new int[countRoutes];
+        this.routeFirstDepartureIndices = new int[countRoutes];
+        this.routeCountDepartures = new int[countRoutes];
+        this.routeStopRouteIndices = new int[routeStops.length];
+        this.routeStopStopFacilityIndices = new int[routeStops.length];
+        this.routeStopArrivalOffsets = new double[routeStops.length];
+        this.routeStopDepartureOffsets = new double[routeStops.length];
+        this.routeStopFirstTransferIndices = new int[routeStops.length];
+        int routeIndex = -1;
+        int indexDeparture = 0;
+        int indexTransfer = 0;
+        for (int i = 0; i < routeStops.length; i++) {
+            RRouteStop routeStop = routeStops[i];
+            if (i == 0 || routeStop.route != routeStops[i - 1].route) {
+                routeIndex++;
+                this.routeFirstRouteStopIndices[routeIndex] = i;
+                this.routeCountRouteStops[routeIndex] = routeStop.route.getStops().size();
+                this.routeFirstDepartureIndices[routeIndex] = indexDeparture;
+                this.routeCountDepartures[routeIndex] = routeStop.route.getDepartures().size();
+                indexDeparture += routeStop.route.getDepartures().size();
+            }
+            this.routeStopRouteIndices[i] = routeIndex;
+            this.routeStopStopFacilityIndices[i] = stopFacilityIndices.get(routeStop.routeStop.getStopFacility());
+            this.routeStopArrivalOffsets[i] = getArrivalOffset(routeStop.routeStop);
+            this.routeStopDepartureOffsets[i] = getDepartureOffset(routeStop.routeStop);
+            this.routeStopFirstTransferIndices[i] = indexTransfer;
+            indexTransfer += routeStopCountTransfers[i];
+        }
+    }
+
+    // "normalize" the arrival and departure offsets, make sure they are always well defined.
+    static double getArrivalOffset(TransitRouteStop routeStop) {
+        return isUndefinedTime(routeStop.getArrivalOffset()) ? routeStop.getDepartureOffset() : routeStop.getArrivalOffset();
+    }
+
+    static double getDepartureOffset(TransitRouteStop routeStop) {
+        return isUndefinedTime(routeStop.getDepartureOffset()) ? routeStop.getArrivalOffset() : routeStop.getDepartureOffset();
+    }
+
+    private static boolean isUndefinedTime(double time) {
+        return Time.isUndefinedTime(time) || Double.isNaN(time);
     }
 
     public static SwissRailRaptorData create(TransitSchedule schedule, RaptorStaticConfig staticConfig, Network network) {
         log.info("Preparing data for SwissRailRaptor...");
         long startMillis = System.currentTimeMillis();
 
-        int countRoutes = 0;
         long countRouteStops = 0;
         long countDepartures = 0;
 
+        // routes without stops cannot be used, they are left out so the routes can be derived from the route stops
         for (TransitLine line : schedule.getTransitLines().values()) {
-            countRoutes += line.getRoutes().size();
             for (TransitRoute route : line.getRoutes().values()) {
-                countRouteStops += route.getStops().size();
-                countDepartures += route.getDepartures().size();
+                if (!route.getStops().isEmpty()) {
+                    countRouteStops += route.getStops().size();
+                    countDepartures += route.getDepartures().size();
+                }
             }
         }
 
@@ -92,10 +171,9 @@ public class SwissRailRaptorData {
         }
 
         double[] departures = new double[(int) countDepartures];
-        RRoute[] routes = new RRoute[countRoutes];
         RRouteStop[] routeStops = new RRouteStop[(int) countRouteStops];
+        double[] distancesAlongRoute = new double[(int) countRouteStops];
 
-        int indexRoutes = 0;
         int indexRouteStops = 0;
         int indexDeparture = 0;
 
@@ -109,13 +187,14 @@ public class SwissRailRaptorData {
             List<TransitRoute> transitRoutes = new ArrayList<>(line.getRoutes().values());
             transitRoutes.sort((tr1, tr2) -> Double.compare(getEarliestDeparture(tr1).getDepartureTime(), getEarliestDeparture(tr2).getDepartureTime())); // sort routes by earliest departure for additional performance gains
             for (TransitRoute route : transitRoutes) {
+                if (route.getStops().isEmpty()) {
+                    continue;
+                }
                 int indexFirstDeparture = indexDeparture;
                 String mode = TransportMode.pt;
                 if (useModeMapping) {
                     mode = staticConfig.getPassengerMode(route.getTransportMode());
                 }
-                RRoute rroute = new RRoute(indexRouteStops, route.getStops().size(), indexFirstDeparture, route.getDepartures().size());
-                routes[indexRoutes] = rroute;
                 NetworkRoute networkRoute = route.getRoute();
                 List<Id<Link>> allLinkIds = new ArrayList<>();
                 allLinkIds.add(networkRoute.getStartLinkId());
@@ -137,19 +216,11 @@ public class SwissRailRaptorData {
                             break;
                         }
                     }
-                    int stopFacilityIndex = stopFacilityIndices.computeIfAbsent(routeStop.getStopFacility(), stop -> stopFacilityIndices.size());
-                    RRouteStop rRouteStop = new RRouteStop(routeStop, line, route, mode, indexRoutes, stopFacilityIndex, distanceAlongRoute);
+                    stopFacilityIndices.computeIfAbsent(routeStop.getStopFacility(), stop -> stopFacilityIndices.size());
                     final int thisRouteStopIndex = indexRouteStops;
-                    routeStops[thisRouteStopIndex] = rRouteStop;
-                    routeStopsPerStopFacility.compute(routeStop.getStopFacility(), (stop, currentRouteStops) -> {
-                        if (currentRouteStops == null) {
-                            return new int[] { thisRouteStopIndex };
-                        }
-                        int[] tmp = new int[currentRouteStops.length + 1];
-                        System.arraycopy(currentRouteStops, 0, tmp, 0, currentRouteStops.length);
-                        tmp[currentRouteStops.length] = thisRouteStopIndex;
-                        return tmp;
-                    });
+                    routeStops[thisRouteStopIndex] = new RRouteStop(routeStop, line, route, mode, thisRouteStopIndex);
+                    distancesAlongRoute[thisRouteStopIndex] = distanceAlongRoute;
+                    addRouteStopIndex(routeStopsPerStopFacility, routeStop.getStopFacility(), thisRouteStopIndex);
                     indexRouteStops++;
                 }
                 for (Departure dep : route.getDepartures().values()) {
@@ -157,7 +228,6 @@ public class SwissRailRaptorData {
                     indexDeparture++;
                 }
                 Arrays.sort(departures, indexFirstDeparture, indexDeparture);
-                indexRoutes++;
             }
         }
 
@@ -174,32 +244,49 @@ public class SwissRailRaptorData {
         if (countTransfers > Integer.MAX_VALUE) {
             throw new RuntimeException("TransitSchedule has too many Transfers: " + countTransfers);
         }
-        RTransfer[] transfers = new RTransfer[(int) countTransfers];
+        int[] countTransfersPerRouteStop = new int[routeStops.length];
+        int[] transferToRouteStops = new int[(int) countTransfers];
+        double[] transferTimes = new double[(int) countTransfers];
+        double[] transferDistances = new double[(int) countTransfers];
         int indexTransfer = 0;
         for (int routeStopIndex = 0; routeStopIndex < routeStops.length; routeStopIndex++) {
             RTransfer[] stopTransfers = allTransfers.get(routeStopIndex);
-            int transferCount = stopTransfers == null ? 0 : stopTransfers.length;
-            if (transferCount > 0) {
-                RRouteStop routeStop = routeStops[routeStopIndex];
-                routeStop.indexFirstTransfer = indexTransfer;
-                routeStop.countTransfers = transferCount;
-                System.arraycopy(stopTransfers, 0, transfers, indexTransfer, transferCount);
-                indexTransfer += transferCount;
+            if (stopTransfers != null) {
+                countTransfersPerRouteStop[routeStopIndex] = stopTransfers.length;
+                for (RTransfer transfer : stopTransfers) {
+                    transferToRouteStops[indexTransfer] = transfer.toRouteStop;
+                    transferTimes[indexTransfer] = transfer.transferTime;
+                    transferDistances[indexTransfer] = transfer.transferDistance;
+                    indexTransfer++;
+                }
             }
         }
 
-        SwissRailRaptorData data = new SwissRailRaptorData(staticConfig, countStopFacilities, routes, departures, routeStops, transfers, stopFacilityIndices, routeStopsPerStopFacility, stopsQT);
+        SwissRailRaptorData data = new SwissRailRaptorData(staticConfig, countStopFacilities, departures, routeStops, distancesAlongRoute,
+                countTransfersPerRouteStop, transferToRouteStops, transferTimes, transferDistances, stopFacilityIndices, routeStopsPerStopFacility, stopsQT);
 
         long endMillis = System.currentTimeMillis();
         log.info("SwissRailRaptor data preparation done. Took " + (endMillis - startMillis) / 1000 + " seconds.");
-        log.info("SwissRailRaptor statistics:  #routes = " + routes.length);
+        log.info("SwissRailRaptor statistics:  #routes = " + data.countRoutes);
         log.info("SwissRailRaptor statistics:  #departures = " + departures.length);
         log.info("SwissRailRaptor statistics:  #routeStops = " + routeStops.length);
         log.info("SwissRailRaptor statistics:  #stopFacilities = " + countStopFacilities);
-        log.info("SwissRailRaptor statistics:  #transfers (between routeStops) = " + transfers.length);
+        log.info("SwissRailRaptor statistics:  #transfers (between routeStops) = " + countTransfers);
         return data;
     }
 
+    static void addRouteStopIndex(Map<TransitStopFacility, int[]> routeStopsPerStopFacility, TransitStopFacility stopFacility, int routeStopIndex) {
+        routeStopsPerStopFacility.compute(stopFacility, (stop, currentRouteStops) -> {
+            if (currentRouteStops == null) {
+                return new int[] { routeStopIndex };
+            }
+            int[] tmp = new int[currentRouteStops.length + 1];
+            System.arraycopy(currentRouteStops, 0, tmp, 0, currentRouteStops.length);
+            tmp[currentRouteStops.length] = routeStopIndex;
+            return tmp;
+        });
+    }
+
     // calculate possible transfers between TransitRouteStops
     private static Map<Integer, RTransfer[]> calculateRouteStopTransfers(TransitSchedule schedule, QuadTree<TransitStopFacility> stopsQT, Map<TransitStopFacility, int[]> routeStopsPerStopFacility, RRouteStop[] routeStops, RaptorStaticConfig config) {
         Map<Integer, RTransfer[]> transfers = new HashMap<>(stopsQT.size() * 5);
@@ -257,7 +344,7 @@ public class SwissRailRaptorData {
                     for (int toRouteStopIndex : toRouteStopIndices) {
                         RRouteStop toRouteStop = routeStops[toRouteStopIndex];
                         if (isUsefulTransfer(fromRouteStop, toRouteStop, maxBeelineWalkConnectionDistance, config.getOptimization())) {
-                            RTransfer newTransfer = new RTransfer(fromRouteStopIndex, toRouteStopIndex, fixedTransferTime, beelineDistance * beelineDistanceFactor);
+                            RTransfer newTransfer = new RTransfer(toRouteStopIndex, fixedTransferTime, beelineDistance * beelineDistanceFactor);
                             stopTransfers.add(newTransfer);
                         }
                     }
@@ -336,8 +423,8 @@ public class SwissRailRaptorData {
         if (earliestDep == null || latestDep == null) {
             return true;
         }
-        double earliestArrival = earliestDep.getDepartureTime() + fromRouteStop.arrivalOffset;
-        double latestDeparture = latestDep.getDepartureTime() + toRouteStop.departureOffset;
+        double earliestArrival = earliestDep.getDepartureTime() + getArrivalOffset(fromRouteStop.routeStop);
+        double latestDeparture = latestDep.getDepartureTime() + getDepartureOffset(toRouteStop.routeStop);
         return earliestArrival > latestDeparture;
     }
 
@@ -445,6 +532,32 @@ public class SwissRailRaptorData {
         return distance < maxBeelineWalkConnectionDistance;
     }
 
+    /**
+     * Writes the prepared data into a binary file. Loading it with
+     * {@link #read(String, TransitSchedule, RaptorStaticConfig)} is a lot faster than preparing the data again,
+     * as the transfers between the route stops do not have to be calculated.
+     */
+    public void write(String filename) {
+        try {
+            new SwissRailRaptorDataIO().write(this, Paths.get(filename));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Loads data written by {@link #write(String)}. The file must have been written for the same transit schedule
+     * and with the same static configuration, otherwise an exception is thrown. Changes of the schedule which keep
+     * all its lines, routes, stops and departures, e.g. different minimal transfer times, cannot be detected.
+     */
+    public static SwissRailRaptorData read(String filename, TransitSchedule schedule, RaptorStaticConfig staticConfig) {
+        try {
+            return new SwissRailRaptorDataIO().read(Paths.get(filename), schedule, staticConfig);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     public Collection<TransitStopFacility> findNearbyStops(double x, double y, double distance) {
         return this.stopsQT.getDisk(x, y, distance);
     }
@@ -453,59 +566,29 @@ public class SwissRailRaptorData {
         return this.stopsQT.getClosest(x, y);
     }
 
-    static final class RRoute {
-        final int indexFirstRouteStop;
-        final int countRouteStops;
-        final int indexFirstDeparture;
-        final int countDepartures;
-
-        RRoute(int indexFirstRouteStop, int countRouteStops, int indexFirstDeparture, int countDepartures) {
-            this.indexFirstRouteStop = indexFirstRouteStop;
-            this.countRouteStops = countRouteStops;
-            this.indexFirstDeparture = indexFirstDeparture;
-            this.countDepartures = countDepartures;
-        }
-    }
-
     static final class RRouteStop {
         final TransitRouteStop routeStop;
         final TransitLine line;
         final TransitRoute route;
         final String mode;
-        final int transitRouteIndex;
-        final int stopFacilityIndex;
-        final double arrivalOffset;
-        final double departureOffset;
-        final double distanceAlongRoute;
-        int indexFirstTransfer = -1;
-        int countTransfers = 0;
-
-        RRouteStop(TransitRouteStop routeStop, TransitLine line, TransitRoute route, String mode, int transitRouteIndex, int stopFacilityIndex, double distanceAlongRoute) {
+        final int index; // the index of this route stop in the per-field arrays of SwissRailRaptorData
+
+        RRouteStop(TransitRouteStop routeStop, TransitLine line, TransitRoute route, String mode, int index) {
             this.routeStop = routeStop;
             this.line = line;
             this.route = route;
             this.mode = mode;
-            this.transitRouteIndex = transitRouteIndex;
-            this.stopFacilityIndex = stopFacilityIndex;
-            this.distanceAlongRoute = distanceAlongRoute;
-            // "normalize" the arrival and departure offsets, make sure they are always well defined.
-            this.arrivalOffset = isUndefinedTime(routeStop.getArrivalOffset()) ? routeStop.getDepartureOffset() : routeStop.getArrivalOffset();
-            this.departureOffset = isUndefinedTime(routeStop.getDepartureOffset()) ? routeStop.getArrivalOffset() : routeStop.getDepartureOffset();
-        }
-
-        private static boolean isUndefinedTime(double time) {
-            return Time.isUndefinedTime(time) || Double.isNaN(time);
+            this.index = index;
         }
     }
 
-    static final class RTransfer {
-        final int fromRouteStop;
+    // a transfer while the data is prepared, it is stored in the transfer arrays afterwards
+    private static final class RTransfer {
         final int toRouteStop;
         final double transferTime;
         final double transferDistance;
 
-        RTransfer(int fromRouteStop, int toRouteStop, double transferTime, double transferDistance) {
-            this.fromRouteStop = fromRouteStop;
+        RTransfer(int toRouteStop, double transferTime, double transferDistance) {
             this.toRouteStop = toRouteStop;
             this.transferTime = transferTime;
             this.transferDistance = transferDistance;
@@ -0,0 +1,270 @@
+/*
+ * Copyright (C) Schweizerische Bundesbahnen SBB, 2019.
+ */
+
+package ch.sbb.matsim.routing.pt.raptor;
+
+import ch.sbb.matsim.routing.pt.raptor.SwissRailRaptorData.RRouteStop;
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.core.utils.collections.QuadTree;
+import org.matsim.pt.transitSchedule.TransitScheduleUtils;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes and reads the binary file format of {@link SwissRailRaptorData}.
+ *
+ * The file contains a fixed-size header with the static configuration and the number of elements, followed by the
+ * ids of the stop facilities (in the order of their indices), the line and route ids of the routes, and then one
+ * section per field: the distances of the route stops along their route, the departures, and the transfers. When
+ * reading, the sections are memory-mapped and copied in bulk into the arrays which SwissRailRaptorData uses directly.
+ * The route stops are recreated from the transit schedule, but neither the network nor the transfers have to be
+ * looked at again.
+ */
+/*package*/ final class SwissRailRaptorDataIO {
+
+    private static final Logger log = Logger.getLogger(SwissRailRaptorDataIO.class);
+
+    private static final int MAGIC = 0x53525244; // "SRRD"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 2 * Integer.BYTES + 4 * Double.BYTES + Integer.BYTES + 5 * Integer.BYTES + 2 * Long.BYTES;
+    private static final int MAX_VALUES_PER_MAPPING = 1 << 26;
+
+    void write(SwissRailRaptorData data, Path file) throws IOException {
+        byte[][] stopIds = new byte[data.countStops][];
+        long stopIdBytes = 0;
+        for (Map.Entry<TransitStopFacility, Integer> e : data.stopFacilityIndices.entrySet()) {
+            byte[] id = e.getKey().getId().toString().getBytes(StandardCharsets.UTF_8);
+            stopIds[e.getValue()] = id;
+            stopIdBytes += Integer.BYTES + id.length;
+        }
+        byte[][] routeIds = new byte[data.countRoutes * 2][];
+        long routeIdBytes = 0;
+        for (int i = 0; i < data.countRoutes; i++) {
+            RRouteStop firstRouteStop = data.routeStops[data.routeFirstRouteStopIndices[i]];
+            routeIds[2 * i] = firstRouteStop.line.getId().toString().getBytes(StandardCharsets.UTF_8);
+            routeIds[2 * i + 1] = firstRouteStop.route.getId().toString().getBytes(StandardCharsets.UTF_8);
+            routeIdBytes += 2 * Integer.BYTES + routeIds[2 * i].length + routeIds[2 * i + 1].length;
+        }
+
+        RaptorStaticConfig config = data.config;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeDouble(config.getBeelineWalkConnectionDistance());
+            out.writeDouble(config.getBeelineWalkSpeed());
+            out.writeDouble(config.getBeelineWalkDistanceFactor());
+            out.writeDouble(config.getMinimalTransferTime());
+            out.writeInt(config.getOptimization().ordinal());
+            out.writeInt(data.countStops);
+            out.writeInt(data.countRoutes);
+            out.writeInt(data.countRouteStops);
+            out.writeInt(data.departures.length);
+            out.writeInt(data.transferToRouteStops.length);
+            out.writeLong(stopIdBytes);
+            out.writeLong(routeIdBytes);
+
+            for (byte[] id : stopIds) {
+                out.writeInt(id.length);
+                out.write(id);
+            }
+            for (byte[] id : routeIds) {
+                out.writeInt(id.length);
+                out.write(id);
+            }
+            for (double distance : data.routeStopDistancesAlongRoute) {
+                out.writeDouble(distance);
+            }
+            for (double departure : data.departures) {
+                out.writeDouble(departure);
+            }
+            for (int routeStopIndex = 0; routeStopIndex < data.countRouteStops; routeStopIndex++) {
+                for (int i = 0; i < data.routeStopCountTransfers[routeStopIndex]; i++) {
+                    out.writeInt(routeStopIndex);
+                }
+            }
+            for (int toRouteStop : data.transferToRouteStops) {
+                out.writeInt(toRouteStop);
+            }
+            for (double transferTime : data.transferTimes) {
+                out.writeDouble(transferTime);
+            }
+            for (double transferDistance : data.transferDistances) {
+                out.writeDouble(transferDistance);
+            }
+        }
+    }
+
+    SwissRailRaptorData read(Path file, TransitSchedule schedule, RaptorStaticConfig staticConfig) throws IOException {
+        log.info("Loading data for SwissRailRaptor from " + file + "...");
+        long startMillis = System.currentTimeMillis();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Input in = new Input(channel);
+            ByteBuffer header = in.map(HEADER_SIZE);
+            if (header.getInt() != MAGIC) {
+                throw new IllegalArgumentException(file + " is not a SwissRailRaptor data file.");
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("unsupported version " + version + " of SwissRailRaptor data file " + file);
+            }
+            if (Double.compare(header.getDouble(), staticConfig.getBeelineWalkConnectionDistance()) != 0
+                    || Double.compare(header.getDouble(), staticConfig.getBeelineWalkSpeed()) != 0
+                    || Double.compare(header.getDouble(), staticConfig.getBeelineWalkDistanceFactor()) != 0
+                    || Double.compare(header.getDouble(), staticConfig.getMinimalTransferTime()) != 0
+                    || header.getInt() != staticConfig.getOptimization().ordinal()) {
+                throw new IllegalArgumentException(file + " was written with a different static configuration of SwissRailRaptor.");
+            }
+            int countStops = header.getInt();
+            int countRoutes = header.getInt();
+            int countRouteStops = header.getInt();
+            int countDepartures = header.getInt();
+            int countTransfers = header.getInt();
+            long stopIdBytes = header.getLong();
+            long routeIdBytes = header.getLong();
+            if (countStops < 0 || countRoutes < 0 || countRouteStops < 0 || countDepartures < 0 || countTransfers < 0 || stopIdBytes < 0 || routeIdBytes < 0) {
+                throw new IllegalArgumentException(file + " is not a valid SwissRailRaptor data file, it has negative sizes.");
+            }
+
+            // stop facilities
+            ByteBuffer stopIds = in.map(stopIdBytes);
+            Map<TransitStopFacility, Integer> stopFacilityIndices = new HashMap<>((int) (countStops * 1.5));
+            for (int i = 0; i < countStops; i++) {
+                String id = readString(stopIds);
+                TransitStopFacility stop = schedule.getFacilities().get(Id.create(id, TransitStopFacility.class));
+                if (stop == null) {
+                    throw new IllegalArgumentException("stop facility " + id + " of " + file + " is not part of the transit schedule.");
+                }
+                stopFacilityIndices.put(stop, i);
+            }
+
+            // routes and route stops
+            ByteBuffer routeIds = in.map(routeIdBytes);
+            double[] distancesAlongRoute = new double[countRouteStops];
+            in.readDoubles(distancesAlongRoute);
+            double[] departures = new double[countDepartures];
+            in.readDoubles(departures);
+
+            RRouteStop[] routeStops = new RRouteStop[countRouteStops];
+            Map<TransitStopFacility, int[]> routeStopsPerStopFacility = new HashMap<>();
+            boolean useModeMapping = staticConfig.isUseModeMappingForPassengers();
+            int indexRouteStops = 0;
+            int indexDeparture = 0;
+            for (int indexRoutes = 0; indexRoutes < countRoutes; indexRoutes++) {
+                String lineId = readString(routeIds);
+                String routeId = readString(routeIds);
+                TransitLine line = schedule.getTransitLines().get(Id.create(lineId, TransitLine.class));
+                TransitRoute route = line == null ? null : line.getRoutes().get(Id.create(routeId, TransitRoute.class));
+                if (route == null) {
+                    throw new IllegalArgumentException("route " + routeId + " of line " + lineId + " of " + file + " is not part of the transit schedule.");
+                }
+                if (indexRouteStops + route.getStops().size() > countRouteStops || indexDeparture + route.getDepartures().size() > countDepartures) {
+                    throw new IllegalArgumentException(file + " does not match the transit schedule, route " + routeId + " has more stops or departures.");
+                }
+                String mode = useModeMapping ? staticConfig.getPassengerMode(route.getTransportMode()) : TransportMode.pt;
+                if (route.getStops().isEmpty()) {
+                    throw new IllegalArgumentException(file + " does not match the transit schedule, route " + routeId + " has no stops.");
+                }
+                for (TransitRouteStop routeStop : route.getStops()) {
+                    Integer stopFacilityIndex = stopFacilityIndices.get(routeStop.getStopFacility());
+                    if (stopFacilityIndex == null) {
+                        throw new IllegalArgumentException(file + " does not match the transit schedule, stop " + routeStop.getStopFacility().getId() + " is missing.");
+                    }
+                    routeStops[indexRouteStops] = new RRouteStop(routeStop, line, route, mode, indexRouteStops);
+                    SwissRailRaptorData.addRouteStopIndex(routeStopsPerStopFacility, routeStop.getStopFacility(), indexRouteStops);
+                    indexRouteStops++;
+                }
+                indexDeparture += route.getDepartures().size();
+            }
+            if (indexRouteStops != countRouteStops || indexDeparture != countDepartures) {
+                throw new IllegalArgumentException(file + " does not match the transit schedule, the routes have fewer stops or departures.");
+            }
+
+            // transfers, they are ordered by the route stop they start at, so only the count per route stop is kept of these
+            int[] fromRouteStops = new int[countTransfers];
+            in.readInts(fromRouteStops);
+            int[] toRouteStops = new int[countTransfers];
+            in.readInts(toRouteStops);
+            int[] countTransfersPerRouteStop = new int[countRouteStops];
+            int previousFromRouteStop = 0;
+            for (int i = 0; i < countTransfers; i++) {
+                if (fromRouteStops[i] < previousFromRouteStop || fromRouteStops[i] >= countRouteStops
+                        || toRouteStops[i] < 0 || toRouteStops[i] >= countRouteStops) {
+                    throw new IllegalArgumentException(file + " is not a valid SwissRailRaptor data file, transfer " + i
+                            + " from route stop " + fromRouteStops[i] + " to route stop " + toRouteStops[i] + " is out of order or range.");
+                }
+                previousFromRouteStop = fromRouteStops[i];
+                countTransfersPerRouteStop[fromRouteStops[i]]++;
+            }
+            double[] transferTimes = new double[countTransfers];
+            in.readDoubles(transferTimes);
+            double[] transferDistances = new double[countTransfers];
+            in.readDoubles(transferDistances);
+
+            QuadTree<TransitStopFacility> stopsQT = TransitScheduleUtils.createQuadTreeOfTransitStopFacilities(routeStopsPerStopFacility.keySet());
+            SwissRailRaptorData data = new SwissRailRaptorData(staticConfig, countStops, departures, routeStops, distancesAlongRoute,
+                    countTransfersPerRouteStop, toRouteStops, transferTimes, transferDistances, stopFacilityIndices, routeStopsPerStopFacility, stopsQT);
+
+            long endMillis = System.currentTimeMillis();
+            log.info("SwissRailRaptor data loaded. Took " + (endMillis - startMillis) / 1000 + " seconds.");
+            return data;
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static final class Input {
+        private final FileChannel channel;
+        private long position = 0;
+
+        Input(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        ByteBuffer map(long length) throws IOException {
+            if (this.position + length > this.channel.size()) {
+                throw new IOException("unexpected end of file at position " + this.position);
+            }
+            ByteBuffer buffer = this.channel.map(MapMode.READ_ONLY, this.position, length);
+            this.position += length;
+            return buffer;
+        }
+
+        void readInts(int[] values) throws IOException {
+            for (int offset = 0; offset < values.length; offset += MAX_VALUES_PER_MAPPING) {
+                int count = Math.min(MAX_VALUES_PER_MAPPING, values.length - offset);
+                map((long) count * Integer.BYTES).asIntBuffer().get(values, offset, count);
+            }
+        }
+
+        void readDoubles(double[] values) throws IOException {
+            for (int offset = 0; offset < values.length; offset += MAX_VALUES_PER_MAPPING) {
+                int count = Math.min(MAX_VALUES_PER_MAPPING, values.length - offset);
+                map((long) count * Double.BYTES).asDoubleBuffer().get(values, offset, count);
+            }
+        }
+    }
+}
@@ -79,6 +79,9 @@ public final class IterationStopWatch {
 	private Stack<String> currentMeasuredOperations;
 	private Map<String, List<String>> currentIterationChildren;
 	private Map<Integer, Map<String, List<String>>> children;
+
+	/** operations which are not part of the graph, see {@link #addConcurrentOperation(String, long, long)} */
+	private final Set<String> concurrentOperations = new HashSet<>();
 	
 	/** Creates a new IterationStopWatch. */
 	public IterationStopWatch() {
@@ -103,6 +106,7 @@ public final class IterationStopWatch {
 		this.currentMeasuredOperations.clear();
 		this.currentIterationChildren.clear();
 		this.children.clear();
+		this.concurrentOperations.clear();
 	}
 
 	/**
@@ -169,6 +173,33 @@ public final class IterationStopWatch {
 		this.currentMeasuredOperations.pop();
 	}
 
+	/**
+	 * Records an operation that was measured elsewhere, typically in another thread, e.g. the time one of several
+	 * threads worked on its part of an operation.  As such operations may overlap with each other, they are only
+	 * written to the text file, but not to the graph.  The operation is ignored if no iteration has begun, e.g. when
+	 * replanning is run outside of a controler with a stop watch that is not used otherwise.
+	 *
+	 * @param identifier The name of the operation.
+	 * @param beginTime The time the operation began, as returned by {@link System#currentTimeMillis()}.
+	 * @param endTime The time the operation ended, as returned by {@link System#currentTimeMillis()}.
+	 */
+	public void addConcurrentOperation(final String identifier, final long beginTime, final long endTime) {
+		if (identifier.equals(OPERATION_OTHER)) {
+			throw new RuntimeException("Identifier " + OPERATION_OTHER + " is reserved! Please use another one. Aborting!");
+		}
+		if (this.currentIterationValues == null) {
+			return;
+		}
+		String beginIdent = "BEGIN " + identifier;
+		ensureIdentifier(beginIdent);
+		this.currentIterationValues.put(beginIdent, Long.valueOf(beginTime));
+		String endIdent = "END " + identifier;
+		ensureIdentifier(endIdent);
+		ensureOperation(identifier);
+		this.currentIterationValues.put(endIdent, Long.valueOf(endTime));
+		this.concurrentOperations.add(identifier);
+	}
+
     public void endIteration() {
         this.endOperation(OPERATION_ITERATION);
     }
@@ -261,6 +292,7 @@ public final class IterationStopWatch {
 
 			// durations of operations
 			for (String identifier : this.operations) {
+				if (this.concurrentOperations.contains(identifier)) continue;
 				Long startTime = data.get("BEGIN " + identifier);
 				Long endTime = data.get("END " + identifier);
 				if (startTime != null && endTime != null) {
@@ -306,6 +338,7 @@ public final class IterationStopWatch {
 		double[] iterationData = null;
 //		double[] sumData = new double[iterations];
 		for (String operation : this.operations) {
+			if (this.concurrentOperations.contains(operation)) continue;
 			double[] data = arrayMap.get(operation);
 			if (operation.equals(OPERATION_ITERATION)) {
 				iterationData = data;
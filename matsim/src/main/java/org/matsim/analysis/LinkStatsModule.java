@@ -46,6 +46,9 @@ public final class LinkStatsModule extends AbstractModule {
             bind(LinkStatsControlerListener.class).asEagerSingleton();
             addControlerListenerBinding().to(LinkStatsControlerListener.class);
         }
+        if (getConfig().linkStats().getWriteLinkVolumesInterval() > 0) {
+            addControlerListenerBinding().to(LinkVolumesControlerListener.class);
+        }
     }
 
 }
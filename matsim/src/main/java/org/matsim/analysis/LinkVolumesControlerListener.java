@@ -0,0 +1,65 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * LinkVolumesControlerListener.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.analysis;
+
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.groups.LinkStatsConfigGroup;
+import org.matsim.core.config.groups.QSimConfigGroup;
+import org.matsim.core.controler.OutputDirectoryHierarchy;
+import org.matsim.core.controler.events.IterationEndsEvent;
+import org.matsim.core.controler.events.IterationStartsEvent;
+import org.matsim.core.controler.listener.IterationEndsListener;
+import org.matsim.core.controler.listener.IterationStartsListener;
+
+import javax.inject.Inject;
+
+/**
+ * Counts the link volumes with a {@link LinkVolumesCounter} in every <code>writeLinkVolumesInterval</code>-th iteration
+ * and writes them to <code>linkVolumes.txt.gz</code>. The counter only exists during these iterations, so no memory is
+ * used for it in between.
+ */
+final class LinkVolumesControlerListener implements IterationStartsListener, IterationEndsListener {
+
+	static final String FILENAME = "linkVolumes.txt.gz";
+
+	@Inject private LinkStatsConfigGroup linkStatsConfigGroup;
+	@Inject private QSimConfigGroup qsimConfigGroup;
+	@Inject private EventsManager eventsManager;
+	@Inject private OutputDirectoryHierarchy controlerIO;
+	private LinkVolumesCounter counter = null;
+
+	@Override
+	public void notifyIterationStarts(IterationStartsEvent event) {
+		if (event.getIteration() % this.linkStatsConfigGroup.getWriteLinkVolumesInterval() == 0) {
+			this.counter = new LinkVolumesCounter(3600, 24 * 3600 - 1, this.qsimConfigGroup.getMainModes().size());
+			this.eventsManager.addHandler(this.counter);
+		}
+	}
+
+	@Override
+	public void notifyIterationEnds(IterationEndsEvent event) {
+		if (this.counter != null) {
+			this.eventsManager.removeHandler(this.counter);
+			this.counter.writeFile(this.controlerIO.getIterationFilename(event.getIteration(), FILENAME));
+			this.counter = null;
+		}
+	}
+}
@@ -0,0 +1,308 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * LinkVolumesCounter.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.analysis;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.events.handler.LinkLeaveEventHandler;
+import org.matsim.api.core.v01.events.handler.VehicleEntersTrafficEventHandler;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.core.utils.io.UncheckedIOException;
+import org.matsim.vehicles.Vehicle;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Counts the number of vehicles leaving a link, aggregated into time bins of a specified size, like
+ * {@link VolumesAnalyzer}, but for large networks and concurrent use.
+ * <p></p>
+ * The counts are stored in one int array per link and mode (plus one per link for the total over all modes), found by
+ * the index of the link id and the mode. These rows are only allocated once a vehicle (of the mode) leaves the link, so
+ * the memory needed grows with the number of links and modes which actually see traffic, not with the size of the
+ * network. The references to the rows are grouped into stripes of {@value #LINKS_PER_STRIPE} links, which are also
+ * allocated lazily. All counters are updated with atomic increments, so the handler methods can be called from several
+ * threads at the same time, e.g. when different parts of the events are processed in parallel. The events of a single
+ * vehicle must still be passed in their order, as the mode of a vehicle is taken from its last
+ * {@link VehicleEntersTrafficEvent}.
+ * <p></p>
+ * The number of modes must be specified in advance. Vehicles with additional modes are only counted in the total.
+ * <p></p>
+ * The controler uses this class if {@link org.matsim.core.config.groups.LinkStatsConfigGroup#getWriteLinkVolumesInterval()}
+ * is larger than 0.
+ */
+public final class LinkVolumesCounter implements LinkLeaveEventHandler, VehicleEntersTrafficEventHandler {
+
+	private static final int LINKS_PER_STRIPE = 4096;
+	private static final int VEHICLES_PER_STRIPE = 4096;
+	private static final int MAX_STRIPES = Integer.MAX_VALUE / LINKS_PER_STRIPE + 1;
+	private static final String ALL_MODES = "all";
+
+	private final int timeBinSize;
+	private final int maxTime;
+	private final int maxSlotIndex;
+	private final int binCount;
+	private final int maxModeCount;
+	private final int rowsPerLink; // maxModeCount + 1, the first row is the total over all modes
+	private final int rowsPerStripe;
+
+	private final Map<String, Integer> modeIndices = new ConcurrentHashMap<>();
+	private final AtomicReferenceArray<String> modes;
+	private volatile int modeCount = 0;
+
+	private volatile AtomicReferenceArray<AtomicReferenceArray<AtomicIntegerArray>> linkStripes;
+	private volatile AtomicReferenceArray<AtomicIntegerArray> vehicleStripes; // mode index + 1 per vehicle, 0 if unknown
+
+	public LinkVolumesCounter(final int timeBinSize, final int maxTime, final int maxModeCount) {
+		this.timeBinSize = timeBinSize;
+		this.maxTime = maxTime;
+		this.maxSlotIndex = (this.maxTime / this.timeBinSize) + 1;
+		this.binCount = this.maxSlotIndex + 1;
+		this.maxModeCount = maxModeCount;
+		this.rowsPerLink = this.maxModeCount + 1;
+		long rowsPerStripe = (long) LINKS_PER_STRIPE * this.rowsPerLink;
+		if (rowsPerStripe > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Cannot count the volumes of " + maxModeCount + " modes.");
+		}
+		this.rowsPerStripe = (int) rowsPerStripe;
+		this.modes = new AtomicReferenceArray<>(maxModeCount);
+		reset(0);
+	}
+
+	@Override
+	public void handleEvent(VehicleEntersTrafficEvent event) {
+		int modeIndex = getModeIndex(event.getNetworkMode());
+		int vehicleIndex = event.getVehicleId().index();
+		AtomicIntegerArray stripe = getVehicleStripe(vehicleIndex / VEHICLES_PER_STRIPE);
+		stripe.set(vehicleIndex % VEHICLES_PER_STRIPE, modeIndex + 1);
+	}
+
+	@Override
+	public void handleEvent(LinkLeaveEvent event) {
+		int linkIndex = event.getLinkId().index();
+		AtomicReferenceArray<AtomicIntegerArray> stripe = getLinkStripe(linkIndex / LINKS_PER_STRIPE);
+		int firstRow = (linkIndex % LINKS_PER_STRIPE) * this.rowsPerLink;
+		int timeSlot = getTimeSlotIndex(event.getTime());
+		getRow(stripe, firstRow).incrementAndGet(timeSlot);
+
+		int modeIndex = getVehicleModeIndex(event.getVehicleId());
+		if (modeIndex >= 0) {
+			getRow(stripe, firstRow + modeIndex + 1).incrementAndGet(timeSlot);
+		}
+	}
+
+	private int getTimeSlotIndex(final double time) {
+		if (time > this.maxTime) {
+			return this.maxSlotIndex;
+		}
+		return ((int) time / this.timeBinSize);
+	}
+
+	private int getVehicleModeIndex(Id<Vehicle> vehicleId) {
+		int vehicleIndex = vehicleId.index();
+		AtomicIntegerArray stripe = this.vehicleStripes.get(vehicleIndex / VEHICLES_PER_STRIPE);
+		if (stripe == null) {
+			return -1;
+		}
+		return stripe.get(vehicleIndex % VEHICLES_PER_STRIPE) - 1;
+	}
+
+	/**
+	 * @return the index of the mode, or -1 if there are already <code>maxModeCount</code> other modes.
+	 */
+	private int getModeIndex(String mode) {
+		Integer index = this.modeIndices.get(mode);
+		if (index != null) {
+			return index;
+		}
+		synchronized (this.modeIndices) {
+			// only happens once per mode
+			index = this.modeIndices.get(mode);
+			if (index == null) {
+				int count = this.modeCount;
+				if (count == this.maxModeCount) {
+					return -1;
+				}
+				this.modes.set(count, mode);
+				this.modeCount = count + 1;
+				index = count;
+				this.modeIndices.put(mode, index);
+			}
+			return index;
+		}
+	}
+
+	private AtomicIntegerArray getVehicleStripe(int stripeIndex) {
+		AtomicReferenceArray<AtomicIntegerArray> stripes = this.vehicleStripes;
+		AtomicIntegerArray stripe = stripes.get(stripeIndex);
+		if (stripe == null) {
+			// if another thread was faster, use its stripe
+			stripes.compareAndSet(stripeIndex, null, new AtomicIntegerArray(VEHICLES_PER_STRIPE));
+			stripe = stripes.get(stripeIndex);
+		}
+		return stripe;
+	}
+
+	private AtomicReferenceArray<AtomicIntegerArray> getLinkStripe(int stripeIndex) {
+		AtomicReferenceArray<AtomicReferenceArray<AtomicIntegerArray>> stripes = this.linkStripes;
+		AtomicReferenceArray<AtomicIntegerArray> stripe = stripes.get(stripeIndex);
+		if (stripe == null) {
+			stripes.compareAndSet(stripeIndex, null, new AtomicReferenceArray<>(this.rowsPerStripe));
+			stripe = stripes.get(stripeIndex);
+		}
+		return stripe;
+	}
+
+	private AtomicIntegerArray getRow(AtomicReferenceArray<AtomicIntegerArray> stripe, int row) {
+		AtomicIntegerArray volumes = stripe.get(row);
+		if (volumes == null) {
+			stripe.compareAndSet(row, null, new AtomicIntegerArray(this.binCount));
+			volumes = stripe.get(row);
+		}
+		return volumes;
+	}
+
+	/**
+	 * @return Array containing the number of vehicles leaving the link <code>linkId</code> per time bin,
+	 * 		starting with time bin 0 from 0 seconds to (timeBinSize-1)seconds, or <code>null</code> if no
+	 * 		vehicle left the link.
+	 */
+	public int[] getVolumesForLink(final Id<Link> linkId) {
+		return getVolumes(linkId.index(), 0);
+	}
+
+	/**
+	 * @return Array containing the number of vehicles using the specified mode leaving the link
+	 * 		<code>linkId</code> per time bin, or <code>null</code> if no such vehicle left the link.
+	 */
+	public int[] getVolumesForLink(final Id<Link> linkId, final String mode) {
+		Integer modeIndex = this.modeIndices.get(mode);
+		if (modeIndex == null) {
+			return null;
+		}
+		return getVolumes(linkId.index(), modeIndex + 1);
+	}
+
+	private int[] getVolumes(int linkIndex, int modeRow) {
+		AtomicReferenceArray<AtomicIntegerArray> stripe = this.linkStripes.get(linkIndex / LINKS_PER_STRIPE);
+		if (stripe == null) {
+			return null;
+		}
+		AtomicIntegerArray row = stripe.get((linkIndex % LINKS_PER_STRIPE) * this.rowsPerLink + modeRow);
+		if (row == null) {
+			return null;
+		}
+		int[] volumes = new int[this.binCount];
+		for (int i = 0; i < this.binCount; i++) {
+			volumes[i] = row.get(i);
+		}
+		return volumes;
+	}
+
+	/**
+	 * @return The size of the arrays returned by the <code>getVolumesForLink</code> methods.
+	 */
+	public int getVolumesArraySize() {
+		return this.binCount;
+	}
+
+	/**
+	 * @return the modes for which counts are available, in the order in which they were first seen.
+	 */
+	public List<String> getModes() {
+		int count = this.modeCount;
+		List<String> result = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			result.add(this.modes.get(i));
+		}
+		return result;
+	}
+
+	/**
+	 * Writes the counts to a tab-separated file, one row per link and mode with the counts of the time bins as
+	 * columns, followed by one row per link with the counts over all modes (mode <code>all</code>). Only links and
+	 * modes with a count are written, directly from the counters, i.e. without creating a copy of them first. Use a file
+	 * name ending in <code>.gz</code> to get a compressed file.
+	 *
+	 * Must not be called while events are still being handled.
+	 */
+	public void writeFile(final String filename) {
+		List<String> modes = getModes();
+		try (BufferedWriter out = IOUtils.getBufferedWriter(filename)) {
+			out.write("LINK\tMODE");
+			for (int i = 0; i < this.binCount; i++) {
+				out.write('\t');
+				out.write(Integer.toString(i * this.timeBinSize));
+			}
+			out.write('\n');
+
+			StringBuilder line = new StringBuilder();
+			for (int stripeIndex = 0; stripeIndex < MAX_STRIPES; stripeIndex++) {
+				AtomicReferenceArray<AtomicIntegerArray> stripe = this.linkStripes.get(stripeIndex);
+				if (stripe == null) {
+					continue;
+				}
+				for (int i = 0; i < LINKS_PER_STRIPE; i++) {
+					int firstRow = i * this.rowsPerLink;
+					AtomicIntegerArray total = stripe.get(firstRow);
+					if (total == null) {
+						continue;
+					}
+					String linkId = Id.get(stripeIndex * LINKS_PER_STRIPE + i, Link.class).toString();
+					for (int m = 0; m < modes.size(); m++) {
+						writeRow(out, line, stripe.get(firstRow + m + 1), linkId, modes.get(m));
+					}
+					writeRow(out, line, total, linkId, ALL_MODES);
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private void writeRow(BufferedWriter out, StringBuilder line, AtomicIntegerArray row, String linkId, String mode) throws IOException {
+		if (row == null) {
+			return;
+		}
+		line.setLength(0);
+		line.append(linkId).append('\t').append(mode);
+		for (int i = 0; i < this.binCount; i++) {
+			line.append('\t').append(row.get(i));
+		}
+		line.append('\n');
+		out.write(line.toString());
+	}
+
+	@Override
+	public void reset(final int iteration) {
+		// the old stripes are simply dropped, so the memory of links without traffic in the next iteration is freed
+		this.linkStripes = new AtomicReferenceArray<>(MAX_STRIPES);
+		this.vehicleStripes = new AtomicReferenceArray<>(Integer.MAX_VALUE / VEHICLES_PER_STRIPE + 1);
+	}
+}
@@ -20,9 +20,7 @@
 
 package org.matsim.api.core.v01;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
+import java.util.Arrays;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
@@ -43,8 +41,12 @@ import org.matsim.vehicles.Vehicle;
  */
 public abstract class Id<T> implements Comparable<Id<T>> {
 
-	private final static ConcurrentMap<Class<?>, ConcurrentMap<String, Id<?>>> cacheId = new ConcurrentHashMap<>();
-	private final static ConcurrentMap<Class<?>, List<Id<?>>> cacheIndex = new ConcurrentHashMap<>();
+	private final static ClassValue<Registry> registries = new ClassValue<Registry>() {
+		@Override
+		protected Registry computeValue(Class<?> type) {
+			return new Registry();
+		}
+	};
 
 	public static <T> Id<T> create(final long key, final Class<T> type) {
 		return create(Long.toString(key), type);
@@ -63,25 +65,24 @@ public abstract class Id<T> implements Comparable<Id<T>> {
 	public static <T> Id<T> create(final String key, final Class<T> type) {
 		Gbl.assertNotNull(key);
 
-		ConcurrentMap<String, Id<?>> mapId = cacheId.computeIfAbsent(type, k -> new ConcurrentHashMap<>(1000));
-
-		Id<?> id = mapId.get(key);
+		Registry registry = registries.get(type);
+		Id<?> id = registry.byKey.get(key);
 		if (id == null) {
-			//Double-Checked Locking works: mapId is concurrent and IdImpl is immutable
-			synchronized (mapId) {
-				id = mapId.get(key);
+			//Double-Checked Locking works: byKey is concurrent and IdImpl is immutable
+			synchronized (registry) {
+				id = registry.byKey.get(key);
 				if (id == null) {
-					// cannot use cacheIndex.computeIfAbsent():
-					// split into cacheIndex.get() and put() so that mapIndex.add() "happens-before" mapIndex.get()
-					// alternatives:
-					// (1) synchronise mapIndex.get() calls (on mapIndex)
-					// (2) use cacheIndex.compute() instead of get() and put() ==> less readable code...
-					List<Id<?>> mapIndex = mapId.isEmpty() ? new ArrayList<>(1000) : cacheIndex.get(type);
-					int index = mapIndex.size();
+					int index = registry.size;
 					id = new IdImpl<T>(key, index);
-					mapIndex.add(id);
-					cacheIndex.put(type, mapIndex);
-					mapId.put(key, id);
+					Id<?>[] byIndex = registry.byIndex;
+					if (index == byIndex.length) {
+						byIndex = Arrays.copyOf(byIndex, byIndex.length * 2);
+					}
+					byIndex[index] = id;
+					// publish the array before the id, so that byIndex[id.index()] is visible to everyone who sees the id
+					registry.byIndex = byIndex;
+					registry.size = index + 1;
+					registry.byKey.put(key, id);
 				}
 			}
 		}
@@ -90,19 +91,33 @@ public abstract class Id<T> implements Comparable<Id<T>> {
 
 	public abstract int index();
 
+	/**
+	 * @return the id of the given type with the given index, or <code>null</code> if there is no such id.
+	 */
 	public static <T> Id<T> get(int index, final Class<T> type) {
-		List<Id<?>> mapIndex = cacheIndex.get(type);
-		return mapIndex == null ? null : (Id<T>)mapIndex.get(index);
+		Id<?>[] byIndex = registries.get(type).byIndex;
+		if (index < 0 || index >= byIndex.length) {
+			return null;
+		}
+		return (Id<T>)byIndex[index];
 	}
 
 	public static <T> Id<T> get(String id, final Class<T> type) {
-		Map<String, Id<?>> mapId = cacheId.get(type);
-		return mapId == null ? null : (Id<T>)mapId.get(id);
+		return (Id<T>)registries.get(type).byKey.get(id);
 	}
 
 	public static <T> int getNumberOfIds(final Class<T> type) {
-		Map<String, Id<?>> mapId = cacheId.get(type);
-		return mapId == null ? 0 : mapId.size();
+		return registries.get(type).byKey.size();
+	}
+
+	/**
+	 * All ids of one type, by key and by index.  Ids are only added, never removed, so
+	 * the index of an id is also the number of ids of this type created before it.
+	 */
+	private static final class Registry {
+		final ConcurrentMap<String, Id<?>> byKey = new ConcurrentHashMap<>(1000);
+		volatile Id<?>[] byIndex = new Id<?>[1000];
+		int size = 0; // guarded by this
 	}
 
 	/**
@@ -118,6 +133,9 @@ public abstract class Id<T> implements Comparable<Id<T>> {
 
 	@Override
 	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
 		if (obj instanceof Id) {
 			return this.compareTo((Id) obj) == 0;
 		}
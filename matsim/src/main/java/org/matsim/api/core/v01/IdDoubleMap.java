@@ -0,0 +1,143 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * IdDoubleMap.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.api.core.v01;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.ObjDoubleConsumer;
+
+/**
+ * A map from {@link Id}s to primitive double values, backed by an array indexed by {@link Id#index()}.
+ * Neither lookups nor updates allocate any objects, in contrast to an {@code IdMap<T, Double>}.
+ * <p></p>
+ * Like Trove's primitive maps, {@link #get(Id)} and {@link #remove(Id)} return the {@link #getNoEntryValue() no entry
+ * value} if the map does not contain the key; use {@link #containsKey(Id)} if the no entry value can be a regular value.
+ */
+public class IdDoubleMap<T> {
+
+	private final Class<T> idClass;
+	private final double noEntryValue;
+	private final BitSet keys;
+	private double[] data;
+	private int size = 0;
+
+	public IdDoubleMap(Class<T> idClass) {
+		this(idClass, Math.max(Id.getNumberOfIds(idClass), 100), Double.NaN);
+	}
+
+	public IdDoubleMap(Class<T> idClass, int size, double noEntryValue) {
+		this.idClass = idClass;
+		this.noEntryValue = noEntryValue;
+		this.keys = new BitSet(size);
+		this.data = new double[size];
+	}
+
+	public double getNoEntryValue() {
+		return this.noEntryValue;
+	}
+
+	public int size() {
+		return this.size;
+	}
+
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	public boolean containsKey(Id<T> key) {
+		return this.keys.get(key.index());
+	}
+
+	public boolean containsKey(int index) {
+		return this.keys.get(index);
+	}
+
+	public double get(Id<T> key) {
+		return get(key.index());
+	}
+
+	public double get(int index) {
+		return this.keys.get(index) ? this.data[index] : this.noEntryValue;
+	}
+
+	public double put(Id<T> key, double value) {
+		return put(key.index(), value);
+	}
+
+	public double put(int index, double value) {
+		ensureCapacity(index);
+		double oldValue = this.data[index];
+		this.data[index] = value;
+		if (this.keys.get(index)) {
+			return oldValue;
+		}
+		this.keys.set(index);
+		this.size++;
+		return this.noEntryValue;
+	}
+
+	/**
+	 * Adds <code>value</code> to the value of the key, or sets it if the map does not yet contain the key.
+	 *
+	 * @return the new value
+	 */
+	public double add(Id<T> key, double value) {
+		return add(key.index(), value);
+	}
+
+	public double add(int index, double value) {
+		if (this.keys.get(index)) {
+			return this.data[index] += value;
+		}
+		put(index, value);
+		return value;
+	}
+
+	public double remove(Id<T> key) {
+		return remove(key.index());
+	}
+
+	public double remove(int index) {
+		if (this.keys.get(index)) {
+			this.keys.clear(index);
+			this.size--;
+			return this.data[index];
+		}
+		return this.noEntryValue;
+	}
+
+	public void clear() {
+		this.keys.clear();
+		this.size = 0;
+	}
+
+	public void forEach(ObjDoubleConsumer<Id<T>> action) {
+		for (int i = this.keys.nextSetBit(0); i >= 0; i = this.keys.nextSetBit(i + 1)) {
+			action.accept(Id.get(i, this.idClass), this.data[i]);
+		}
+	}
+
+	private void ensureCapacity(int index) {
+		if (index >= this.data.length) {
+			this.data = Arrays.copyOf(this.data, Math.max(index + 100, this.data.length + (this.data.length >> 1)));
+		}
+	}
+}
@@ -112,8 +112,11 @@ public class IdMap<T, V> implements Map<Id<T>, V>, Iterable<V> {
 	}
 
 	public boolean containsKey(Id<T> key) {
-		int idx = key.index();
-		return idx < this.data.length && this.data[idx] != null;
+		return containsKey(key.index());
+	}
+
+	public boolean containsKey(int index) {
+		return index < this.data.length && this.data[index] != null;
 	}
 
 	public V get(Id<T> key) {
@@ -124,7 +127,10 @@ public class IdMap<T, V> implements Map<Id<T>, V>, Iterable<V> {
 		return null;
 	}
 
-	V get(int index) {
+	/**
+	 * Allocation-free lookup by {@link Id#index()}, e.g. for callers that keep the index of an id in a primitive field.
+	 */
+	public V get(int index) {
 		if (index < this.data.length) {
 			return (V) this.data[index];
 		}
@@ -136,7 +142,7 @@ public class IdMap<T, V> implements Map<Id<T>, V>, Iterable<V> {
 		return this.put(key.index(), value);
 	}
 
-	V put(int index, V value) {
+	public V put(int index, V value) {
 		ensureCapacity(index);
 		Object oldValue = this.data[index];
 		this.data[index] = value;
@@ -160,7 +166,7 @@ public class IdMap<T, V> implements Map<Id<T>, V>, Iterable<V> {
 		return this.remove(key.index());
 	}
 
-	V remove(int idx) {
+	public V remove(int idx) {
 		if (idx < this.data.length) {
 			Object oldValue = this.data[idx];
 			this.data[idx] = null;
@@ -47,6 +47,10 @@ public class IdSet<T> implements Set<Id<T>> {
 		return this.data.get(id.index());
 	}
 
+	public boolean contains(int index) {
+		return this.data.get(index);
+	}
+
 	@Override
 	public Iterator<Id<T>> iterator() {
 		return new IdSetIterator<>(this);
@@ -106,7 +110,7 @@ public class IdSet<T> implements Set<Id<T>> {
 		return this.remove(key.index());
 	}
 
-	private boolean remove(int idx) {
+	public boolean remove(int idx) {
 		if (this.data.get(idx)) {
 			this.data.clear(idx);
 			this.size--;
@@ -204,7 +208,7 @@ public class IdSet<T> implements Set<Id<T>> {
 		return this.add(value.index());
 	}
 
-	private boolean add(int index) {
+	public boolean add(int index) {
 		boolean hadValue = this.data.get(index);
 		this.data.set(index);
 		if (!hadValue) {
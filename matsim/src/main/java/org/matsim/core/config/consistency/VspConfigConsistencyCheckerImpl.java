@@ -96,10 +96,13 @@ public final class VspConfigConsistencyCheckerImpl implements ConfigConsistencyC
 			case Dijkstra:
 			case AStarLandmarks:
 			case FastDijkstra:
+			case ArrayDijkstra:
 				log.log( lvl, "you are not using FastAStarLandmarks as routing algorithm.  vsp default is to use FastAStarLandmarks.") ;
 				System.out.flush();
 				break;
 			case FastAStarLandmarks:
+			case ContractionHierarchies:
+			case ArrayAStarLandmarks:
 				break;
 		}
 
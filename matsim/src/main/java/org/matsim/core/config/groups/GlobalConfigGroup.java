@@ -39,6 +39,7 @@ public final class GlobalConfigGroup extends ReflectiveConfigGroup {
 	@Override public Map<String, String> getComments() {
 		Map<String,String> map = super.getComments();
 		map.put(NUMBER_OF_THREADS, NUMBER_OF_THREADS_CMT ) ;
+		map.put(REPLANNING_SCHEDULING, REPLANNING_SCHEDULING_CMT ) ;
 		return map ;
 	}
 
@@ -88,6 +89,29 @@ public final class GlobalConfigGroup extends ReflectiveConfigGroup {
 		this.numberOfThreads = numberOfThreads;
 	}
 	// ---
+	public enum ReplanningScheduling { roundRobin, dynamic }
+	private ReplanningScheduling replanningScheduling = ReplanningScheduling.roundRobin;
+	private static final String REPLANNING_SCHEDULING = "replanningScheduling";
+	private static final String REPLANNING_SCHEDULING_CMT = "How the plans are distributed to the threads of multi-threaded replanning modules.  "
+								     + ReplanningScheduling.roundRobin + ": the plans are dealt out evenly before the threads start, which gives reproducible results.  "
+								     + ReplanningScheduling.dynamic + ": the threads take batches of plans from a shared queue while the plans are still collected.  "
+								     + "This balances the load between the threads, but the results may depend on the timing of the threads if the plan algorithms have "
+								     + "their own state, e.g. random number generators.";
+	/**
+	 * @return {@link #REPLANNING_SCHEDULING_CMT}
+	 */
+	@StringGetter( REPLANNING_SCHEDULING )
+	public ReplanningScheduling getReplanningScheduling() {
+		return this.replanningScheduling;
+	}
+	/**
+	 * @param replanningScheduling -- {@link #REPLANNING_SCHEDULING_CMT}
+	 */
+	@StringSetter( REPLANNING_SCHEDULING )
+	public void setReplanningScheduling(final ReplanningScheduling replanningScheduling) {
+		this.replanningScheduling = replanningScheduling;
+	}
+	// ---
 	private String coordinateSystem = "Atlantis" ;
 	// see https://matsim.atlassian.net/browse/MATSIM-898
 	private static final String COORDINATE_SYSTEM = "coordinateSystem";
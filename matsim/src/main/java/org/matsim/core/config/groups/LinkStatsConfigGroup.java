@@ -32,9 +32,11 @@ public final class LinkStatsConfigGroup extends ReflectiveConfigGroup {
 
 	private static final String WRITELINKSTATSINTERVAL = "writeLinkStatsInterval";
 	private static final String AVERAGELINKSTATSOVERITERATIONS = "averageLinkStatsOverIterations";
+	private static final String WRITELINKVOLUMESINTERVAL = "writeLinkVolumesInterval";
 
 	private int writeLinkStatsInterval = 10;
 	private int averageLinkStatsOverIterations = 5;
+	private int writeLinkVolumesInterval = 0;
 
 	public LinkStatsConfigGroup() {
 		super(GROUP_NAME);
@@ -46,6 +48,9 @@ public final class LinkStatsConfigGroup extends ReflectiveConfigGroup {
 		comments.put(WRITELINKSTATSINTERVAL, "Specifies how often the link stats should be calculated and written. Use 0 to disable the generation of link stats.");
 		comments.put(AVERAGELINKSTATSOVERITERATIONS, "Specifies over how many iterations the link volumes should be averaged that are used for the " +
 				"link statistics. Use 1 or 0 to only use the link volumes of a single iteration. This values cannot be larger than the value specified for " + WRITELINKSTATSINTERVAL);
+		comments.put(WRITELINKVOLUMESINTERVAL, "Specifies how often the hourly link volumes per main mode should be counted and written to linkVolumes.txt.gz. " +
+				"In contrast to the link stats, only links with traffic need memory and the volumes can be counted by several threads at once, " +
+				"which helps with very large networks. Use 0 to disable them.");
 		return comments;
 	}
 
@@ -68,4 +73,14 @@ public final class LinkStatsConfigGroup extends ReflectiveConfigGroup {
 	public void setAverageLinkStatsOverIterations(int averageLinkStatsOverIterations) {
 		this.averageLinkStatsOverIterations = averageLinkStatsOverIterations;
 	}
+
+	@StringGetter( WRITELINKVOLUMESINTERVAL )
+	public int getWriteLinkVolumesInterval() {
+		return this.writeLinkVolumesInterval;
+	}
+
+	@StringSetter( WRITELINKVOLUMESINTERVAL )
+	public void setWriteLinkVolumesInterval(int writeLinkVolumesInterval) {
+		this.writeLinkVolumesInterval = writeLinkVolumesInterval;
+	}
 }
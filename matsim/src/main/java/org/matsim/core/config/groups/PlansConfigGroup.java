@@ -34,6 +34,8 @@ public final class PlansConfigGroup extends ReflectiveConfigGroup {
 	public abstract static class NetworkRouteType {
 		public static final String LinkNetworkRoute = "LinkNetworkRoute";
 		public static final String CompressedNetworkRoute = "CompressedNetworkRoute";
+		public static final String IndexedNetworkRoute = "IndexedNetworkRoute";
+		public static final String PackedNetworkRoute = "PackedNetworkRoute";
 	}
 
 	public enum ActivityDurationInterpretation { minOfDurationAndEndTime, tryEndTimeThenDuration, @Deprecated endTimeOnly }
@@ -44,7 +46,7 @@ public final class PlansConfigGroup extends ReflectiveConfigGroup {
 	private static final String INPUT_CRS = "inputCRS";
 
 	private String inputFile = null;
-	private String networkRouteType = NetworkRouteType.LinkNetworkRoute;
+	private String networkRouteType = NetworkRouteType.IndexedNetworkRoute;
 	private String inputPersonAttributeFile = null;
 	private String subpopulationAttributeName = "subpopulation";
 	private String inputCRS = null;
@@ -67,7 +69,12 @@ public final class PlansConfigGroup extends ReflectiveConfigGroup {
 				NETWORK_ROUTE_TYPE,
 				"Defines how routes are stored in memory. Currently supported: " +
 				NetworkRouteType.LinkNetworkRoute + ", " +
-				NetworkRouteType.CompressedNetworkRoute + ".");
+				NetworkRouteType.CompressedNetworkRoute + ", " +
+				NetworkRouteType.IndexedNetworkRoute + ", " +
+				NetworkRouteType.PackedNetworkRoute + ". " +
+				NetworkRouteType.IndexedNetworkRoute + " stores the links by the indices of their ids, " +
+				NetworkRouteType.PackedNetworkRoute + " additionally packs them as differences and shares the links " +
+				"of identical routes, which needs less memory but is slower for random access to the links.");
 //		comments.put(
 //				INPUT_PERSON_ATTRIBUTES_FILE,
 //				"Path to a file containing person attributes (required file format: ObjectAttributes).");
@@ -91,6 +98,18 @@ public final class PlansConfigGroup extends ReflectiveConfigGroup {
 				" At import, the coordinates will be converted to the coordinate system defined in \"global\", and will" +
 				"be converted back at export. If not specified, no conversion happens." );
 
+		comments.put( PARALLEL_READING, "If true, the persons of population_v6 files are created by " + GlobalConfigGroup.GROUP_NAME +
+				".numberOfThreads threads while the file is parsed.  The population is the same as with the sequential reader, but attribute " +
+				"converters must be thread-safe." );
+
+		comments.put( PARALLEL_WRITING, "If true, the population is written by " + GlobalConfigGroup.GROUP_NAME +
+				".numberOfThreads threads.  Compressed population files then consist of several independently compressed parts, " +
+				"which are read like any other compressed file.  Attribute converters must be thread-safe." );
+
+		comments.put( COMPACTING_NON_SELECTED_PLANS, "If true, the plans which are not selected are stored in primitive arrays after " +
+				"reading the population and after every replanning, and only decoded into activities and legs when they are accessed.  " +
+				"Saves a lot of memory for populations with many plans per person, at the cost of encoding and decoding the plans." );
+
 		return comments;
 	}
 
@@ -194,6 +213,41 @@ public final class PlansConfigGroup extends ReflectiveConfigGroup {
 	}
 
 
+	// ---
+
+	private static final String PARALLEL_READING = "parallelReading";
+	private boolean parallelReading = false;
+	@StringGetter( PARALLEL_READING )
+	public boolean isParallelReading() {
+		return this.parallelReading;
+	}
+	@StringSetter( PARALLEL_READING )
+	public void setParallelReading(final boolean parallelReading) {
+		this.parallelReading = parallelReading;
+	}
+
+	private static final String PARALLEL_WRITING = "parallelWriting";
+	private boolean parallelWriting = false;
+	@StringGetter( PARALLEL_WRITING )
+	public boolean isParallelWriting() {
+		return this.parallelWriting;
+	}
+	@StringSetter( PARALLEL_WRITING )
+	public void setParallelWriting(final boolean parallelWriting) {
+		this.parallelWriting = parallelWriting;
+	}
+
+	private static final String COMPACTING_NON_SELECTED_PLANS = "compactingNonSelectedPlans";
+	private boolean compactingNonSelectedPlans = false;
+	@StringGetter( COMPACTING_NON_SELECTED_PLANS )
+	public boolean isCompactingNonSelectedPlans() {
+		return this.compactingNonSelectedPlans;
+	}
+	@StringSetter( COMPACTING_NON_SELECTED_PLANS )
+	public void setCompactingNonSelectedPlans(final boolean compactingNonSelectedPlans) {
+		this.compactingNonSelectedPlans = compactingNonSelectedPlans;
+	}
+
 	@StringGetter( INPUT_CRS )
 	public String getInputCRS() {
 		return inputCRS;
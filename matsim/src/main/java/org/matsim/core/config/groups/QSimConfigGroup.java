@@ -270,6 +270,37 @@ public final class QSimConfigGroup extends ReflectiveConfigGroup {
 		map.put(USE_PERSON_ID_FOR_MISSING_VEHICLE_ID, "If a route does not reference a vehicle, agents will use the vehicle with the same id as their own.");
 		map.put(USING_THREADPOOL, "if the qsim should use as many runners as there are threads (Christoph's dissertation version)"
 				+ " or more of them, together with a thread pool (seems to be faster in some situations, but is not tested).") ;
+		{
+			StringBuilder stb = new StringBuilder() ;
+			for ( NetsimLoadBalancing lb : NetsimLoadBalancing.values() ) {
+				stb.append(" ").append(lb.toString());
+			}
+			map.put(NETSIM_LOAD_BALANCING, "Only relevant if numberOfThreads > 1. If not " + NetsimLoadBalancing.off + ", the nodes of the network "
+					+ "are grouped into " + NETSIM_CHUNKS_PER_THREAD + " chunks per thread, and every " + NETSIM_LOAD_BALANCING_INTERVAL
+					+ " seconds of simulated time the chunks are re-distributed over the threads according to the number of node and link "
+					+ "sim steps they executed in the last interval. Since this uses counts and not run times, results remain deterministic. "
+					+ "Options:" + stb ) ;
+		}
+		{
+			StringBuilder stb = new StringBuilder() ;
+			for ( NetsimPartitioning np : NetsimPartitioning.values() ) {
+				stb.append(" ").append(np.toString());
+			}
+			map.put(NETSIM_PARTITIONING, "Only relevant if numberOfThreads > 1. Defines how the nodes (and their out-links) are grouped for the "
+					+ "netsim threads. " + NetsimPartitioning.recursiveCoordinateBisection + " creates spatially compact regions, so that fewer "
+					+ "vehicles are handed over between threads; best combined with " + NETSIM_LOAD_BALANCING + ". Options:" + stb ) ;
+		}
+		map.put(NETSIM_LOAD_BALANCING_INTERVAL, "Simulated seconds between two re-distributions of the netsim chunks over the threads.");
+		map.put(NETSIM_CHUNKS_PER_THREAD, "Number of chunks per thread if " + NETSIM_LOAD_BALANCING + " is switched on. More chunks allow a finer "
+				+ "balancing, but make the partition of the network less compact.");
+		map.put(USING_PARALLEL_AGENT_STATE_TRANSITIONS, "Only relevant if numberOfThreads > 1. If true, the agents whose activity ends or "
+				+ "whose teleportation arrives in the same time step compute their next state in parallel, on the threads of the netsim. "
+				+ "The events are still processed in the same order as without this option. Requires that the agents do not depend on "
+				+ "each other when ending an activity or a leg, which is the case for the default agents.");
+		map.put(SKIPPING_IDLE_TIME_STEPS, "If true, the qsim jumps over time steps in which nothing happens, i.e. when there are no vehicles "
+				+ "on the network and no activity ends, teleportation arrivals or network change events are due. The events are the same "
+				+ "as without this option. Time steps are only skipped if all qsim engines and sim step listeners can tell when they need "
+				+ "the next time step, which is the case for the default ones.");
 		map.put(FAST_CAPACITY_UPDATE, "If false, the qsim accumulates fractional flows up to one flow unit in every time step.  If true, "
 				+ "flows are updated only if an agent wants to enter the link or an agent is added to buffer. "
 				+ "Default is true.") ;
@@ -534,6 +565,80 @@ public final class QSimConfigGroup extends ReflectiveConfigGroup {
 		this.usingThreadpool = val ;
 	}
 
+	// ---
+	private static final String NETSIM_LOAD_BALANCING = "netsimLoadBalancing";
+	public enum NetsimLoadBalancing { off, byExecutedSimSteps }
+	private NetsimLoadBalancing netsimLoadBalancing = NetsimLoadBalancing.off;
+	@StringGetter(NETSIM_LOAD_BALANCING)
+	public NetsimLoadBalancing getNetsimLoadBalancing() {
+		return this.netsimLoadBalancing;
+	}
+	@StringSetter(NETSIM_LOAD_BALANCING)
+	public void setNetsimLoadBalancing(NetsimLoadBalancing netsimLoadBalancing) {
+		this.netsimLoadBalancing = netsimLoadBalancing;
+	}
+
+	private static final String NETSIM_PARTITIONING = "netsimPartitioning";
+	public enum NetsimPartitioning { roundRobin, recursiveCoordinateBisection }
+	private NetsimPartitioning netsimPartitioning = NetsimPartitioning.roundRobin;
+	@StringGetter(NETSIM_PARTITIONING)
+	public NetsimPartitioning getNetsimPartitioning() {
+		return this.netsimPartitioning;
+	}
+	@StringSetter(NETSIM_PARTITIONING)
+	public void setNetsimPartitioning(NetsimPartitioning netsimPartitioning) {
+		this.netsimPartitioning = netsimPartitioning;
+	}
+
+	private static final String NETSIM_LOAD_BALANCING_INTERVAL = "netsimLoadBalancingInterval";
+	@Positive
+	private double netsimLoadBalancingInterval = 900.;
+	@StringGetter(NETSIM_LOAD_BALANCING_INTERVAL)
+	public double getNetsimLoadBalancingInterval() {
+		return this.netsimLoadBalancingInterval;
+	}
+	@StringSetter(NETSIM_LOAD_BALANCING_INTERVAL)
+	public void setNetsimLoadBalancingInterval(double seconds) {
+		this.netsimLoadBalancingInterval = seconds;
+	}
+
+	private static final String NETSIM_CHUNKS_PER_THREAD = "netsimChunksPerThread";
+	@Positive
+	private int netsimChunksPerThread = 16;
+	@StringGetter(NETSIM_CHUNKS_PER_THREAD)
+	public int getNetsimChunksPerThread() {
+		return this.netsimChunksPerThread;
+	}
+	@StringSetter(NETSIM_CHUNKS_PER_THREAD)
+	public void setNetsimChunksPerThread(int netsimChunksPerThread) {
+		if ( netsimChunksPerThread < 1 ) {
+			throw new IllegalArgumentException( "Number of chunks per thread must be strictly positive, got "+netsimChunksPerThread );
+		}
+		this.netsimChunksPerThread = netsimChunksPerThread;
+	}
+
+	private static final String USING_PARALLEL_AGENT_STATE_TRANSITIONS = "usingParallelAgentStateTransitions";
+	private boolean usingParallelAgentStateTransitions = false;
+	@StringGetter(USING_PARALLEL_AGENT_STATE_TRANSITIONS)
+	public boolean isUsingParallelAgentStateTransitions() {
+		return this.usingParallelAgentStateTransitions;
+	}
+	@StringSetter(USING_PARALLEL_AGENT_STATE_TRANSITIONS)
+	public void setUsingParallelAgentStateTransitions(boolean usingParallelAgentStateTransitions) {
+		this.usingParallelAgentStateTransitions = usingParallelAgentStateTransitions;
+	}
+
+	private static final String SKIPPING_IDLE_TIME_STEPS = "skippingIdleTimeSteps";
+	private boolean skippingIdleTimeSteps = false;
+	@StringGetter(SKIPPING_IDLE_TIME_STEPS)
+	public boolean isSkippingIdleTimeSteps() {
+		return this.skippingIdleTimeSteps;
+	}
+	@StringSetter(SKIPPING_IDLE_TIME_STEPS)
+	public void setSkippingIdleTimeSteps(boolean skippingIdleTimeSteps) {
+		this.skippingIdleTimeSteps = skippingIdleTimeSteps;
+	}
+	// ---
 	private static final String USE_LANES="useLanes" ;
 	private boolean useLanes = false ;
 
@@ -141,9 +141,24 @@ final class DumpDataAtEndImpl implements DumpDataAtEnd, ShutdownListener {
 	}
 
 	private void dumpOutputEvents() {
+		for (ControlerConfigGroup.EventsFileFormat format : this.controlerConfigGroup.getEventsFileFormats()) {
+			switch (format) {
+			case xml:
+				dumpOutputEvents(Controler.DefaultFiles.events);
+				break;
+			case binary:
+				dumpOutputEvents(Controler.DefaultFiles.eventsBinary);
+				break;
+			default:
+				break;
+			}
+		}
+	}
+
+	private void dumpOutputEvents(Controler.DefaultFiles eventsFile) {
 		try {
-			File toFile = new File(this.controlerIO.getOutputFilename(Controler.DefaultFiles.events));
-			File fromFile = new File(this.controlerIO.getIterationFilename(this.controlerConfigGroup.getLastIteration(), Controler.DefaultFiles.events));
+			File toFile = new File(this.controlerIO.getOutputFilename(eventsFile));
+			File fromFile = new File(this.controlerIO.getIterationFilename(this.controlerConfigGroup.getLastIteration(), eventsFile));
 			try {
 				Files.copy(fromFile.toPath(), toFile.toPath(),StandardCopyOption.REPLACE_EXISTING,StandardCopyOption.COPY_ATTRIBUTES);
 			} catch (IOException e) {
@@ -285,6 +300,9 @@ final class DumpDataAtEndImpl implements DumpDataAtEnd, ShutdownListener {
 
 		final PopulationWriter writer = new PopulationWriter(this.population, this.network);
 		writer.putAttributeConverters(this.attributeConverters);
+		if (this.config.plans().isParallelWriting()) {
+			writer.setNumberOfThreads(this.config.global().getNumberOfThreads());
+		}
 		writer.write(this.controlerIO.getOutputFilename(Controler.DefaultFiles.population));
 	}
 
@@ -31,6 +31,7 @@ import org.matsim.core.controler.Controler;
 import org.matsim.core.controler.OutputDirectoryHierarchy;
 import org.matsim.core.controler.events.BeforeMobsimEvent;
 import org.matsim.core.controler.listener.BeforeMobsimListener;
+import org.matsim.core.population.PopulationUtils;
 
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
@@ -78,7 +79,9 @@ final class PlansDumpingImpl implements PlansDumping, BeforeMobsimListener {
 			final String internalCRS = config.global().getCoordinateSystem();
 
 			if ( inputCRS == null ) {
-				new PopulationWriter(population, network).write(controlerIO.getIterationFilename(event.getIteration(), Controler.DefaultFiles.population));
+				final PopulationWriter writer = new PopulationWriter(population, network);
+				writer.setNumberOfThreads(getNumberOfWriterThreads());
+				writer.write(controlerIO.getIterationFilename(event.getIteration(), Controler.DefaultFiles.population));
 			}
 			else {
 				log.info( "re-projecting population from "+internalCRS+" back to "+inputCRS+" for export" );
@@ -88,11 +91,21 @@ final class PlansDumpingImpl implements PlansDumping, BeforeMobsimListener {
 								internalCRS,
 								inputCRS );
 
-				new PopulationWriter(transformation, population, network).write(controlerIO.getIterationFilename(event.getIteration(), Controler.DefaultFiles.population));
+				final PopulationWriter writer = new PopulationWriter(transformation, population, network);
+				writer.setNumberOfThreads(getNumberOfWriterThreads());
+				writer.write(controlerIO.getIterationFilename(event.getIteration(), Controler.DefaultFiles.population));
 			}
 			log.info("finished plans dump.");
+			if ( config.plans().isCompactingNonSelectedPlans() ) {
+				// writing has decoded the compactly stored plans
+				PopulationUtils.compactNonSelectedPlans(population);
+			}
 			stopwatch.endOperation("dump all plans");
 		}
 	}
 
+	private int getNumberOfWriterThreads() {
+		return config.plans().isParallelWriting() ? config.global().getNumberOfThreads() : 1;
+	}
+
 }
@@ -21,8 +21,10 @@
 package org.matsim.core.controler.corelisteners;
 
 import org.matsim.api.core.v01.population.Population;
+import org.matsim.core.config.groups.PlansConfigGroup;
 import org.matsim.core.controler.events.ReplanningEvent;
 import org.matsim.core.controler.listener.ReplanningListener;
+import org.matsim.core.population.PopulationUtils;
 import org.matsim.core.replanning.ReplanningContext;
 import org.matsim.core.replanning.StrategyManager;
 
@@ -45,17 +47,22 @@ final class PlansReplanningImpl implements PlansReplanning, ReplanningListener {
 	private final Provider<ReplanningContext> replanningContextProvider;
 	private Population population;
 	private StrategyManager strategyManager;
+	private final boolean compactingNonSelectedPlans;
 	
 	@Inject
-	PlansReplanningImpl(StrategyManager strategyManager, Population pop, Provider<ReplanningContext> replanningContextProvider) {
+	PlansReplanningImpl(StrategyManager strategyManager, Population pop, Provider<ReplanningContext> replanningContextProvider, PlansConfigGroup plansConfigGroup) {
 		this.population = pop;
 		this.strategyManager = strategyManager;
 		this.replanningContextProvider = replanningContextProvider;
+		this.compactingNonSelectedPlans = plansConfigGroup.isCompactingNonSelectedPlans();
 	}
 
 	@Override
 	public void notifyReplanning(final ReplanningEvent event) {
 		strategyManager.run(population, event.getIteration(), replanningContextProvider.get());
+		if (this.compactingNonSelectedPlans) {
+			PopulationUtils.compactNonSelectedPlans(population);
+		}
 	}
 
 }
@@ -20,10 +20,16 @@
 
 package org.matsim.core.events;
 
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -73,8 +79,9 @@ import org.matsim.core.events.handler.EventHandler;
  * <li>add method public void handleEvent(MyEvent event) to it</li>
  * <li>ready to go, just implement the interface somewhere and add a
  * HandlerObject with a call to <code>Events.addHandler(HandlerObject)</code></li>
- * <li>(optional) add an appropriate line in callHandlerFast() for speeding
- * up execution!</li>
+ * <li>(optional) add an appropriate line in bindHandlerFast() for speeding
+ * up execution; otherwise the handler is bound via the LambdaMetafactory
+ * when it is added</li>
  * </ol>
  *
  * @author dstrippgen
@@ -89,27 +96,46 @@ public final class EventsManagerImpl implements EventsManager {
 		protected Class<?> eventklass;
 		protected ArrayList<EventHandler> handlerList = new ArrayList<EventHandler>(5);
 		protected Method method;
+		protected Map<EventHandler, HandlerCall> handlerCalls = new IdentityHashMap<>(5);
 		protected HandlerData(final Class<?> eventklass, final Method method) {
 			this.eventklass = eventklass;
 			this.method = method;
 		}
+		protected void addHandler(final EventHandler handler) {
+			this.handlerList.add(handler);
+			this.handlerCalls.computeIfAbsent(handler, h -> bindHandler(this.eventklass, h, this.method));
+		}
 		protected void removeHandler(final EventHandler handler) {
 			this.handlerList.remove(handler);
+			if (!this.handlerList.contains(handler)) {
+				this.handlerCalls.remove(handler);
+			}
 		}
 	}
 
 	static private class HandlerInfo {
 		protected final Class<?> eventClass;
 		protected final EventHandler eventHandler;
-		protected final Method method;
+		protected final HandlerCall call;
 
-		protected HandlerInfo(final Class<?> eventClass, final EventHandler eventHandler, final Method method) {
+		protected HandlerInfo(final Class<?> eventClass, final EventHandler eventHandler, final HandlerCall call) {
 			this.eventClass = eventClass;
 			this.eventHandler = eventHandler;
-			this.method = method;
+			this.call = call;
 		}
 	}
 
+	/**
+	 * A call of one handleEvent method of one handler, bound when the handler cache is built,
+	 * so that dispatching an event does not need reflection.
+	 */
+	@FunctionalInterface
+	/*package*/ interface HandlerCall {
+		void call(Event event);
+	}
+
+	private static final Map<Method, Map<Class<?>, MethodHandle>> callFactories = new ConcurrentHashMap<>();
+
 	private final List<HandlerData> handlerData = new ArrayList<HandlerData>();
 
 	private final Map<Class<?>, HandlerInfo[]> cacheHandlers = new ConcurrentHashMap<Class<?>, HandlerInfo[]>(15);
@@ -210,7 +236,7 @@ public final class EventsManagerImpl implements EventsManager {
 						dat = new HandlerData(eventClass, method);
 						this.handlerData.add(dat);
 					}
-					dat.handlerList.add(handler);
+					dat.addHandler(handler);
 				}
 			}
 		}
@@ -219,16 +245,7 @@ public final class EventsManagerImpl implements EventsManager {
 	private void computeEvent(final Event event) {
 		for (HandlerInfo info : getHandlersForClass(event.getClass())) {
 			synchronized(info.eventHandler) {
-				if (callHandlerFast(info.eventClass, event, info.eventHandler)) {
-					continue;
-				}
-				try {
-					info.method.invoke(info.eventHandler, event);
-				} catch (IllegalArgumentException | IllegalAccessException e) {
-					throw new RuntimeException("problem invoking EventHandler " + info.eventHandler.getClass().getCanonicalName() + " for event-class " + info.eventClass.getCanonicalName(), e);
-				} catch (InvocationTargetException e) {
-					throw new RuntimeException("problem invoking EventHandler " + info.eventHandler.getClass().getCanonicalName() + " for event-class " + info.eventClass.getCanonicalName(), e.getCause());
-				}
+				info.call.call(event);
 			}
 		}
 	}
@@ -246,7 +263,7 @@ public final class EventsManagerImpl implements EventsManager {
 			HandlerData dat = findHandler(klass);
 			if (dat != null) {
 				for(EventHandler handler: dat.handlerList) {
-					info.add(new HandlerInfo(klass, handler, dat.method));
+					info.add(new HandlerInfo(klass, handler, dat.handlerCalls.get(handler)));
 				}
 			}
 			klass = klass.getSuperclass();
@@ -256,7 +273,7 @@ public final class EventsManagerImpl implements EventsManager {
 			HandlerData dat = findHandler(intfc);
 			if (dat != null) {
 				for(EventHandler handler: dat.handlerList) {
-					info.add(new HandlerInfo(intfc, handler, dat.method));
+					info.add(new HandlerInfo(intfc, handler, dat.handlerCalls.get(handler)));
 				}
 			}
 		}
@@ -282,58 +299,134 @@ public final class EventsManagerImpl implements EventsManager {
 		return intfs;
 	}
 
+	/*
+	 * Binds the handleEvent method of the handler to a direct call; this is done once when the handler
+	 * is added.  The well-known event types are bound with a plain cast, all others through a lambda
+	 * generated with the LambdaMetafactory, which the JIT can inline like any other interface call.
+	 * Only if that is not possible (e.g. because the handler interface is not accessible from here),
+	 * the call falls back to reflection.
+	 */
+	private static HandlerCall bindHandler(final Class<?> klass, final EventHandler handler, final Method method) {
+		HandlerCall call = bindHandlerFast(klass, handler);
+		if (call == null) {
+			call = bindHandlerGenerated(klass, handler, method);
+		}
+		if (call == null) {
+			call = bindHandlerReflective(klass, handler, method);
+		}
+		return call;
+	}
+
 	// this method is purely for performance reasons and need not be implemented
-	private boolean callHandlerFast(final Class<?> klass, final Event ev, final EventHandler handler) {
+	private static HandlerCall bindHandlerFast(final Class<?> klass, final EventHandler handler) {
 		if (klass == LinkLeaveEvent.class) {
-			((LinkLeaveEventHandler)handler).handleEvent((LinkLeaveEvent)ev);
-			return true;
+			final LinkLeaveEventHandler h = (LinkLeaveEventHandler) handler;
+			return ev -> h.handleEvent((LinkLeaveEvent) ev);
 		} else if (klass == LinkEnterEvent.class) {
-			((LinkEnterEventHandler)handler).handleEvent((LinkEnterEvent)ev);
-			return true;
+			final LinkEnterEventHandler h = (LinkEnterEventHandler) handler;
+			return ev -> h.handleEvent((LinkEnterEvent) ev);
 		} else if (klass == VehicleEntersTrafficEvent.class) {
-			((VehicleEntersTrafficEventHandler)handler).handleEvent((VehicleEntersTrafficEvent)ev);
-			return true;
+			final VehicleEntersTrafficEventHandler h = (VehicleEntersTrafficEventHandler) handler;
+			return ev -> h.handleEvent((VehicleEntersTrafficEvent) ev);
 		} else if (klass == PersonArrivalEvent.class) {
-			((PersonArrivalEventHandler)handler).handleEvent((PersonArrivalEvent)ev);
-			return true;
+			final PersonArrivalEventHandler h = (PersonArrivalEventHandler) handler;
+			return ev -> h.handleEvent((PersonArrivalEvent) ev);
 		} else if (klass == PersonDepartureEvent.class) {
-			((PersonDepartureEventHandler)handler).handleEvent((PersonDepartureEvent)ev);
-			return true;
+			final PersonDepartureEventHandler h = (PersonDepartureEventHandler) handler;
+			return ev -> h.handleEvent((PersonDepartureEvent) ev);
 		} else if (klass == ActivityEndEvent.class) {
-			((ActivityEndEventHandler)handler).handleEvent((ActivityEndEvent)ev);
-			return true;
+			final ActivityEndEventHandler h = (ActivityEndEventHandler) handler;
+			return ev -> h.handleEvent((ActivityEndEvent) ev);
 		} else if (klass == ActivityStartEvent.class) {
-			((ActivityStartEventHandler)handler).handleEvent((ActivityStartEvent)ev);
-			return true;
+			final ActivityStartEventHandler h = (ActivityStartEventHandler) handler;
+			return ev -> h.handleEvent((ActivityStartEvent) ev);
 		} else if (klass == TransitDriverStartsEvent.class) {
-			((TransitDriverStartsEventHandler) handler).handleEvent((TransitDriverStartsEvent) ev);
-			return true;
+			final TransitDriverStartsEventHandler h = (TransitDriverStartsEventHandler) handler;
+			return ev -> h.handleEvent((TransitDriverStartsEvent) ev);
 		} else if (klass == PersonStuckEvent.class) {
-			((PersonStuckEventHandler)handler).handleEvent((PersonStuckEvent)ev);
-			return true;
+			final PersonStuckEventHandler h = (PersonStuckEventHandler) handler;
+			return ev -> h.handleEvent((PersonStuckEvent) ev);
 		} else if (klass == PersonMoneyEvent.class) {
-			((PersonMoneyEventHandler)handler).handleEvent((PersonMoneyEvent)ev);
-			return true;
+			final PersonMoneyEventHandler h = (PersonMoneyEventHandler) handler;
+			return ev -> h.handleEvent((PersonMoneyEvent) ev);
 		} else if (klass == AgentWaitingForPtEvent.class) {
-			((AgentWaitingForPtEventHandler)handler).handleEvent((AgentWaitingForPtEvent)ev);
-			return true;
+			final AgentWaitingForPtEventHandler h = (AgentWaitingForPtEventHandler) handler;
+			return ev -> h.handleEvent((AgentWaitingForPtEvent) ev);
 		} else if (klass == PersonEntersVehicleEvent.class) {
-			((PersonEntersVehicleEventHandler)handler).handleEvent((PersonEntersVehicleEvent)ev);
-			return true;
+			final PersonEntersVehicleEventHandler h = (PersonEntersVehicleEventHandler) handler;
+			return ev -> h.handleEvent((PersonEntersVehicleEvent) ev);
 		} else if (klass == PersonLeavesVehicleEvent.class) {
-			((PersonLeavesVehicleEventHandler)handler).handleEvent((PersonLeavesVehicleEvent)ev);
-			return true;
+			final PersonLeavesVehicleEventHandler h = (PersonLeavesVehicleEventHandler) handler;
+			return ev -> h.handleEvent((PersonLeavesVehicleEvent) ev);
 		} else if (klass == VehicleDepartsAtFacilityEvent.class) {
-			((VehicleDepartsAtFacilityEventHandler) handler).handleEvent((VehicleDepartsAtFacilityEvent) ev);
-			return true;
+			final VehicleDepartsAtFacilityEventHandler h = (VehicleDepartsAtFacilityEventHandler) handler;
+			return ev -> h.handleEvent((VehicleDepartsAtFacilityEvent) ev);
 		} else if (klass == VehicleArrivesAtFacilityEvent.class) {
-			((VehicleArrivesAtFacilityEventHandler) handler).handleEvent((VehicleArrivesAtFacilityEvent) ev);
-			return true;
+			final VehicleArrivesAtFacilityEventHandler h = (VehicleArrivesAtFacilityEventHandler) handler;
+			return ev -> h.handleEvent((VehicleArrivesAtFacilityEvent) ev);
 		} else if (klass == Event.class) {
-			((BasicEventHandler)handler).handleEvent(ev);
-			return true;
+			final BasicEventHandler h = (BasicEventHandler) handler;
+			return h::handleEvent;
 		}
-		return false;
+		return null;
+	}
+
+	private static HandlerCall bindHandlerGenerated(final Class<?> klass, final EventHandler handler, final Method method) {
+		Class<?> handlerInterface = method.getDeclaringClass();
+		if (!handlerInterface.isInstance(handler)) {
+			return null;
+		}
+		try {
+			final HandlerCall call = (HandlerCall) getCallFactory(klass, method).invoke(handler);
+			// keep wrapping exceptions of the handler the same way as the reflective call does
+			return ev -> {
+				try {
+					call.call(ev);
+				} catch (RuntimeException | Error e) {
+					throw new RuntimeException("problem invoking EventHandler " + handler.getClass().getCanonicalName() + " for event-class " + klass.getCanonicalName(), e);
+				}
+			};
+		} catch (Throwable e) {
+			log.warn("could not bind EventHandler " + handler.getClass().getName() + " for event-class " + klass.getName()
+					+ " to a direct call, falling back to reflection: " + e.getMessage());
+			return null;
+		}
+	}
+
+	/*
+	 * The lambda class is generated only once per handler method and event class; every further handler
+	 * of the same type only creates a new instance of it.
+	 */
+	private static MethodHandle getCallFactory(final Class<?> klass, final Method method) throws Throwable {
+		Map<Class<?>, MethodHandle> factories = callFactories.computeIfAbsent(method, m -> new ConcurrentHashMap<>(2));
+		MethodHandle factory = factories.get(klass);
+		if (factory == null) {
+			MethodHandles.Lookup lookup = MethodHandles.lookup();
+			MethodHandle target = lookup.unreflect(method);
+			CallSite site = LambdaMetafactory.metafactory(lookup, "call",
+					MethodType.methodType(HandlerCall.class, method.getDeclaringClass()),
+					MethodType.methodType(void.class, Event.class),
+					target,
+					MethodType.methodType(void.class, klass));
+			factory = site.getTarget();
+			MethodHandle existing = factories.putIfAbsent(klass, factory);
+			if (existing != null) {
+				factory = existing;
+			}
+		}
+		return factory;
+	}
+
+	private static HandlerCall bindHandlerReflective(final Class<?> klass, final EventHandler handler, final Method method) {
+		return ev -> {
+			try {
+				method.invoke(handler, ev);
+			} catch (IllegalArgumentException | IllegalAccessException e) {
+				throw new RuntimeException("problem invoking EventHandler " + handler.getClass().getCanonicalName() + " for event-class " + klass.getCanonicalName(), e);
+			} catch (InvocationTargetException e) {
+				throw new RuntimeException("problem invoking EventHandler " + handler.getClass().getCanonicalName() + " for event-class " + klass.getCanonicalName(), e.getCause());
+			}
+		};
 	}
 
 	public void printEventHandlers() {
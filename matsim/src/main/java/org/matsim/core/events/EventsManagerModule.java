@@ -35,7 +35,9 @@ public final class EventsManagerModule extends AbstractModule {
 		if (getConfig().parallelEventHandling().getOneThreadPerHandler() != null && getConfig().parallelEventHandling().getOneThreadPerHandler()) {
 			bindEventsManager().to(ParallelEventsManager.class).asEagerSingleton();
 		} else if (getConfig().parallelEventHandling().getNumberOfThreads() != null) {
-			if (getConfig().parallelEventHandling().getSynchronizeOnSimSteps() != null && getConfig().parallelEventHandling().getSynchronizeOnSimSteps()) {
+			if (getConfig().parallelEventHandling().getUseRingBuffer() != null && getConfig().parallelEventHandling().getUseRingBuffer()) {
+				bindEventsManager().to(RingBufferEventsManager.class).asEagerSingleton();
+			} else if (getConfig().parallelEventHandling().getSynchronizeOnSimSteps() != null && getConfig().parallelEventHandling().getSynchronizeOnSimSteps()) {
 				bindEventsManager().to(SimStepParallelEventsManagerImpl.class).asEagerSingleton();
 			} else {
 				bindEventsManager().to(ParallelEventsManagerImpl.class).asEagerSingleton();
@@ -0,0 +1,633 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * EventsReaderBinary.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.ActivityEndEvent;
+import org.matsim.api.core.v01.events.ActivityStartEvent;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.PersonArrivalEvent;
+import org.matsim.api.core.v01.events.PersonDepartureEvent;
+import org.matsim.api.core.v01.events.PersonEntersVehicleEvent;
+import org.matsim.api.core.v01.events.PersonLeavesVehicleEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.api.experimental.events.TeleportationArrivalEvent;
+import org.matsim.core.api.internal.MatsimReader;
+import org.matsim.core.events.EventsReaderXMLv1.CustomEventMapper;
+import org.matsim.core.events.algorithms.EventWriterBinary;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.core.utils.io.UncheckedIOException;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * Reads events files written by {@link EventWriterBinary}.
+ * <p></p>
+ * The most frequent event types (link enter/leave, vehicle enters/leaves traffic, activity start/end, departure,
+ * arrival, person enters/leaves vehicle and teleportation arrival) are created directly from the columns of a block,
+ * numbers are taken as they are stored and no attribute strings are built for them.  All other events are created
+ * with the same code as in {@link EventsReaderXMLv1}, including custom event mappers.  In both cases, reading a
+ * binary file results in exactly the same events as reading the xml file of the same iteration.  Strings are only
+ * created once per file, when they are added to the dictionary, so modes, activity types etc. are shared by all
+ * events that use them.  Ids are also only looked up once per dictionary entry and type.
+ */
+public final class EventsReaderBinary implements MatsimReader {
+
+	private final EventsManager events;
+	private final EventsReaderXMLv1 eventFactory;
+
+	private String[] dictionary = new String[1024];
+	private String[] internedDictionary = new String[1024];
+	private int dictionarySize = 0;
+	private final List<Layout> layouts = new ArrayList<>();
+	private final Map<Class<?>, IdCache> idCaches = new IdentityHashMap<>();
+	private long previousTime = 0;
+
+	public EventsReaderBinary(final EventsManager events) {
+		this.events = events;
+		this.eventFactory = new EventsReaderXMLv1(events);
+	}
+
+	public void addCustomEventMapper(final String eventType, final CustomEventMapper cem) {
+		this.eventFactory.addCustomEventMapper(eventType, cem);
+	}
+
+	@Override
+	public void readFile(final String filename) {
+		readURL(IOUtils.getFileUrl(filename));
+	}
+
+	@Override
+	public void readURL(final URL url) {
+		try (InputStream stream = IOUtils.getInputStream(url)) {
+			parse(stream);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	public void parse(final InputStream stream) {
+		Arrays.fill(this.dictionary, 0, this.dictionarySize, null);
+		Arrays.fill(this.internedDictionary, 0, this.dictionarySize, null);
+		this.dictionarySize = 0;
+		this.layouts.clear();
+		this.idCaches.clear();
+		this.previousTime = 0;
+		try {
+			DataInputStream in = new DataInputStream(stream);
+			byte[] magic = new byte[EventWriterBinary.MAGIC.length];
+			in.readFully(magic);
+			if (!Arrays.equals(magic, EventWriterBinary.MAGIC)) {
+				throw new IllegalArgumentException("The stream does not contain binary MATSim events.");
+			}
+			long version = readVarLong(in);
+			if (version != EventWriterBinary.VERSION) {
+				throw new IllegalArgumentException("Unsupported version of binary events: " + version);
+			}
+			BlockReader block = new BlockReader();
+			LayoutAttributes attributes = new LayoutAttributes(this);
+			long blockLength;
+			while ((blockLength = readVarLong(in)) > 0) {
+				block.read(in, (int) blockLength);
+				readBlock(block, attributes);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private void readBlock(final BlockReader b, final LayoutAttributes attributes) {
+		int size = b.readVarInt();
+
+		int newStrings = b.readVarInt();
+		for (int i = 0; i < newStrings; i++) {
+			addString(b.readString());
+		}
+		int newLayouts = b.readVarInt();
+		for (int i = 0; i < newLayouts; i++) {
+			// interned, since the event factory looks up the attributes with constant names
+			String type = getInternedString(b.readVarInt());
+			String[] keys = new String[b.readVarInt()];
+			for (int k = 0; k < keys.length; k++) {
+				keys[k] = getInternedString(b.readVarInt());
+			}
+			Layout layout = new Layout(type, keys);
+			layout.decoder = createDecoder(layout);
+			this.layouts.add(layout);
+		}
+
+		int[] eventLayouts = new int[size];
+		for (int i = 0; i < size; i++) {
+			int layout = b.readVarInt();
+			eventLayouts[i] = layout;
+			this.layouts.get(layout).count++;
+		}
+		double[] times = new double[size];
+		for (int i = 0; i < size; i++) {
+			times[i] = readTime(b);
+		}
+
+		int usedLayouts = b.readVarInt();
+		for (int l = 0; l < usedLayouts; l++) {
+			Layout layout = this.layouts.get(b.readVarInt());
+			for (int k = 0; k < layout.keys.length; k++) {
+				byte kind = b.readByte();
+				if (kind == EventWriterBinary.COLUMN_DOUBLES) {
+					double[] doubles = layout.getDoubleColumn(k);
+					for (int i = 0; i < layout.count; i++) {
+						doubles[i] = b.readDouble();
+					}
+				} else if (kind == EventWriterBinary.COLUMN_STRINGS) {
+					int[] indices = layout.getStringColumn(k);
+					for (int i = 0; i < layout.count; i++) {
+						indices[i] = b.readVarInt();
+					}
+				} else {
+					throw new IllegalArgumentException("Unknown column type " + kind);
+				}
+			}
+		}
+
+		for (int i = 0; i < size; i++) {
+			Layout layout = this.layouts.get(eventLayouts[i]);
+			int row = layout.row++;
+			if (layout.decoder != null) {
+				this.events.processEvent(layout.decoder.decode(times[i], row));
+			} else {
+				attributes.set(layout, row);
+				this.eventFactory.startEvent(times[i], layout.type, attributes);
+			}
+		}
+
+		for (Layout layout : this.layouts) {
+			layout.count = 0;
+			layout.row = 0;
+		}
+	}
+
+	private void addString(final String s) {
+		if (this.dictionarySize == this.dictionary.length) {
+			this.dictionary = Arrays.copyOf(this.dictionary, this.dictionarySize * 2);
+			this.internedDictionary = Arrays.copyOf(this.internedDictionary, this.dictionarySize * 2);
+		}
+		this.dictionary[this.dictionarySize++] = s;
+	}
+
+	private String getInternedString(final int index) {
+		String s = this.internedDictionary[index];
+		if (s == null) {
+			s = this.dictionary[index].intern();
+			this.internedDictionary[index] = s;
+		}
+		return s;
+	}
+
+	/**
+	 * Creates the events of one layout directly from its columns.  Returns <code>null</code> for event types that
+	 * are not decoded directly, and for layouts that lack attributes required by the event, such that they
+	 * are created (or fail) exactly as when reading them from xml.
+	 */
+	private EventDecoder createDecoder(final Layout l) {
+		switch (l.type) {
+		case LinkLeaveEvent.EVENT_TYPE: {
+			final int vehicle = l.getIndex(LinkLeaveEvent.ATTRIBUTE_VEHICLE);
+			final int link = l.getIndex(LinkLeaveEvent.ATTRIBUTE_LINK);
+			if (vehicle < 0 || link < 0) return null;
+			return (time, row) -> new LinkLeaveEvent(time, getId(l, vehicle, row, Vehicle.class), getId(l, link, row, Link.class));
+		}
+		case LinkEnterEvent.EVENT_TYPE: {
+			final int vehicle = l.getIndex(LinkEnterEvent.ATTRIBUTE_VEHICLE);
+			final int link = l.getIndex(LinkEnterEvent.ATTRIBUTE_LINK);
+			if (vehicle < 0 || link < 0) return null;
+			return (time, row) -> new LinkEnterEvent(time, getId(l, vehicle, row, Vehicle.class), getId(l, link, row, Link.class));
+		}
+		case VehicleEntersTrafficEvent.EVENT_TYPE: {
+			final int driver = l.getIndex(VehicleEntersTrafficEvent.ATTRIBUTE_DRIVER);
+			final int link = l.getIndex(VehicleEntersTrafficEvent.ATTRIBUTE_LINK);
+			final int vehicle = l.getIndex(VehicleEntersTrafficEvent.ATTRIBUTE_VEHICLE);
+			final int mode = l.getIndex(VehicleEntersTrafficEvent.ATTRIBUTE_NETWORKMODE);
+			final int position = l.getIndex(VehicleEntersTrafficEvent.ATTRIBUTE_POSITION);
+			if (driver < 0 || link < 0 || vehicle < 0 || position < 0) return null;
+			return (time, row) -> new VehicleEntersTrafficEvent(time, getId(l, driver, row, Person.class), getId(l, link, row, Link.class),
+					getId(l, vehicle, row, Vehicle.class), getString(l, mode, row), getDouble(l, position, row));
+		}
+		case VehicleLeavesTrafficEvent.EVENT_TYPE: {
+			final int driver = l.getIndex(VehicleLeavesTrafficEvent.ATTRIBUTE_DRIVER);
+			final int link = l.getIndex(VehicleLeavesTrafficEvent.ATTRIBUTE_LINK);
+			final int vehicle = l.getIndex(VehicleLeavesTrafficEvent.ATTRIBUTE_VEHICLE);
+			final int mode = l.getIndex(VehicleLeavesTrafficEvent.ATTRIBUTE_NETWORKMODE);
+			final int position = l.getIndex(VehicleLeavesTrafficEvent.ATTRIBUTE_POSITION);
+			if (driver < 0 || link < 0 || position < 0) return null;
+			return (time, row) -> new VehicleLeavesTrafficEvent(time, getId(l, driver, row, Person.class), getId(l, link, row, Link.class),
+					getOptionalId(l, vehicle, row, Vehicle.class), getString(l, mode, row), getDouble(l, position, row));
+		}
+		case ActivityEndEvent.EVENT_TYPE: {
+			final int person = l.getIndex(ActivityEndEvent.ATTRIBUTE_PERSON);
+			final int link = l.getIndex(ActivityEndEvent.ATTRIBUTE_LINK);
+			final int facility = l.getIndex(ActivityEndEvent.ATTRIBUTE_FACILITY);
+			final int actType = l.getIndex(ActivityEndEvent.ATTRIBUTE_ACTTYPE);
+			if (person < 0 || link < 0) return null;
+			return (time, row) -> new ActivityEndEvent(time, getId(l, person, row, Person.class), getId(l, link, row, Link.class),
+					getOptionalId(l, facility, row, ActivityFacility.class), getString(l, actType, row));
+		}
+		case ActivityStartEvent.EVENT_TYPE: {
+			final int person = l.getIndex(ActivityStartEvent.ATTRIBUTE_PERSON);
+			final int link = l.getIndex(ActivityStartEvent.ATTRIBUTE_LINK);
+			final int facility = l.getIndex(ActivityStartEvent.ATTRIBUTE_FACILITY);
+			final int actType = l.getIndex(ActivityStartEvent.ATTRIBUTE_ACTTYPE);
+			if (person < 0 || link < 0) return null;
+			return (time, row) -> new ActivityStartEvent(time, getId(l, person, row, Person.class), getId(l, link, row, Link.class),
+					getOptionalId(l, facility, row, ActivityFacility.class), getString(l, actType, row));
+		}
+		case PersonArrivalEvent.EVENT_TYPE: {
+			final int person = l.getIndex(PersonArrivalEvent.ATTRIBUTE_PERSON);
+			final int link = l.getIndex(PersonArrivalEvent.ATTRIBUTE_LINK);
+			final int mode = l.getIndex(PersonArrivalEvent.ATTRIBUTE_LEGMODE);
+			if (person < 0 || link < 0) return null;
+			return (time, row) -> new PersonArrivalEvent(time, getId(l, person, row, Person.class), getId(l, link, row, Link.class),
+					getInternedString(l, mode, row));
+		}
+		case PersonDepartureEvent.EVENT_TYPE: {
+			final int person = l.getIndex(PersonDepartureEvent.ATTRIBUTE_PERSON);
+			final int link = l.getIndex(PersonDepartureEvent.ATTRIBUTE_LINK);
+			final int mode = l.getIndex(PersonDepartureEvent.ATTRIBUTE_LEGMODE);
+			if (person < 0 || link < 0) return null;
+			return (time, row) -> new PersonDepartureEvent(time, getId(l, person, row, Person.class), getId(l, link, row, Link.class),
+					getInternedString(l, mode, row));
+		}
+		case PersonEntersVehicleEvent.EVENT_TYPE: {
+			final int person = l.getIndex(PersonEntersVehicleEvent.ATTRIBUTE_PERSON);
+			final int vehicle = l.getIndex(PersonEntersVehicleEvent.ATTRIBUTE_VEHICLE);
+			if (person < 0 || vehicle < 0) return null;
+			return (time, row) -> new PersonEntersVehicleEvent(time, getId(l, person, row, Person.class), getId(l, vehicle, row, Vehicle.class));
+		}
+		case PersonLeavesVehicleEvent.EVENT_TYPE: {
+			final int person = l.getIndex(PersonLeavesVehicleEvent.ATTRIBUTE_PERSON);
+			final int vehicle = l.getIndex(PersonLeavesVehicleEvent.ATTRIBUTE_VEHICLE);
+			if (person < 0 || vehicle < 0) return null;
+			return (time, row) -> new PersonLeavesVehicleEvent(time, getId(l, person, row, Person.class), getId(l, vehicle, row, Vehicle.class));
+		}
+		case TeleportationArrivalEvent.EVENT_TYPE: {
+			final int person = l.getIndex(TeleportationArrivalEvent.ATTRIBUTE_PERSON);
+			final int distance = l.getIndex(TeleportationArrivalEvent.ATTRIBUTE_DISTANCE);
+			if (person < 0 || distance < 0) return null;
+			return (time, row) -> new TeleportationArrivalEvent(time, getId(l, person, row, Person.class), getDouble(l, distance, row));
+		}
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * The value of a string column, or the printed number of a numeric column.
+	 */
+	private String getString(final Layout layout, final int column, final int row) {
+		if (column < 0) {
+			return null;
+		}
+		int[] indices = layout.indices[column];
+		if (indices == null) {
+			return Double.toString(layout.doubles[column][row]);
+		}
+		int index = indices[row];
+		return index == 0 ? null : this.dictionary[index - 1];
+	}
+
+	private String getInternedString(final Layout layout, final int column, final int row) {
+		if (column < 0) {
+			return null;
+		}
+		int[] indices = layout.indices[column];
+		if (indices == null) {
+			return Double.toString(layout.doubles[column][row]).intern();
+		}
+		int index = indices[row];
+		return index == 0 ? null : getInternedString(index - 1);
+	}
+
+	private double getDouble(final Layout layout, final int column, final int row) {
+		int[] indices = layout.indices[column];
+		if (indices == null) {
+			return layout.doubles[column][row];
+		}
+		return Double.parseDouble(getString(layout, column, row));
+	}
+
+	private <T> Id<T> getOptionalId(final Layout layout, final int column, final int row, final Class<T> type) {
+		if (column < 0) {
+			return null;
+		}
+		int[] indices = layout.indices[column];
+		if (indices != null && indices[row] == 0) {
+			return null;
+		}
+		return getId(layout, column, row, type);
+	}
+
+	private <T> Id<T> getId(final Layout layout, final int column, final int row, final Class<T> type) {
+		int[] indices = layout.indices[column];
+		if (indices == null || indices[row] == 0) {
+			// numeric column or null value, let Id.create() decide what to do
+			return Id.create(getString(layout, column, row), type);
+		}
+		IdCache cache = layout.idCaches[column];
+		if (cache == null || cache.type != type) {
+			cache = this.idCaches.computeIfAbsent(type, IdCache::new);
+			layout.idCaches[column] = cache;
+		}
+		int index = indices[row];
+		return cache.get(index, this.dictionary[index - 1]);
+	}
+
+	private double readTime(final BlockReader b) {
+		long value = b.readVarLong();
+		if ((value & 1) != 0) {
+			return b.readDouble();
+		}
+		long zigzag = value >>> 1;
+		long delta = (zigzag >>> 1) ^ -(zigzag & 1);
+		this.previousTime += delta;
+		return this.previousTime;
+	}
+
+	private static long readVarLong(final DataInputStream in) throws IOException {
+		long value = 0;
+		int shift = 0;
+		while (true) {
+			int b = in.read();
+			if (b < 0) {
+				throw new EOFException("Unexpected end of binary events.");
+			}
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+			shift += 7;
+		}
+	}
+
+	@FunctionalInterface
+	private interface EventDecoder {
+		Event decode(double time, int row);
+	}
+
+	private static final class Layout {
+		final String type;
+		final String[] keys;
+		/* the values of numeric columns in the current block, null for string columns */
+		final double[][] doubles;
+		/* the dictionary references (plus one) of string columns in the current block, null for numeric columns */
+		final int[][] indices;
+		final IdCache[] idCaches;
+		EventDecoder decoder = null;
+		int count = 0;
+		int row = 0;
+
+		Layout(String type, String[] keys) {
+			this.type = type;
+			this.keys = keys;
+			this.doubles = new double[keys.length][];
+			this.indices = new int[keys.length][];
+			this.idCaches = new IdCache[keys.length];
+		}
+
+		int getIndex(String key) {
+			for (int i = 0; i < this.keys.length; i++) {
+				if (this.keys[i].equals(key)) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		/* the arrays of a column are kept from block to block, the type of a column may change between blocks */
+		double[] getDoubleColumn(int column) {
+			double[] values = this.doubles[column];
+			if (values == null || values.length < this.count) {
+				values = new double[Math.max(this.count, values == null ? 0 : values.length * 2)];
+				this.doubles[column] = values;
+			}
+			this.indices[column] = null;
+			return values;
+		}
+
+		int[] getStringColumn(int column) {
+			int[] values = this.indices[column];
+			if (values == null || values.length < this.count) {
+				values = new int[Math.max(this.count, values == null ? 0 : values.length * 2)];
+			}
+			this.indices[column] = values;
+			return values;
+		}
+	}
+
+	/**
+	 * The ids of one type, by dictionary reference.
+	 */
+	private static final class IdCache {
+		final Class<?> type;
+		Id<?>[] ids = new Id<?>[1024];
+
+		IdCache(Class<?> type) {
+			this.type = type;
+		}
+
+		@SuppressWarnings("unchecked")
+		<T> Id<T> get(int index, String value) {
+			if (index >= this.ids.length) {
+				this.ids = Arrays.copyOf(this.ids, Math.max(index + 1, this.ids.length * 2));
+			}
+			Id<?> id = this.ids[index];
+			if (id == null) {
+				id = Id.create(value, this.type);
+				this.ids[index] = id;
+			}
+			return (Id<T>) id;
+		}
+	}
+
+	/**
+	 * The attributes of one event, as view on the columns of the current block.
+	 */
+	private static final class LayoutAttributes implements EventsReaderXMLv1.IdResolvingAttributes {
+		private final EventsReaderBinary reader;
+		private Layout layout;
+		private int row;
+
+		LayoutAttributes(EventsReaderBinary reader) {
+			this.reader = reader;
+		}
+
+		void set(Layout layout, int row) {
+			this.layout = layout;
+			this.row = row;
+		}
+
+		@Override
+		public int getLength() {
+			return this.layout.keys.length;
+		}
+
+		@Override
+		public String getURI(int index) {
+			return "";
+		}
+
+		@Override
+		public String getLocalName(int index) {
+			return index < 0 || index >= this.layout.keys.length ? null : this.layout.keys[index];
+		}
+
+		@Override
+		public String getQName(int index) {
+			return getLocalName(index);
+		}
+
+		@Override
+		public String getType(int index) {
+			return index < 0 || index >= this.layout.keys.length ? null : "CDATA";
+		}
+
+		@Override
+		public String getValue(int index) {
+			return index < 0 || index >= this.layout.keys.length ? null : this.reader.getString(this.layout, index, this.row);
+		}
+
+		@Override
+		public <T> Id<T> getId(String qName, Class<T> type) {
+			int index = getIndex(qName);
+			if (index < 0) {
+				return Id.create((String) null, type);
+			}
+			return this.reader.getId(this.layout, index, this.row, type);
+		}
+
+		@Override
+		public int getIndex(String uri, String localName) {
+			return getIndex(localName);
+		}
+
+		@Override
+		public int getIndex(String qName) {
+			String[] keys = this.layout.keys;
+			for (int i = 0; i < keys.length; i++) {
+				if (keys[i] == qName) {
+					return i;
+				}
+			}
+			for (int i = 0; i < keys.length; i++) {
+				if (keys[i].equals(qName)) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		@Override
+		public String getType(String uri, String localName) {
+			return getType(getIndex(localName));
+		}
+
+		@Override
+		public String getType(String qName) {
+			return getType(getIndex(qName));
+		}
+
+		@Override
+		public String getValue(String uri, String localName) {
+			return getValue(getIndex(localName));
+		}
+
+		@Override
+		public String getValue(String qName) {
+			return getValue(getIndex(qName));
+		}
+	}
+
+	private static final class BlockReader {
+		private byte[] bytes = new byte[1 << 16];
+		private int position = 0;
+
+		void read(DataInputStream in, int length) throws IOException {
+			if (this.bytes.length < length) {
+				this.bytes = new byte[Math.max(length, this.bytes.length * 2)];
+			}
+			in.readFully(this.bytes, 0, length);
+			this.position = 0;
+		}
+
+		byte readByte() {
+			return this.bytes[this.position++];
+		}
+
+		int readVarInt() {
+			return (int) readVarLong();
+		}
+
+		long readVarLong() {
+			byte[] bytes = this.bytes;
+			int pos = this.position;
+			long value = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = bytes[pos++];
+				value |= (long) (b & 0x7F) << shift;
+				shift += 7;
+			} while (b < 0);
+			this.position = pos;
+			return value;
+		}
+
+		double readDouble() {
+			long bits = 0;
+			for (int i = 0; i < 8; i++) {
+				bits |= (this.bytes[this.position++] & 0xFFL) << (8 * i);
+			}
+			return Double.longBitsToDouble(bits);
+		}
+
+		String readString() {
+			int length = readVarInt();
+			String s = new String(this.bytes, this.position, length, StandardCharsets.UTF_8);
+			this.position += length;
+			return s;
+		}
+	}
+}
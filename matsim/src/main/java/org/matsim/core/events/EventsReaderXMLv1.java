@@ -101,29 +101,49 @@ public final class EventsReaderXMLv1 extends MatsimXmlEventsParser {
 	}
 
 	private void startEvent(final Attributes atts) {
-		double time = Double.parseDouble(atts.getValue("time"));
-		String eventType = atts.getValue("type");
+		startEvent(Double.parseDouble(atts.getValue("time")), atts.getValue("type"), atts);
+	}
+
+	/**
+	 * Attributes that can resolve their values to ids more efficiently than by looking them up in the id cache.
+	 */
+	/*package*/ interface IdResolvingAttributes extends Attributes {
+		<T> Id<T> getId(String qName, Class<T> type);
+	}
+
+	private static <T> Id<T> createId(final Attributes atts, final String qName, final Class<T> type) {
+		if (atts instanceof IdResolvingAttributes) {
+			return ((IdResolvingAttributes) atts).getId(qName, type);
+		}
+		return Id.create(atts.getValue(qName), type);
+	}
+
+	/**
+	 * Creates the event from its attributes and passes it to the events manager.  Also used by
+	 * {@link EventsReaderBinary}, such that both file formats result in exactly the same events.
+	 */
+	/*package*/ void startEvent(final double time, final String eventType, final Attributes atts) {
 
 		// === material related to wait2link below here ===
 		if (LinkLeaveEvent.EVENT_TYPE.equals(eventType)) {
 			this.events.processEvent(new LinkLeaveEvent(time, 
-					Id.create(atts.getValue(LinkLeaveEvent.ATTRIBUTE_VEHICLE), Vehicle.class), 
-					Id.create(atts.getValue(LinkLeaveEvent.ATTRIBUTE_LINK), Link.class)
+					createId(atts, LinkLeaveEvent.ATTRIBUTE_VEHICLE, Vehicle.class), 
+					createId(atts, LinkLeaveEvent.ATTRIBUTE_LINK, Link.class)
 					// had driver id in previous version
 					));
 		} else if (LinkEnterEvent.EVENT_TYPE.equals(eventType)) {
 			this.events.processEvent(new LinkEnterEvent(time, 
-					Id.create(atts.getValue(LinkEnterEvent.ATTRIBUTE_VEHICLE), Vehicle.class), 
-					Id.create(atts.getValue(LinkEnterEvent.ATTRIBUTE_LINK), Link.class)
+					createId(atts, LinkEnterEvent.ATTRIBUTE_VEHICLE, Vehicle.class), 
+					createId(atts, LinkEnterEvent.ATTRIBUTE_LINK, Link.class)
 					// had driver id in previous version
 					));
 		} else if (VehicleEntersTrafficEvent.EVENT_TYPE.equals(eventType) ) {
 			// (this is the new version, marked by the new events name)
 
 			this.events.processEvent(new VehicleEntersTrafficEvent(time, 
-					Id.create(atts.getValue(VehicleEntersTrafficEvent.ATTRIBUTE_DRIVER), Person.class), 
-					Id.create(atts.getValue(VehicleEntersTrafficEvent.ATTRIBUTE_LINK), Link.class), 
-					Id.create(atts.getValue(VehicleEntersTrafficEvent.ATTRIBUTE_VEHICLE), Vehicle.class),
+					createId(atts, VehicleEntersTrafficEvent.ATTRIBUTE_DRIVER, Person.class), 
+					createId(atts, VehicleEntersTrafficEvent.ATTRIBUTE_LINK, Link.class), 
+					createId(atts, VehicleEntersTrafficEvent.ATTRIBUTE_VEHICLE, Vehicle.class),
 					atts.getValue(VehicleEntersTrafficEvent.ATTRIBUTE_NETWORKMODE), 
 					Double.parseDouble( atts.getValue( VehicleEntersTrafficEvent.ATTRIBUTE_POSITION) )
 					));
@@ -133,10 +153,10 @@ public final class EventsReaderXMLv1 extends MatsimXmlEventsParser {
 			// retrofit vehicle Id:
 			Id<Vehicle> vehicleId ;
 			if ( atts.getValue(VehicleEntersTrafficEvent.ATTRIBUTE_VEHICLE) != null ) {
-				vehicleId = Id.create( atts.getValue(VehicleEntersTrafficEvent.ATTRIBUTE_VEHICLE), Vehicle.class ) ;
+				vehicleId = createId(atts, VehicleEntersTrafficEvent.ATTRIBUTE_VEHICLE, Vehicle.class) ;
 			} else {
 				// for the old events type, we set the vehicle id to the driver id if the vehicle id does not exist:
-				vehicleId = Id.create(atts.getValue(VehicleEntersTrafficEvent.ATTRIBUTE_DRIVER), Vehicle.class);
+				vehicleId = createId(atts, VehicleEntersTrafficEvent.ATTRIBUTE_DRIVER, Vehicle.class);
 			}
 			// retrofit position:
 			double position ;
@@ -146,17 +166,17 @@ public final class EventsReaderXMLv1 extends MatsimXmlEventsParser {
 				position = 1.0 ;
 			}
 			this.events.processEvent(new VehicleEntersTrafficEvent(time, 
-					Id.create(atts.getValue(VehicleEntersTrafficEvent.ATTRIBUTE_DRIVER), Person.class), 
-					Id.create(atts.getValue(VehicleEntersTrafficEvent.ATTRIBUTE_LINK), Link.class), 
+					createId(atts, VehicleEntersTrafficEvent.ATTRIBUTE_DRIVER, Person.class), 
+					createId(atts, VehicleEntersTrafficEvent.ATTRIBUTE_LINK, Link.class), 
 					vehicleId,
 					atts.getValue(VehicleEntersTrafficEvent.ATTRIBUTE_NETWORKMODE), 
 					position
 					));
 		} else if (VehicleLeavesTrafficEvent.EVENT_TYPE.equals(eventType)) {
 			this.events.processEvent(new VehicleLeavesTrafficEvent(time, 
-					Id.create(atts.getValue(VehicleLeavesTrafficEvent.ATTRIBUTE_DRIVER), Person.class), 
-					Id.create(atts.getValue(VehicleLeavesTrafficEvent.ATTRIBUTE_LINK), Link.class), 
-					atts.getValue(VehicleLeavesTrafficEvent.ATTRIBUTE_VEHICLE) == null ? null : Id.create(atts.getValue(VehicleLeavesTrafficEvent.ATTRIBUTE_VEHICLE), Vehicle.class), 
+					createId(atts, VehicleLeavesTrafficEvent.ATTRIBUTE_DRIVER, Person.class), 
+					createId(atts, VehicleLeavesTrafficEvent.ATTRIBUTE_LINK, Link.class), 
+					atts.getValue(VehicleLeavesTrafficEvent.ATTRIBUTE_VEHICLE) == null ? null : createId(atts, VehicleLeavesTrafficEvent.ATTRIBUTE_VEHICLE, Vehicle.class), 
 					atts.getValue(VehicleLeavesTrafficEvent.ATTRIBUTE_NETWORKMODE), 
 					Double.parseDouble( atts.getValue( VehicleLeavesTrafficEvent.ATTRIBUTE_POSITION) )
 					));
@@ -165,62 +185,59 @@ public final class EventsReaderXMLv1 extends MatsimXmlEventsParser {
 		else if (ActivityEndEvent.EVENT_TYPE.equals(eventType)) {
 			this.events.processEvent(new ActivityEndEvent(
 					time, 
-					Id.create(atts.getValue(ActivityEndEvent.ATTRIBUTE_PERSON), Person.class), 
-					Id.create(atts.getValue(ActivityEndEvent.ATTRIBUTE_LINK), Link.class), 
-					atts.getValue(ActivityEndEvent.ATTRIBUTE_FACILITY) == null ? null : Id.create(atts.getValue(ActivityEndEvent.ATTRIBUTE_FACILITY), ActivityFacility.class), 
+					createId(atts, ActivityEndEvent.ATTRIBUTE_PERSON, Person.class), 
+					createId(atts, ActivityEndEvent.ATTRIBUTE_LINK, Link.class), 
+					atts.getValue(ActivityEndEvent.ATTRIBUTE_FACILITY) == null ? null : createId(atts, ActivityEndEvent.ATTRIBUTE_FACILITY, ActivityFacility.class), 
 					atts.getValue(ActivityEndEvent.ATTRIBUTE_ACTTYPE)));
 		} else if (ActivityStartEvent.EVENT_TYPE.equals(eventType)) {
-			this.events.processEvent(new ActivityStartEvent(time, Id.create(atts.getValue(
-				  HasPersonId.ATTRIBUTE_PERSON ), Person.class ), Id.create(atts.getValue(ActivityStartEvent.ATTRIBUTE_LINK ), Link.class ), atts.getValue(ActivityStartEvent.ATTRIBUTE_FACILITY ) == null ? null : Id.create(atts.getValue(ActivityStartEvent.ATTRIBUTE_FACILITY ), ActivityFacility.class ), atts.getValue(ActivityStartEvent.ATTRIBUTE_ACTTYPE )) );
+			this.events.processEvent(new ActivityStartEvent(time, createId(atts, HasPersonId.ATTRIBUTE_PERSON, Person.class), createId(atts, ActivityStartEvent.ATTRIBUTE_LINK, Link.class), atts.getValue(ActivityStartEvent.ATTRIBUTE_FACILITY ) == null ? null : createId(atts, ActivityStartEvent.ATTRIBUTE_FACILITY, ActivityFacility.class), atts.getValue(ActivityStartEvent.ATTRIBUTE_ACTTYPE )) );
 		} else if (PersonArrivalEvent.EVENT_TYPE.equals(eventType)) {
 			String legMode = atts.getValue(PersonArrivalEvent.ATTRIBUTE_LEGMODE);
 			String mode = legMode == null ? null : legMode.intern();
-			this.events.processEvent(new PersonArrivalEvent(time, Id.create(atts.getValue(PersonArrivalEvent.ATTRIBUTE_PERSON), Person.class), Id.create(atts.getValue(PersonArrivalEvent.ATTRIBUTE_LINK), Link.class), mode));
+			this.events.processEvent(new PersonArrivalEvent(time, createId(atts, PersonArrivalEvent.ATTRIBUTE_PERSON, Person.class), createId(atts, PersonArrivalEvent.ATTRIBUTE_LINK, Link.class), mode));
 		} else if (PersonDepartureEvent.EVENT_TYPE.equals(eventType)) {
 			String legMode = atts.getValue(PersonDepartureEvent.ATTRIBUTE_LEGMODE);
 			String mode = legMode == null ? null : legMode.intern();
-			this.events.processEvent(new PersonDepartureEvent(time, Id.create(atts.getValue(PersonDepartureEvent.ATTRIBUTE_PERSON), Person.class), Id.create(atts.getValue(PersonDepartureEvent.ATTRIBUTE_LINK), Link.class), mode));
+			this.events.processEvent(new PersonDepartureEvent(time, createId(atts, PersonDepartureEvent.ATTRIBUTE_PERSON, Person.class), createId(atts, PersonDepartureEvent.ATTRIBUTE_LINK, Link.class), mode));
 		} else if (PersonStuckEvent.EVENT_TYPE.equals(eventType)) {
 			String legMode = atts.getValue(PersonStuckEvent.ATTRIBUTE_LEGMODE);
 			String mode = legMode == null ? null : legMode.intern();
 			String linkIdString = atts.getValue(PersonStuckEvent.ATTRIBUTE_LINK);
-			Id<Link> linkId = linkIdString == null ? null : Id.create(linkIdString, Link.class); // linkId is optional
-			this.events.processEvent(new PersonStuckEvent(time, Id.create(atts.getValue(PersonStuckEvent.ATTRIBUTE_PERSON), Person.class), linkId, mode));
+			Id<Link> linkId = linkIdString == null ? null : createId(atts, PersonStuckEvent.ATTRIBUTE_LINK, Link.class); // linkId is optional
+			this.events.processEvent(new PersonStuckEvent(time, createId(atts, PersonStuckEvent.ATTRIBUTE_PERSON, Person.class), linkId, mode));
 		} else if (VehicleAbortsEvent.EVENT_TYPE.equals(eventType)) {
 			String linkIdString = atts.getValue(VehicleAbortsEvent.ATTRIBUTE_LINK);
-			Id<Link> linkId = linkIdString == null ? null : Id.create(linkIdString, Link.class);
-			this.events.processEvent(new VehicleAbortsEvent(time, Id.create(atts.getValue(VehicleAbortsEvent.ATTRIBUTE_VEHICLE), Vehicle.class), linkId));
+			Id<Link> linkId = linkIdString == null ? null : createId(atts, VehicleAbortsEvent.ATTRIBUTE_LINK, Link.class);
+			this.events.processEvent(new VehicleAbortsEvent(time, createId(atts, VehicleAbortsEvent.ATTRIBUTE_VEHICLE, Vehicle.class), linkId));
 		}else if (PersonMoneyEvent.EVENT_TYPE.equals(eventType) || "agentMoney".equals(eventType)) {
-			this.events.processEvent(new PersonMoneyEvent(time, Id.create(atts.getValue(PersonMoneyEvent.ATTRIBUTE_PERSON), Person.class), Double.parseDouble(atts.getValue(PersonMoneyEvent.ATTRIBUTE_AMOUNT))));
+			this.events.processEvent(new PersonMoneyEvent(time, createId(atts, PersonMoneyEvent.ATTRIBUTE_PERSON, Person.class), Double.parseDouble(atts.getValue(PersonMoneyEvent.ATTRIBUTE_AMOUNT))));
 		} else if (PersonEntersVehicleEvent.EVENT_TYPE.equals(eventType)) {
-			String personString = atts.getValue(PersonEntersVehicleEvent.ATTRIBUTE_PERSON);
-			String vehicleString = atts.getValue(PersonEntersVehicleEvent.ATTRIBUTE_VEHICLE);
-			this.events.processEvent(new PersonEntersVehicleEvent(time, Id.create(personString, Person.class), Id.create(vehicleString, Vehicle.class)));
+			this.events.processEvent(new PersonEntersVehicleEvent(time, createId(atts, PersonEntersVehicleEvent.ATTRIBUTE_PERSON, Person.class), createId(atts, PersonEntersVehicleEvent.ATTRIBUTE_VEHICLE, Vehicle.class)));
 		} else if (PersonLeavesVehicleEvent.EVENT_TYPE.equals(eventType)) {
-			Id<Person> pId = Id.create(atts.getValue(PersonLeavesVehicleEvent.ATTRIBUTE_PERSON), Person.class);
-			Id<Vehicle> vId = Id.create(atts.getValue(PersonLeavesVehicleEvent.ATTRIBUTE_VEHICLE), Vehicle.class);
+			Id<Person> pId = createId(atts, PersonLeavesVehicleEvent.ATTRIBUTE_PERSON, Person.class);
+			Id<Vehicle> vId = createId(atts, PersonLeavesVehicleEvent.ATTRIBUTE_VEHICLE, Vehicle.class);
 			this.events.processEvent(new PersonLeavesVehicleEvent(time, pId, vId));
 		} else if (TeleportationArrivalEvent.EVENT_TYPE.equals(eventType)) {
 			this.events.processEvent(new TeleportationArrivalEvent(
 					time, 
-					Id.create(atts.getValue(TeleportationArrivalEvent.ATTRIBUTE_PERSON), Person.class), 
+					createId(atts, TeleportationArrivalEvent.ATTRIBUTE_PERSON, Person.class), 
 					Double.parseDouble(atts.getValue(TeleportationArrivalEvent.ATTRIBUTE_DISTANCE))));
 		} else if (VehicleArrivesAtFacilityEvent.EVENT_TYPE.equals(eventType)) {
 			String delay = atts.getValue(VehicleArrivesAtFacilityEvent.ATTRIBUTE_DELAY);
-			this.events.processEvent(new VehicleArrivesAtFacilityEvent(time, Id.create(atts.getValue(VehicleArrivesAtFacilityEvent.ATTRIBUTE_VEHICLE), Vehicle.class), Id.create(atts.getValue(VehicleArrivesAtFacilityEvent.ATTRIBUTE_FACILITY), TransitStopFacility.class), delay == null ? 0.0 : Double.parseDouble(delay)));
+			this.events.processEvent(new VehicleArrivesAtFacilityEvent(time, createId(atts, VehicleArrivesAtFacilityEvent.ATTRIBUTE_VEHICLE, Vehicle.class), createId(atts, VehicleArrivesAtFacilityEvent.ATTRIBUTE_FACILITY, TransitStopFacility.class), delay == null ? 0.0 : Double.parseDouble(delay)));
 		} else if (VehicleDepartsAtFacilityEvent.EVENT_TYPE.equals(eventType)) {
 			String delay = atts.getValue(VehicleDepartsAtFacilityEvent.ATTRIBUTE_DELAY);
-			this.events.processEvent(new VehicleDepartsAtFacilityEvent(time, Id.create(atts.getValue(VehicleArrivesAtFacilityEvent.ATTRIBUTE_VEHICLE), Vehicle.class), Id.create(atts.getValue(VehicleArrivesAtFacilityEvent.ATTRIBUTE_FACILITY), TransitStopFacility.class), delay == null ? 0.0 : Double.parseDouble(delay)));
+			this.events.processEvent(new VehicleDepartsAtFacilityEvent(time, createId(atts, VehicleArrivesAtFacilityEvent.ATTRIBUTE_VEHICLE, Vehicle.class), createId(atts, VehicleArrivesAtFacilityEvent.ATTRIBUTE_FACILITY, TransitStopFacility.class), delay == null ? 0.0 : Double.parseDouble(delay)));
 		} else if (TransitDriverStartsEvent.EVENT_TYPE.equals(eventType)) {
-			this.events.processEvent(new TransitDriverStartsEvent(time, Id.create(atts.getValue(TransitDriverStartsEvent.ATTRIBUTE_DRIVER_ID), Person.class), Id.create(atts.getValue(TransitDriverStartsEvent.ATTRIBUTE_VEHICLE_ID), Vehicle.class), Id.create(atts.getValue(TransitDriverStartsEvent.ATTRIBUTE_TRANSIT_LINE_ID), TransitLine.class), Id.create(atts.getValue(TransitDriverStartsEvent.ATTRIBUTE_TRANSIT_ROUTE_ID), TransitRoute.class), Id.create(atts.getValue(TransitDriverStartsEvent.ATTRIBUTE_DEPARTURE_ID), Departure.class)));
+			this.events.processEvent(new TransitDriverStartsEvent(time, createId(atts, TransitDriverStartsEvent.ATTRIBUTE_DRIVER_ID, Person.class), createId(atts, TransitDriverStartsEvent.ATTRIBUTE_VEHICLE_ID, Vehicle.class), createId(atts, TransitDriverStartsEvent.ATTRIBUTE_TRANSIT_LINE_ID, TransitLine.class), createId(atts, TransitDriverStartsEvent.ATTRIBUTE_TRANSIT_ROUTE_ID, TransitRoute.class), createId(atts, TransitDriverStartsEvent.ATTRIBUTE_DEPARTURE_ID, Departure.class)));
 		} else if (BoardingDeniedEvent.EVENT_TYPE.equals(eventType)){
-			Id<Person> personId = Id.create(atts.getValue(BoardingDeniedEvent.ATTRIBUTE_PERSON_ID), Person.class);
-			Id<Vehicle> vehicleId = Id.create(atts.getValue(BoardingDeniedEvent.ATTRIBUTE_VEHICLE_ID), Vehicle.class);
+			Id<Person> personId = createId(atts, BoardingDeniedEvent.ATTRIBUTE_PERSON_ID, Person.class);
+			Id<Vehicle> vehicleId = createId(atts, BoardingDeniedEvent.ATTRIBUTE_VEHICLE_ID, Vehicle.class);
 			this.events.processEvent(new BoardingDeniedEvent(time, personId, vehicleId));
 		} else if (AgentWaitingForPtEvent.EVENT_TYPE.equals(eventType)){
-			Id<Person> agentId = Id.create(atts.getValue(AgentWaitingForPtEvent.ATTRIBUTE_AGENT), Person.class);
-			Id<TransitStopFacility> waitStopId = Id.create(atts.getValue(AgentWaitingForPtEvent.ATTRIBUTE_WAITSTOP), TransitStopFacility.class);
-			Id<TransitStopFacility> destinationStopId = Id.create(atts.getValue(AgentWaitingForPtEvent.ATTRIBUTE_DESTINATIONSTOP), TransitStopFacility.class);
+			Id<Person> agentId = createId(atts, AgentWaitingForPtEvent.ATTRIBUTE_AGENT, Person.class);
+			Id<TransitStopFacility> waitStopId = createId(atts, AgentWaitingForPtEvent.ATTRIBUTE_WAITSTOP, TransitStopFacility.class);
+			Id<TransitStopFacility> destinationStopId = createId(atts, AgentWaitingForPtEvent.ATTRIBUTE_DESTINATIONSTOP, TransitStopFacility.class);
 			this.events.processEvent(new AgentWaitingForPtEvent(time, agentId, waitStopId, destinationStopId));
 		} else {
 			GenericEvent event = new GenericEvent(eventType, time);
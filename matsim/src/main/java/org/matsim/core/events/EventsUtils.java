@@ -41,7 +41,7 @@ public class EventsUtils {
     }
 
     /**
-     * The SimStepParallelEventsManagerImpl can handle events from multiple threads.
+     * The SimStepParallelEventsManagerImpl and the RingBufferEventsManager can handle events from multiple threads.
      * The (Parallel)EventsMangerImpl cannot, therefore it has to be wrapped into a
      * SynchronizedEventsManagerImpl.
      */
@@ -50,6 +50,8 @@ public class EventsUtils {
     		return events;
     	} else if (events instanceof ParallelEventsManager) {
     		return events;
+    	} else if (events instanceof RingBufferEventsManager) {
+    		return events;
     	}
     	else if (events instanceof SynchronizedEventsManagerImpl) {
     		return events;
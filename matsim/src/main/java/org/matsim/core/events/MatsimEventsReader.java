@@ -71,6 +71,8 @@ public final class MatsimEventsReader implements MatsimReader {
 		String lcFilename = filename.toLowerCase(Locale.ROOT);
 		if (lcFilename.endsWith(".xml") || lcFilename.endsWith(".xml.gz")) {
 			new XmlEventsReader(this.events, map ).readFile(filename );
+		} else if (isBinaryEventsFile(lcFilename)) {
+			createBinaryEventsReader().readFile(filename);
 		} else if (lcFilename.endsWith(".txt") || lcFilename.endsWith(".txt.gz")) {
 			throw new RuntimeException("text events are no longer supported. Please use MATSim 0.6.1 or earlier to read text events.");
 		} else {
@@ -84,7 +86,24 @@ public final class MatsimEventsReader implements MatsimReader {
 
 	@Override
 	public void readURL( final URL url ) {
-		new XmlEventsReader( this.events, map ).readURL( url );
+		if (isBinaryEventsFile(url.getPath().toLowerCase(Locale.ROOT))) {
+			createBinaryEventsReader().readURL(url);
+		} else {
+			new XmlEventsReader( this.events, map ).readURL( url );
+		}
+	}
+
+	private EventsReaderBinary createBinaryEventsReader() {
+		EventsReaderBinary reader = new EventsReaderBinary(this.events);
+		for (Map.Entry<String, CustomEventMapper> entry : map.entrySet()) {
+			reader.addCustomEventMapper(entry.getKey(), entry.getValue());
+		}
+		return reader;
+	}
+
+	private static boolean isBinaryEventsFile(final String lcFilename) {
+		return lcFilename.endsWith(".bin") || lcFilename.endsWith(".bin.gz") || lcFilename.endsWith(".bin.lz4")
+				|| lcFilename.endsWith(".bin.zst") || lcFilename.endsWith(".bin.bz2");
 	}
 
 	private static class XmlEventsReader extends MatsimXmlParser {
@@ -0,0 +1,431 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RingBufferEventsManager.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events;
+
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.inject.Inject;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.groups.ParallelEventHandlingConfigGroup;
+import org.matsim.core.events.handler.EventHandler;
+import org.matsim.core.gbl.Gbl;
+
+/**
+ * An EventsManager that hands the events over to the event handling threads through a single
+ * pre-allocated ring buffer, in the style of the LMAX disruptor.
+ * <p></p>
+ * Any number of threads (e.g. the threads of a multi-threaded QSim) may call {@link #processEvent(Event)}
+ * concurrently.  A producer only claims the next slot with one atomic increment and publishes the event
+ * into it, no locks are involved.  The event handlers are distributed over a number of consumer groups;
+ * each group runs in its own thread and reads all events in the order of the buffer, i.e. all groups
+ * see exactly the same sequence of events.  A consumer processes all events that are available in one
+ * batch and only then makes the slots available to the producers again.  If the buffer is full, the
+ * producers wait until the slowest consumer has caught up (back-pressure).
+ * <p></p>
+ * If <code>synchronizeOnSimSteps</code> is set, a {@link LastEventOfSimStep} is published at the end of each
+ * time step and {@link #afterSimStep(double)} only returns after all consumers have passed it.  Events
+ * that are created by event handlers while they process events are collected separately (since the
+ * handler thread must never wait for itself) and published at the end of the time step, before the
+ * consumers are awaited.
+ * <p></p>
+ * The depth of the queue (sampled at the end of each time step) and the number of times and the time
+ * producers had to wait for free slots are logged at the end of each iteration.
+ *
+ * @see SimStepParallelEventsManagerImpl
+ */
+public final class RingBufferEventsManager implements EventsManager {
+
+	private final static Logger log = Logger.getLogger(RingBufferEventsManager.class);
+
+	public static final int DEFAULT_RING_BUFFER_SIZE = 65536;
+
+	private static final int MAX_BATCH_SIZE = 1024;
+	private static final int SPIN_TRIES = 100;
+	private static final int YIELD_TRIES = 100;
+	private static final long PARK_NANOS = 50000;
+
+	private final int numberOfThreads;
+	private final boolean syncOnSimSteps;
+
+	private final Event[] ringBuffer;
+	private final int mask;
+	/*
+	 * For each slot the sequence of the event that has been published last into that slot. Since producers
+	 * may publish out of order, consumers may only read a slot once it carries the sequence they expect.
+	 */
+	private final AtomicLongArray published;
+	/*
+	 * The last sequence that has been claimed by a producer.
+	 */
+	private final AtomicLong claimed = new AtomicLong(-1);
+	/*
+	 * Minimum of the consumer sequences as seen by a producer the last time it checked. Only a cache to
+	 * avoid reading all consumer sequences for every event.
+	 */
+	private volatile long cachedMinimumSequence = -1;
+
+	private final EventsManagerImpl delegate;
+	private final EventsManagerImpl[] eventsManagers;
+	private int handlerCount = 0;
+
+	private Consumer[] consumers = new Consumer[0];
+	private volatile boolean parallelMode = false;
+
+	private final Queue<Event> eventsFromHandlers = new ConcurrentLinkedQueue<>();
+	private final AtomicReference<Throwable> hadException = new AtomicReference<>();
+
+	private final LongAdder blockedPublications = new LongAdder();
+	private final LongAdder blockedNanos = new LongAdder();
+	private long maxQueueDepth = 0;
+	private long sumQueueDepth = 0;
+	private long queueDepthSamples = 0;
+
+	@Inject
+	RingBufferEventsManager(ParallelEventHandlingConfigGroup config) {
+		this(config.getNumberOfThreads() != null ? config.getNumberOfThreads() : 1,
+				config.getSynchronizeOnSimSteps() != null ? config.getSynchronizeOnSimSteps() : true);
+	}
+
+	public RingBufferEventsManager(int numberOfThreads, boolean syncOnSimSteps) {
+		this(numberOfThreads, syncOnSimSteps, DEFAULT_RING_BUFFER_SIZE);
+	}
+
+	/**
+	 * @param ringBufferSize the number of events that can be buffered; rounded up to the next power of two.
+	 */
+	public RingBufferEventsManager(int numberOfThreads, boolean syncOnSimSteps, int ringBufferSize) {
+		if (numberOfThreads < 1) {
+			throw new IllegalArgumentException("Number of threads must be strictly positive, got " + numberOfThreads);
+		}
+		if (ringBufferSize < 1) {
+			throw new IllegalArgumentException("Ring buffer size must be strictly positive, got " + ringBufferSize);
+		}
+		this.numberOfThreads = numberOfThreads;
+		this.syncOnSimSteps = syncOnSimSteps;
+
+		int size = Integer.highestOneBit(ringBufferSize);
+		if (size < ringBufferSize) size <<= 1;
+		this.ringBuffer = new Event[size];
+		this.mask = size - 1;
+		this.published = new AtomicLongArray(size);
+
+		this.delegate = new EventsManagerImpl();
+		this.eventsManagers = new EventsManagerImpl[numberOfThreads];
+		for (int i = 0; i < numberOfThreads; i++) this.eventsManagers[i] = new EventsManagerImpl();
+
+		log.info("number of threads=" + numberOfThreads + ", ring buffer size=" + size + ", synchronizeOnSimSteps=" + syncOnSimSteps);
+	}
+
+	@Override
+	public void processEvent(final Event event) {
+		if (!this.parallelMode) {
+			this.delegate.processEvent(event);
+			return;
+		}
+		Thread thread = Thread.currentThread();
+		if (thread instanceof ConsumerThread && ((ConsumerThread) thread).owner == this) {
+			// an event handler creates an event; it must not wait for free slots since it might have to wait for itself
+			this.eventsFromHandlers.add(event);
+		} else {
+			publish(event);
+		}
+	}
+
+	@Override
+	public void addHandler(final EventHandler handler) {
+		this.delegate.addHandler(handler);
+		this.eventsManagers[this.handlerCount % this.numberOfThreads].addHandler(handler);
+		this.handlerCount++;
+	}
+
+	@Override
+	public void removeHandler(final EventHandler handler) {
+		this.delegate.removeHandler(handler);
+		for (EventsManager eventsManager : this.eventsManagers) eventsManager.removeHandler(handler);
+	}
+
+	@Override
+	public void resetHandlers(int iteration) {
+		// the handlers are the same in the delegate and in the consumer groups, thus they are only reset once
+		this.delegate.resetHandlers(iteration);
+	}
+
+	@Override
+	public void initProcessing() {
+		this.delegate.initProcessing();
+		for (EventsManager eventsManager : this.eventsManagers) eventsManager.initProcessing();
+
+		this.claimed.set(-1);
+		this.cachedMinimumSequence = -1;
+		for (int i = 0; i < this.published.length(); i++) this.published.set(i, -1);
+		Arrays.fill(this.ringBuffer, null);
+		this.eventsFromHandlers.clear();
+		this.hadException.set(null);
+
+		this.blockedPublications.reset();
+		this.blockedNanos.reset();
+		this.maxQueueDepth = 0;
+		this.sumQueueDepth = 0;
+		this.queueDepthSamples = 0;
+
+		this.consumers = new Consumer[this.numberOfThreads];
+		for (int i = 0; i < this.numberOfThreads; i++) {
+			this.consumers[i] = new Consumer(this.eventsManagers[i]);
+		}
+		for (int i = 0; i < this.numberOfThreads; i++) {
+			ConsumerThread thread = new ConsumerThread(this, this.consumers[i], "RingBufferEventsConsumer-" + i);
+			this.consumers[i].thread = thread;
+			thread.start();
+		}
+
+		this.parallelMode = true;
+	}
+
+	@Override
+	public void afterSimStep(double time) {
+		if (!this.parallelMode) return;
+
+		sampleQueueDepth();
+
+		if (!this.syncOnSimSteps) {
+			publishEventsFromHandlers();
+			return;
+		}
+
+		do {
+			/*
+			 * If an exception occurred, the crashed consumer does not advance anymore; it is not
+			 * waited for since its sequence is set to the maximum.
+			 */
+			publishEventsFromHandlers();
+			long sequence = publish(new LastEventOfSimStep(time));
+			awaitConsumers(sequence);
+		} while (!this.eventsFromHandlers.isEmpty());
+	}
+
+	/*
+	 * In some cases events are created after this method has been called. To ensure that they are
+	 * processed in real time, they are processed by the delegate in the calling thread afterwards.
+	 */
+	@Override
+	public synchronized void finishProcessing() {
+		if (this.parallelMode) {
+			publishEventsFromHandlers();
+			publish(new LastEventOfIteration(Double.POSITIVE_INFINITY));
+			for (Consumer consumer : this.consumers) {
+				try {
+					consumer.thread.join();
+				} catch (InterruptedException e) {
+					this.hadException.compareAndSet(null, e);
+				}
+			}
+			this.parallelMode = false;
+
+			// events created by handlers while the last events were processed
+			Event event;
+			while ((event = this.eventsFromHandlers.poll()) != null) {
+				this.delegate.processEvent(event);
+			}
+
+			logStatistics();
+		}
+
+		this.delegate.finishProcessing();
+		for (EventsManager eventsManager : this.eventsManagers) eventsManager.finishProcessing();
+
+		Throwable throwable = this.hadException.get();
+		if (throwable != null) {
+			throw new RuntimeException("Exception while processing events. Cannot guarantee that all events have been fully processed.", throwable);
+		}
+	}
+
+	/**
+	 * @return the maximum number of events that were waiting in the ring buffer at the end of a time step
+	 * during the current or last iteration.
+	 */
+	public long getMaxQueueDepth() {
+		return this.maxQueueDepth;
+	}
+
+	public double getAverageQueueDepth() {
+		return this.queueDepthSamples == 0 ? 0. : (double) this.sumQueueDepth / this.queueDepthSamples;
+	}
+
+	/**
+	 * @return how often a producer found the ring buffer full and had to wait for the consumers during the
+	 * current or last iteration.
+	 */
+	public long getNumberOfBlockedPublications() {
+		return this.blockedPublications.sum();
+	}
+
+	public long getBlockedTimeNanos() {
+		return this.blockedNanos.sum();
+	}
+
+	private long publish(final Event event) {
+		long sequence = this.claimed.incrementAndGet();
+		long wrapPoint = sequence - this.ringBuffer.length;
+		if (wrapPoint > this.cachedMinimumSequence) {
+			long minimum = getMinimumConsumerSequence();
+			if (wrapPoint > minimum) {
+				long start = System.nanoTime();
+				int round = 0;
+				while (wrapPoint > (minimum = getMinimumConsumerSequence())) {
+					backOff(round++);
+				}
+				this.blockedPublications.increment();
+				this.blockedNanos.add(System.nanoTime() - start);
+			}
+			this.cachedMinimumSequence = minimum;
+		}
+		int index = (int) sequence & this.mask;
+		this.ringBuffer[index] = event;
+		this.published.lazySet(index, sequence);
+		return sequence;
+	}
+
+	private void publishEventsFromHandlers() {
+		Event event;
+		while ((event = this.eventsFromHandlers.poll()) != null) {
+			publish(event);
+		}
+	}
+
+	private long getMinimumConsumerSequence() {
+		long minimum = Long.MAX_VALUE;
+		for (Consumer consumer : this.consumers) {
+			minimum = Math.min(minimum, consumer.sequence.get());
+		}
+		return minimum;
+	}
+
+	private void awaitConsumers(long sequence) {
+		int round = 0;
+		while (getMinimumConsumerSequence() < sequence) {
+			backOff(round++);
+		}
+	}
+
+	private void sampleQueueDepth() {
+		long depth = Math.max(0, this.claimed.get() - getMinimumConsumerSequence());
+		this.maxQueueDepth = Math.max(this.maxQueueDepth, depth);
+		this.sumQueueDepth += depth;
+		this.queueDepthSamples++;
+	}
+
+	private void logStatistics() {
+		log.info("processed " + (this.claimed.get() + 1) + " events through the ring buffer; queue depth at end of time steps: max="
+				+ this.maxQueueDepth + ", avg=" + getAverageQueueDepth() + "; producers blocked " + getNumberOfBlockedPublications()
+				+ " times for " + (getBlockedTimeNanos() / 1000000) + " ms in total.");
+		for (int i = 0; i < this.consumers.length; i++) {
+			Consumer consumer = this.consumers[i];
+			log.info("consumer " + i + ": " + consumer.processedBatches + " batches, " + consumer.processedEvents + " events.");
+		}
+	}
+
+	private static void backOff(int round) {
+		if (round < SPIN_TRIES) {
+			// busy spin
+		} else if (round < SPIN_TRIES + YIELD_TRIES) {
+			Thread.yield();
+		} else {
+			LockSupport.parkNanos(PARK_NANOS);
+		}
+	}
+
+	private final class Consumer implements Runnable {
+
+		private final EventsManager eventsManager;
+		/*
+		 * The last sequence this consumer has processed. Set to Long.MAX_VALUE if it has crashed, so that
+		 * neither the producers nor the end of a time step wait for it.
+		 */
+		private final AtomicLong sequence = new AtomicLong(-1);
+		private ConsumerThread thread;
+		private long processedBatches = 0;
+		private long processedEvents = 0;
+
+		Consumer(EventsManager eventsManager) {
+			this.eventsManager = eventsManager;
+		}
+
+		@Override
+		public void run() {
+			try {
+				long next = 0;
+				int round = 0;
+				while (true) {
+					long available = next - 1;
+					while (available - next < MAX_BATCH_SIZE - 1 && published.get((int) (available + 1) & mask) == available + 1) {
+						available++;
+					}
+					if (available < next) {
+						backOff(round++);
+						continue;
+					}
+					round = 0;
+					for (long s = next; s <= available; s++) {
+						Event event = ringBuffer[(int) s & mask];
+						if (event instanceof LastEventOfIteration) {
+							this.sequence.set(s);
+							return;
+						}
+						if (!(event instanceof LastEventOfSimStep)) {
+							this.eventsManager.processEvent(event);
+							this.processedEvents++;
+						}
+					}
+					this.processedBatches++;
+					this.sequence.set(available);
+					next = available + 1;
+				}
+			} catch (RuntimeException | Error e) {
+				hadException.compareAndSet(null, e);
+				this.sequence.set(Long.MAX_VALUE);
+				log.error("Thread " + Thread.currentThread().getName() + " died with exception while handling events.", e);
+			} finally {
+				Gbl.printCurrentThreadCpuTime();
+			}
+		}
+	}
+
+	private static final class ConsumerThread extends Thread {
+
+		private final RingBufferEventsManager owner;
+
+		ConsumerThread(RingBufferEventsManager owner, Runnable runnable, String name) {
+			super(runnable, name);
+			this.owner = owner;
+			setDaemon(true);
+		}
+	}
+}
@@ -0,0 +1,385 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * EventWriterBinary.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events.algorithms;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.core.events.EventsReaderBinary;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.core.utils.io.UncheckedIOException;
+
+/**
+ * Writes events into a compact binary, column oriented file, which can be read much faster than the
+ * xml events file.  Use {@link EventsReaderBinary} (or simply the MatsimEventsReader with a file name
+ * ending in <code>.bin</code>, optionally followed by a compression extension) to read it.
+ * <p></p>
+ * The file starts with {@link #MAGIC} and the {@link #VERSION}, followed by blocks of up to {@link #BLOCK_SIZE}
+ * events, each prefixed with its length in bytes.  An empty block marks the end of the file.  Each block contains:
+ * <ol>
+ * <li>the number of events in the block</li>
+ * <li>the strings that are added to the string dictionary in this block.  Every string (ids, modes, activity types
+ * etc., but also the event types and attribute names) is written only once per file and then referenced by its
+ * index in the dictionary.</li>
+ * <li>the event layouts that are added in this block.  A layout is an event type together with the names of
+ * its attributes; events of the same type but with different attributes use different layouts.</li>
+ * <li>one column with the layout of every event, which defines the order of the events</li>
+ * <li>one column with the time of every event, encoded as difference to the previous event</li>
+ * <li>for every layout used in the block, one column per attribute, containing either dictionary references or,
+ * if all values of the column are numbers that can be restored exactly, the numbers themselves.</li>
+ * </ol>
+ * All integers are written as variable length quantities (7 bits per byte, least significant first).
+ */
+public final class EventWriterBinary implements EventWriter, BasicEventHandler {
+
+	public static final byte[] MAGIC = {'M', 'A', 'T', 'S', 'i', 'm', 'E', 'v'};
+	public static final int VERSION = 1;
+	public static final int BLOCK_SIZE = 32768;
+
+	public static final byte COLUMN_STRINGS = 0;
+	public static final byte COLUMN_DOUBLES = 1;
+
+	private static final String ATTRIBUTE_TIME = "time";
+	private static final String ATTRIBUTE_TYPE = "type";
+
+	private final OutputStream out;
+
+	private final Map<String, Integer> dictionary = new HashMap<>();
+	private final List<String> newStrings = new ArrayList<>();
+	private final Map<String, List<Layout>> layoutsByType = new HashMap<>();
+	private final List<Layout> layouts = new ArrayList<>();
+	private final List<Layout> newLayouts = new ArrayList<>();
+
+	private int[] eventLayouts = new int[BLOCK_SIZE];
+	private double[] eventTimes = new double[BLOCK_SIZE];
+	private int size = 0;
+	private long previousTime = 0;
+
+	private final BlockBuffer block = new BlockBuffer();
+	private final BlockBuffer columns = new BlockBuffer();
+	private final BlockBuffer prefix = new BlockBuffer();
+
+	public EventWriterBinary(final String outfilename) {
+		this(IOUtils.getOutputStream(IOUtils.getFileUrl(outfilename), false));
+	}
+
+	public EventWriterBinary(final OutputStream stream) {
+		this.out = stream;
+		try {
+			this.out.write(MAGIC);
+			this.prefix.writeVarLong(VERSION);
+			this.prefix.writeTo(this.out);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public void handleEvent(final Event event) {
+		Map<String, String> attributes = event.getAttributes();
+		Layout layout = getLayout(event.getEventType(), attributes);
+		int column = 0;
+		for (Map.Entry<String, String> e : attributes.entrySet()) {
+			String key = e.getKey();
+			if (ATTRIBUTE_TIME.equals(key) || ATTRIBUTE_TYPE.equals(key)) {
+				continue;
+			}
+			layout.columns[column++].add(e.getValue());
+		}
+		layout.count++;
+		this.eventLayouts[this.size] = layout.index;
+		this.eventTimes[this.size] = event.getTime();
+		this.size++;
+		if (this.size == BLOCK_SIZE) {
+			writeBlock();
+		}
+	}
+
+	@Override
+	public void closeFile() {
+		try {
+			if (this.size > 0) {
+				writeBlock();
+			}
+			// an empty block marks the end of the file
+			this.prefix.writeVarLong(0);
+			this.prefix.writeTo(this.out);
+			this.out.close();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public void reset(final int iteration) {
+	}
+
+	private Layout getLayout(final String type, final Map<String, String> attributes) {
+		List<Layout> candidates = this.layoutsByType.computeIfAbsent(type, t -> new ArrayList<>(2));
+		for (Layout candidate : candidates) {
+			if (candidate.matches(attributes)) {
+				return candidate;
+			}
+		}
+		List<String> keys = new ArrayList<>(attributes.size());
+		for (String key : attributes.keySet()) {
+			if (!ATTRIBUTE_TIME.equals(key) && !ATTRIBUTE_TYPE.equals(key)) {
+				keys.add(key);
+			}
+		}
+		Layout layout = new Layout(this.layouts.size(), type, keys.toArray(new String[keys.size()]));
+		candidates.add(layout);
+		this.layouts.add(layout);
+		this.newLayouts.add(layout);
+		return layout;
+	}
+
+	private int getStringIndex(final String s) {
+		Integer index = this.dictionary.get(s);
+		if (index == null) {
+			index = this.dictionary.size();
+			this.dictionary.put(s, index);
+			this.newStrings.add(s);
+		}
+		return index;
+	}
+
+	private void writeBlock() {
+		/* The columns are encoded first, since this collects all strings that have to be added to the
+		 * dictionary. They are written to the file after the new dictionary entries, though. */
+		BlockBuffer columns = this.columns;
+
+		int[] typeIndices = new int[this.newLayouts.size()];
+		int[][] keyIndices = new int[this.newLayouts.size()][];
+		for (int i = 0; i < this.newLayouts.size(); i++) {
+			Layout layout = this.newLayouts.get(i);
+			typeIndices[i] = getStringIndex(layout.type);
+			keyIndices[i] = new int[layout.keys.length];
+			for (int k = 0; k < layout.keys.length; k++) {
+				keyIndices[i][k] = getStringIndex(layout.keys[k]);
+			}
+		}
+
+		for (int i = 0; i < this.size; i++) {
+			columns.writeVarLong(this.eventLayouts[i]);
+		}
+		for (int i = 0; i < this.size; i++) {
+			writeTime(columns, this.eventTimes[i]);
+		}
+		int usedLayouts = 0;
+		for (Layout layout : this.layouts) {
+			if (layout.count > 0) usedLayouts++;
+		}
+		columns.writeVarLong(usedLayouts);
+		for (Layout layout : this.layouts) {
+			if (layout.count == 0) {
+				continue;
+			}
+			columns.writeVarLong(layout.index);
+			for (List<String> values : layout.columns) {
+				if (isDoubleColumn(values)) {
+					columns.writeByte(COLUMN_DOUBLES);
+					for (String value : values) {
+						columns.writeDouble(Double.parseDouble(value));
+					}
+				} else {
+					columns.writeByte(COLUMN_STRINGS);
+					for (String value : values) {
+						// 0 is reserved for null
+						columns.writeVarLong(value == null ? 0 : getStringIndex(value) + 1);
+					}
+				}
+				values.clear();
+			}
+			layout.count = 0;
+		}
+
+		BlockBuffer b = this.block;
+		b.writeVarLong(this.size);
+		b.writeVarLong(this.newStrings.size());
+		for (String s : this.newStrings) {
+			b.writeString(s);
+		}
+		b.writeVarLong(this.newLayouts.size());
+		for (int i = 0; i < this.newLayouts.size(); i++) {
+			b.writeVarLong(typeIndices[i]);
+			b.writeVarLong(keyIndices[i].length);
+			for (int keyIndex : keyIndices[i]) {
+				b.writeVarLong(keyIndex);
+			}
+		}
+		b.append(columns);
+		columns.reset();
+
+		try {
+			this.prefix.writeVarLong(b.size());
+			this.prefix.writeTo(this.out);
+			b.writeTo(this.out);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		this.newStrings.clear();
+		this.newLayouts.clear();
+		this.size = 0;
+	}
+
+	/*
+	 * Times are mostly whole seconds, thus the difference to the previous time is written as (zig-zag encoded)
+	 * integer, shifted by one bit. If the lowest bit is set, the time is not a whole number and follows as double.
+	 */
+	private void writeTime(final BlockBuffer b, final double time) {
+		long t = (long) time;
+		if (t == time && Math.abs(t) < (1L << 52) && (t != 0 || Double.doubleToRawLongBits(time) == 0)) {
+			long delta = t - this.previousTime;
+			b.writeVarLong(((delta << 1) ^ (delta >> 63)) << 1);
+			this.previousTime = t;
+		} else {
+			b.writeVarLong(1);
+			b.writeDouble(time);
+		}
+	}
+
+	/*
+	 * A column is stored as numbers only if all values are printed exactly like Java prints the parsed number,
+	 * otherwise the file could not be read back to exactly the same attribute values.
+	 */
+	private static boolean isDoubleColumn(final List<String> values) {
+		for (String value : values) {
+			if (value == null || value.isEmpty()) {
+				return false;
+			}
+			char c = value.charAt(value.length() - 1);
+			if (!(c >= '0' && c <= '9') && c != 'y' && c != 'N') { // Infinity, NaN
+				return false;
+			}
+			try {
+				if (!Double.toString(Double.parseDouble(value)).equals(value)) {
+					return false;
+				}
+			} catch (NumberFormatException e) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static final class Layout {
+		final int index;
+		final String type;
+		final String[] keys;
+		final List<String>[] columns;
+		int count = 0;
+
+		@SuppressWarnings("unchecked")
+		Layout(int index, String type, String[] keys) {
+			this.index = index;
+			this.type = type;
+			this.keys = keys;
+			this.columns = new List[keys.length];
+			for (int i = 0; i < keys.length; i++) {
+				this.columns[i] = new ArrayList<>();
+			}
+		}
+
+		boolean matches(Map<String, String> attributes) {
+			int k = 0;
+			for (String key : attributes.keySet()) {
+				if (ATTRIBUTE_TIME.equals(key) || ATTRIBUTE_TYPE.equals(key)) {
+					continue;
+				}
+				if (k == this.keys.length || !this.keys[k].equals(key)) {
+					return false;
+				}
+				k++;
+			}
+			return k == this.keys.length;
+		}
+	}
+
+	private static final class BlockBuffer {
+		private byte[] bytes = new byte[1 << 16];
+		private int size = 0;
+
+		void reset() {
+			this.size = 0;
+		}
+
+		int size() {
+			return this.size;
+		}
+
+		private void ensureCapacity(int additional) {
+			if (this.size + additional > this.bytes.length) {
+				this.bytes = Arrays.copyOf(this.bytes, Math.max(this.bytes.length * 2, this.size + additional));
+			}
+		}
+
+		void writeByte(int b) {
+			ensureCapacity(1);
+			this.bytes[this.size++] = (byte) b;
+		}
+
+		void writeVarLong(long value) {
+			ensureCapacity(10);
+			while ((value & ~0x7FL) != 0) {
+				this.bytes[this.size++] = (byte) ((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			this.bytes[this.size++] = (byte) value;
+		}
+
+		void writeDouble(double value) {
+			ensureCapacity(8);
+			long bits = Double.doubleToRawLongBits(value);
+			for (int i = 0; i < 8; i++) {
+				this.bytes[this.size++] = (byte) (bits >>> (8 * i));
+			}
+		}
+
+		void writeString(String s) {
+			byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+			writeVarLong(utf8.length);
+			ensureCapacity(utf8.length);
+			System.arraycopy(utf8, 0, this.bytes, this.size, utf8.length);
+			this.size += utf8.length;
+		}
+
+		void append(BlockBuffer other) {
+			ensureCapacity(other.size);
+			System.arraycopy(other.bytes, 0, this.bytes, this.size, other.size);
+			this.size += other.size;
+		}
+
+		void writeTo(OutputStream out) throws IOException {
+			out.write(this.bytes, 0, this.size);
+			this.size = 0;
+		}
+	}
+}
@@ -37,6 +37,8 @@ public abstract class EventMessage extends Message {
 	public void resetMessage(Scheduler scheduler, Vehicle vehicle) {
 		this.scheduler = scheduler;
 		this.vehicle = vehicle;
+		// the message may have been unscheduled before it was disposed
+		reviveMessage();
 	}
 
 }
@@ -0,0 +1,160 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * HeapMessageQueue.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.jdeqsim;
+
+import java.util.Arrays;
+
+/**
+ * A message queue for large scenarios.
+ * <p></p>
+ * The messages are kept in a 4-ary heap whose keys (arrival time, priority and a sequence number) are stored in
+ * primitive arrays next to the messages, so comparing two entries neither calls {@link Message#compareTo(Message)}
+ * nor touches the messages themselves. The heap is also flatter than the binary heap of the
+ * {@link java.util.PriorityQueue} used by {@link MessageQueue}.
+ * <p></p>
+ * Messages with the same arrival time and priority are returned in the order in which they were put into the queue.
+ * (The {@link MessageQueue} returns them in an arbitrary order.)
+ *
+ * @see JDEQSimConfigGroup.SchedulerType#highThroughput
+ */
+public class HeapMessageQueue extends MessageQueue {
+
+	private static final int ARITY = 4;
+
+	private Message[] messages = new Message[64];
+	private double[] times = new double[64];
+	private int[] priorities = new int[64];
+	private long[] sequenceNumbers = new long[64];
+	private int size = 0;
+
+	private long nextSequenceNumber = 0;
+	private int queueSize = 0;
+
+	@Override
+	public void putMessage(Message m) {
+		if (this.size == this.messages.length) {
+			int capacity = this.size * 2;
+			this.messages = Arrays.copyOf(this.messages, capacity);
+			this.times = Arrays.copyOf(this.times, capacity);
+			this.priorities = Arrays.copyOf(this.priorities, capacity);
+			this.sequenceNumbers = Arrays.copyOf(this.sequenceNumbers, capacity);
+		}
+		siftUp(this.size++, m, m.getMessageArrivalTime(), m.priority, this.nextSequenceNumber++);
+		this.queueSize++;
+	}
+
+	/**
+	 * Like in {@link MessageQueue}, the message is only marked as dead and skipped when it reaches the top of the heap.
+	 */
+	@Override
+	public void removeMessage(Message m) {
+		m.killMessage();
+		this.queueSize--;
+	}
+
+	@Override
+	public Message getNextMessage() {
+		while (this.size > 0) {
+			Message m = this.messages[0];
+			int last = --this.size;
+			if (last > 0) {
+				siftDown(0, this.messages[last], this.times[last], this.priorities[last], this.sequenceNumbers[last]);
+			}
+			this.messages[last] = null;
+			if (m.isAlive()) {
+				this.queueSize--;
+				return m;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	@Override
+	public int getQueueSize() {
+		return this.queueSize;
+	}
+
+	private boolean isBefore(double time, int priority, long sequenceNumber, int index) {
+		return isBefore(time, priority, sequenceNumber, this.times[index], this.priorities[index], this.sequenceNumbers[index]);
+	}
+
+	private static boolean isBefore(double time0, int priority0, long sequenceNumber0, double time1, int priority1, long sequenceNumber1) {
+		if (time0 != time1) {
+			return time0 < time1;
+		}
+		if (priority0 != priority1) {
+			// higher priority means for a queue, that it comes first
+			return priority0 > priority1;
+		}
+		return sequenceNumber0 < sequenceNumber1;
+	}
+
+	private void siftUp(int index, Message m, double time, int priority, long sequenceNumber) {
+		while (index > 0) {
+			int parent = (index - 1) / ARITY;
+			if (!isBefore(time, priority, sequenceNumber, parent)) {
+				break;
+			}
+			set(index, parent);
+			index = parent;
+		}
+		set(index, m, time, priority, sequenceNumber);
+	}
+
+	private void siftDown(int index, Message m, double time, int priority, long sequenceNumber) {
+		while (true) {
+			int firstChild = index * ARITY + 1;
+			if (firstChild >= this.size) {
+				break;
+			}
+			int smallest = firstChild;
+			int end = Math.min(firstChild + ARITY, this.size);
+			for (int child = firstChild + 1; child < end; child++) {
+				if (isBefore(this.times[child], this.priorities[child], this.sequenceNumbers[child], smallest)) {
+					smallest = child;
+				}
+			}
+			if (!isBefore(this.times[smallest], this.priorities[smallest], this.sequenceNumbers[smallest], time, priority, sequenceNumber)) {
+				break;
+			}
+			set(index, smallest);
+			index = smallest;
+		}
+		set(index, m, time, priority, sequenceNumber);
+	}
+
+	private void set(int index, int from) {
+		set(index, this.messages[from], this.times[from], this.priorities[from], this.sequenceNumbers[from]);
+	}
+
+	private void set(int index, Message m, double time, int priority, long sequenceNumber) {
+		this.messages[index] = m;
+		this.times[index] = time;
+		this.priorities[index] = priority;
+		this.sequenceNumbers[index] = sequenceNumber;
+	}
+
+}
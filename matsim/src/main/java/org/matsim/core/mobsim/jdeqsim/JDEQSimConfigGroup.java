@@ -19,6 +19,9 @@
 
 package org.matsim.core.mobsim.jdeqsim;
 
+import java.util.Arrays;
+import java.util.Map;
+
 import org.matsim.core.config.ReflectiveConfigGroup;
 import org.matsim.core.utils.misc.Time;
 
@@ -57,6 +60,14 @@ public class JDEQSimConfigGroup extends ReflectiveConfigGroup {
 	public final static String CAR_SIZE = "carSize";
 	public final static String GAP_TRAVEL_SPEED = "gapTravelSpeed";
 	public final static String END_TIME = "endTime";
+	public final static String SCHEDULER = "scheduler";
+
+	public enum SchedulerType {
+		/** the messages are kept in a {@link MessageQueue} and created anew for every road a vehicle enters */
+		standard,
+		/** the messages are kept in a {@link HeapMessageQueue}, and handled messages are reused via the {@link MessageFactory} */
+		highThroughput
+	}
 
 	// INPUT
 	private double simulationEndTime = Double.MAX_VALUE; // in s
@@ -71,6 +82,7 @@ public class JDEQSimConfigGroup extends ReflectiveConfigGroup {
 	 * 'stuckTime' for entering next road, it will enter the next. in seconds
 	 */
 	private double squeezeTime = 1800;
+	private SchedulerType scheduler = SchedulerType.standard;
 
 	public JDEQSimConfigGroup() {
 		super(NAME);
@@ -169,4 +181,24 @@ public class JDEQSimConfigGroup extends ReflectiveConfigGroup {
 		this.squeezeTime = squeezeTime;
 	}
 
+	@StringGetter(SCHEDULER)
+	public SchedulerType getScheduler() {
+		return scheduler;
+	}
+
+	@StringSetter(SCHEDULER)
+	public void setScheduler(SchedulerType scheduler) {
+		this.scheduler = scheduler;
+	}
+
+	@Override
+	public Map<String, String> getComments() {
+		Map<String, String> map = super.getComments();
+		map.put(SCHEDULER, "Possible values: " + Arrays.toString(SchedulerType.values()) + ". '" + SchedulerType.highThroughput + "' uses a faster message "
+				+ "queue and reuses the messages instead of creating new ones, which pays off for large scenarios. Messages with "
+				+ "the same time and priority may then be handled in a different order, so the events are not always identical "
+				+ "to those of '" + SchedulerType.standard + "'.");
+		return map;
+	}
+
 }
@@ -66,7 +66,9 @@ public class JDEQSimulation implements Mobsim {
 		Timer t = new Timer();
 		t.startTimer();
 
-		Scheduler scheduler = new Scheduler(new MessageQueue(), config.getSimulationEndTime());
+		boolean highThroughput = config.getScheduler() == JDEQSimConfigGroup.SchedulerType.highThroughput;
+		Scheduler scheduler = new Scheduler(highThroughput ? new HeapMessageQueue() : new MessageQueue(), config.getSimulationEndTime());
+		scheduler.setRecyclingMessages(highThroughput);
 		Road.setAllRoads(new HashMap<Id<Link>, Road>());
 
 		// initialize network
@@ -81,6 +83,10 @@ public class JDEQSimulation implements Mobsim {
 		}
 
 		scheduler.startSimulation();
+		if (highThroughput) {
+			// the recycled messages still refer to the vehicles of this iteration
+			MessageFactory.GC_ALL_MESSAGES();
+		}
 
 		t.endTimer();
 		log.info("Time needed for one iteration (only JDEQSimulation part): " + t.getMeasuredTime() + "[ms]");
@@ -73,6 +73,25 @@ public class MessageFactory {
 		}
 	}
 
+	/**
+	 * Disposes a message of any of the types created by this factory; other messages are ignored.
+	 */
+	public static void disposeMessage(Message message) {
+		if (message instanceof EnterRoadMessage) {
+			disposeEnterRoadMessage((EnterRoadMessage) message);
+		} else if (message instanceof EndRoadMessage) {
+			disposeEndRoadMessage((EndRoadMessage) message);
+		} else if (message instanceof LeaveRoadMessage) {
+			disposeLeaveRoadMessage((LeaveRoadMessage) message);
+		} else if (message instanceof DeadlockPreventionMessage) {
+			disposeDeadlockPreventionMessage((DeadlockPreventionMessage) message);
+		} else if (message instanceof StartingLegMessage) {
+			disposeStartingLegMessage((StartingLegMessage) message);
+		} else if (message instanceof EndLegMessage) {
+			disposeEndLegMessage((EndLegMessage) message);
+		}
+	}
+
 	public static EndLegMessage getEndLegMessage(Scheduler scheduler, Vehicle vehicle) {
 		if (endLegMessageQueue.size() == 0) {
 			return new EndLegMessage(scheduler, vehicle);
@@ -35,6 +35,7 @@ public class Scheduler {
 	private double simulationStartTime = System.currentTimeMillis();
 	private final double simulationEndTime;
 	private double hourlyLogTime = 3600;
+	private boolean recyclingMessages = false;
 
 	public Scheduler(MessageQueue queue) {
 		this(queue, Double.MAX_VALUE);
@@ -53,6 +54,14 @@ public class Scheduler {
 		queue.removeMessage(m);
 	}
 
+	/**
+	 * If set, every message is given back to the {@link MessageFactory} after it has been handled, so that it can be
+	 * reused for one of the next messages. Nothing else may keep a reference to a message after it has been handled.
+	 */
+	public void setRecyclingMessages(boolean recyclingMessages) {
+		this.recyclingMessages = recyclingMessages;
+	}
+
 	public void startSimulation() {
 		Message m;
 		while (!queue.isEmpty() && simTime < simulationEndTime) {
@@ -61,6 +70,9 @@ public class Scheduler {
 				simTime = m.getMessageArrivalTime();
 				m.processEvent();
 				m.handleMessage();
+				if (recyclingMessages) {
+					MessageFactory.disposeMessage(m);
+				}
 			}
 			printLog();
 		}
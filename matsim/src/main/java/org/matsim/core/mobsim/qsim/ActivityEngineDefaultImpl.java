@@ -19,10 +19,6 @@
 
 package org.matsim.core.mobsim.qsim;
 
-import java.util.Iterator;
-import java.util.Queue;
-import java.util.concurrent.PriorityBlockingQueue;
-
 import javax.inject.Inject;
 
 import org.apache.log4j.Logger;
@@ -34,9 +30,10 @@ import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.mobsim.framework.MobsimAgent;
 import org.matsim.core.mobsim.framework.MobsimAgent.State;
 import org.matsim.core.mobsim.qsim.interfaces.AgentCounter;
+import org.matsim.core.mobsim.qsim.interfaces.HasNextWakeUpTime;
 import org.matsim.core.utils.misc.Time;
 
-public class ActivityEngineDefaultImpl implements ActivityEngine {
+public class ActivityEngineDefaultImpl implements ActivityEngine, HasNextWakeUpTime {
 	private static final Logger log = Logger.getLogger( ActivityEngineDefaultImpl.class ) ;
 
 	private EventsManager eventsManager;
@@ -49,46 +46,13 @@ public class ActivityEngineDefaultImpl implements ActivityEngine {
 		this.eventsManager = eventsManager;
 	}
 
-	/**
-	 * Agents cannot be added directly to the activityEndsList since that would
-	 * not be thread-safe when within-day replanning is used. There, an agent's
-	 * activity end time can be modified. As a result, the agent is located at
-	 * the wrong position in the activityEndsList until it is updated by using
-	 * rescheduleActivityEnd(...). However, if another agent is added to the list
-	 * in the mean time, it might be inserted at the wrong position.
-	 * cdobler, apr'12
-	 */
-	private static class AgentEntry {
-		public AgentEntry(MobsimAgent agent, double activityEndTime) {
-			this.agent = agent;
-			this.activityEndTime = activityEndTime;
-		}
-		final MobsimAgent agent;
-		final double activityEndTime;
-	}
-
 	private InternalInterface internalInterface;
 
 	/**
-	 * This list needs to be a "blocking" queue since this is needed for
+	 * This list needs to be thread-safe since this is needed for
 	 * thread-safety in the parallel qsim. cdobler, oct'10
 	 */
-	private final Queue<AgentEntry> activityEndsList = new PriorityBlockingQueue<>(500, (e0, e1) -> {
-		int cmp = Double.compare(e0.activityEndTime, e1.activityEndTime);
-		if (cmp == 0) {
-			// Both depart at the same time -> let the one with the larger id be first (=smaller)
-			//
-			// yy We are not sure what the above comment line is supposed to say.  Presumably, it is supposed
-			// to say that the agent with the larger ID should be "smaller" one in the comparison.
-			// In practice, it seems
-			// that something like "emob_9" is before "emob_8", and something like "emob_10" before "emob_1".
-			// It is unclear why this convention is supposed to be helpful.
-			// kai & dominik, jul'12
-			//
-			return e1.agent.getId().compareTo(e0.agent.getId());
-		}
-		return cmp;
-	});
+	private final AgentCalendarQueue activityEndsList = new AgentCalendarQueue();
 	
 	// See handleActivity for the reason for this.
 	private boolean beforeFirstSimStep = true;
@@ -101,29 +65,37 @@ public class ActivityEngineDefaultImpl implements ActivityEngine {
 	@Override
 	public void doSimStep(double time) {
 		beforeFirstSimStep = false;
-		while (activityEndsList.peek() != null) {
-			if (activityEndsList.peek().activityEndTime <= time) {
-				MobsimAgent agent = activityEndsList.poll().agent;
-				unregisterAgentAtActivityLocation(agent);
-				agent.endActivityAndComputeNextState(time);
-				internalInterface.arrangeNextAgentState(agent);
-			} else {
-				return;
-			}
+		ParallelAgentStateTransitions parallelTransitions = internalInterface.getMobsim().getParallelAgentStateTransitions();
+		if (parallelTransitions != null) {
+			parallelTransitions.process(activityEndsList, time,
+					this::unregisterAgentAtActivityLocation,
+					(agent, events) -> agent.endActivityAndComputeNextState(time),
+					agent -> internalInterface.arrangeNextAgentState(agent));
+			return;
 		}
+		MobsimAgent agent;
+		while ((agent = activityEndsList.poll(time)) != null) {
+			unregisterAgentAtActivityLocation(agent);
+			agent.endActivityAndComputeNextState(time);
+			internalInterface.arrangeNextAgentState(agent);
+		}
+	}
+
+	@Override
+	public double getNextWakeUpTime() {
+		return activityEndsList.getNextTime();
 	}
 
 	@Override
 	public void afterSim() {
 		double now = this.internalInterface.getMobsim().getSimTimer().getTimeOfDay();
-		for (AgentEntry entry : activityEndsList) {
-			if (entry.activityEndTime!=Double.POSITIVE_INFINITY && entry.activityEndTime!=Time.UNDEFINED_TIME) {
+		for (AgentCalendarQueue.Entry entry : activityEndsList.clear()) {
+			if (entry.time!=Double.POSITIVE_INFINITY && entry.time!=Time.UNDEFINED_TIME) {
 				// since we are at an activity, it is not plausible to assume that the agents know mode or destination
 				// link id.  Thus generating the event with ``null'' in the corresponding entries.  kai, mar'12
 				eventsManager.processEvent(new PersonStuckEvent(now, entry.agent.getId(), null, null));
 			}
 		}
-		activityEndsList.clear();
 	}
 
 	@Override
@@ -155,8 +127,7 @@ public class ActivityEngineDefaultImpl implements ActivityEngine {
 			internalInterface.arrangeNextAgentState(agent) ;
 		} else {
 			// The agent commences an activity on this link.
-			final AgentEntry agentEntry = new AgentEntry(agent, agent.getActivityEndTime());
-			activityEndsList.add(agentEntry);
+			activityEndsList.add(agent, agent.getActivityEndTime());
 			internalInterface.registerAdditionalAgentOnLink(agent);
 		}
 		// Why beforeFirstSimStep matters:
@@ -188,16 +159,16 @@ public class ActivityEngineDefaultImpl implements ActivityEngine {
 		
 		
 		double newActivityEndTime = agent.getActivityEndTime();
-		AgentEntry oldEntry = removeAgentFromQueue(agent);
+		boolean wasQueued = activityEndsList.remove(agent);
 
 		// The intention in the following is that an agent that is no longer alive has an activity end time of infinity.  The number of
 		// alive agents is only modified when an activity end time is changed between a finite time and infinite.  kai, jun'11
-		if (oldEntry == null) {
+		if (!wasQueued) {
 			if (newActivityEndTime == Double.POSITIVE_INFINITY) {
 				// agent was de-activated and still should be de-activated - nothing to do here
 			} else {
 				// re-activate the agent
-				activityEndsList.add(new AgentEntry(agent, newActivityEndTime));
+				activityEndsList.add(agent, newActivityEndTime);
 				internalInterface.registerAdditionalAgentOnLink(agent);
 				((org.matsim.core.mobsim.qsim.AgentCounter) internalInterface.getMobsim().getAgentCounter()).incLiving();
 			}
@@ -212,20 +183,8 @@ public class ActivityEngineDefaultImpl implements ActivityEngine {
 			/*
 			 *  The activity is just rescheduled during the day, so we keep the agent active. cdobler, oct'11
 			 */
-			activityEndsList.add(new AgentEntry(agent, newActivityEndTime));
-		}
-	}
-
-	private AgentEntry removeAgentFromQueue(MobsimAgent agent) {
-		Iterator<AgentEntry> iterator = activityEndsList.iterator();
-		while (iterator.hasNext()) {
-			AgentEntry entry = iterator.next();
-			if (entry.agent == agent) {
-				iterator.remove();
-				return entry;
-			}
+			activityEndsList.add(agent, newActivityEndTime);
 		}
-		return null;
 	}
 
 	private void unregisterAgentAtActivityLocation(final MobsimAgent agent) {
@@ -0,0 +1,383 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * AgentCalendarQueue.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.matsim.core.mobsim.framework.MobsimAgent;
+
+/**
+ * Queue of agents which have to be handled at a given time, e.g. at the end of their activity.
+ * <p></p>
+ * The agents are kept in buckets of one second each (a calendar queue), so adding and removing an agent and
+ * retrieving the next agent which is due are constant-time operations, independent of the number of agents in the
+ * queue. The agents are returned in the order of their times; agents with the same time are returned in descending
+ * order of their ids, like it was done by the priority queues used before. Agents with an infinite time, e.g. at
+ * their last activity, are kept outside of the buckets, so they are never searched for.
+ * <p></p>
+ * The methods of this class are synchronized, as agents may be added from the threads of the parallel
+ * QNetsimEngine.
+ */
+/* deliberately package */ final class AgentCalendarQueue {
+
+	/* 2^16 seconds are more than 18 hours, so typically every bucket holds agents of one second only */
+	private static final int NUMBER_OF_BUCKETS = 1 << 16;
+	private static final int BUCKET_MASK = NUMBER_OF_BUCKETS - 1;
+
+	private static final int IN_DUE_LIST = -1;
+	private static final int REMOVED = -2;
+
+	static final Comparator<Entry> ORDER = (e0, e1) -> {
+		int cmp = Double.compare(e0.time, e1.time);
+		if (cmp == 0) {
+			// Both depart at the same time -> let the one with the larger id be first (=smaller)
+			//
+			// yy We are not sure what the above comment line is supposed to say.  Presumably, it is supposed
+			// to say that the agent with the larger ID should be "smaller" one in the comparison.
+			// In practice, it seems
+			// that something like "emob_9" is before "emob_8", and something like "emob_10" before "emob_1".
+			// It is unclear why this convention is supposed to be helpful.
+			// kai & dominik, jul'12
+			//
+			return e1.agent.getId().compareTo(e0.agent.getId());
+		}
+		return cmp;
+	};
+
+	static final class Entry {
+		final MobsimAgent agent;
+		final double time;
+		final long slot;
+		/* position in the bucket, or one of IN_DUE_LIST and REMOVED */
+		int index;
+
+		private Entry(final MobsimAgent agent, final double time, final long slot) {
+			this.agent = agent;
+			this.time = time;
+			this.slot = slot;
+		}
+	}
+
+	private static final class Bucket {
+		Entry[] entries = new Entry[4];
+		int size = 0;
+
+		void add(final Entry entry) {
+			if (this.size == this.entries.length) {
+				this.entries = Arrays.copyOf(this.entries, this.size * 2);
+			}
+			entry.index = this.size;
+			this.entries[this.size++] = entry;
+		}
+
+		void remove(final int index) {
+			Entry last = this.entries[--this.size];
+			this.entries[this.size] = null;
+			if (index < this.size) {
+				this.entries[index] = last;
+				last.index = index;
+			}
+		}
+	}
+
+	private final Bucket[] buckets = new Bucket[NUMBER_OF_BUCKETS];
+	/* entries with an infinite time; their slot is Long.MAX_VALUE, it is only loaded when polling until infinity */
+	private final Bucket infiniteEntries = new Bucket();
+	private final Map<MobsimAgent, Entry> entries = new IdentityHashMap<>();
+
+	/* the sorted entries of the current slot which are not yet returned; removed entries are only marked */
+	private final List<Entry> dueEntries = new ArrayList<>();
+	private int dueHead = 0;
+	private boolean currentSlotLoaded = false;
+	/* all entries are in this slot or a later one */
+	private long currentSlot = 0;
+	/* no entry in the buckets is in an earlier slot; may be lower than the actual minimum after entries were removed */
+	private long minBucketSlot = Long.MAX_VALUE;
+
+	private static long slotOf(final double time) {
+		return (long) Math.floor(time);
+	}
+
+	synchronized void add(final MobsimAgent agent, final double time) {
+		if (this.entries.isEmpty()) {
+			clearDueEntries();
+			this.currentSlot = slotOf(time);
+			this.minBucketSlot = Long.MAX_VALUE;
+		} else if (!this.currentSlotLoaded && slotOf(time) < this.currentSlot) {
+			// nothing was returned from the current slot yet, e.g. while the agents are inserted before the simulation starts
+			this.currentSlot = slotOf(time);
+		}
+		// entries due before the current slot are put into the current slot, where they are sorted before the others
+		Entry entry = new Entry(agent, time, Math.max(slotOf(time), this.currentSlot));
+		Entry previous = this.entries.put(agent, entry);
+		if (previous != null) {
+			removeEntry(previous);
+		}
+		if (entry.slot == this.currentSlot && this.currentSlotLoaded) {
+			int pos = Collections.binarySearch(this.dueEntries.subList(this.dueHead, this.dueEntries.size()), entry, ORDER);
+			if (pos < 0) {
+				pos = -pos - 1;
+			}
+			entry.index = IN_DUE_LIST;
+			if (pos == 0 && this.dueHead > 0) {
+				// re-use the space of the entries already returned instead of shifting all the others
+				this.dueEntries.set(--this.dueHead, entry);
+			} else {
+				this.dueEntries.add(this.dueHead + pos, entry);
+			}
+		} else if (time == Double.POSITIVE_INFINITY) {
+			this.infiniteEntries.add(entry);
+		} else {
+			int bucketIndex = (int) (entry.slot & BUCKET_MASK);
+			Bucket bucket = this.buckets[bucketIndex];
+			if (bucket == null) {
+				bucket = new Bucket();
+				this.buckets[bucketIndex] = bucket;
+			}
+			bucket.add(entry);
+			this.minBucketSlot = Math.min(this.minBucketSlot, entry.slot);
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if the agent was in the queue
+	 */
+	synchronized boolean remove(final MobsimAgent agent) {
+		Entry entry = this.entries.remove(agent);
+		if (entry == null) {
+			return false;
+		}
+		removeEntry(entry);
+		if (this.entries.isEmpty()) {
+			clearDueEntries();
+		}
+		return true;
+	}
+
+	/**
+	 * @return the next agent with a time not later than <code>now</code>, or <code>null</code> if there is none.
+	 */
+	synchronized MobsimAgent poll(final double now) {
+		Entry entry = peekEntry(now);
+		if (entry == null) {
+			return null;
+		}
+		removeDueEntry(entry);
+		return entry.agent;
+	}
+
+	/**
+	 * @return the next entry with a time not later than <code>now</code> if it is before <code>other</code> in the
+	 * order of this queue, otherwise <code>null</code>.
+	 */
+	synchronized Entry pollEntryBefore(final double now, final Entry other) {
+		Entry entry = peekEntry(now);
+		if (entry == null || ORDER.compare(entry, other) >= 0) {
+			return null;
+		}
+		removeDueEntry(entry);
+		return entry;
+	}
+
+	/**
+	 * @return all entries with a time not later than <code>now</code>, in the order of this queue.
+	 */
+	synchronized List<Entry> pollEntries(final double now) {
+		List<Entry> due = new ArrayList<>();
+		Entry entry;
+		while ((entry = peekEntry(now)) != null) {
+			removeDueEntry(entry);
+			due.add(entry);
+		}
+		return due;
+	}
+
+	private void removeDueEntry(final Entry entry) {
+		this.dueEntries.set(this.dueHead++, null);
+		entry.index = REMOVED;
+		this.entries.remove(entry.agent);
+	}
+
+	private Entry peekEntry(final double now) {
+		if (this.entries.isEmpty()) {
+			return null;
+		}
+		long lastSlot = slotOf(now);
+		int emptySlots = 0;
+		while (true) {
+			if (!this.currentSlotLoaded) {
+				if (this.currentSlot > lastSlot) {
+					// all entries are later, e.g. only agents with an infinite time are left
+					return null;
+				}
+				loadCurrentSlot();
+			}
+			while (this.dueHead < this.dueEntries.size()) {
+				Entry entry = this.dueEntries.get(this.dueHead);
+				if (entry.index == REMOVED) {
+					this.dueEntries.set(this.dueHead++, null);
+					continue;
+				}
+				if (entry.time > now) {
+					// all other entries are even later
+					return null;
+				}
+				return entry;
+			}
+			if (this.currentSlot >= lastSlot) {
+				return null;
+			}
+			clearDueEntries();
+			this.currentSlot = Math.min(lastSlot, Math.max(this.currentSlot + 1, this.minBucketSlot));
+			emptySlots++;
+			if (emptySlots > NUMBER_OF_BUCKETS) {
+				// a long time without any entries, so look up where the next one is instead of checking every slot
+				this.minBucketSlot = getMinimalSlot();
+				this.currentSlot = Math.min(lastSlot, this.minBucketSlot);
+				emptySlots = 0;
+			}
+		}
+	}
+
+	/**
+	 * @return the earliest time of all agents in the queue, or <code>Double.POSITIVE_INFINITY</code> if it is empty.
+	 */
+	synchronized double getNextTime() {
+		if (this.entries.size() == this.infiniteEntries.size) {
+			return Double.POSITIVE_INFINITY;
+		}
+		long slot = this.currentSlot;
+		if (this.currentSlotLoaded) {
+			for (int i = this.dueHead; i < this.dueEntries.size(); i++) {
+				Entry entry = this.dueEntries.get(i);
+				if (entry.index != REMOVED) {
+					return entry.time;
+				}
+			}
+			slot++;
+		}
+		// start at the earliest slot that may contain entries, so agents far in the future are not searched for again
+		slot = Math.max(slot, this.minBucketSlot);
+		for (int i = 0; i < NUMBER_OF_BUCKETS; i++, slot++) {
+			double time = getMinimalTime(slot);
+			if (time != Double.POSITIVE_INFINITY) {
+				this.minBucketSlot = slot;
+				return time;
+			}
+		}
+		this.minBucketSlot = getMinimalSlot();
+		return getMinimalTime(this.minBucketSlot);
+	}
+
+	synchronized int size() {
+		return this.entries.size();
+	}
+
+	/**
+	 * Removes all entries from the queue.
+	 *
+	 * @return the removed entries, in the order they would have been returned by {@link #poll(double)}
+	 */
+	synchronized List<Entry> clear() {
+		List<Entry> all = new ArrayList<>(this.entries.values());
+		all.sort(ORDER);
+		this.entries.clear();
+		Arrays.fill(this.buckets, null);
+		Arrays.fill(this.infiniteEntries.entries, null);
+		this.infiniteEntries.size = 0;
+		this.minBucketSlot = Long.MAX_VALUE;
+		clearDueEntries();
+		return all;
+	}
+
+	private void removeEntry(final Entry entry) {
+		if (entry.index >= 0) {
+			getBucket(entry).remove(entry.index);
+		}
+		entry.index = REMOVED;
+	}
+
+	private void clearDueEntries() {
+		this.dueEntries.clear();
+		this.dueHead = 0;
+		this.currentSlotLoaded = false;
+	}
+
+	private Bucket getBucket(final Entry entry) {
+		return entry.time == Double.POSITIVE_INFINITY ? this.infiniteEntries : this.buckets[(int) (entry.slot & BUCKET_MASK)];
+	}
+
+	private void loadCurrentSlot() {
+		loadCurrentSlot(this.buckets[(int) (this.currentSlot & BUCKET_MASK)]);
+		if (this.currentSlot == Long.MAX_VALUE) {
+			loadCurrentSlot(this.infiniteEntries);
+		}
+		this.dueEntries.sort(ORDER);
+		this.minBucketSlot = Math.max(this.minBucketSlot, this.currentSlot + 1);
+		this.currentSlotLoaded = true;
+	}
+
+	private void loadCurrentSlot(final Bucket bucket) {
+		if (bucket != null) {
+			// the bucket may also contain entries of later slots which map to the same bucket
+			for (int i = bucket.size - 1; i >= 0; i--) {
+				Entry entry = bucket.entries[i];
+				if (entry.slot == this.currentSlot) {
+					bucket.remove(i);
+					entry.index = IN_DUE_LIST;
+					this.dueEntries.add(entry);
+				}
+			}
+		}
+	}
+
+	private double getMinimalTime(final long slot) {
+		double min = Double.POSITIVE_INFINITY;
+		Bucket bucket = this.buckets[(int) (slot & BUCKET_MASK)];
+		if (bucket != null) {
+			for (int i = 0; i < bucket.size; i++) {
+				Entry entry = bucket.entries[i];
+				if (entry.slot == slot) {
+					min = Math.min(min, entry.time);
+				}
+			}
+		}
+		return min;
+	}
+
+	private long getMinimalSlot() {
+		long min = Long.MAX_VALUE;
+		for (Bucket bucket : this.buckets) {
+			if (bucket != null) {
+				for (int i = 0; i < bucket.size; i++) {
+					min = Math.min(min, bucket.entries[i].slot);
+				}
+			}
+		}
+		return min;
+	}
+}
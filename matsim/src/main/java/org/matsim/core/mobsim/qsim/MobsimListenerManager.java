@@ -28,6 +28,7 @@ import org.matsim.core.mobsim.framework.events.MobsimBeforeCleanupEvent;
 import org.matsim.core.mobsim.framework.events.MobsimBeforeSimStepEvent;
 import org.matsim.core.mobsim.framework.events.MobsimInitializedEvent;
 import org.matsim.core.mobsim.framework.listeners.*;
+import org.matsim.core.mobsim.qsim.interfaces.HasNextWakeUpTime;
 import org.matsim.core.utils.misc.ClassUtils;
 
 import javax.swing.event.EventListenerList;
@@ -99,6 +100,28 @@ class MobsimListenerManager implements MatsimManager {
         }
 	}
 
+	/**
+	 * @return the earliest {@link HasNextWakeUpTime#getNextWakeUpTime()} of all sim step listeners, or
+	 * <code>Double.NEGATIVE_INFINITY</code> if one of them does not implement {@link HasNextWakeUpTime}
+	 */
+	public double getNextWakeUpTime() {
+		double wakeUpTime = Double.POSITIVE_INFINITY;
+		for (MobsimListener aListener : this.listenerList.getListeners(MobsimBeforeSimStepListener.class)) {
+			wakeUpTime = Math.min(wakeUpTime, getNextWakeUpTime(aListener));
+		}
+		for (MobsimListener aListener : this.listenerList.getListeners(MobsimAfterSimStepListener.class)) {
+			wakeUpTime = Math.min(wakeUpTime, getNextWakeUpTime(aListener));
+		}
+		return wakeUpTime;
+	}
+
+	private static double getNextWakeUpTime(MobsimListener listener) {
+		if (listener instanceof HasNextWakeUpTime) {
+			return ((HasNextWakeUpTime) listener).getNextWakeUpTime();
+		}
+		return Double.NEGATIVE_INFINITY;
+	}
+
 	public void fireQueueSimulationBeforeSimStepEvent(double time) {
 		MobsimBeforeSimStepEvent<Mobsim> event = new MobsimBeforeSimStepEvent<>(sim, time);
 		MobsimBeforeSimStepListener[] listener = this.listenerList.getListeners(MobsimBeforeSimStepListener.class);
@@ -0,0 +1,126 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ParallelAgentStateTransitions.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.core.mobsim.framework.MobsimAgent;
+import org.matsim.core.mobsim.qsim.qnetsimengine.QNetsimEngine;
+
+/**
+ * Lets the agents which are due in the same time step compute their next state in parallel, on the runners of the
+ * {@link QNetsimEngine}.
+ * <p></p>
+ * The events created while computing the next state are buffered per agent. Afterwards, one agent after the other in
+ * the given order, the buffered events are processed and the agent is handed to the next engine. So the events are
+ * the same, and in the same order, as when everything is done by the main thread. This requires that computing the
+ * next state of an agent does not depend on the other agents, and does not change anything besides the agent itself.
+ */
+/* deliberately package */ final class ParallelAgentStateTransitions {
+
+	/* below this, waking up the runners costs more than it saves */
+	private static final int MIN_AGENTS_PER_RUNNER = 32;
+
+	private final QNetsimEngine netsimEngine;
+	private final ThreadBufferingEventsManager events;
+
+	ParallelAgentStateTransitions(final QNetsimEngine netsimEngine, final ThreadBufferingEventsManager events) {
+		this.netsimEngine = netsimEngine;
+		this.events = events;
+	}
+
+	/**
+	 * Handles all agents of the queue which are due at <code>now</code>.
+	 *
+	 * @param leave called by the main thread for every agent before it computes its next state
+	 * @param computeNextState called in parallel; gets the list into which the events are buffered, so that events
+	 * created by the engine itself can be added there as well
+	 * @param arrangeNextState called by the main thread, one agent after the other in the order of the queue
+	 */
+	void process(final AgentCalendarQueue queue, final double now, final Consumer<MobsimAgent> leave,
+			final BiConsumer<MobsimAgent, List<Event>> computeNextState, final Consumer<MobsimAgent> arrangeNextState) {
+		List<AgentCalendarQueue.Entry> due;
+		while (!(due = queue.pollEntries(now)).isEmpty()) {
+			int n = due.size();
+			List<MobsimAgent> agents = new ArrayList<>(n);
+			for (AgentCalendarQueue.Entry entry : due) {
+				leave.accept(entry.agent);
+				agents.add(entry.agent);
+			}
+			@SuppressWarnings("unchecked")
+			List<Event>[] buffers = new List[n];
+			int numberOfTasks = Math.min(this.netsimEngine.getNumberOfRunners(), n / MIN_AGENTS_PER_RUNNER);
+			if (numberOfTasks < 2) {
+				compute(agents, 0, n, buffers, computeNextState);
+			} else {
+				List<Runnable> tasks = new ArrayList<>(numberOfTasks);
+				for (int t = 0; t < numberOfTasks; t++) {
+					int from = (int) ((long) n * t / numberOfTasks);
+					int to = (int) ((long) n * (t + 1) / numberOfTasks);
+					tasks.add(() -> compute(agents, from, to, buffers, computeNextState));
+				}
+				this.netsimEngine.runOnRunners(tasks);
+			}
+			for (int i = 0; i < n; i++) {
+				// agents which became due while arranging the previous agents, e.g. after an activity without duration,
+				// have to be handled first if they are before this agent in the order of the queue
+				AgentCalendarQueue.Entry entry;
+				while ((entry = queue.pollEntryBefore(now, due.get(i))) != null) {
+					leave.accept(entry.agent);
+					List<MobsimAgent> agent = Collections.singletonList(entry.agent);
+					@SuppressWarnings("unchecked")
+					List<Event>[] buffer = new List[1];
+					compute(agent, 0, 1, buffer, computeNextState);
+					processEvents(buffer[0]);
+					arrangeNextState.accept(entry.agent);
+				}
+				processEvents(buffers[i]);
+				buffers[i] = null;
+				arrangeNextState.accept(agents.get(i));
+			}
+		}
+	}
+
+	private void processEvents(final List<Event> buffer) {
+		for (Event event : buffer) {
+			this.events.processEvent(event);
+		}
+	}
+
+	private void compute(final List<MobsimAgent> agents, final int from, final int to, final List<Event>[] buffers,
+			final BiConsumer<MobsimAgent, List<Event>> computeNextState) {
+		try {
+			for (int i = from; i < to; i++) {
+				List<Event> buffer = new ArrayList<>(4);
+				buffers[i] = buffer;
+				this.events.startBuffering(buffer);
+				computeNextState.accept(agents.get(i), buffer);
+			}
+		} finally {
+			this.events.stopBuffering();
+		}
+	}
+}
@@ -42,6 +42,7 @@ import org.matsim.core.mobsim.qsim.changeeventsengine.NetworkChangeEventsEngineI
 import org.matsim.core.mobsim.qsim.interfaces.ActivityHandler;
 import org.matsim.core.mobsim.qsim.interfaces.AgentCounter;
 import org.matsim.core.mobsim.qsim.interfaces.DepartureHandler;
+import org.matsim.core.mobsim.qsim.interfaces.HasNextWakeUpTime;
 import org.matsim.core.mobsim.qsim.interfaces.MobsimEngine;
 import org.matsim.core.mobsim.qsim.interfaces.MobsimVehicle;
 import org.matsim.core.mobsim.qsim.interfaces.Netsim;
@@ -113,6 +114,10 @@ public final class QSim extends Thread implements VisMobsim, Netsim, ActivityEnd
 
 	private final EventsManager events;
 
+	/* only set if the agent state transitions are computed in parallel */
+	private final ThreadBufferingEventsManager bufferingEvents;
+	private ParallelAgentStateTransitions parallelAgentStateTransitions = null;
+
 	private NetsimEngine netEngine;
 
 	private final Collection<MobsimEngine> mobsimEngines = new ArrayList<>();
@@ -198,6 +203,16 @@ public final class QSim extends Thread implements VisMobsim, Netsim, ActivityEnd
 	private Injector childInjector;
 //	private QVehicleFactory qVehicleFactory;
 	
+	/**
+	 * @return <code>null</code> if the agent state transitions should not be computed in parallel
+	 */
+	/*package*/ ParallelAgentStateTransitions getParallelAgentStateTransitions() {
+		if ( this.parallelAgentStateTransitions == null && this.bufferingEvents != null && this.netEngine instanceof QNetsimEngine ) {
+			this.parallelAgentStateTransitions = new ParallelAgentStateTransitions( (QNetsimEngine) this.netEngine, this.bufferingEvents );
+		}
+		return this.parallelAgentStateTransitions;
+	}
+
 	@Override
 	public final void rescheduleActivityEnd(MobsimAgent agent) {
 		for( ActivityHandler activityHandler : this.activityHandlers ){
@@ -218,8 +233,15 @@ public final class QSim extends Thread implements VisMobsim, Netsim, ActivityEnd
 	private QSim( final Scenario sc, EventsManager events, Injector childInjector ) {
 		this.scenario = sc;
 		if ( sc.getConfig().qsim().getNumberOfThreads() > 1) {
-			this.events = EventsUtils.getParallelFeedableInstance( events );
+			if ( sc.getConfig().qsim().isUsingParallelAgentStateTransitions() ) {
+				this.bufferingEvents = new ThreadBufferingEventsManager( EventsUtils.getParallelFeedableInstance( events ) );
+				this.events = this.bufferingEvents;
+			} else {
+				this.bufferingEvents = null;
+				this.events = EventsUtils.getParallelFeedableInstance( events );
+			}
 		} else {
+			this.bufferingEvents = null;
 			this.events = events;
 		}
 		this.listenerManager = new MobsimListenerManager( this );
@@ -408,21 +430,15 @@ public final class QSim extends Thread implements VisMobsim, Netsim, ActivityEnd
 		
 		// console printout:
 		this.printSimLog(now);
-		boolean doContinue =  (this.agentCounter.isLiving() && (this.stopTime > now));
+		boolean doContinue = isContinuing(now);
 		this.events.afterSimStep(now);
 		this.listenerManager.fireQueueSimulationAfterSimStepEvent(now);
 
-		final QSimConfigGroup qsimConfigGroup = this.scenario.getConfig().qsim();
-		if ( qsimConfigGroup.getSimEndtimeInterpretation()==EndtimeInterpretation.onlyUseEndtime ) {
-			if ( now > qsimConfigGroup.getEndTime() ) {
-				doContinue = false ;
-			} else {
-				doContinue = true ;
-			}
-		}
-
 		if (doContinue) {
 			this.simTimer.incrementTime();
+			if (this.scenario.getConfig().qsim().isSkippingIdleTimeSteps()) {
+				skipIdleTimeSteps();
+			}
 		}
 		
 		if (analyzeRunTimes) this.qSimInternalTime += System.nanoTime() - this.startTime;
@@ -430,6 +446,54 @@ public final class QSim extends Thread implements VisMobsim, Netsim, ActivityEnd
 		return doContinue;
 	}
 
+	private boolean isContinuing(final double now) {
+		final QSimConfigGroup qsimConfigGroup = this.scenario.getConfig().qsim();
+		if ( qsimConfigGroup.getSimEndtimeInterpretation()==EndtimeInterpretation.onlyUseEndtime ) {
+			return !( now > qsimConfigGroup.getEndTime() ) ;
+		}
+		return this.agentCounter.isLiving() && (this.stopTime > now);
+	}
+
+	/**
+	 * Advances the time over the following time steps in which no engine and no sim step listener has anything to do.
+	 * Apart from the console printout, nothing would happen in these time steps, so the results are the same as if
+	 * they were simulated.  The time step in which the simulation ends is never skipped.
+	 */
+	private void skipIdleTimeSteps() {
+		double wakeUpTime = getNextWakeUpTime();
+		double now = this.simTimer.getTimeOfDay();
+		while (now < wakeUpTime && isContinuing(now)) {
+			this.printSimLog(now);
+			now = this.simTimer.incrementTime();
+		}
+	}
+
+	private double getNextWakeUpTime() {
+		final double now = this.simTimer.getTimeOfDay();
+		double wakeUpTime = Double.POSITIVE_INFINITY;
+		// the netsim engine first, since it is the one which is most often busy
+		if (this.netEngine != null) {
+			wakeUpTime = getNextWakeUpTime(this.netEngine);
+		}
+		for (MobsimEngine mobsimEngine : this.mobsimEngines) {
+			if (wakeUpTime <= now) {
+				return wakeUpTime;
+			}
+			if (mobsimEngine != this.netEngine) {
+				wakeUpTime = Math.min(wakeUpTime, getNextWakeUpTime(mobsimEngine));
+			}
+		}
+		return Math.min(wakeUpTime, this.listenerManager.getNextWakeUpTime());
+	}
+
+	private static double getNextWakeUpTime(final Object engine) {
+		if (engine instanceof HasNextWakeUpTime) {
+			return ((HasNextWakeUpTime) engine).getNextWakeUpTime();
+		}
+		// an engine which cannot tell needs every time step
+		return Double.NEGATIVE_INFINITY;
+	}
+
 	public void insertAgentIntoMobsim(final MobsimAgent agent) {
 		if (this.agents.containsKey(agent.getId())) {
 			throw new RuntimeException("Agent with same Id (" + agent.getId().toString() + ") already in mobsim; aborting ... ") ;
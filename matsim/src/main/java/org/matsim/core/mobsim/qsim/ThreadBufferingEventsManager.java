@@ -0,0 +1,91 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ThreadBufferingEventsManager.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim;
+
+import java.util.List;
+
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.handler.EventHandler;
+
+/**
+ * Delegates everything to another events manager, but collects the events of a thread in a list while
+ * {@link #startBuffering(List)} is active for this thread, so that they can be processed later in a deterministic
+ * order.
+ */
+/* deliberately package */ final class ThreadBufferingEventsManager implements EventsManager {
+
+	private final EventsManager delegate;
+	private final ThreadLocal<List<Event>> buffer = new ThreadLocal<>();
+
+	ThreadBufferingEventsManager(final EventsManager delegate) {
+		this.delegate = delegate;
+	}
+
+	void startBuffering(final List<Event> events) {
+		this.buffer.set(events);
+	}
+
+	void stopBuffering() {
+		this.buffer.remove();
+	}
+
+	@Override
+	public void processEvent(final Event event) {
+		List<Event> events = this.buffer.get();
+		if (events != null) {
+			events.add(event);
+		} else {
+			this.delegate.processEvent(event);
+		}
+	}
+
+	@Override
+	public void addHandler(final EventHandler handler) {
+		this.delegate.addHandler(handler);
+	}
+
+	@Override
+	public void removeHandler(final EventHandler handler) {
+		this.delegate.removeHandler(handler);
+	}
+
+	@Override
+	public void resetHandlers(final int iteration) {
+		this.delegate.resetHandlers(iteration);
+	}
+
+	@Override
+	public void initProcessing() {
+		this.delegate.initProcessing();
+	}
+
+	@Override
+	public void afterSimStep(final double time) {
+		this.delegate.afterSimStep(time);
+	}
+
+	@Override
+	public void finishProcessing() {
+		this.delegate.finishProcessing();
+	}
+
+}
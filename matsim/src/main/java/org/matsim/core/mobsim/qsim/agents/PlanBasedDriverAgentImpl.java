@@ -18,7 +18,9 @@
  * *********************************************************************** */
 package org.matsim.core.mobsim.qsim.agents;
 
+import java.util.Iterator;
 import java.util.List;
+import java.util.RandomAccess;
 
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Id;
@@ -51,6 +53,11 @@ public final class PlanBasedDriverAgentImpl implements DriverAgent {
 
 	private Id<Link> cachedNextLinkId = null;
 
+	/* the link ids of a route which are not stored for random access are iterated over instead */
+	private List<Id<Link>> iteratedLinkIds = null;
+	private Iterator<Id<Link>> linkIdIterator = null;
+	private int nextIteratorIndex = 0;
+
 	@Override
 	public final void notifyMoveOverNode(Id<Link> newLinkId) {
 		if (expectedLinkWarnCount < 10 && !newLinkId.equals(this.cachedNextLinkId)) {
@@ -119,11 +126,29 @@ public final class PlanBasedDriverAgentImpl implements DriverAgent {
 		}
 
 		// (4) otherwise (normal case): return the next link of the plan (after caching it):
-		this.cachedNextLinkId = routeLinkIds.get(this.basicPlanAgentDelegate.getCurrentLinkIndex());
+		this.cachedNextLinkId = getRouteLinkId(routeLinkIds, this.basicPlanAgentDelegate.getCurrentLinkIndex());
 		return this.cachedNextLinkId;
 
 	}
 
+	private Id<Link> getRouteLinkId(final List<Id<Link>> routeLinkIds, final int index) {
+		if (routeLinkIds instanceof RandomAccess) {
+			return routeLinkIds.get(index);
+		}
+		// e.g. the packed link ids of network routes, for which get(index) is more expensive than iterating
+		if (routeLinkIds != this.iteratedLinkIds || index < this.nextIteratorIndex) {
+			this.iteratedLinkIds = routeLinkIds;
+			this.linkIdIterator = routeLinkIds.iterator();
+			this.nextIteratorIndex = 0;
+		}
+		while (this.nextIteratorIndex < index) {
+			this.linkIdIterator.next();
+			this.nextIteratorIndex++;
+		}
+		this.nextIteratorIndex++;
+		return this.linkIdIterator.next();
+	}
+
 	@Override
 	public final boolean isWantingToArriveOnCurrentLink( ) {
 
@@ -0,0 +1,38 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * HasNextWakeUpTime.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.interfaces;
+
+/**
+ * Implemented by {@link MobsimEngine}s and sim step listeners which know when they have something to do next.
+ * <p></p>
+ * If the QSim skips idle time steps, it does so only if all its engines and sim step listeners implement this
+ * interface, and only until the earliest of their wake-up times.
+ */
+public interface HasNextWakeUpTime {
+
+	/**
+	 * @return the earliest time at which something has to be done in a time step, assuming that nothing else happens
+	 * before; a time not later than the current time if the next time step cannot be skipped, and
+	 * <code>Double.POSITIVE_INFINITY</code> if nothing is scheduled.
+	 */
+	double getNextWakeUpTime();
+
+}
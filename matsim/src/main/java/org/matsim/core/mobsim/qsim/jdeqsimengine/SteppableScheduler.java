@@ -65,6 +65,20 @@ public class SteppableScheduler extends Scheduler implements Steppable {
 		finished = true; // queue has run dry.
 	}
 
+	/**
+	 * @return the earliest time at which {@link #doSimStep(double)} will process a message
+	 */
+	public double getNextWakeUpTime() {
+		if (lookahead != null) {
+			return lookahead.getMessageArrivalTime();
+		}
+		if (queue.isEmpty()) {
+			return Double.POSITIVE_INFINITY;
+		}
+		// messages were added since the last time step; the next one has to be taken as lookahead first
+		return Double.NEGATIVE_INFINITY;
+	}
+
 	public boolean isFinished() {
 		return finished;
 	}
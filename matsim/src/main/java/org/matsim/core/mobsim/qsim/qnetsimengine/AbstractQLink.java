@@ -83,6 +83,8 @@ abstract class AbstractQLink implements QLinkI {
 	// (NOTE: via the qnetwork you reach the QNetsimEngine.  That is the "global" thing.  In contrast, via the netElementActivator,
 	// you reach the QNetsimEngineRunner.  That is the thread that runs the QLink.  Kai, mar'16
 
+	private boolean atPartitionBorder = false;
+
 	// joint implementation for Customizable
 	private final Map<String, Object> customAttributes = new HashMap<>();
 
@@ -430,6 +432,18 @@ abstract class AbstractQLink implements QLinkI {
 		this.netElementActivationRegistry = qSimEngineRunner;
 	}
 
+	/**
+	 * @return <code>true</code> if the from-node and the to-node of this link are handled by different netsim chunks,
+	 * i.e. if vehicles leaving this link are handed over from one partition of the network to another.
+	 */
+	/*package*/ boolean isAtPartitionBorder() {
+		return this.atPartitionBorder;
+	}
+
+	/*package*/ void setAtPartitionBorder(boolean atPartitionBorder) {
+		this.atPartitionBorder = atPartitionBorder;
+	}
+
 	@Override
 	public void registerDriverAgentWaitingForCar(final MobsimDriverAgent agent) {
 		final Id<Vehicle> vehicleId = agent.getPlannedVehicleId() ;
@@ -46,6 +46,13 @@ abstract class AbstractQNode implements QNodeI {
 	 */
 	private final AtomicBoolean active = new AtomicBoolean(false);
 
+	/*
+	 * Statistics on vehicles moved over this node.  Only written by the thread that
+	 * currently moves this node, and only read after the simulation.
+	 */
+	private long vehiclesMovedOverNode = 0;
+	private long vehiclesHandedOverFromOtherPartition = 0;
+
 	// for Customizable
 	private final Map<String, Object> customAttributes = new HashMap<>();
 	
@@ -106,6 +113,19 @@ abstract class AbstractQNode implements QNodeI {
 		this.active.set(active);
 	}
 
+	/*package*/ final void countVehicleMovedOverNode(boolean fromOtherPartition) {
+		this.vehiclesMovedOverNode++;
+		if (fromOtherPartition) this.vehiclesHandedOverFromOtherPartition++;
+	}
+
+	/*package*/ final long getVehiclesMovedOverNode() {
+		return this.vehiclesMovedOverNode;
+	}
+
+	/*package*/ final long getVehiclesHandedOverFromOtherPartition() {
+		return this.vehiclesHandedOverFromOtherPartition;
+	}
+
 	
 	@Override
 	public final Map<String, Object> getCustomAttributes() {
@@ -22,14 +22,18 @@ package org.matsim.core.mobsim.qsim.qnetsimengine;
 
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.IdMap;
 import org.matsim.api.core.v01.Scenario;
 import org.matsim.api.core.v01.events.PersonLeavesVehicleEvent;
 import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Node;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.config.Config;
 import org.matsim.core.config.groups.QSimConfigGroup;
 import org.matsim.core.config.groups.QSimConfigGroup.LinkDynamics;
+import org.matsim.core.config.groups.QSimConfigGroup.NetsimLoadBalancing;
+import org.matsim.core.config.groups.QSimConfigGroup.NetsimPartitioning;
 import org.matsim.core.config.groups.QSimConfigGroup.SnapshotStyle;
 import org.matsim.core.config.groups.QSimConfigGroup.StarttimeInterpretation;
 import org.matsim.core.config.groups.QSimConfigGroup.VehicleBehavior;
@@ -40,9 +44,11 @@ import org.matsim.core.mobsim.framework.MobsimTimer;
 import org.matsim.core.mobsim.qsim.InternalInterface;
 import org.matsim.core.mobsim.qsim.QSim;
 import org.matsim.core.mobsim.qsim.interfaces.AgentCounter;
+import org.matsim.core.mobsim.qsim.interfaces.HasNextWakeUpTime;
 import org.matsim.core.mobsim.qsim.interfaces.MobsimEngine;
 import org.matsim.core.mobsim.qsim.interfaces.MobsimVehicle;
 import org.matsim.core.mobsim.qsim.interfaces.NetsimNetwork;
+import org.matsim.core.network.algorithms.RecursiveCoordinateBisection;
 import org.matsim.core.utils.misc.Time;
 import org.matsim.vehicles.Vehicle;
 import org.matsim.vis.snapshotwriters.SnapshotLinkWidthCalculator;
@@ -69,7 +75,7 @@ import java.util.concurrent.ThreadFactory;
  * @author dgrether
  * @author dstrippgen
  */
-public class QNetsimEngine implements MobsimEngine, NetsimEngine {
+public class QNetsimEngine implements MobsimEngine, NetsimEngine, HasNextWakeUpTime {
 
 	public interface NetsimInternalInterface {
 		QNetwork getNetsimNetwork();
@@ -107,6 +113,8 @@ public class QNetsimEngine implements MobsimEngine, NetsimEngine {
 
 	private List<QNetsimEngineRunner> engines;
 
+	private List<QNetsimEngineChunk> chunks;
+
 	private Phaser startBarrier;
 	private Phaser endBarrier;
 
@@ -119,6 +127,17 @@ public class QNetsimEngine implements MobsimEngine, NetsimEngine {
 	private ExecutorService pool;
 
 	private final boolean usingThreadpool;
+
+	private final NetsimLoadBalancing loadBalancing;
+
+	private final NetsimPartitioning partitioning;
+
+	private final double loadBalancingInterval;
+
+	private double nextLoadBalancingTime;
+
+	private long vehiclesMovedOverNodes = 0;
+	private long crossPartitionHandovers = 0;
 	
 	// for detailed run time analysis - used in combination with QSim.analyzeRunTimes
 	public static int numObservedTimeSteps = 24*3600;
@@ -140,6 +159,9 @@ public class QNetsimEngine implements MobsimEngine, NetsimEngine {
 		final Config config = sim.getScenario().getConfig();
 		final QSimConfigGroup qsimConfigGroup = config.qsim();
 		this.usingThreadpool = qsimConfigGroup.isUsingThreadpool();
+		this.loadBalancing = qsimConfigGroup.getNetsimLoadBalancing();
+		this.partitioning = qsimConfigGroup.getNetsimPartitioning();
+		this.loadBalancingInterval = qsimConfigGroup.getNetsimLoadBalancingInterval();
 
 
 		// configuring the car departure hander (including the vehicle behavior)
@@ -259,6 +281,33 @@ public class QNetsimEngine implements MobsimEngine, NetsimEngine {
 		for (QLinkI link : network.getNetsimLinks().values()) {
 			link.clearVehicles();
 		}
+
+		this.vehiclesMovedOverNodes = 0;
+		this.crossPartitionHandovers = 0;
+		for (QNodeI node : network.getNetsimNodes().values()) {
+			if (node instanceof AbstractQNode) {
+				this.vehiclesMovedOverNodes += ((AbstractQNode) node).getVehiclesMovedOverNode();
+				this.crossPartitionHandovers += ((AbstractQNode) node).getVehiclesHandedOverFromOtherPartition();
+			}
+		}
+		log.info(this.crossPartitionHandovers + " of " + this.vehiclesMovedOverNodes
+				+ " vehicles moved over nodes were handed over between netsim partitions.");
+	}
+
+	/**
+	 * @return the number of vehicles moved from one link to the next over a node in the last simulation run.
+	 * Only available after {@link #afterSim()}.
+	 */
+	public long getNumberOfVehiclesMovedOverNodes() {
+		return this.vehiclesMovedOverNodes;
+	}
+
+	/**
+	 * @return the number of vehicles that, in the last simulation run, were moved over a node that belongs to another
+	 * netsim partition than the link the vehicle came from.  Only available after {@link #afterSim()}.
+	 */
+	public long getNumberOfCrossPartitionHandovers() {
+		return this.crossPartitionHandovers;
 	}
 
 	/**
@@ -272,6 +321,20 @@ public class QNetsimEngine implements MobsimEngine, NetsimEngine {
 		this.printSimLog(time);
 	}
 
+	/**
+	 * As long as there are vehicles on the network, every time step is needed.  Otherwise, only the load balancing
+	 * and the log message depend on the time.
+	 */
+	@Override
+	public double getNextWakeUpTime() {
+		for (QNetsimEngineChunk chunk : this.chunks) {
+			if (chunk.isActive()) {
+				return Double.NEGATIVE_INFINITY;
+			}
+		}
+		return Math.min(this.nextLoadBalancingTime, this.infoTime);
+	}
+
 	/*
 	 * The Threads are waiting at the startBarrier.
 	 * We trigger them by reaching this Barrier. Now the
@@ -307,6 +370,11 @@ public class QNetsimEngine implements MobsimEngine, NetsimEngine {
 		// So make sure that no thread sticks out in terms of slowness.  Difficult to achieve, though.  A decade back, we used a "typical" run
 		// as input for the domain decomposition under (b).
 
+		if (time >= this.nextLoadBalancingTime) {
+			this.nextLoadBalancingTime = time + this.loadBalancingInterval;
+			balanceChunks();
+		}
+
 		// set current Time
 		for (QNetsimEngineRunner engine : this.engines) {
 			engine.setTime(time);
@@ -338,6 +406,57 @@ public class QNetsimEngine implements MobsimEngine, NetsimEngine {
 	}
 
 
+	/**
+	 * @return the number of runners, i.e. the maximal number of tasks for {@link #runOnRunners(List)}.
+	 */
+	public int getNumberOfRunners() {
+		return this.numOfRunners;
+	}
+
+	/**
+	 * Runs the given tasks on the runners of this engine, so that other engines can use the same threads, and waits until
+	 * all tasks are finished.  Must only be called from the main thread of the mobsim, between {@link #onPrepareSim()} and
+	 * {@link #afterSim()}, and not while this engine is in {@link #doSimStep(double)}.
+	 *
+	 * @param tasks at most {@link #getNumberOfRunners()} tasks
+	 */
+	public void runOnRunners(final List<? extends Runnable> tasks) {
+		if (tasks.size() > this.engines.size()) {
+			throw new IllegalArgumentException("got " + tasks.size() + " tasks, but there are only " + this.engines.size() + " runners.");
+		}
+		for (int i = 0; i < this.engines.size(); i++) {
+			this.engines.get(i).setTask(i < tasks.size() ? tasks.get(i) : () -> {});
+		}
+		try {
+			if (this.usingThreadpool) {
+				for (Future<Boolean> future : pool.invokeAll(this.engines)) {
+					future.get();
+				}
+			} else {
+				this.startBarrier.arriveAndAwaitAdvance();
+				this.endBarrier.arriveAndAwaitAdvance();
+				for (QNetsimEngineRunner engine : this.engines) {
+					Throwable error = engine.getAndClearTaskError();
+					if (error != null) {
+						throw new ExecutionException(error);
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e) ;
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		} finally {
+			for (QNetsimEngineRunner engine : this.engines) {
+				engine.setTask(null);
+				engine.getAndClearTaskError();
+			}
+		}
+	}
+
 	/*package*/ void printSimLog(double time) {
 		if (time >= this.infoTime) {
 			this.infoTime += INFO_PERIOD;
@@ -450,6 +569,30 @@ public class QNetsimEngine implements MobsimEngine, NetsimEngine {
 			this.engines.add(engine);
 		}
 
+		/*
+		 * Without load balancing, every runner gets exactly one chunk, which is the
+		 * same as the original static assignment.  With load balancing, there are
+		 * several chunks per runner which are re-distributed from time to time.
+		 */
+		int numOfChunks = numOfRunners;
+		if (this.loadBalancing != NetsimLoadBalancing.off && numOfRunners > 1) {
+			numOfChunks *= this.qsim.getScenario().getConfig().qsim().getNetsimChunksPerThread();
+			this.nextLoadBalancingTime = internalInterface.getMobsim().getSimTimer().getSimStartTime() + this.loadBalancingInterval;
+		} else {
+			this.nextLoadBalancingTime = Double.POSITIVE_INFINITY;
+		}
+		this.chunks = new ArrayList<>();
+		for (int i = 0; i < numOfChunks; i++) {
+			this.chunks.add(new QNetsimEngineChunk(i));
+		}
+		for (int i = 0; i < numOfRunners; i++) {
+			List<QNetsimEngineChunk> runnerChunks = new ArrayList<>();
+			for (int j = i; j < numOfChunks; j += numOfRunners) {
+				runnerChunks.add(this.chunks.get(j));
+			}
+			this.engines.get(i).setChunks(runnerChunks);
+		}
+
 		/*
 		 *  Assign every Link and Node to an Activator. By doing so, the
 		 *  activateNode(...) and activateLink(...) methods in this class
@@ -466,14 +609,25 @@ public class QNetsimEngine implements MobsimEngine, NetsimEngine {
 	private void assignNetElementActivators() {
 
 		// only for statistics
-		int nodes[] = new int[numOfRunners];
-		int links[] = new int[numOfRunners];
+		int nodes[] = new int[this.chunks.size()];
+		int links[] = new int[this.chunks.size()];
+
+		IdMap<Node, Integer> partitions = null;
+		if (this.partitioning == NetsimPartitioning.recursiveCoordinateBisection && this.chunks.size() > 1) {
+			List<Node> netsimNodes = new ArrayList<>(network.getNetsimNodes().size());
+			for (QNodeI node : network.getNetsimNodes().values()) {
+				netsimNodes.add(node.getNode());
+			}
+			partitions = new RecursiveCoordinateBisection().partition(netsimNodes, this.chunks.size());
+		}
+		IdMap<Node, Integer> nodeChunks = new IdMap<>(Node.class, network.getNetsimNodes().size());
 
 		int roundRobin = 0;
 		for (QNodeI node : network.getNetsimNodes().values()) {
-			int i = roundRobin % this.numOfRunners;
+			int i = partitions == null ? roundRobin % this.chunks.size() : partitions.get(node.getNode().getId());
+			nodeChunks.put(node.getNode().getId(), i);
 			if( node instanceof AbstractQNode){
-				((AbstractQNode) node).setNetElementActivationRegistry(this.engines.get(i));
+				((AbstractQNode) node).setNetElementActivationRegistry(this.chunks.get(i));
 			}
 			nodes[i]++;
 
@@ -483,7 +637,7 @@ public class QNetsimEngine implements MobsimEngine, NetsimEngine {
 				// (must be of this type to work.  kai, feb'12)
 
 				// removing qsim as "person in the middle".  not fully sure if this is the same in the parallel impl.  kai, oct'10
-				qLink.setNetElementActivationRegistry(this.engines.get(i));
+				qLink.setNetElementActivationRegistry(this.chunks.get(i));
 
 				/*
 				 * If the QLink contains agents that end their activity in the first time
@@ -491,7 +645,7 @@ public class QNetsimEngine implements MobsimEngine, NetsimEngine {
 				 */
 				if (linksToActivateInitially.remove(qLink) 
 						|| qsim.getScenario().getConfig().qsim().getSimStarttimeInterpretation()==StarttimeInterpretation.onlyUseStarttime) {
-					this.engines.get(i).registerLinkAsActive(qLink);
+					this.chunks.get(i).registerLinkAsActive(qLink);
 				}
 
 				links[i]++;
@@ -501,14 +655,94 @@ public class QNetsimEngine implements MobsimEngine, NetsimEngine {
 			roundRobin++;
 		}
 
+		/*
+		 * Mark the links where vehicles are handed over from one chunk to another, for the
+		 * statistics on cross-partition handovers.
+		 */
+		int borderLinks = 0;
+		for (QLinkI qLink : network.getNetsimLinks().values()) {
+			Link link = qLink.getLink();
+			Integer fromChunk = nodeChunks.get(link.getFromNode().getId());
+			Integer toChunk = nodeChunks.get(link.getToNode().getId());
+			boolean atBorder = fromChunk != null && toChunk != null && !fromChunk.equals(toChunk);
+			if (qLink instanceof AbstractQLink) {
+				((AbstractQLink) qLink).setAtPartitionBorder(atBorder);
+			}
+			if (atBorder) borderLinks++;
+		}
+		log.info(borderLinks + " of " + network.getNetsimLinks().size() + " links connect nodes of different netsim partitions ("
+				+ this.chunks.size() + " partitions, " + this.partitioning + ").");
+
 		// print some statistics
 		for (int i = 0; i < this.engines.size(); i++) {
-			log.info("Assigned " + nodes[i] + " nodes and " + links[i] + " links to QSimEngineRunner #" + i);
+			int runnerNodes = 0;
+			int runnerLinks = 0;
+			for (QNetsimEngineChunk chunk : this.engines.get(i).getChunks()) {
+				runnerNodes += nodes[chunk.getIndex()];
+				runnerLinks += links[chunk.getIndex()];
+			}
+			log.info("Assigned " + runnerNodes + " nodes and " + runnerLinks + " links to QSimEngineRunner #" + i);
 		}
 
 		this.linksToActivateInitially.clear();
 	}
 
+	/*
+	 * Re-distributes the chunks over the runners such that the number of sim steps executed in
+	 * the last interval is as equal as possible (longest processing time first).  Only called from
+	 * the main thread while the runners are idle.  Ties are broken by chunk/runner index, and the
+	 * work measure is a count, so the assignment is reproducible for a fixed seed.
+	 */
+	private void balanceChunks() {
+		final long[] chunkWork = new long[this.chunks.size()];
+		List<QNetsimEngineChunk> sorted = new ArrayList<>(this.chunks);
+		for (QNetsimEngineChunk chunk : this.chunks) {
+			chunkWork[chunk.getIndex()] = chunk.getAndResetWork();
+		}
+		sorted.sort((c1, c2) -> {
+			int cmp = Long.compare(chunkWork[c2.getIndex()], chunkWork[c1.getIndex()]);
+			return cmp != 0 ? cmp : Integer.compare(c1.getIndex(), c2.getIndex());
+		});
+
+		long[] runnerWork = new long[this.numOfRunners];
+		long[] previousRunnerWork = new long[this.numOfRunners];
+		List<List<QNetsimEngineChunk>> runnerChunks = new ArrayList<>();
+		for (int i = 0; i < this.numOfRunners; i++) {
+			runnerChunks.add(new ArrayList<>());
+			for (QNetsimEngineChunk chunk : this.engines.get(i).getChunks()) {
+				previousRunnerWork[i] += chunkWork[chunk.getIndex()];
+			}
+		}
+		for (QNetsimEngineChunk chunk : sorted) {
+			int target = 0;
+			for (int i = 1; i < this.numOfRunners; i++) {
+				if (runnerWork[i] < runnerWork[target]) target = i;
+			}
+			runnerWork[target] += chunkWork[chunk.getIndex()];
+			runnerChunks.get(target).add(chunk);
+		}
+		for (int i = 0; i < this.numOfRunners; i++) {
+			List<QNetsimEngineChunk> list = runnerChunks.get(i);
+			list.sort((c1, c2) -> Integer.compare(c1.getIndex(), c2.getIndex()));
+			this.engines.get(i).setChunks(list);
+		}
+
+		if (log.isDebugEnabled()) {
+			log.debug("netsim load balancing: max/avg executed sim steps per runner before: " + imbalance(previousRunnerWork)
+					+ ", after: " + imbalance(runnerWork));
+		}
+	}
+
+	private static String imbalance(long[] work) {
+		long max = 0;
+		long sum = 0;
+		for (long w : work) {
+			max = Math.max(max, w);
+			sum += w;
+		}
+		return sum == 0 ? "n/a" : Double.toString(((double) max * work.length) / sum);
+	}
+
 	public void printEngineRunTimes() {
 		if (!QSim.analyzeRunTimes) return;
 		
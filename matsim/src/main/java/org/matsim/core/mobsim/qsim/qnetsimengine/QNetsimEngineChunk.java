@@ -0,0 +1,171 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * QNetsimEngineChunk.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.qnetsimengine;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A group of {@link QNodeI}s together with their out-links, which is always moved as a whole by one
+ * {@link QNetsimEngineRunner}.  Since nodes and links register themselves at the chunk (and not at the
+ * runner), chunks can be handed from one runner to another between two time steps without touching the
+ * active nodes and links.  This is what the load balancing in the {@link QNetsimEngine} relies on.
+ * <p></p>
+ * The chunk also counts how many node and link sim steps it has executed.  This count is used as a
+ * (deterministic) measure of the work the chunk causes; wall clock times are not used on purpose since
+ * they would make the assignment of chunks to runners, and thus the results, non-reproducible.
+ */
+final class QNetsimEngineChunk extends NetElementActivationRegistry {
+
+	private final int index;
+
+	/*
+	 * This needs to be thread-safe since QNodes could be activated concurrently
+	 * from multiple threads. In previous implementations, this data structure was
+	 * a Map since it was possible that the same node was activated concurrently.
+	 * Now, the implementation of the QNode was adapted in a way that this is not
+	 * possible anymore.
+	 * cdobler, sep'14
+	 */
+	private final Queue<QNodeI> nodesQueue = new ConcurrentLinkedQueue<>();
+
+	/*
+	 * Needs not to be thread-safe since links are only activated from nodes which
+	 * are handled (by design) from links handled by the same thread. Therefore,
+	 * no concurrent add operation can occur.
+	 * cdobler, sep'14
+	 */
+	private final List<QLinkI> linksList = new LinkedList<>();
+
+	/*
+	 * Ensure that nodes and links are only activate during times where we expect it.
+	 * Otherwise this could result in unpredictable behavior. Therefore we throw
+	 * an exception then.
+	 * Doing so allows us adding nodes and links directly to the nodesQueue respectively
+	 * the linksList. Previously, we had to cache them in other data structures and copy
+	 * them at a later point in time.
+	 * cdobler, sep'14
+	 */
+	private boolean lockNodes = false;
+	private boolean lockLinks = false;
+
+	/*
+	 * Only written by the runner that currently owns this chunk, and only read/reset by the
+	 * QNetsimEngine while all runners wait at a barrier.
+	 */
+	private long work = 0;
+
+	/*package*/ QNetsimEngineChunk(int index) {
+		this.index = index;
+	}
+
+	/*package*/ int getIndex() {
+		return this.index;
+	}
+
+	/*package*/ void moveNodes(double time) {
+		boolean remainsActive;
+		this.lockNodes = true;
+		QNodeI node;
+		Iterator<QNodeI> simNodes = this.nodesQueue.iterator();
+		while (simNodes.hasNext()) {
+			node = simNodes.next();
+			remainsActive = node.doSimStep(time);
+			if (!remainsActive) simNodes.remove();
+			this.work++;
+		}
+		this.lockNodes = false;
+	}
+
+	/*package*/ void moveLinks() {
+		boolean remainsActive;
+		lockLinks = true;
+		QLinkI link;
+		ListIterator<QLinkI> simLinks = this.linksList.listIterator();
+		while (simLinks.hasNext()) {
+			link = simLinks.next();
+
+			remainsActive = link.doSimStep();
+
+			if (!remainsActive) simLinks.remove();
+			this.work++;
+		}
+		lockLinks = false;
+	}
+
+	/**
+	 * @return the number of node and link sim steps executed since the last call of this method.
+	 */
+	/*package*/ long getAndResetWork() {
+		long w = this.work;
+		this.work = 0;
+		return w;
+	}
+
+	/*
+	 * This method is only called while links are NOT "moved", i.e. their
+	 * doStimStep(...) methods are called. To ensure that, we  use a boolean lock.
+	 * cdobler, sep'14
+	 */
+	@Override
+	protected void registerLinkAsActive(QLinkI link) {
+		if (!lockLinks) linksList.add(link);
+		else throw new RuntimeException("Tried to activate a QLink at a time where this was not allowed. Aborting!");
+	}
+
+	/**
+	 * @return <code>true</code> if there are active nodes or links, i.e. vehicles to move
+	 */
+	/*package*/ boolean isActive() {
+		return !this.linksList.isEmpty() || !this.nodesQueue.isEmpty();
+	}
+
+	@Override
+	public int getNumberOfSimulatedLinks() {
+		return this.linksList.size();
+	}
+
+	/*
+	 * This method is only called while nodes are NOT "moved", i.e. their
+	 * doStimStep(...) methods are called. To ensure that, we  use a boolean lock.
+	 * cdobler, sep'14
+	 */
+	@Override
+	protected void registerNodeAsActive(QNodeI node) {
+		if (!this.lockNodes) this.nodesQueue.add(node);
+		else throw new RuntimeException("Tried to activate a QNode at a time where this was not allowed. Aborting!");
+	}
+
+	/*
+	 * Note that the size() method is O(n) for a ConcurrentLinkedQueue as used
+	 * for the nodesQueue. However, this method is only called once every simulated
+	 * hour for the log message. Therefore, it should be okay.
+	 * cdobler, sep'14
+	 */
+	@Override
+	public int getNumberOfSimulatedNodes() {
+		return this.nodesQueue.size();
+	}
+}
@@ -23,9 +23,9 @@ package org.matsim.core.mobsim.qsim.qnetsimengine;
 import org.matsim.core.gbl.Gbl;
 import org.matsim.core.mobsim.qsim.QSim;
 
-import java.util.*;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Phaser;
 
 /**
@@ -34,7 +34,7 @@ import java.util.concurrent.Phaser;
  * @author (of this documentation) nagel
  *
  */
-class QNetsimEngineRunner extends NetElementActivationRegistry implements Runnable, Callable<Boolean> {
+class QNetsimEngineRunner implements Runnable, Callable<Boolean> {
 
 	private double time = 0.0;
 
@@ -45,37 +45,17 @@ class QNetsimEngineRunner extends NetElementActivationRegistry implements Runnab
 	private final Phaser endBarrier;
 
 	/*
-	 * This needs to be thread-safe since QNodes could be activated concurrently
-	 * from multiple threads. In previous implementations, this data structure was
-	 * a Map since it was possible that the same node was activated concurrently.
-	 * Now, the implementation of the QNode was adapted in a way that this is not
-	 * possible anymore.
-	 * cdobler, sep'14
+	 * The chunks (i.e. groups of nodes and their out-links) this runner moves.  They are only
+	 * exchanged by the QNetsimEngine while the runner is waiting at a barrier or is not invoked.
 	 */
-	private final Queue<QNodeI> nodesQueue = new ConcurrentLinkedQueue<>();
-
-	/*
-	 * Needs not to be thread-safe since links are only activated from nodes which
-	 * are handled (by design) from links handled by the same thread. Therefore,
-	 * no concurrent add operation can occur.
-	 * cdobler, sep'14
-	 */
-	private final List<QLinkI> linksList = new LinkedList<>();
-
-	/*
-	 * Ensure that nodes and links are only activate during times where we expect it.
-	 * Otherwise this could result in unpredictable behavior. Therefore we throw
-	 * an exception then.
-	 * Doing so allows us adding nodes and links directly to the nodesQueue respectively
-	 * the linksList. Previously, we had to cache them in other data structures and copy
-	 * them at a later point in time.
-	 * cdobler, sep'14
-	 */
-	private boolean lockNodes = false;
-	private boolean lockLinks = false;
+	private List<QNetsimEngineChunk> chunks = new ArrayList<>();
 
 	private boolean movingNodes;
 
+	/* if set, the runner executes this task instead of moving nodes and links */
+	private volatile Runnable task = null;
+	private Throwable taskError = null;
+
 	/*package*/ long[] runTimes;
 	private long startTime = 0;
 	{	
@@ -116,7 +96,10 @@ class QNetsimEngineRunner extends NetElementActivationRegistry implements Runnab
 			return false;
 		}
 
-		if (this.movingNodes) {
+		Runnable task = this.task;
+		if (task != null) {
+			task.run();
+		} else if (this.movingNodes) {
 			moveNodes();
 		} else {
 			moveLinks();
@@ -144,6 +127,18 @@ class QNetsimEngineRunner extends NetElementActivationRegistry implements Runnab
 				return;
 			}
 
+			Runnable task = this.task;
+			if (task != null) {
+				try {
+					task.run();
+				} catch (Throwable t) {
+					// must not end the thread, the main thread is waiting at the endBarrier
+					this.taskError = t;
+				}
+				this.endBarrier.arriveAndAwaitAdvance();
+				continue;
+			}
+
 			moveNodes();
 
 			// After moving the QNodes all we use a Phaser to synchronize the threads.
@@ -165,68 +160,48 @@ class QNetsimEngineRunner extends NetElementActivationRegistry implements Runnab
 		}
 	}
 	private void moveNodes() {
-		boolean remainsActive;
-		this.lockNodes = true;
-		QNodeI node;
-		Iterator<QNodeI> simNodes = this.nodesQueue.iterator();
-		while (simNodes.hasNext()) {
-			node = simNodes.next();
-			remainsActive = node.doSimStep(time);
-			if (!remainsActive) simNodes.remove();
+		for (QNetsimEngineChunk chunk : this.chunks) {
+			chunk.moveNodes(time);
 		}
-		this.lockNodes = false;
 	}
 	private void moveLinks() {
-		boolean remainsActive;
-		lockLinks = true;
-		QLinkI link;
-		ListIterator<QLinkI> simLinks = this.linksList.listIterator();
-		while (simLinks.hasNext()) {
-			link = simLinks.next();
-
-			remainsActive = link.doSimStep();
-
-			if (!remainsActive) simLinks.remove();
+		for (QNetsimEngineChunk chunk : this.chunks) {
+			chunk.moveLinks();
 		}
-		lockLinks = false;
 	}
 
-	/*
-	 * This method is only called while links are NOT "moved", i.e. their
-	 * doStimStep(...) methods are called. To ensure that, we  use a boolean lock.
-	 * cdobler, sep'14
-	 */
-	@Override
-	protected void registerLinkAsActive(QLinkI link) {
-		if (!lockLinks) linksList.add(link);
-		else throw new RuntimeException("Tried to activate a QLink at a time where this was not allowed. Aborting!");
+	/*package*/ void setChunks(List<QNetsimEngineChunk> chunks) {
+		this.chunks = chunks;
 	}
 
-	@Override
-	public int getNumberOfSimulatedLinks() {
-		return this.linksList.size();
+	/*package*/ List<QNetsimEngineChunk> getChunks() {
+		return this.chunks;
 	}
 
-	/*
-	 * This method is only called while nodes are NOT "moved", i.e. their
-	 * doStimStep(...) methods are called. To ensure that, we  use a boolean lock.
-	 * cdobler, sep'14
-	 */
-	@Override
-	protected void registerNodeAsActive(QNodeI node) {
-		if (!this.lockNodes) this.nodesQueue.add(node);
-		else throw new RuntimeException("Tried to activate a QNode at a time where this was not allowed. Aborting!");
+	public int getNumberOfSimulatedLinks() {
+		int numLinks = 0;
+		for (QNetsimEngineChunk chunk : this.chunks) {
+			numLinks += chunk.getNumberOfSimulatedLinks();
+		}
+		return numLinks;
 	}
 
-	/*
-	 * Note that the size() method is O(n) for a ConcurrentLinkedQueue as used
-	 * for the nodesQueue. However, this method is only called once every simulated
-	 * hour for the log message. Therefore, it should be okay.
-	 * cdobler, sep'14
-	 */
-	@Override
 	public int getNumberOfSimulatedNodes() {
-		return this.nodesQueue.size();
+		int numNodes = 0;
+		for (QNetsimEngineChunk chunk : this.chunks) {
+			numNodes += chunk.getNumberOfSimulatedNodes();
+		}
+		return numNodes;
+	}
+
+	/*package*/ void setTask(Runnable task) {
+		this.task = task;
+	}
+
+	/*package*/ Throwable getAndClearTaskError() {
+		Throwable error = this.taskError;
+		this.taskError = null;
+		return error;
 	}
 
 	public void setMovingNodes(boolean movingNodes) {
@@ -173,12 +173,14 @@ final class QNodeImpl extends AbstractQNode {
 	}
 	
 	private void moveLink(final QLinkI link, final double now){
+		final boolean fromOtherPartition = link instanceof AbstractQLink && ((AbstractQLink) link).isAtPartitionBorder();
 		for (QLaneI lane : link.getOfferingQLanes()) {
 			while (! lane.isNotOfferingVehicle()) {
 				QVehicle veh = lane.getFirstVehicle();
 				if (! moveVehicleOverNode(veh, link, lane, now )) {
 					break;
 				}
+				this.countVehicleMovedOverNode(fromOtherPartition);
 			}
 		}
 	}
@@ -0,0 +1,849 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * MappedNetwork.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.network;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntFunction;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.NetworkFactory;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.utils.collections.QuadTree;
+import org.matsim.utils.objectattributes.attributable.Attributes;
+
+/**
+ * A network whose nodes and links are kept in a file written by {@link MappedNetworkWriter}, which is mapped into
+ * memory instead of being read.
+ * <p></p>
+ * Every attribute of the nodes and links (coordinates, length, capacity, ...) is stored in a column of its own, and
+ * the in- and out-links of the nodes are stored as index lists. Nodes and links are addressed by their row in these
+ * columns, and rows are looked up by the index of the {@link Id}. Only the ids are created on the heap when the file is
+ * loaded; the {@link Node}s and {@link Link}s returned by this network are small objects which only know their row
+ * (nodes also keep their coordinate once it was asked for).
+ * They are created when they are first accessed, and there is exactly one of them per row, so they can be compared
+ * with <code>==</code> like the nodes and links of other networks.
+ * <p></p>
+ * If the file is writable, it is mapped copy-on-write: the attributes of nodes and links can be changed, but the
+ * changes are not written back to the file. Otherwise, it is mapped read-only, and changing them throws a
+ * {@link java.nio.ReadOnlyBufferException}. Nodes and links can neither be added nor removed, and links cannot be
+ * attached to other nodes. The {@link Attributes} of nodes and links are not stored in the file; if some are set, they are kept on the heap.
+ * Network change events are not supported.
+ * <p></p>
+ * The quad trees for the nearest node and link searches of {@link SearchableNetwork} are built from the coordinate
+ * columns when they are first needed, as for {@link NetworkImpl}. They are discarded if the coordinate of a node is changed.
+ *
+ * @see NetworkUtils#readMappedNetwork(String)
+ */
+/*deliberately package*/ final class MappedNetwork implements Network, SearchableNetwork {
+
+	private final static Logger log = Logger.getLogger(MappedNetwork.class);
+
+	static final int MAGIC = 0x4d4e4554; // "MNET"
+	static final int VERSION = 1;
+
+	/**
+	 * The sections of the file, in the order of their positions in the header.
+	 */
+	enum Section {
+		NODE_X, NODE_Y, NODE_Z, NODE_IN_OFFSETS, NODE_IN_LINKS, NODE_OUT_OFFSETS, NODE_OUT_LINKS,
+		LINK_FROM, LINK_TO, LINK_LENGTH, LINK_FREESPEED, LINK_CAPACITY, LINK_LANES, LINK_MODES,
+		NODE_IDS, LINK_IDS, MODES
+	}
+
+	/* magic, version, number of nodes and links, capacity period, effective cell size and lane width, name length,
+	 * then position and length of every section; the name follows the header */
+	static final int HEADER_SIZE = 4 * 4 + 3 * 8 + 4 + Section.values().length * 2 * 8;
+
+	private final int nodeCount;
+	private final int linkCount;
+
+	private final DoubleBuffer nodeX;
+	private final DoubleBuffer nodeY;
+	/* NaN if the coordinate has no z value */
+	private final DoubleBuffer nodeZ;
+	/* the in-links of the node in row i are in inLinks[inOffsets[i]] ... inLinks[inOffsets[i + 1] - 1], same for out-links */
+	private final IntBuffer inOffsets;
+	private final IntBuffer inLinks;
+	private final IntBuffer outOffsets;
+	private final IntBuffer outLinks;
+
+	private final IntBuffer linkFrom;
+	private final IntBuffer linkTo;
+	private final DoubleBuffer linkLength;
+	private final DoubleBuffer linkFreespeed;
+	private final DoubleBuffer linkCapacity;
+	private final DoubleBuffer linkLanes;
+	/* index into modeSets */
+	private final IntBuffer linkModes;
+
+	private final Id<Node>[] nodeIds;
+	private final Id<Link>[] linkIds;
+	/* row by Id index, -1 if not in the network */
+	private final int[] nodeRows;
+	private final int[] linkRows;
+
+	private final List<Set<String>> modeSets = new ArrayList<>();
+	private final Map<Set<String>, Integer> modeSetIndices = new HashMap<>();
+
+	private final Map<Integer, Attributes> nodeAttributes = new ConcurrentHashMap<>();
+	private final Map<Integer, Attributes> linkAttributes = new ConcurrentHashMap<>();
+	private final Attributes attributes = new Attributes();
+
+	/* the node and link of every row, created when they are first accessed */
+	private final AtomicReferenceArray<MappedNode> nodeCache;
+	private final AtomicReferenceArray<MappedLink> linkCache;
+
+	private final NetworkFactory factory = new NetworkFactoryImpl(this);
+	private final Map<Id<Node>, MappedNode> nodes;
+	private final Map<Id<Link>, MappedLink> links;
+
+	private volatile QuadTree<Node> nodeQuadTree = null;
+	private volatile LinkQuadTree linkQuadTree = null;
+
+	private double capacityPeriod;
+	private double effectiveCellSize;
+	private double effectiveLaneWidth;
+	private String name;
+
+	@SuppressWarnings("unchecked")
+	private MappedNetwork(final FileChannel channel, final MapMode mode) throws IOException {
+		ByteBuffer header = map(channel, MapMode.READ_ONLY, 0, HEADER_SIZE);
+		if (header.getInt() != MAGIC) {
+			throw new IOException("not a mapped network file");
+		}
+		int version = header.getInt();
+		if (version != VERSION) {
+			throw new IOException("unsupported version " + version + " of mapped network file");
+		}
+		this.nodeCount = header.getInt();
+		this.linkCount = header.getInt();
+		this.capacityPeriod = header.getDouble();
+		this.effectiveCellSize = header.getDouble();
+		this.effectiveLaneWidth = header.getDouble();
+		int nameLength = header.getInt();
+		ByteBuffer[] sections = new ByteBuffer[Section.values().length];
+		for (Section section : Section.values()) {
+			long position = header.getLong();
+			long length = header.getLong();
+			sections[section.ordinal()] = map(channel, mode, position, length);
+		}
+		if (nameLength >= 0) {
+			byte[] bytes = new byte[nameLength];
+			map(channel, MapMode.READ_ONLY, HEADER_SIZE, nameLength).get(bytes);
+			this.name = new String(bytes, StandardCharsets.UTF_8);
+		}
+
+		this.nodeX = sections[Section.NODE_X.ordinal()].asDoubleBuffer();
+		this.nodeY = sections[Section.NODE_Y.ordinal()].asDoubleBuffer();
+		this.nodeZ = sections[Section.NODE_Z.ordinal()].asDoubleBuffer();
+		this.inOffsets = sections[Section.NODE_IN_OFFSETS.ordinal()].asIntBuffer();
+		this.inLinks = sections[Section.NODE_IN_LINKS.ordinal()].asIntBuffer();
+		this.outOffsets = sections[Section.NODE_OUT_OFFSETS.ordinal()].asIntBuffer();
+		this.outLinks = sections[Section.NODE_OUT_LINKS.ordinal()].asIntBuffer();
+		this.linkFrom = sections[Section.LINK_FROM.ordinal()].asIntBuffer();
+		this.linkTo = sections[Section.LINK_TO.ordinal()].asIntBuffer();
+		this.linkLength = sections[Section.LINK_LENGTH.ordinal()].asDoubleBuffer();
+		this.linkFreespeed = sections[Section.LINK_FREESPEED.ordinal()].asDoubleBuffer();
+		this.linkCapacity = sections[Section.LINK_CAPACITY.ordinal()].asDoubleBuffer();
+		this.linkLanes = sections[Section.LINK_LANES.ordinal()].asDoubleBuffer();
+		this.linkModes = sections[Section.LINK_MODES.ordinal()].asIntBuffer();
+
+		this.nodeIds = new Id[this.nodeCount];
+		readIds(sections[Section.NODE_IDS.ordinal()], this.nodeIds, Node.class);
+		this.nodeRows = createRows(this.nodeIds, Node.class);
+		this.linkIds = new Id[this.linkCount];
+		readIds(sections[Section.LINK_IDS.ordinal()], this.linkIds, Link.class);
+		this.linkRows = createRows(this.linkIds, Link.class);
+
+		ByteBuffer modes = sections[Section.MODES.ordinal()];
+		int modeSetCount = modes.getInt();
+		for (int i = 0; i < modeSetCount; i++) {
+			Set<String> modeSet = new HashSet<>();
+			int size = modes.getInt();
+			for (int j = 0; j < size; j++) {
+				modeSet.add(readString(modes));
+			}
+			addModeSet(modeSet);
+		}
+
+		this.nodeCache = new AtomicReferenceArray<>(this.nodeCount);
+		this.linkCache = new AtomicReferenceArray<>(this.linkCount);
+		this.nodes = new RowMap<>(this.nodeIds, this.nodeRows, this::getNode, null, 0, this.nodeCount);
+		this.links = new RowMap<>(this.linkIds, this.linkRows, this::getLink, null, 0, this.linkCount);
+	}
+
+	static MappedNetwork read(final Path file) throws IOException {
+		log.info("mapping network from " + file);
+		// a copy-on-write mapping needs a channel which is open for writing, although nothing is written
+		boolean writable = Files.isWritable(file);
+		// the mappings stay valid when the channel is closed
+		try (FileChannel channel = writable ? FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)
+				: FileChannel.open(file, StandardOpenOption.READ)) {
+			MappedNetwork network = new MappedNetwork(channel, writable ? MapMode.PRIVATE : MapMode.READ_ONLY);
+			log.info("mapped network with " + network.nodeCount + " nodes and " + network.linkCount + " links");
+			return network;
+		}
+	}
+
+	static ByteBuffer map(final FileChannel channel, final MapMode mode, final long position, final long length) throws IOException {
+		if (length > Integer.MAX_VALUE) {
+			throw new IOException("section with " + length + " bytes is too large to be mapped");
+		}
+		return channel.map(mode, position, length).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	private static <T> void readIds(final ByteBuffer buffer, final Id<T>[] ids, final Class<T> type) {
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = Id.create(readString(buffer), type);
+		}
+	}
+
+	private static String readString(final ByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static <T> int[] createRows(final Id<T>[] ids, final Class<T> type) {
+		int[] rows = new int[Id.getNumberOfIds(type)];
+		Arrays.fill(rows, -1);
+		for (int row = 0; row < ids.length; row++) {
+			rows[ids[row].index()] = row;
+		}
+		return rows;
+	}
+
+	private MappedNode getNode(final int row) {
+		MappedNode node = this.nodeCache.get(row);
+		if (node == null) {
+			// if another thread was faster, use its node, so there is only one per row
+			this.nodeCache.compareAndSet(row, null, new MappedNode(this, row));
+			node = this.nodeCache.get(row);
+		}
+		return node;
+	}
+
+	private MappedLink getLink(final int row) {
+		MappedLink link = this.linkCache.get(row);
+		if (link == null) {
+			this.linkCache.compareAndSet(row, null, new MappedLink(this, row));
+			link = this.linkCache.get(row);
+		}
+		return link;
+	}
+
+	private synchronized int addModeSet(final Set<String> modes) {
+		Integer index = this.modeSetIndices.get(modes);
+		if (index == null) {
+			Set<String> copy = Collections.unmodifiableSet(new HashSet<>(modes));
+			index = this.modeSets.size();
+			this.modeSets.add(copy);
+			this.modeSetIndices.put(copy, index);
+		}
+		return index;
+	}
+
+	private synchronized Set<String> getModeSet(final int index) {
+		return this.modeSets.get(index);
+	}
+
+	@Override
+	public NetworkFactory getFactory() {
+		return this.factory;
+	}
+
+	@Override
+	public Map<Id<Node>, ? extends Node> getNodes() {
+		return this.nodes;
+	}
+
+	@Override
+	public Map<Id<Link>, ? extends Link> getLinks() {
+		return this.links;
+	}
+
+	@Override
+	public double getCapacityPeriod() {
+		return this.capacityPeriod;
+	}
+
+	@Override
+	public void setCapacityPeriod(final double capPeriod) {
+		this.capacityPeriod = capPeriod;
+	}
+
+	@Override
+	public double getEffectiveLaneWidth() {
+		return this.effectiveLaneWidth;
+	}
+
+	@Override
+	public void setEffectiveLaneWidth(final double effectiveLaneWidth) {
+		this.effectiveLaneWidth = effectiveLaneWidth;
+	}
+
+	@Override
+	public double getEffectiveCellSize() {
+		return this.effectiveCellSize;
+	}
+
+	@Override
+	public void setEffectiveCellSize(final double effectiveCellSize) {
+		this.effectiveCellSize = effectiveCellSize;
+	}
+
+	@Override
+	public String getName() {
+		return this.name;
+	}
+
+	@Override
+	public void setName(final String name) {
+		this.name = name;
+	}
+
+	@Override
+	public Attributes getAttributes() {
+		return this.attributes;
+	}
+
+	@Override
+	public Link getNearestLinkExactly(final Coord coord) {
+		LinkQuadTree quadTree = this.linkQuadTree;
+		if (quadTree == null) {
+			quadTree = buildLinkQuadTree();
+		}
+		return quadTree.getNearest(coord.getX(), coord.getY());
+	}
+
+	@Override
+	public Node getNearestNode(final Coord coord) {
+		QuadTree<Node> quadTree = this.nodeQuadTree;
+		if (quadTree == null) {
+			quadTree = buildNodeQuadTree();
+		}
+		return quadTree.getClosest(coord.getX(), coord.getY());
+	}
+
+	@Override
+	public Collection<Node> getNearestNodes(final Coord coord, final double distance) {
+		QuadTree<Node> quadTree = this.nodeQuadTree;
+		if (quadTree == null) {
+			quadTree = buildNodeQuadTree();
+		}
+		return quadTree.getDisk(coord.getX(), coord.getY(), distance);
+	}
+
+	@Override
+	public QuadTree<Node> getNodeQuadTree() {
+		return this.nodeQuadTree;
+	}
+
+	@Override
+	public LinkQuadTree getLinkQuadTree() {
+		return this.linkQuadTree;
+	}
+
+	/**
+	 * @return the bounds of all node coordinates as minX, minY, maxX, maxY, read directly from the columns
+	 */
+	private double[] getBounds() {
+		double minX = Double.POSITIVE_INFINITY;
+		double minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY;
+		double maxY = Double.NEGATIVE_INFINITY;
+		for (int row = 0; row < this.nodeCount; row++) {
+			double x = this.nodeX.get(row);
+			double y = this.nodeY.get(row);
+			if (x < minX) { minX = x; }
+			if (y < minY) { minY = y; }
+			if (x > maxX) { maxX = x; }
+			if (y > maxY) { maxY = y; }
+		}
+		// same margin as in NetworkImpl
+		return new double[] { minX - 1.0, minY - 1.0, maxX + 1.0, maxY + 1.0 };
+	}
+
+	private synchronized QuadTree<Node> buildNodeQuadTree() {
+		if (this.nodeQuadTree != null) {
+			return this.nodeQuadTree;
+		}
+		double[] bounds = getBounds();
+		log.info("building QuadTree for nodes: xrange(" + bounds[0] + "," + bounds[2] + "); yrange(" + bounds[1] + "," + bounds[3] + ")");
+		QuadTree<Node> quadTree = new QuadTree<>(bounds[0], bounds[1], bounds[2], bounds[3]);
+		for (int row = 0; row < this.nodeCount; row++) {
+			quadTree.put(this.nodeX.get(row), this.nodeY.get(row), getNode(row));
+		}
+		// only publish the complete quad tree
+		this.nodeQuadTree = quadTree;
+		return quadTree;
+	}
+
+	private synchronized LinkQuadTree buildLinkQuadTree() {
+		if (this.linkQuadTree != null) {
+			return this.linkQuadTree;
+		}
+		double[] bounds = getBounds();
+		log.info("building LinkQuadTree for nodes: xrange(" + bounds[0] + "," + bounds[2] + "); yrange(" + bounds[1] + "," + bounds[3] + ")");
+		LinkQuadTree quadTree = new LinkQuadTree(bounds[0], bounds[1], bounds[2], bounds[3]);
+		for (int row = 0; row < this.linkCount; row++) {
+			quadTree.put(getLink(row));
+		}
+		this.linkQuadTree = quadTree;
+		return quadTree;
+	}
+
+	private synchronized void discardQuadTrees() {
+		this.nodeQuadTree = null;
+		this.linkQuadTree = null;
+	}
+
+	@Override
+	public void addNode(final Node nn) {
+		throw new UnsupportedOperationException("nodes cannot be added to a mapped network");
+	}
+
+	@Override
+	public void addLink(final Link ll) {
+		throw new UnsupportedOperationException("links cannot be added to a mapped network");
+	}
+
+	@Override
+	public Node removeNode(final Id<Node> nodeId) {
+		throw new UnsupportedOperationException("nodes cannot be removed from a mapped network");
+	}
+
+	@Override
+	public Link removeLink(final Id<Link> linkId) {
+		throw new UnsupportedOperationException("links cannot be removed from a mapped network");
+	}
+
+	static final class MappedNode implements Node {
+
+		private final MappedNetwork network;
+		private final int row;
+		/* Coord is immutable, so it is created only once per node; routers ask for it very often */
+		private volatile Coord coord = null;
+
+		private MappedNode(final MappedNetwork network, final int row) {
+			this.network = network;
+			this.row = row;
+		}
+
+		@Override
+		public Id<Node> getId() {
+			return this.network.nodeIds[this.row];
+		}
+
+		@Override
+		public Coord getCoord() {
+			Coord coord = this.coord;
+			if (coord == null) {
+				double z = this.network.nodeZ.get(this.row);
+				if (Double.isNaN(z)) {
+					coord = new Coord(this.network.nodeX.get(this.row), this.network.nodeY.get(this.row));
+				} else {
+					coord = new Coord(this.network.nodeX.get(this.row), this.network.nodeY.get(this.row), z);
+				}
+				this.coord = coord;
+			}
+			return coord;
+		}
+
+		@Override
+		public void setCoord(final Coord coord) {
+			this.network.nodeX.put(this.row, coord.getX());
+			this.network.nodeY.put(this.row, coord.getY());
+			this.network.nodeZ.put(this.row, coord.hasZ() ? coord.getZ() : Double.NaN);
+			this.coord = null;
+			this.network.discardQuadTrees();
+		}
+
+		@Override
+		public Map<Id<Link>, ? extends Link> getInLinks() {
+			return this.network.getIncidentLinks(this.network.inOffsets, this.network.inLinks, this.row);
+		}
+
+		@Override
+		public Map<Id<Link>, ? extends Link> getOutLinks() {
+			return this.network.getIncidentLinks(this.network.outOffsets, this.network.outLinks, this.row);
+		}
+
+		@Override
+		public boolean addInLink(final Link link) {
+			throw new UnsupportedOperationException("links cannot be added to a mapped network");
+		}
+
+		@Override
+		public boolean addOutLink(final Link link) {
+			throw new UnsupportedOperationException("links cannot be added to a mapped network");
+		}
+
+		@Override
+		public Link removeInLink(final Id<Link> linkId) {
+			throw new UnsupportedOperationException("links cannot be removed from a mapped network");
+		}
+
+		@Override
+		public Link removeOutLink(final Id<Link> outLinkId) {
+			throw new UnsupportedOperationException("links cannot be removed from a mapped network");
+		}
+
+		@Override
+		public Attributes getAttributes() {
+			return this.network.nodeAttributes.computeIfAbsent(this.row, row -> new Attributes());
+		}
+
+		@Override
+		public String toString() {
+			return "[id=" + getId() + "]" +
+					"[coord=" + getCoord() + "]" +
+					"[nof_inlinks=" + getInLinks().size() + "]" +
+					"[nof_outlinks=" + getOutLinks().size() + "]";
+		}
+	}
+
+	static final class MappedLink implements Link {
+
+		private final MappedNetwork network;
+		private final int row;
+
+		private MappedLink(final MappedNetwork network, final int row) {
+			this.network = network;
+			this.row = row;
+		}
+
+		@Override
+		public Id<Link> getId() {
+			return this.network.linkIds[this.row];
+		}
+
+		@Override
+		public Node getFromNode() {
+			return this.network.getNode(this.network.linkFrom.get(this.row));
+		}
+
+		@Override
+		public Node getToNode() {
+			return this.network.getNode(this.network.linkTo.get(this.row));
+		}
+
+		@Override
+		public boolean setFromNode(final Node node) {
+			throw new UnsupportedOperationException("links of a mapped network cannot be attached to other nodes");
+		}
+
+		@Override
+		public boolean setToNode(final Node node) {
+			throw new UnsupportedOperationException("links of a mapped network cannot be attached to other nodes");
+		}
+
+		/**
+		 * Returns the middle of the link. Like for {@link LinkImpl}, a new coordinate is created on every call.
+		 */
+		@Override
+		public Coord getCoord() {
+			MappedNetwork n = this.network;
+			int from = n.linkFrom.get(this.row);
+			int to = n.linkTo.get(this.row);
+			return new Coord((n.nodeX.get(from) + n.nodeX.get(to)) / 2.0, (n.nodeY.get(from) + n.nodeY.get(to)) / 2.0);
+		}
+
+		@Override
+		public double getLength() {
+			return this.network.linkLength.get(this.row);
+		}
+
+		@Override
+		public void setLength(final double length) {
+			this.network.linkLength.put(this.row, length);
+		}
+
+		@Override
+		public double getNumberOfLanes() {
+			return this.network.linkLanes.get(this.row);
+		}
+
+		@Override
+		public double getNumberOfLanes(final double time) {
+			return getNumberOfLanes();
+		}
+
+		@Override
+		public void setNumberOfLanes(final double lanes) {
+			this.network.linkLanes.put(this.row, lanes);
+		}
+
+		@Override
+		public double getFreespeed() {
+			return this.network.linkFreespeed.get(this.row);
+		}
+
+		@Override
+		public double getFreespeed(final double time) {
+			return getFreespeed();
+		}
+
+		@Override
+		public void setFreespeed(final double freespeed) {
+			this.network.linkFreespeed.put(this.row, freespeed);
+		}
+
+		@Override
+		public double getCapacity() {
+			return this.network.linkCapacity.get(this.row);
+		}
+
+		@Override
+		public double getCapacity(final double time) {
+			return getCapacity();
+		}
+
+		@Override
+		public void setCapacity(final double capacity) {
+			this.network.linkCapacity.put(this.row, capacity);
+		}
+
+		@Override
+		public double getFlowCapacityPerSec() {
+			return getCapacity() / this.network.getCapacityPeriod();
+		}
+
+		@Override
+		public double getFlowCapacityPerSec(final double time) {
+			return getFlowCapacityPerSec();
+		}
+
+		@Override
+		public Set<String> getAllowedModes() {
+			return this.network.getModeSet(this.network.linkModes.get(this.row));
+		}
+
+		@Override
+		public void setAllowedModes(final Set<String> modes) {
+			this.network.linkModes.put(this.row, this.network.addModeSet(modes));
+		}
+
+		@Override
+		public Attributes getAttributes() {
+			return this.network.linkAttributes.computeIfAbsent(this.row, row -> new Attributes());
+		}
+
+		@Override
+		public String toString() {
+			return "[id=" + getId() + "]" +
+					"[from_id=" + getFromNode().getId() + "]" +
+					"[to_id=" + getToNode().getId() + "]" +
+					"[length=" + getLength() + "]" +
+					"[freespeed=" + getFreespeed() + "]" +
+					"[capacity=" + getCapacity() + "]" +
+					"[permlanes=" + getNumberOfLanes() + "]" +
+					"[modes=" + getAllowedModes();
+		}
+	}
+
+	private Map<Id<Link>, MappedLink> getIncidentLinks(final IntBuffer offsets, final IntBuffer rows, final int nodeRow) {
+		return new RowMap<>(this.linkIds, this.linkRows, this::getLink, rows,
+				offsets.get(nodeRow), offsets.get(nodeRow + 1));
+	}
+
+	/**
+	 * An unmodifiable map of the elements in some rows, either all rows from <code>from</code> to <code>to</code> (if
+	 * <code>rows</code> is <code>null</code>), or the rows listed in <code>rows</code> between these positions.
+	 */
+	private static final class RowMap<T, V> extends AbstractMap<Id<T>, V> {
+
+		private final Id<T>[] ids;
+		private final int[] rowsByIdIndex;
+		private final IntFunction<V> elements;
+		private final IntBuffer rows;
+		private final int from;
+		private final int to;
+
+		RowMap(final Id<T>[] ids, final int[] rowsByIdIndex, final IntFunction<V> elements, final IntBuffer rows,
+				final int from, final int to) {
+			this.ids = ids;
+			this.rowsByIdIndex = rowsByIdIndex;
+			this.elements = elements;
+			this.rows = rows;
+			this.from = from;
+			this.to = to;
+		}
+
+		private int row(final int position) {
+			return this.rows == null ? position : this.rows.get(position);
+		}
+
+		private int rowOf(final Object key) {
+			if (!(key instanceof Id)) {
+				return -1;
+			}
+			int index = ((Id<?>) key).index();
+			if (index >= this.rowsByIdIndex.length) {
+				return -1;
+			}
+			int row = this.rowsByIdIndex[index];
+			if (row < 0 || this.ids[row] != key) {
+				// not in the network, or an id of another type with the same index
+				return -1;
+			}
+			if (this.rows != null) {
+				for (int i = this.from; i < this.to; i++) {
+					if (this.rows.get(i) == row) {
+						return row;
+					}
+				}
+				return -1;
+			}
+			return row;
+		}
+
+		@Override
+		public int size() {
+			return this.to - this.from;
+		}
+
+		@Override
+		public boolean containsKey(final Object key) {
+			return rowOf(key) >= 0;
+		}
+
+		@Override
+		public V get(final Object key) {
+			int row = rowOf(key);
+			return row < 0 ? null : this.elements.apply(row);
+		}
+
+		@Override
+		public Set<Entry<Id<T>, V>> entrySet() {
+			return new AbstractSet<Entry<Id<T>, V>>() {
+				@Override
+				public Iterator<Entry<Id<T>, V>> iterator() {
+					return new RowIterator<Entry<Id<T>, V>>() {
+						@Override
+						Entry<Id<T>, V> get(final int row) {
+							return new SimpleImmutableEntry<>(RowMap.this.ids[row], RowMap.this.elements.apply(row));
+						}
+					};
+				}
+
+				@Override
+				public int size() {
+					return RowMap.this.size();
+				}
+			};
+		}
+
+		@Override
+		public Set<Id<T>> keySet() {
+			return new AbstractSet<Id<T>>() {
+				@Override
+				public Iterator<Id<T>> iterator() {
+					return new RowIterator<Id<T>>() {
+						@Override
+						Id<T> get(final int row) {
+							return RowMap.this.ids[row];
+						}
+					};
+				}
+
+				@Override
+				public boolean contains(final Object o) {
+					return containsKey(o);
+				}
+
+				@Override
+				public int size() {
+					return RowMap.this.size();
+				}
+			};
+		}
+
+		@Override
+		public Collection<V> values() {
+			return new AbstractCollection<V>() {
+				@Override
+				public Iterator<V> iterator() {
+					return new RowIterator<V>() {
+						@Override
+						V get(final int row) {
+							return RowMap.this.elements.apply(row);
+						}
+					};
+				}
+
+				@Override
+				public int size() {
+					return RowMap.this.size();
+				}
+			};
+		}
+
+		private abstract class RowIterator<E> implements Iterator<E> {
+			private int position = RowMap.this.from;
+
+			abstract E get(int row);
+
+			@Override
+			public boolean hasNext() {
+				return this.position < RowMap.this.to;
+			}
+
+			@Override
+			public E next() {
+				if (this.position >= RowMap.this.to) {
+					throw new NoSuchElementException();
+				}
+				return get(row(this.position++));
+			}
+		}
+	}
+}
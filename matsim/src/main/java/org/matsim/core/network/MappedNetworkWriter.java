@@ -0,0 +1,300 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * MappedNetworkWriter.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.network;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.IdMap;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.network.MappedNetwork.Section;
+
+/**
+ * Writes a network into the file format of {@link MappedNetwork}.
+ * <p></p>
+ * The nodes and links are written in the order of the network's maps. The attributes of the nodes, links and of the
+ * network itself are not written.
+ *
+ * @see NetworkUtils#writeMappedNetwork(Network, String)
+ */
+/*deliberately package*/ final class MappedNetworkWriter {
+
+	private final static Logger log = Logger.getLogger(MappedNetworkWriter.class);
+
+	private final Network network;
+
+	MappedNetworkWriter(final Network network) {
+		this.network = network;
+	}
+
+	void write(final Path file) throws IOException {
+		List<Node> nodes = new ArrayList<>(this.network.getNodes().values());
+		List<Link> links = new ArrayList<>(this.network.getLinks().values());
+		IdMap<Node, Integer> nodeRows = new IdMap<>(Node.class);
+		for (int row = 0; row < nodes.size(); row++) {
+			nodeRows.put(nodes.get(row).getId(), row);
+		}
+		IdMap<Link, Integer> linkRows = new IdMap<>(Link.class);
+		for (int row = 0; row < links.size(); row++) {
+			linkRows.put(links.get(row).getId(), row);
+		}
+		Map<Set<String>, Integer> modeSets = new LinkedHashMap<>();
+		int withAttributes = 0;
+		for (Node node : nodes) {
+			withAttributes += node.getAttributes().isEmpty() ? 0 : 1;
+		}
+		for (Link link : links) {
+			withAttributes += link.getAttributes().isEmpty() ? 0 : 1;
+		}
+		if (withAttributes > 0) {
+			log.warn(withAttributes + " nodes and links have attributes, which are not written to a mapped network file.");
+		}
+
+		long[] positions = new long[Section.values().length];
+		long[] lengths = new long[Section.values().length];
+		byte[] name = this.network.getName() == null ? null : this.network.getName().getBytes(StandardCharsets.UTF_8);
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.WRITE)) {
+			Output out = new Output(channel, MappedNetwork.HEADER_SIZE);
+			if (name != null) {
+				out.putBytes(name);
+			}
+			for (Section section : Section.values()) {
+				out.align();
+				positions[section.ordinal()] = out.position();
+				switch (section) {
+					case NODE_X:
+						for (Node node : nodes) {
+							out.putDouble(node.getCoord().getX());
+						}
+						break;
+					case NODE_Y:
+						for (Node node : nodes) {
+							out.putDouble(node.getCoord().getY());
+						}
+						break;
+					case NODE_Z:
+						for (Node node : nodes) {
+							Coord coord = node.getCoord();
+							out.putDouble(coord.hasZ() ? coord.getZ() : Double.NaN);
+						}
+						break;
+					case NODE_IN_OFFSETS:
+						writeOffsets(out, nodes, false);
+						break;
+					case NODE_IN_LINKS:
+						for (Node node : nodes) {
+							writeRows(out, node.getInLinks().keySet(), linkRows);
+						}
+						break;
+					case NODE_OUT_OFFSETS:
+						writeOffsets(out, nodes, true);
+						break;
+					case NODE_OUT_LINKS:
+						for (Node node : nodes) {
+							writeRows(out, node.getOutLinks().keySet(), linkRows);
+						}
+						break;
+					case LINK_FROM:
+						for (Link link : links) {
+							out.putInt(nodeRows.get(link.getFromNode().getId()));
+						}
+						break;
+					case LINK_TO:
+						for (Link link : links) {
+							out.putInt(nodeRows.get(link.getToNode().getId()));
+						}
+						break;
+					case LINK_LENGTH:
+						for (Link link : links) {
+							out.putDouble(link.getLength());
+						}
+						break;
+					case LINK_FREESPEED:
+						for (Link link : links) {
+							out.putDouble(link.getFreespeed());
+						}
+						break;
+					case LINK_CAPACITY:
+						for (Link link : links) {
+							out.putDouble(link.getCapacity());
+						}
+						break;
+					case LINK_LANES:
+						for (Link link : links) {
+							out.putDouble(link.getNumberOfLanes());
+						}
+						break;
+					case LINK_MODES:
+						for (Link link : links) {
+							out.putInt(modeSets.computeIfAbsent(link.getAllowedModes(), modes -> modeSets.size()));
+						}
+						break;
+					case NODE_IDS:
+						for (Node node : nodes) {
+							out.putString(node.getId().toString());
+						}
+						break;
+					case LINK_IDS:
+						for (Link link : links) {
+							out.putString(link.getId().toString());
+						}
+						break;
+					case MODES:
+						out.putInt(modeSets.size());
+						for (Set<String> modes : modeSets.keySet()) {
+							out.putInt(modes.size());
+							for (String mode : new TreeSet<>(modes)) {
+								out.putString(mode);
+							}
+						}
+						break;
+					default:
+						throw new IllegalStateException("unknown section " + section);
+				}
+				lengths[section.ordinal()] = out.position() - positions[section.ordinal()];
+			}
+			out.flush();
+
+			ByteBuffer header = ByteBuffer.allocate(MappedNetwork.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(MappedNetwork.MAGIC);
+			header.putInt(MappedNetwork.VERSION);
+			header.putInt(nodes.size());
+			header.putInt(links.size());
+			header.putDouble(this.network.getCapacityPeriod());
+			header.putDouble(this.network.getEffectiveCellSize());
+			header.putDouble(this.network.getEffectiveLaneWidth());
+			header.putInt(name == null ? -1 : name.length);
+			for (Section section : Section.values()) {
+				header.putLong(positions[section.ordinal()]);
+				header.putLong(lengths[section.ordinal()]);
+			}
+			header.flip();
+			channel.position(0);
+			while (header.hasRemaining()) {
+				channel.write(header);
+			}
+		}
+		log.info("wrote mapped network with " + nodes.size() + " nodes and " + links.size() + " links to " + file);
+	}
+
+	private static void writeOffsets(final Output out, final List<Node> nodes, final boolean outLinks) throws IOException {
+		int offset = 0;
+		out.putInt(offset);
+		for (Node node : nodes) {
+			offset += outLinks ? node.getOutLinks().size() : node.getInLinks().size();
+			out.putInt(offset);
+		}
+	}
+
+	private static void writeRows(final Output out, final Set<Id<Link>> linkIds, final IdMap<Link, Integer> linkRows) throws IOException {
+		for (Id<Link> linkId : linkIds) {
+			Integer row = linkRows.get(linkId);
+			if (row == null) {
+				throw new IllegalArgumentException("link " + linkId + " is attached to a node, but not in the network");
+			}
+			out.putInt(row);
+		}
+	}
+
+	/**
+	 * Buffered output to the channel, keeping track of the position in the file.
+	 */
+	private static final class Output {
+		private final FileChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+		private long flushed;
+
+		Output(final FileChannel channel, final long position) throws IOException {
+			this.channel = channel;
+			this.channel.position(position);
+			this.flushed = position;
+		}
+
+		long position() {
+			return this.flushed + this.buffer.position();
+		}
+
+		void align() throws IOException {
+			while (position() % 8 != 0) {
+				ensureRemaining(1);
+				this.buffer.put((byte) 0);
+			}
+		}
+
+		void putInt(final int value) throws IOException {
+			ensureRemaining(4);
+			this.buffer.putInt(value);
+		}
+
+		void putDouble(final double value) throws IOException {
+			ensureRemaining(8);
+			this.buffer.putDouble(value);
+		}
+
+		void putString(final String value) throws IOException {
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			putInt(bytes.length);
+			putBytes(bytes);
+		}
+
+		void putBytes(final byte[] bytes) throws IOException {
+			int offset = 0;
+			while (offset < bytes.length) {
+				ensureRemaining(1);
+				int length = Math.min(bytes.length - offset, this.buffer.remaining());
+				this.buffer.put(bytes, offset, length);
+				offset += length;
+			}
+		}
+
+		private void ensureRemaining(final int bytes) throws IOException {
+			if (this.buffer.remaining() < bytes) {
+				flush();
+			}
+		}
+
+		void flush() throws IOException {
+			this.buffer.flip();
+			while (this.buffer.hasRemaining()) {
+				this.flushed += this.channel.write(this.buffer);
+			}
+			this.buffer.clear();
+		}
+	}
+}
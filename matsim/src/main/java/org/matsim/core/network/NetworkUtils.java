@@ -35,7 +35,10 @@ import org.matsim.core.network.algorithms.NetworkSimplifier;
 import org.matsim.core.network.io.MatsimNetworkReader;
 import org.matsim.core.scenario.ScenarioUtils;
 import org.matsim.core.utils.geometry.CoordUtils;
+import org.matsim.core.utils.io.UncheckedIOException;
 
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.*;
 
 /**
@@ -805,6 +808,37 @@ public final class NetworkUtils {
 		return network;
 	}
 
+	/**
+	 * File name extension of the files written by {@link #writeMappedNetwork(Network, String)}. Network input files
+	 * with this extension are mapped instead of being read.
+	 */
+	public static final String MAPPED_NETWORK_FILE_EXTENSION = ".mnet";
+
+	/**
+	 * Writes the network into a binary file which can be loaded with {@link #readMappedNetwork(String)}. The
+	 * attributes of the network, its nodes and links are not written.
+	 */
+	public static void writeMappedNetwork(Network network, String filename) {
+		try {
+			new MappedNetworkWriter(network).write(Paths.get(filename));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Maps a file written by {@link #writeMappedNetwork(Network, String)} into memory. The file is not read, so
+	 * this takes hardly any time, and the data of the nodes and links is kept outside of the heap. Nodes and links
+	 * cannot be added or removed.
+	 */
+	public static Network readMappedNetwork(String filename) {
+		try {
+			return MappedNetwork.read(Paths.get(filename));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
 	public static boolean compare(Network expected, Network actual) {
 
 		// check that all element from expected result are in tested network
@@ -0,0 +1,112 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RecursiveCoordinateBisection.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.network.algorithms;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+
+import org.matsim.api.core.v01.IdMap;
+import org.matsim.api.core.v01.network.Node;
+
+/**
+ * Splits a set of nodes into a given number of spatially compact partitions.
+ * <p></p>
+ * The nodes are recursively cut into two halves along the longer side of their bounding box, such that the sum of
+ * the node weights on both sides is proportional to the number of partitions that are still to be created on each side.
+ * Since neighboring nodes mostly end up in the same partition, only few links connect nodes of different partitions.
+ * <p></p>
+ * The result only depends on the coordinates, weights and ids of the nodes, not on the iteration order of the
+ * collection that is passed in.
+ */
+public final class RecursiveCoordinateBisection {
+
+	private static final Comparator<Node> BY_ID = (n1, n2) -> n1.getId().compareTo(n2.getId());
+	private static final Comparator<Node> BY_X = Comparator.<Node>comparingDouble(n -> n.getCoord().getX()).thenComparing(BY_ID);
+	private static final Comparator<Node> BY_Y = Comparator.<Node>comparingDouble(n -> n.getCoord().getY()).thenComparing(BY_ID);
+
+	private final ToDoubleFunction<Node> weight;
+
+	/**
+	 * Uses the number of out-links plus one as weight of a node, which is a rough measure of the work a node
+	 * (including its out-links) causes in the mobsim.
+	 */
+	public RecursiveCoordinateBisection() {
+		this(node -> 1 + node.getOutLinks().size());
+	}
+
+	public RecursiveCoordinateBisection(ToDoubleFunction<Node> weight) {
+		this.weight = weight;
+	}
+
+	/**
+	 * @return for every node the index of its partition, from 0 (inclusive) to <code>numberOfPartitions</code> (exclusive).
+	 * Partitions may be empty if there are fewer nodes than partitions.
+	 */
+	public IdMap<Node, Integer> partition(Collection<? extends Node> nodes, int numberOfPartitions) {
+		if (numberOfPartitions < 1) {
+			throw new IllegalArgumentException("Number of partitions must be strictly positive, got " + numberOfPartitions);
+		}
+		IdMap<Node, Integer> partitions = new IdMap<>(Node.class, nodes.size());
+		bisect(new ArrayList<>(nodes), 0, numberOfPartitions, partitions);
+		return partitions;
+	}
+
+	private void bisect(List<Node> nodes, int firstPartition, int numberOfPartitions, IdMap<Node, Integer> partitions) {
+		if (numberOfPartitions == 1 || nodes.size() <= 1) {
+			for (Node node : nodes) {
+				partitions.put(node.getId(), firstPartition);
+			}
+			return;
+		}
+
+		double minX = Double.POSITIVE_INFINITY;
+		double minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY;
+		double maxY = Double.NEGATIVE_INFINITY;
+		double totalWeight = 0;
+		for (Node node : nodes) {
+			minX = Math.min(minX, node.getCoord().getX());
+			minY = Math.min(minY, node.getCoord().getY());
+			maxX = Math.max(maxX, node.getCoord().getX());
+			maxY = Math.max(maxY, node.getCoord().getY());
+			totalWeight += this.weight.applyAsDouble(node);
+		}
+		nodes.sort((maxX - minX) >= (maxY - minY) ? BY_X : BY_Y);
+
+		int leftPartitions = numberOfPartitions / 2;
+		double leftTarget = totalWeight * leftPartitions / numberOfPartitions;
+		double leftWeight = 0;
+		int split = 0;
+		while (split < nodes.size() - 1 && leftWeight < leftTarget) {
+			leftWeight += this.weight.applyAsDouble(nodes.get(split));
+			split++;
+		}
+		if (split == 0) {
+			split = 1;
+		}
+
+		bisect(new ArrayList<>(nodes.subList(0, split)), firstPartition, leftPartitions, partitions);
+		bisect(new ArrayList<>(nodes.subList(split, nodes.size())), firstPartition + leftPartitions, numberOfPartitions - leftPartitions, partitions);
+	}
+}
@@ -0,0 +1,599 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CompactPlan.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Customizable;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.api.core.v01.population.Route;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.population.routes.RouteFactories;
+import org.matsim.core.scenario.CustomizableUtils;
+import org.matsim.core.utils.misc.Time;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.utils.objectattributes.attributable.Attributes;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * A {@link Plan} which stores its activities and legs in a <code>byte[]</code> instead of one object per activity,
+ * leg, route, attributes and list of link ids: ids are stored by their {@link Id#index() index} (the links of network
+ * routes as differences to the previous link), activity types, modes and attribute names as indices into a table of
+ * strings, all of them as variable-length numbers. Times, coordinates and distances are stored with as few bytes as
+ * possible without losing precision, e.g. whole seconds like integers. Only the values of attributes and descriptions
+ * of non-network routes are kept as objects.
+ * <p></p>
+ * It is meant for the plans which are not selected, since most of them are only looked at by their score until they
+ * are removed again. As soon as the plan elements are accessed, the plan is decoded into regular activities and legs,
+ * which are kept (and may be modified) until {@link #compact(Encoder)} is called. This is done for all non-selected plans by
+ * {@link PopulationUtils#compactNonSelectedPlans(org.matsim.api.core.v01.population.Population)}.
+ * <p></p>
+ * Only plans consisting of the default activities and legs, with routes which can be re-created by the
+ * {@link RouteFactories} of the population, can be stored compactly. Like other plans, instances are not thread-safe.
+ */
+/* deliberately package */ final class CompactPlan implements Plan {
+
+	private static final int ACT = 0;
+	private static final int LEG = 1;
+	private static final int HAS_ATTRIBUTES = 2;
+	private static final int HAS_COORD = 4;
+	private static final int HAS_Z = 8;
+
+	private static final ThreadLocal<Encoder> ENCODERS = ThreadLocal.withInitial(Encoder::new);
+
+	private static final int NO_ROUTE = 0;
+	private static final int NETWORK_ROUTE = 1;
+	private static final int OTHER_ROUTE = 2;
+
+	private static final int NO_ID = -1;
+
+	/* values are stored as variable-length numbers, the lowest two bits tell how to interpret them */
+	private static final int VALUE_TAG_MASK = 3;
+	private static final int INTEGRAL_VALUE = 0;
+	private static final int RAW_VALUE = 1;
+	private static final int UNDEFINED_TIME = 2;
+	private static final int NAN_VALUE = 3;
+	private static final double MAX_INTEGRAL_VALUE = 1L << 52;
+	private static final long NEGATIVE_ZERO = Double.doubleToRawLongBits(-0.0);
+
+	private final RouteFactories routeFactories;
+
+	private Person person = null;
+	private double score = 0.0;
+	private boolean hasScore = false;
+	private String type = null;
+	private Attributes attributes = null;
+	private Customizable customizableDelegate = null;
+
+	/* compact representation, only set while the plan is compact */
+	private int numberOfElements = 0;
+	private byte[] data = null;
+	private Object[] objects = null;
+
+	/* decoded representation, only set while the plan is not compact */
+	private List<PlanElement> elements = null;
+
+	private CompactPlan(final RouteFactories routeFactories) {
+		this.routeFactories = routeFactories;
+	}
+
+	/**
+	 * @return a compact copy of the plan sharing its person, score, type and attributes, or <code>null</code> if the
+	 * plan cannot be stored compactly.
+	 */
+	static CompactPlan createFrom(final Plan plan, final RouteFactories routeFactories, final Encoder encoder) {
+		if (hasCustomAttributes(plan)) {
+			return null;
+		}
+		CompactPlan compactPlan = new CompactPlan(routeFactories);
+		if (!compactPlan.encode(plan.getPlanElements(), encoder)) {
+			return null;
+		}
+		compactPlan.person = plan.getPerson();
+		compactPlan.setScore(plan.getScore());
+		compactPlan.type = plan.getType();
+		if (!plan.getAttributes().isEmpty()) {
+			compactPlan.attributes = plan.getAttributes();
+		}
+		return compactPlan;
+	}
+
+	/* PlanImpl.getCustomAttributes() would create the map just to check it, for every plan */
+	private static boolean hasCustomAttributes(final Plan plan) {
+		if (plan instanceof PlanImpl) {
+			return ((PlanImpl) plan).hasCustomAttributes();
+		}
+		return !plan.getCustomAttributes().isEmpty();
+	}
+
+	/**
+	 * @return the encoder of the current thread, so the buffers are re-used between plans.
+	 */
+	static Encoder getEncoder() {
+		return ENCODERS.get();
+	}
+
+	boolean isCompact() {
+		return this.elements == null;
+	}
+
+	/**
+	 * Stores the plan elements compactly again after they were accessed.
+	 *
+	 * @return <code>false</code> if the plan elements were changed such that they cannot be stored compactly.
+	 */
+	boolean compact(final Encoder encoder) {
+		if (isCompact()) {
+			return true;
+		}
+		if (!encode(this.elements, encoder)) {
+			return false;
+		}
+		this.elements = null;
+		return true;
+	}
+
+	@Override
+	public Person getPerson() {
+		return this.person;
+	}
+
+	@Override
+	public void setPerson(final Person person) {
+		this.person = person;
+	}
+
+	@Override
+	public Double getScore() {
+		return this.hasScore ? this.score : null;
+	}
+
+	@Override
+	public void setScore(final Double score) {
+		this.hasScore = score != null;
+		this.score = score == null ? 0.0 : score;
+	}
+
+	@Override
+	public String getType() {
+		return this.type;
+	}
+
+	@Override
+	public void setType(final String type) {
+		this.type = type;
+	}
+
+	@Override
+	public List<PlanElement> getPlanElements() {
+		if (this.elements == null) {
+			this.elements = decode();
+			this.data = null;
+			this.objects = null;
+		}
+		return this.elements;
+	}
+
+	@Override
+	public void addLeg(final Leg leg) {
+		getPlanElements().add(leg);
+	}
+
+	@Override
+	public void addActivity(final Activity act) {
+		getPlanElements().add(act);
+	}
+
+	@Override
+	public Attributes getAttributes() {
+		if (this.attributes == null) {
+			this.attributes = new Attributes();
+		}
+		return this.attributes;
+	}
+
+	@Override
+	public Map<String, Object> getCustomAttributes() {
+		if (this.customizableDelegate == null) {
+			this.customizableDelegate = CustomizableUtils.createCustomizable();
+		}
+		return this.customizableDelegate.getCustomAttributes();
+	}
+
+	@Override
+	public String toString() {
+		String scoreString = this.hasScore ? Double.toString(this.score) : "undefined";
+		String personIdString = this.person == null ? "undefined" : this.person.getId().toString();
+		int size = this.elements == null ? this.numberOfElements : this.elements.size();
+		return "[score=" + scoreString + "]" +
+				"[nof_acts_legs=" + size + "]" +
+				"[type=" + this.type + "]" +
+				"[personId=" + personIdString + "]" +
+				"[compact=" + isCompact() + "]";
+	}
+
+	// ---
+
+	private boolean encode(final List<PlanElement> planElements, final Encoder encoder) {
+		encoder.clear();
+		for (PlanElement pe : planElements) {
+			if (pe.getClass() == ActivityImpl.class) {
+				encoder.encodeActivity((Activity) pe);
+			} else if (pe.getClass() == LegImpl.class) {
+				if (!encoder.encodeLeg((Leg) pe, this.routeFactories)) {
+					encoder.clear();
+					return false;
+				}
+			} else {
+				encoder.clear();
+				return false;
+			}
+		}
+		this.numberOfElements = planElements.size();
+		this.data = Arrays.copyOf(encoder.bytes, encoder.numBytes);
+		this.objects = encoder.numObjects == 0 ? null : Arrays.copyOf(encoder.objects, encoder.numObjects);
+		encoder.clear(); // do not keep the attribute values alive in the encoder
+		return true;
+	}
+
+	private List<PlanElement> decode() {
+		Decoder decoder = new Decoder();
+		List<PlanElement> list = new ArrayList<>(Math.max(this.numberOfElements, 1));
+		for (int i = 0; i < this.numberOfElements; i++) {
+			int header = decoder.nextInt();
+			if ((header & LEG) == 0) {
+				list.add(decoder.decodeActivity(header));
+			} else {
+				list.add(decoder.decodeLeg(header));
+			}
+		}
+		return list;
+	}
+
+	private final class Decoder {
+		private int pos = 0;
+		private int objectPos = 0;
+
+		private long nextVarLong() {
+			long value = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = data[this.pos++];
+				value |= (long) (b & 0x7f) << shift;
+				shift += 7;
+			} while (b < 0);
+			return value;
+		}
+
+		int nextInt() {
+			long zigzag = nextVarLong();
+			return (int) ((zigzag >>> 1) ^ -(zigzag & 1));
+		}
+
+		double nextValue() {
+			long v = nextVarLong();
+			switch ((int) (v & VALUE_TAG_MASK)) {
+				case INTEGRAL_VALUE:
+					long zigzag = v >>> 2;
+					return (zigzag >>> 1) ^ -(zigzag & 1);
+				case UNDEFINED_TIME:
+					return Time.getUndefinedTime();
+				case NAN_VALUE:
+					return Double.NaN;
+				default:
+					long bits = 0;
+					for (int i = 0; i < 8; i++) {
+						bits |= (long) (data[this.pos++] & 0xff) << (8 * i);
+					}
+					return Double.longBitsToDouble(bits);
+			}
+		}
+
+		Object nextObject() {
+			return objects[this.objectPos++];
+		}
+
+		<T> Id<T> nextId(final Class<T> idType) {
+			int index = nextInt();
+			return index == NO_ID ? null : Id.get(index, idType);
+		}
+
+		Activity decodeActivity(final int header) {
+			ActivityImpl act = new ActivityImpl(Strings.get(nextInt()));
+			act.setLinkId(nextId(Link.class));
+			act.setFacilityId(nextId(ActivityFacility.class));
+			act.setStartTime(nextValue());
+			act.setEndTime(nextValue());
+			act.setMaximumDuration(nextValue());
+			if ((header & HAS_COORD) != 0) {
+				double x = nextValue();
+				double y = nextValue();
+				act.setCoord((header & HAS_Z) != 0 ? new Coord(x, y, nextValue()) : new Coord(x, y));
+			}
+			decodeAttributes(header, act.getAttributes());
+			return act;
+		}
+
+		Leg decodeLeg(final int header) {
+			LegImpl leg = new LegImpl(Strings.get(nextInt()));
+			leg.setDepartureTime(nextValue());
+			leg.setTravelTime(nextValue());
+			int routeKind = nextInt();
+			if (routeKind == NETWORK_ROUTE) {
+				Id<Link> startLinkId = nextId(Link.class);
+				Id<Link> endLinkId = nextId(Link.class);
+				NetworkRoute route = routeFactories.createRoute(NetworkRoute.class, startLinkId, endLinkId);
+				route.setVehicleId(nextId(Vehicle.class));
+				int n = nextInt();
+				List<Id<Link>> linkIds = new ArrayList<>(n);
+				int index = startLinkId == null ? 0 : startLinkId.index();
+				for (int i = 0; i < n; i++) {
+					index += nextInt();
+					linkIds.add(Id.get(index, Link.class));
+				}
+				route.setLinkIds(startLinkId, linkIds, endLinkId);
+				route.setDistance(nextValue());
+				route.setTravelTime(nextValue());
+				route.setTravelCost(nextValue());
+				leg.setRoute(route);
+			} else if (routeKind == OTHER_ROUTE) {
+				String routeType = Strings.get(nextInt());
+				Id<Link> startLinkId = nextId(Link.class);
+				Id<Link> endLinkId = nextId(Link.class);
+				Route route = routeFactories.createRoute(routeFactories.getRouteClassForType(routeType), startLinkId, endLinkId);
+				String description = (String) nextObject();
+				if (description != null) {
+					route.setRouteDescription(description);
+				}
+				route.setDistance(nextValue());
+				route.setTravelTime(nextValue());
+				leg.setRoute(route);
+			}
+			decodeAttributes(header, leg.getAttributes());
+			return leg;
+		}
+
+		void decodeAttributes(final int header, final Attributes attributes) {
+			if ((header & HAS_ATTRIBUTES) != 0) {
+				for (int i = 0, n = nextInt(); i < n; i++) {
+					attributes.putAttribute(Strings.get(nextInt()), nextObject());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Re-usable buffers to encode plans. Instances are not thread-safe.
+	 */
+	static final class Encoder {
+		private byte[] bytes = new byte[1024];
+		private int numBytes = 0;
+		private Object[] objects = new Object[64];
+		private int numObjects = 0;
+		/* whether the routes of a class can be re-created by the route factories, by route type and class */
+		private final Map<String, Boolean> reproducibleRouteTypes = new HashMap<>();
+		private RouteFactories routeFactories = null;
+
+		void clear() {
+			this.numBytes = 0;
+			Arrays.fill(this.objects, 0, this.numObjects, null);
+			this.numObjects = 0;
+		}
+
+		void encodeActivity(final Activity act) {
+			Coord coord = act.getCoord();
+			boolean hasAttributes = !act.getAttributes().isEmpty();
+			int header = ACT;
+			if (hasAttributes) header |= HAS_ATTRIBUTES;
+			if (coord != null) header |= HAS_COORD;
+			if (coord != null && coord.hasZ()) header |= HAS_Z;
+			addInt(header);
+			addInt(Strings.indexOf(act.getType()));
+			addId(act.getLinkId());
+			addId(act.getFacilityId());
+			addValue(act.getStartTime());
+			addValue(act.getEndTime());
+			addValue(act.getMaximumDuration());
+			if (coord != null) {
+				addValue(coord.getX());
+				addValue(coord.getY());
+				if (coord.hasZ()) {
+					addValue(coord.getZ());
+				}
+			}
+			if (hasAttributes) {
+				encodeAttributes(act.getAttributes());
+			}
+		}
+
+		boolean encodeLeg(final Leg leg, final RouteFactories routeFactories) {
+			boolean hasAttributes = !leg.getAttributes().isEmpty();
+			addInt(hasAttributes ? LEG | HAS_ATTRIBUTES : LEG);
+			addInt(Strings.indexOf(leg.getMode()));
+			addValue(leg.getDepartureTime());
+			addValue(leg.getTravelTime());
+			Route route = leg.getRoute();
+			if (route == null) {
+				addInt(NO_ROUTE);
+			} else if (!isReproducible(route, routeFactories)) {
+				return false;
+			} else if (route instanceof NetworkRoute) {
+				NetworkRoute networkRoute = (NetworkRoute) route;
+				addInt(NETWORK_ROUTE);
+				addId(route.getStartLinkId());
+				addId(route.getEndLinkId());
+				addId(networkRoute.getVehicleId());
+				List<Id<Link>> linkIds = networkRoute.getLinkIds();
+				addInt(linkIds.size());
+				// consecutive links often have similar indices, so the differences need less space
+				int previous = route.getStartLinkId() == null ? 0 : route.getStartLinkId().index();
+				for (Id<Link> linkId : linkIds) {
+					addInt(linkId.index() - previous);
+					previous = linkId.index();
+				}
+				addValue(route.getDistance());
+				addValue(route.getTravelTime());
+				addValue(networkRoute.getTravelCost());
+			} else {
+				addInt(OTHER_ROUTE);
+				addInt(Strings.indexOf(route.getRouteType()));
+				addId(route.getStartLinkId());
+				addId(route.getEndLinkId());
+				addObject(route.getRouteDescription());
+				addValue(route.getDistance());
+				addValue(route.getTravelTime());
+			}
+			if (hasAttributes) {
+				encodeAttributes(leg.getAttributes());
+			}
+			return true;
+		}
+
+		/**
+		 * The routes are re-created in the same way as by the population readers, so only routes of the class which the
+		 * route factories create for their type are stored.
+		 */
+		private boolean isReproducible(final Route route, final RouteFactories routeFactories) {
+			if (this.routeFactories != routeFactories) {
+				this.reproducibleRouteTypes.clear();
+				this.routeFactories = routeFactories;
+			}
+			String routeType = route.getRouteType();
+			if (routeType == null) {
+				return false;
+			}
+			String key = routeType + ":" + route.getClass().getName();
+			Boolean reproducible = this.reproducibleRouteTypes.get(key);
+			if (reproducible == null) {
+				Class<? extends Route> routeClass = route instanceof NetworkRoute ? NetworkRoute.class : routeFactories.getRouteClassForType(routeType);
+				reproducible = routeFactories.createRoute(routeClass, null, null).getClass() == route.getClass();
+				this.reproducibleRouteTypes.put(key, reproducible);
+			}
+			return reproducible;
+		}
+
+		private void encodeAttributes(final Attributes attributes) {
+			addInt(attributes.size());
+			for (Map.Entry<String, Object> e : attributes.getAsMap().entrySet()) {
+				addInt(Strings.indexOf(e.getKey()));
+				addObject(e.getValue());
+			}
+		}
+
+		private void addId(final Id<?> id) {
+			addInt(id == null ? NO_ID : id.index());
+		}
+
+		private void addInt(final int value) {
+			addVarLong(((value << 1) ^ (value >> 31)) & 0xffffffffL);
+		}
+
+		/**
+		 * Times are mostly whole seconds, so whole numbers only need a few bytes, and undefined times only one.
+		 */
+		private void addValue(final double value) {
+			if (value == Time.getUndefinedTime()) {
+				addVarLong(UNDEFINED_TIME);
+			} else if (Double.isNaN(value)) {
+				addVarLong(NAN_VALUE);
+			} else if (value == Math.rint(value) && Math.abs(value) <= MAX_INTEGRAL_VALUE && Double.doubleToRawLongBits(value) != NEGATIVE_ZERO) {
+				long l = (long) value;
+				addVarLong(((l << 1) ^ (l >> 63)) << 2 | INTEGRAL_VALUE);
+			} else {
+				addVarLong(RAW_VALUE);
+				long bits = Double.doubleToRawLongBits(value);
+				for (int i = 0; i < 8; i++) {
+					addByte((byte) (bits >>> (8 * i)));
+				}
+			}
+		}
+
+		private void addVarLong(long value) {
+			while ((value & ~0x7fL) != 0) {
+				addByte((byte) ((value & 0x7f) | 0x80));
+				value >>>= 7;
+			}
+			addByte((byte) value);
+		}
+
+		private void addByte(final byte b) {
+			if (this.numBytes == this.bytes.length) {
+				this.bytes = Arrays.copyOf(this.bytes, 2 * this.numBytes);
+			}
+			this.bytes[this.numBytes++] = b;
+		}
+
+		private void addObject(final Object value) {
+			if (this.numObjects == this.objects.length) {
+				this.objects = Arrays.copyOf(this.objects, 2 * this.numObjects);
+			}
+			this.objects[this.numObjects++] = value;
+		}
+	}
+
+	/**
+	 * The activity types, modes, route types and attribute names of all compact plans. There are only few of them, so
+	 * they are never removed.
+	 */
+	private static final class Strings {
+		private static final Map<String, Integer> indices = new ConcurrentHashMap<>();
+		private static volatile String[] strings = new String[64];
+		private static int size = 0;
+
+		static int indexOf(final String string) {
+			if (string == null) {
+				return NO_ID;
+			}
+			Integer index = indices.get(string);
+			return index != null ? index : add(string);
+		}
+
+		private static synchronized int add(final String string) {
+			Integer index = indices.get(string);
+			if (index != null) {
+				return index;
+			}
+			String[] array = size == strings.length ? Arrays.copyOf(strings, 2 * size) : strings;
+			array[size] = string.intern();
+			// publish the string before its index
+			strings = array;
+			indices.put(string, size);
+			return size++;
+		}
+
+		static String get(final int index) {
+			return index == NO_ID ? null : strings[index];
+		}
+	}
+}
@@ -162,6 +162,10 @@ import org.matsim.utils.objectattributes.attributable.Attributes;
 		return this.customizableDelegate.getCustomAttributes();
 	}
 
+	/*package*/ final boolean hasCustomAttributes() {
+		return this.customizableDelegate != null && !this.customizableDelegate.getCustomAttributes().isEmpty();
+	}
+
 //	public final void setLocked() {
 //		for ( PlanElement pe : this.actsLegs ) {
 //			if ( pe instanceof ActivityImpl ) {
@@ -44,6 +44,7 @@ import org.matsim.core.population.io.PopulationReader;
 import org.matsim.core.population.io.PopulationWriter;
 import org.matsim.core.population.io.StreamingPopulationReader;
 import org.matsim.core.population.routes.CompressedNetworkRouteFactory;
+import org.matsim.core.population.routes.IndexedNetworkRouteFactory;
 import org.matsim.core.population.routes.LinkNetworkRouteFactory;
 import org.matsim.core.population.routes.NetworkRoute;
 import org.matsim.core.population.routes.RouteFactories;
@@ -112,6 +113,10 @@ public final class PopulationUtils {
 			factory = new LinkNetworkRouteFactory();
 		} else if (PlansConfigGroup.NetworkRouteType.CompressedNetworkRoute.equals(networkRouteType) && network != null) {
 			factory = new CompressedNetworkRouteFactory(network);
+		} else if (PlansConfigGroup.NetworkRouteType.IndexedNetworkRoute.equals(networkRouteType)) {
+			factory = new IndexedNetworkRouteFactory();
+		} else if (PlansConfigGroup.NetworkRouteType.PackedNetworkRoute.equals(networkRouteType)) {
+			factory = new IndexedNetworkRouteFactory(true);
 		} else {
 			throw new IllegalArgumentException("The type \"" + networkRouteType + "\" is not a supported type for network routes.");
 		}
@@ -1009,6 +1014,41 @@ public final class PopulationUtils {
 		}
 	}
 
+	/**
+	 * Stores all plans which are not selected in a memory-lean way (see {@link CompactPlan}), including the ones which were
+	 * already stored like this but have been accessed since. The plans are decoded again as soon as their plan elements
+	 * are accessed; plans which cannot be stored compactly are left as they are.
+	 */
+	public static void compactNonSelectedPlans( Population population ) {
+		RouteFactories routeFactories = population.getFactory().getRouteFactories();
+		CompactPlan.Encoder encoder = CompactPlan.getEncoder();
+		int compacted = 0;
+		int total = 0;
+		for ( Person person : population.getPersons().values() ) {
+			@SuppressWarnings("unchecked")
+			List<Plan> plans = (List<Plan>) person.getPlans();
+			for ( int i = 0; i < plans.size(); i++ ) {
+				Plan plan = plans.get( i );
+				if ( plan == person.getSelectedPlan() ) {
+					continue;
+				}
+				total++;
+				if ( plan instanceof CompactPlan ) {
+					if ( ((CompactPlan) plan).compact( encoder ) ) {
+						compacted++;
+					}
+				} else {
+					CompactPlan compactPlan = CompactPlan.createFrom( plan, routeFactories, encoder );
+					if ( compactPlan != null ) {
+						plans.set( i, compactPlan );
+						compacted++;
+					}
+				}
+			}
+		}
+		log.info( "stored " + compacted + " of " + total + " non-selected plans compactly." );
+	}
+
 	public static void printPlansCount( Population population ) {
 		log.info(" person # " + population.getPersons().size() );
 	}
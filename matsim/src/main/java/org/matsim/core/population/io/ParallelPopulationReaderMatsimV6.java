@@ -0,0 +1,264 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ParallelPopulationReaderMatsimV6.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population.io;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Stack;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.utils.objectattributes.AttributeConverter;
+import org.matsim.vehicles.Vehicle;
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * Parallel implementation of the {@link PopulationReaderMatsimV6}. The main thread only parses the file and
+ * collects the xml data of the persons in batches. The persons are then created by several threads, each with its
+ * own {@link PopulationReaderMatsimV6} (and thus with its own attribute converters).  Finally, the main thread adds
+ * the persons to the population in the order of the file, so this reader also works with population streaming.
+ * <p></p>
+ * The persons are the same as the ones created by the sequential reader.  To keep the order of the {@link Id#index()
+ * indices} of the ids the same as well, the main thread creates the ids of the persons and the ids referenced in the
+ * attributes of activities and routes.  Only ids which are first mentioned in route descriptions (e.g. links of network
+ * routes if no network was read before) may get different indices.
+ * <p></p>
+ * The attribute converters must be thread-safe, since the same instances are used by all threads.
+ */
+/* deliberately package */ class ParallelPopulationReaderMatsimV6 extends PopulationReaderMatsimV6 {
+
+	private static final Logger log = Logger.getLogger(ParallelPopulationReaderMatsimV6.class);
+
+	private final static String POPULATION = "population";
+	private final static String PERSON = "person";
+	private final static String ACT = "activity";
+	private final static String ROUTE = "route";
+
+	/* persons per task handed over to the threads */
+	private static final int BATCH_SIZE = 100;
+	/* batches which may be in the queue or processed per thread, limits the memory used for the xml data */
+	private static final int BATCHES_PER_THREAD = 4;
+
+	private final Scenario scenario;
+	private final int numThreads;
+	private final Map<Class<?>, AttributeConverter<?>> attributeConverters = new LinkedHashMap<>();
+
+	private ThreadPoolExecutor executor = null;
+	private ThreadLocal<Runner> runners = null;
+	private final Deque<Future<List<Person>>> pendingBatches = new ArrayDeque<>();
+	private List<List<Tag>> currentBatch = new ArrayList<>(BATCH_SIZE);
+	private List<Tag> currentPersonXmlData = null;
+
+	ParallelPopulationReaderMatsimV6(final String inputCRS, final String targetCRS, final Scenario scenario, final int numThreads) {
+		super(inputCRS, targetCRS, scenario);
+		this.scenario = scenario;
+		this.numThreads = Math.max(1, numThreads);
+	}
+
+	@Override
+	public void putAttributeConverter(final Class<?> clazz, final AttributeConverter<?> converter) {
+		super.putAttributeConverter(clazz, converter);
+		this.attributeConverters.put(clazz, converter);
+	}
+
+	@Override
+	public void putAttributeConverters(final Map<Class<?>, AttributeConverter<?>> converters) {
+		super.putAttributeConverters(converters);
+		this.attributeConverters.putAll(converters);
+	}
+
+	@Override
+	public void startTag(final String name, final Attributes atts, final Stack<String> context) {
+		if (this.currentPersonXmlData == null) {
+			if (!PERSON.equals(name)) {
+				super.startTag(name, atts, context);
+				return;
+			}
+			if (this.executor == null) {
+				// the attributes of the population are read now, so the coordinate transformation is known
+				initThreads();
+			}
+			Id.create(atts.getValue("id"), Person.class);
+			this.currentPersonXmlData = new ArrayList<>();
+		} else if (ACT.equals(name)) {
+			createId(atts.getValue("link"), Link.class);
+			createId(atts.getValue("facility"), ActivityFacility.class);
+		} else if (ROUTE.equals(name)) {
+			createId(atts.getValue("start_link"), Link.class);
+			createId(atts.getValue("end_link"), Link.class);
+			String vehicleRefId = atts.getValue("vehicleRefId");
+			if (!"null".equals(vehicleRefId)) {
+				createId(vehicleRefId, Vehicle.class);
+			}
+		}
+		// We have to create copies of the attributes because the object is re-used by the parser!
+		this.currentPersonXmlData.add(new Tag(name, new AttributesImpl(atts), null));
+	}
+
+	@Override
+	public void endTag(final String name, final String content, final Stack<String> context) {
+		if (this.currentPersonXmlData != null) {
+			this.currentPersonXmlData.add(new Tag(name, null, content));
+			if (PERSON.equals(name)) {
+				this.currentBatch.add(this.currentPersonXmlData);
+				this.currentPersonXmlData = null;
+				if (this.currentBatch.size() == BATCH_SIZE) {
+					submitBatch();
+				}
+			}
+			return;
+		}
+		if (POPULATION.equals(name) && this.executor != null) {
+			submitBatch();
+			while (!this.pendingBatches.isEmpty()) {
+				addPersonsOfNextBatch();
+			}
+			this.executor.shutdown();
+			this.executor = null;
+			this.runners = null;
+			log.info("Finished parallel population reading...");
+		}
+		super.endTag(name, content, context);
+	}
+
+	private void initThreads() {
+		log.info("Start parallel population reading with " + this.numThreads + " threads...");
+		AtomicInteger threadNumber = new AtomicInteger(0);
+		this.executor = new ThreadPoolExecutor(this.numThreads, this.numThreads, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+			Thread thread = new Thread(r, ParallelPopulationReaderMatsimV6.class.getSimpleName() + "." + threadNumber.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		});
+		// let the threads end if the parsing is aborted because of an error
+		this.executor.allowCoreThreadTimeOut(true);
+		this.runners = ThreadLocal.withInitial(this::createRunner);
+	}
+
+	private Runner createRunner() {
+		// no CRS, the coordinate transformation (maybe from the attributes of the population) is set explicitly
+		Runner runner = new Runner(this.scenario);
+		runner.setCoordinateTransformation(getCoordinateTransformation());
+		runner.putAttributeConverters(this.attributeConverters);
+		return runner;
+	}
+
+	private void submitBatch() {
+		if (this.currentBatch.isEmpty()) {
+			return;
+		}
+		List<List<Tag>> batch = this.currentBatch;
+		ThreadLocal<Runner> runners = this.runners;
+		this.pendingBatches.add(this.executor.submit(() -> runners.get().createPersons(batch)));
+		this.currentBatch = new ArrayList<>(BATCH_SIZE);
+
+		while (this.pendingBatches.size() > this.numThreads * BATCHES_PER_THREAD || (!this.pendingBatches.isEmpty() && this.pendingBatches.peek().isDone())) {
+			addPersonsOfNextBatch();
+		}
+	}
+
+	private void addPersonsOfNextBatch() {
+		List<Person> persons;
+		try {
+			persons = this.pendingBatches.poll().get();
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			this.executor.shutdownNow();
+			Throwable cause = e.getCause();
+			throw cause instanceof RuntimeException ? (RuntimeException) cause : new RuntimeException(cause);
+		}
+		for (Person person : persons) {
+			super.addPerson(person);
+		}
+	}
+
+	private static <T> void createId(final String id, final Class<T> type) {
+		if (id != null) {
+			Id.create(id, type);
+		}
+	}
+
+	private static final class Tag {
+		final String name;
+		/* null for end tags */
+		final Attributes atts;
+		final String content;
+
+		Tag(String name, Attributes atts, String content) {
+			this.name = name;
+			this.atts = atts;
+			this.content = content;
+		}
+	}
+
+	/**
+	 * Creates the persons of a batch by replaying their xml data.
+	 */
+	private static final class Runner extends PopulationReaderMatsimV6 {
+
+		private final Stack<String> context = new Stack<>();
+		private List<Person> persons;
+
+		Runner(final Scenario scenario) {
+			super(null, null, scenario);
+		}
+
+		List<Person> createPersons(final List<List<Tag>> batch) {
+			this.persons = new ArrayList<>(batch.size());
+			for (List<Tag> personXmlData : batch) {
+				this.context.clear();
+				this.context.push(POPULATION);
+				for (Tag tag : personXmlData) {
+					if (tag.atts != null) {
+						startTag(tag.name, tag.atts, this.context);
+						this.context.push(tag.name);
+					} else {
+						this.context.pop();
+						endTag(tag.name, tag.content, this.context);
+					}
+				}
+			}
+			List<Person> result = this.persons;
+			this.persons = null;
+			return result;
+		}
+
+		@Override
+		void addPerson(final Person person) {
+			this.persons.add(person);
+		}
+	}
+}
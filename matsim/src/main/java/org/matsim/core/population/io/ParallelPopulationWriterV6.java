@@ -0,0 +1,222 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ParallelPopulationWriterV6.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population.io;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.core.utils.geometry.CoordinateTransformation;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.core.utils.io.UncheckedIOException;
+import org.matsim.core.utils.misc.Counter;
+import org.matsim.utils.objectattributes.AttributeConverter;
+
+import com.github.luben.zstd.ZstdOutputStream;
+
+/**
+ * Parallel implementation of writing a population in the format of population_v6.dtd. The persons are serialized in
+ * batches by several threads, each with its own {@link PopulationWriterHandlerImplV6}, while the main thread writes
+ * the finished batches to the file in the original order. The xml content is exactly the same as the one written by
+ * the sequential {@link PopulationWriter}.
+ * <p></p>
+ * For <code>*.gz</code> and <code>*.zst</code> files, every batch is compressed by the thread serializing it as an
+ * independent gzip member or zstd frame, respectively. A sequence of such members is still a valid compressed file, which
+ * can be read by {@link IOUtils#getInputStream(java.net.URL)} (i.e. by all the readers) and by the usual command line
+ * tools. Files with other compressions are compressed by the main thread.
+ * <p></p>
+ * The attribute converters and the coordinate transformation must be thread-safe, since the same instances are used by
+ * all threads.
+ */
+/* deliberately package */ class ParallelPopulationWriterV6 {
+
+	private static final Logger log = Logger.getLogger(ParallelPopulationWriterV6.class);
+
+	/* persons per task handed over to the threads, and thus per gzip member */
+	private static final int BATCH_SIZE = 100;
+	/* batches which may be in the queue or processed per thread, limits the memory used for the serialized data */
+	private static final int BATCHES_PER_THREAD = 4;
+	private static final int ZSTD_LEVEL = 6;
+
+	private enum Compression { NONE, GZIP, ZSTD }
+
+	private interface Content {
+		void write(BufferedWriter out) throws IOException;
+	}
+
+	private static final class Batch {
+		final int size;
+		final Future<byte[]> data;
+
+		Batch(int size, Future<byte[]> data) {
+			this.size = size;
+			this.data = data;
+		}
+	}
+
+	private final CoordinateTransformation coordinateTransformation;
+	private final Map<Class<?>, AttributeConverter<?>> converters;
+	private final int numThreads;
+
+	ParallelPopulationWriterV6(final CoordinateTransformation coordinateTransformation,
+			final Map<Class<?>, AttributeConverter<?>> converters, final int numThreads) {
+		this.coordinateTransformation = coordinateTransformation;
+		this.converters = converters;
+		this.numThreads = Math.max(1, numThreads);
+	}
+
+	/**
+	 * Writes the given persons of the population to the file, the compression is defined by the ending of the filename.
+	 */
+	void write(final Population population, final List<Person> persons, final String filename, final Counter counter) {
+		String lowerCaseName = filename.toLowerCase(Locale.ROOT);
+		try {
+			if (lowerCaseName.endsWith(".gz")) {
+				write(population, persons, new BufferedOutputStream(new FileOutputStream(filename)), Compression.GZIP, counter);
+			} else if (lowerCaseName.endsWith(".zst")) {
+				write(population, persons, new BufferedOutputStream(new FileOutputStream(filename)), Compression.ZSTD, counter);
+			} else {
+				write(population, persons, IOUtils.getOutputStream(IOUtils.getFileUrl(filename), false), Compression.NONE, counter);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Writes the given persons of the population uncompressed to the stream and closes it.
+	 */
+	void write(final Population population, final List<Person> persons, final OutputStream stream, final Counter counter) {
+		write(population, persons, stream, Compression.NONE, counter);
+	}
+
+	private void write(final Population population, final List<Person> persons, final OutputStream stream,
+			final Compression compression, final Counter counter) {
+		log.info("Start parallel population writing with " + this.numThreads + " threads...");
+		AtomicInteger threadNumber = new AtomicInteger(0);
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(this.numThreads, this.numThreads, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+			Thread thread = new Thread(r, ParallelPopulationWriterV6.class.getSimpleName() + "." + threadNumber.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		});
+		ThreadLocal<PopulationWriterHandler> handlers = ThreadLocal.withInitial(this::createHandler);
+		Deque<Batch> pendingBatches = new ArrayDeque<>();
+		try (OutputStream out = stream) {
+			PopulationWriterHandler handler = createHandler();
+			out.write(serialize(compression, o -> {
+				handler.writeHeaderAndStartElement(o);
+				handler.startPlans(population, o);
+				handler.writeSeparator(o);
+			}));
+
+			for (int start = 0; start < persons.size(); start += BATCH_SIZE) {
+				List<Person> batch = persons.subList(start, Math.min(start + BATCH_SIZE, persons.size()));
+				pendingBatches.add(new Batch(batch.size(), executor.submit(() -> serialize(compression, o -> {
+					PopulationWriterHandler threadHandler = handlers.get();
+					for (Person person : batch) {
+						threadHandler.writePerson(person, o);
+					}
+				}))));
+				while (pendingBatches.size() > this.numThreads * BATCHES_PER_THREAD) {
+					writeNextBatch(pendingBatches, out, counter);
+				}
+			}
+			while (!pendingBatches.isEmpty()) {
+				writeNextBatch(pendingBatches, out, counter);
+			}
+
+			out.write(serialize(compression, handler::endPlans));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			executor.shutdownNow();
+		}
+		log.info("Finished parallel population writing...");
+	}
+
+	private PopulationWriterHandler createHandler() {
+		PopulationWriterHandler handler = new PopulationWriterHandlerImplV6(this.coordinateTransformation);
+		handler.putAttributeConverters(this.converters);
+		return handler;
+	}
+
+	private static void writeNextBatch(final Deque<Batch> pendingBatches, final OutputStream out, final Counter counter) throws IOException {
+		Batch batch = pendingBatches.poll();
+		byte[] data;
+		try {
+			data = batch.data.get();
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			throw cause instanceof RuntimeException ? (RuntimeException) cause : new RuntimeException(cause);
+		}
+		out.write(data);
+		for (int i = 0; i < batch.size; i++) {
+			counter.incCounter();
+		}
+	}
+
+	/**
+	 * @return the content as a complete (i.e. independently decompressible) gzip member or zstd frame, or uncompressed.
+	 */
+	private static byte[] serialize(final Compression compression, final Content content) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * 1024);
+		OutputStream stream;
+		switch (compression) {
+			case GZIP:
+				stream = new GZIPOutputStream(bytes, 64 * 1024);
+				break;
+			case ZSTD:
+				stream = new ZstdOutputStream(bytes, ZSTD_LEVEL);
+				break;
+			default:
+				stream = bytes;
+		}
+		try (BufferedWriter out = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8))) {
+			content.write(out);
+		}
+		return bytes.toByteArray();
+	}
+}
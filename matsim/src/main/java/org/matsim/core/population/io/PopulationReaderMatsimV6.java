@@ -137,6 +137,21 @@ import java.util.Stack;
 		attributesReader.putAttributeConverters( converters );
 	}
 
+	/*package*/ CoordinateTransformation getCoordinateTransformation() {
+		return this.coordinateTransformation;
+	}
+
+	/*package*/ void setCoordinateTransformation(final CoordinateTransformation coordinateTransformation) {
+		this.coordinateTransformation = coordinateTransformation;
+	}
+
+	/**
+	 * Called for every person after it was read completely.
+	 */
+	/*package*/ void addPerson(final Person person) {
+		this.plans.addPerson(person);
+	}
+
 	@Override
 	public void startTag(final String name, final Attributes atts, final Stack<String> context) {
 		switch( name ) {
@@ -191,7 +206,7 @@ import java.util.Stack;
 	public void endTag(final String name, final String content, final Stack<String> context) {
 		switch ( name ) {
 			case PERSON:
-				this.plans.addPerson(this.currperson);
+				addPerson(this.currperson);
 				this.currperson = null;
 				break;
 			case ATTRIBUTE:
@@ -22,7 +22,9 @@ package org.matsim.core.population.io;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.log4j.Logger;
@@ -51,6 +53,7 @@ public final class PopulationWriter extends AbstractMatsimWriter implements Mats
 
 	private final static Logger log = Logger.getLogger(PopulationWriter.class);
 	private Map<Class<?>,AttributeConverter<?>> converters = new HashMap<>();
+	private int numberOfThreads = 1;
 
 
 	public PopulationWriter(final Population population) {
@@ -128,11 +131,31 @@ public final class PopulationWriter extends AbstractMatsimWriter implements Mats
 		this.converters.put( key, converter );
 	}
 
+	/**
+	 * Sets the number of threads used to serialize the persons when writing in the format of population_v6.dtd.
+	 * With more than one thread, gzip- or zstd-compressed files consist of several independently compressed
+	 * members (see {@link ParallelPopulationWriterV6}), which are read by all readers like any other compressed file.
+	 * The attribute converters and the coordinate transformation must be thread-safe in this case.
+	 */
+	public final void setNumberOfThreads(final int numberOfThreads) {
+		this.numberOfThreads = numberOfThreads;
+	}
+
 	/**
 	 * Writes all plans to the file.
 	 */
 	@Override
 	public final void write(final String filename) {
+		if (isWritingInParallel()) {
+			try {
+				createParallelWriter().write(this.population, getPersonsToWrite(), this.useCompression == null ? filename : filename + ".gz", counter);
+				log.info("Population written to: " + filename);
+			} finally {
+				counter.printCounter();
+				counter.reset();
+			}
+			return;
+		}
 		try {
 			this.handler.putAttributeConverters(converters);
 			this.openFile(filename);
@@ -156,6 +179,15 @@ public final class PopulationWriter extends AbstractMatsimWriter implements Mats
 	 * 
 	 */
 	public final void write(OutputStream outputStream) {
+		if (isWritingInParallel() && (this.useCompression == null || this.useCompression)) {
+			try {
+				createParallelWriter().write(this.population, getPersonsToWrite(), outputStream, counter);
+			} finally {
+				counter.printCounter();
+				counter.reset();
+			}
+			return;
+		}
 		try {
 			this.handler.putAttributeConverters(converters);
 			this.openOutputStream(outputStream);
@@ -174,6 +206,28 @@ public final class PopulationWriter extends AbstractMatsimWriter implements Mats
 	}
 
 
+	private boolean isWritingInParallel() {
+		return this.numberOfThreads > 1 && this.handler.getClass() == PopulationWriterHandlerImplV6.class;
+	}
+
+	private ParallelPopulationWriterV6 createParallelWriter() {
+		return new ParallelPopulationWriterV6(this.coordinateTransformation, this.converters, this.numberOfThreads);
+	}
+
+	/**
+	 * @return the persons to write in the same order and with the same random draws as {@link #writePersons()}
+	 */
+	private List<Person> getPersonsToWrite() {
+		List<Person> persons = new ArrayList<>(this.population.getPersons().size());
+		for (Person p : PopulationUtils.getSortedPersons(this.population).values()) {
+			if ((this.write_person_fraction < 1.0) && (MatsimRandom.getRandom().nextDouble() >= this.write_person_fraction)) {
+				continue;
+			}
+			persons.add(p);
+		}
+		return persons;
+	}
+
 	private  final void writePersons() {
 		for (Person p : PopulationUtils.getSortedPersons(this.population).values()) {
 			writePerson(p);
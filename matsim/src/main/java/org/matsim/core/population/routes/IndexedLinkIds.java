@@ -0,0 +1,250 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * IndexedLinkIds.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population.routes;
+
+import java.lang.ref.WeakReference;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.WeakHashMap;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+
+/**
+ * Immutable list of link ids which only stores the {@link Id#index() indices} of the ids, either as an
+ * <code>int[]</code> or packed as differences to the previous link in a <code>byte[]</code>. As the lists are
+ * immutable, they can be shared between routes, e.g. by copies of a route.
+ */
+/* deliberately package */ abstract class IndexedLinkIds extends AbstractList<Id<Link>> {
+
+	static final IndexedLinkIds EMPTY = new IntArray(new int[0]);
+
+	/* the hash code of the list, computed lazily like the one of String */
+	private int hash = 0;
+
+	static IndexedLinkIds create(final List<Id<Link>> linkIds) {
+		if (linkIds == null || linkIds.isEmpty()) {
+			return EMPTY;
+		}
+		if (linkIds instanceof IntArray) {
+			return (IntArray) linkIds;
+		}
+		int[] indices = new int[linkIds.size()];
+		int i = 0;
+		for (Id<Link> linkId : linkIds) {
+			indices[i++] = linkId.index();
+		}
+		return new IntArray(indices);
+	}
+
+	static IndexedLinkIds createPacked(final List<Id<Link>> linkIds, final Dictionary dictionary) {
+		if (linkIds == null || linkIds.isEmpty()) {
+			return EMPTY;
+		}
+		if (linkIds instanceof Packed) {
+			return (Packed) linkIds;
+		}
+		// consecutive links often have similar indices, so the differences mostly need only one or two bytes
+		byte[] buffer = new byte[5 * linkIds.size()];
+		int length = 0;
+		int previous = 0;
+		for (Id<Link> linkId : linkIds) {
+			int delta = linkId.index() - previous;
+			previous = linkId.index();
+			int zigzag = (delta << 1) ^ (delta >> 31);
+			while ((zigzag & ~0x7f) != 0) {
+				buffer[length++] = (byte) ((zigzag & 0x7f) | 0x80);
+				zigzag >>>= 7;
+			}
+			buffer[length++] = (byte) zigzag;
+		}
+		Packed packed = new Packed(Arrays.copyOf(buffer, length), linkIds.size());
+		return dictionary == null ? packed : dictionary.intern(packed);
+	}
+
+	abstract boolean hasSameContent(IndexedLinkIds other);
+
+	@Override
+	public int hashCode() {
+		int h = this.hash;
+		if (h == 0 && !isEmpty()) {
+			h = super.hashCode();
+			this.hash = h;
+		}
+		return h;
+	}
+
+	@Override
+	public boolean equals(final Object o) {
+		if (o == this) {
+			return true;
+		}
+		if (o != null && o.getClass() == getClass()) {
+			return hasSameContent((IndexedLinkIds) o);
+		}
+		return super.equals(o);
+	}
+
+	private static final class IntArray extends IndexedLinkIds implements RandomAccess {
+
+		private final int[] indices;
+
+		IntArray(final int[] indices) {
+			this.indices = indices;
+		}
+
+		@Override
+		public Id<Link> get(final int index) {
+			return Id.get(this.indices[index], Link.class);
+		}
+
+		@Override
+		public int size() {
+			return this.indices.length;
+		}
+
+		@Override
+		boolean hasSameContent(final IndexedLinkIds other) {
+			return Arrays.equals(this.indices, ((IntArray) other).indices);
+		}
+	}
+
+	/**
+	 * Link indices stored as zigzag-encoded variable-length differences to the previous index. Random access has to
+	 * decode the list, but the position of the last access is remembered and decoding continues from there, or starts
+	 * again from the beginning when going back. So accessing the links one after the other is cheap, also when doing so
+	 * repeatedly. Iterating over the list is cheaper still, and is not disturbed by other threads accessing the same
+	 * (shared) list.
+	 */
+	private static final class Packed extends IndexedLinkIds {
+
+		private final byte[] data;
+		private final int size;
+		/* the last position accessed by get(), guarded by this */
+		private int cursorPosition = -1;
+		private int cursorOffset = 0;
+		private int cursorValue = 0;
+
+		Packed(final byte[] data, final int size) {
+			this.data = data;
+			this.size = size;
+		}
+
+		@Override
+		public synchronized Id<Link> get(final int index) {
+			if (index < 0 || index >= this.size) {
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size);
+			}
+			int position = this.cursorPosition;
+			int offset = this.cursorOffset;
+			int value = this.cursorValue;
+			if (index < position) {
+				position = -1;
+				offset = 0;
+				value = 0;
+			}
+			while (position < index) {
+				int zigzag = 0;
+				int shift = 0;
+				byte b;
+				do {
+					b = this.data[offset++];
+					zigzag |= (b & 0x7f) << shift;
+					shift += 7;
+				} while (b < 0);
+				value += (zigzag >>> 1) ^ -(zigzag & 1);
+				position++;
+			}
+			this.cursorPosition = position;
+			this.cursorOffset = offset;
+			this.cursorValue = value;
+			return Id.get(value, Link.class);
+		}
+
+		@Override
+		public Iterator<Id<Link>> iterator() {
+			return new Iterator<Id<Link>>() {
+				private int position = 0;
+				private int offset = 0;
+				private int value = 0;
+
+				@Override
+				public boolean hasNext() {
+					return this.position < Packed.this.size;
+				}
+
+				@Override
+				public Id<Link> next() {
+					if (!hasNext()) {
+						throw new NoSuchElementException();
+					}
+					int zigzag = 0;
+					int shift = 0;
+					byte b;
+					do {
+						b = Packed.this.data[this.offset++];
+						zigzag |= (b & 0x7f) << shift;
+						shift += 7;
+					} while (b < 0);
+					this.value += (zigzag >>> 1) ^ -(zigzag & 1);
+					this.position++;
+					return Id.get(this.value, Link.class);
+				}
+			};
+		}
+
+		@Override
+		public int size() {
+			return this.size;
+		}
+
+		@Override
+		boolean hasSameContent(final IndexedLinkIds other) {
+			return Arrays.equals(this.data, ((Packed) other).data);
+		}
+	}
+
+	/**
+	 * Shares the lists of link ids between all routes with the same links. Lists are removed from the dictionary once
+	 * they are no longer used by any route.
+	 */
+	static final class Dictionary {
+		private final WeakHashMap<IndexedLinkIds, WeakReference<IndexedLinkIds>> linkIds = new WeakHashMap<>();
+
+		synchronized IndexedLinkIds intern(final IndexedLinkIds candidate) {
+			WeakReference<IndexedLinkIds> ref = this.linkIds.get(candidate);
+			IndexedLinkIds existing = ref == null ? null : ref.get();
+			if (existing != null) {
+				return existing;
+			}
+			this.linkIds.put(candidate, new WeakReference<>(candidate));
+			return candidate;
+		}
+
+		synchronized int size() {
+			return this.linkIds.size();
+		}
+	}
+}
@@ -0,0 +1,58 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * IndexedNetworkRouteFactory.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population.routes;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Route;
+
+/**
+ * Creates network routes which store their links by the indices of the link ids.
+ * <p></p>
+ * If <code>packed</code> is set, the indices are stored as variable-length differences, which mostly need one or two
+ * bytes per link instead of four, and all routes of this factory with the same links share the same data. This needs
+ * less memory, but accessing a link by its position is only fast if the links are accessed in order.
+ */
+public final class IndexedNetworkRouteFactory implements RouteFactory {
+
+	private final boolean packed;
+	private final IndexedLinkIds.Dictionary dictionary;
+
+	public IndexedNetworkRouteFactory() {
+		this(false);
+	}
+
+	public IndexedNetworkRouteFactory(final boolean packed) {
+		this.packed = packed;
+		this.dictionary = packed ? new IndexedLinkIds.Dictionary() : null;
+	}
+
+	@Override
+	public Route createRoute(final Id<Link> startLinkId, final Id<Link> endLinkId) {
+		return new IndexedNetworkRouteImpl(startLinkId, endLinkId, this.packed, this.dictionary);
+	}
+
+	@Override
+	public String getCreatedRouteType() {
+		return LinkNetworkRouteImpl.ROUTE_TYPE;
+	}
+
+}
@@ -0,0 +1,192 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * IndexedNetworkRouteImpl.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population.routes;
+
+import java.util.Iterator;
+import java.util.List;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * Implementation of {@link NetworkRoute} which stores the links of the route only by the {@link Id#index() indices}
+ * of their ids in an immutable list, which is returned by {@link #getLinkIds()} without copying and is shared by copies
+ * of the route. In contrast to the {@link CompressedNetworkRouteImpl}, no network is needed.
+ * <p></p>
+ * If a {@link IndexedLinkIds.Dictionary dictionary} is given, the link indices are packed as variable-length
+ * differences, and the same lists are used for all routes with the same links.
+ */
+final class IndexedNetworkRouteImpl extends AbstractRoute implements NetworkRoute {
+
+	private final IndexedLinkIds.Dictionary dictionary;
+	private final boolean packed;
+	private IndexedLinkIds route = IndexedLinkIds.EMPTY;
+	private double travelCost = Double.NaN;
+	private Id<Vehicle> vehicleId = null;
+
+	IndexedNetworkRouteImpl(final Id<Link> startLinkId, final Id<Link> endLinkId, final boolean packed,
+			final IndexedLinkIds.Dictionary dictionary) {
+		super(startLinkId, endLinkId);
+		this.packed = packed;
+		this.dictionary = dictionary;
+	}
+
+	@Override
+	public IndexedNetworkRouteImpl clone() {
+		// the list of links is immutable, so it can be shared
+		return (IndexedNetworkRouteImpl) super.clone();
+	}
+
+	@Override
+	public List<Id<Link>> getLinkIds() {
+		return this.route;
+	}
+
+	@Override
+	public NetworkRoute getSubRoute(final Id<Link> fromLinkId, final Id<Link> toLinkId) {
+		// same as in LinkNetworkRouteImpl, but iterating over the links, as packed link ids are not random access
+		List<Id<Link>> route = this.route;
+		Iterator<Id<Link>> iter = route.iterator();
+		int position = 0; // of the next link of the iterator
+		int fromIndex = -1;
+		int toIndex = -1;
+
+		if (fromLinkId.equals(this.getStartLinkId())) {
+			fromIndex = 0;
+		} else {
+			while (iter.hasNext() && (fromIndex < 0)) {
+				position++;
+				if (fromLinkId.equals(iter.next())) {
+					fromIndex = position;
+				}
+			}
+			if (fromIndex < 0 && fromLinkId.equals(this.getEndLinkId())) {
+				fromIndex = route.size();
+			}
+			if (fromIndex < 0) {
+				throw new IllegalArgumentException("Cannot create subroute because fromLinkId is not part of the route.");
+			}
+		}
+
+		if (fromLinkId.equals(toLinkId)) {
+			toIndex = fromIndex - 1;
+		} else {
+			// the iterator is at fromIndex now
+			while (iter.hasNext() && (toIndex < 0)) {
+				Id<Link> linkId = iter.next();
+				if (fromLinkId.equals(linkId)) {
+					fromIndex = position + 1; // in case of a loop, cut it short
+				}
+				if (toLinkId.equals(linkId)) {
+					toIndex = position;
+				}
+				position++;
+			}
+			if (toIndex < 0 && toLinkId.equals(this.getEndLinkId())) {
+				toIndex = route.size();
+			}
+			if (toIndex < 0) {
+				throw new IllegalArgumentException("Cannot create subroute because toLinkId is not part of the route.");
+			}
+		}
+		NetworkRoute ret = new IndexedNetworkRouteImpl(fromLinkId, toLinkId, this.packed, this.dictionary);
+		if (toIndex > fromIndex) {
+			ret.setLinkIds(fromLinkId, route.subList(fromIndex, toIndex), toLinkId);
+		} else {
+			ret.setLinkIds(fromLinkId, null, toLinkId);
+		}
+		return ret;
+	}
+
+	@Override
+	public double getTravelCost() {
+		return this.travelCost;
+	}
+
+	@Override
+	public void setTravelCost(final double travelCost) {
+		this.travelCost = travelCost;
+	}
+
+	@Override
+	public void setLinkIds(final Id<Link> startLinkId, final List<Id<Link>> srcRoute, final Id<Link> endLinkId) {
+		setStartLinkId(startLinkId);
+		setEndLinkId(endLinkId);
+		this.route = this.packed ? IndexedLinkIds.createPacked(srcRoute, this.dictionary) : IndexedLinkIds.create(srcRoute);
+	}
+
+	@Override
+	public Id<Vehicle> getVehicleId() {
+		return this.vehicleId;
+	}
+
+	@Override
+	public void setVehicleId(final Id<Vehicle> vehicleId) {
+		this.vehicleId = vehicleId;
+	}
+
+	@Override
+	public String getRouteDescription() {
+		StringBuilder desc = new StringBuilder(100);
+		desc.append(this.getStartLinkId().toString());
+		for (Id<Link> linkId : this.route) {
+			desc.append(" ");
+			desc.append(linkId.toString());
+		}
+		// If the start links equals the end link additionally check if its is a round trip.
+		if (!this.getEndLinkId().equals(this.getStartLinkId()) || this.route.size() > 0) {
+			desc.append(" ");
+			desc.append(this.getEndLinkId().toString());
+		}
+		return desc.toString();
+	}
+
+	@Override
+	public void setRouteDescription(final String routeDescription) {
+		List<Id<Link>> linkIds = NetworkUtils.getLinkIds(routeDescription);
+		Id<Link> startLinkId = getStartLinkId();
+		Id<Link> endLinkId = getEndLinkId();
+		if (linkIds.size() > 0) {
+			startLinkId = linkIds.remove(0);
+			setStartLinkId(startLinkId);
+		}
+		if (linkIds.size() > 0) {
+			endLinkId = linkIds.remove(linkIds.size() - 1);
+			setEndLinkId(endLinkId);
+		}
+		this.setLinkIds(startLinkId, linkIds, endLinkId);
+	}
+
+	@Override
+	public String getRouteType() {
+		return LinkNetworkRouteImpl.ROUTE_TYPE;
+	}
+
+	@Override
+	public String toString() {
+		String str = super.toString();
+		str += " linkIds=" + this.getLinkIds() ;
+		str += " travelCost=" + this.getTravelCost() ;
+		return str ;
+	}
+}
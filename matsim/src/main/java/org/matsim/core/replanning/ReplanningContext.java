@@ -19,6 +19,8 @@
 
 package org.matsim.core.replanning;
 
+import org.matsim.analysis.IterationStopWatch;
+
 /**
  * A partial, inside view of the Controler which is available during replanning.
  * @author michaz
@@ -31,4 +33,12 @@ public interface ReplanningContext {
 	 */
 	int getIteration();
 
+	/**
+	 * The stop watch of the controler, where strategy modules may record the time spent in their operations.  May be
+	 * <code>null</code> if replanning runs outside of a controler.
+	 */
+	default IterationStopWatch getStopwatch() {
+		return null;
+	}
+
 }
@@ -21,16 +21,23 @@
 package org.matsim.core.replanning.modules;
 
 import org.apache.log4j.Logger;
+import org.matsim.analysis.IterationStopWatch;
 import org.matsim.api.core.v01.population.Plan;
 import org.matsim.api.core.v01.replanning.PlanStrategyModule;
 import org.matsim.core.config.groups.GlobalConfigGroup;
+import org.matsim.core.config.groups.GlobalConfigGroup.ReplanningScheduling;
 import org.matsim.core.population.algorithms.PlanAlgorithm;
 import org.matsim.core.replanning.ReplanningContext;
 import org.matsim.core.utils.misc.Counter;
 
 import java.lang.Thread.UncaughtExceptionHandler;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
@@ -50,6 +57,16 @@ import java.util.concurrent.atomic.AtomicReference;
  * "fast threads"), it helps building reproducible runs.  Additionally, as the threads are only
  * started after all to-be-handled plans are added, we can use unsynchronized data structures.
  * <p></p>
+ * With {@link ReplanningScheduling#dynamic}, the threads are already started in <code>prepareReplanning()</code>,
+ * and <code>handlePlan(Plan)</code> hands the plans in small batches to a queue shared by all threads.  Thus the plans
+ * are already handled while they are still collected, and no thread runs out of work while others still have many
+ * expensive plans to handle.  Each thread still uses its own plan algorithm, but which plans it gets depends on the
+ * timing, so the results are only reproducible if the plan algorithms do not have their own state (like random
+ * number generators).
+ * <p></p>
+ * In both cases, the time each thread worked on its plans is recorded in the {@link IterationStopWatch}, if the
+ * {@link ReplanningContext} provides one.
+ * <p></p>
  * Design comments/questions:<ul>
  * <li> As a consequence of the design, the instances that getPlanAlgoInstance() returns, need to be thread-safe.  kai, dec'12
  * For an example with discussions, see {@link tutorial.programming.multiThreadedPlanStrategy.RunWithMultithreadedModule}
@@ -58,7 +75,15 @@ import java.util.concurrent.atomic.AtomicReference;
  * @author mrieser
  */
 abstract public class AbstractMultithreadedModule implements PlanStrategyModule {
+	/* small enough to keep all threads busy until the end, large enough to make the synchronization overhead negligible */
+	private static final int BATCH_SIZE = 16;
+	private static final List<Plan> END_OF_PLANS = Collections.emptyList();
+	/* numbers the modules, so that the threads of modules with the same algorithm are recorded separately in the stop watch */
+	private static final AtomicInteger moduleCounter = new AtomicInteger();
+
 	private final int numOfThreads;
+	private final ReplanningScheduling scheduling;
+	private final int moduleIndex = moduleCounter.getAndIncrement();
 
 	private PlanAlgoThread[] algothreads = null;
 	private Thread[] threads = null;
@@ -67,6 +92,9 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 
 	private int count = 0;
 
+	private BlockingQueue<List<Plan>> queue = null;
+	private List<Plan> batch = null;
+
 	private final AtomicReference<Throwable> hadException = new AtomicReference<>(null);
 	private final ExceptionHandler exceptionHandler = new ExceptionHandler(this.hadException);
 
@@ -83,11 +111,16 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 	abstract public PlanAlgorithm getPlanAlgoInstance();
 
 	public AbstractMultithreadedModule(GlobalConfigGroup globalConfigGroup) {
-		this.numOfThreads = globalConfigGroup.getNumberOfThreads();
+		this(globalConfigGroup.getNumberOfThreads(), globalConfigGroup.getReplanningScheduling());
 	}
 
 	public AbstractMultithreadedModule(final int numOfThreads) {
+		this(numOfThreads, ReplanningScheduling.roundRobin);
+	}
+
+	public AbstractMultithreadedModule(final int numOfThreads, final ReplanningScheduling scheduling) {
 		this.numOfThreads = numOfThreads;
+		this.scheduling = scheduling;
 	}
 	
 	protected void beforePrepareReplanningHook(@SuppressWarnings("unused") ReplanningContext replanningContextTmp) {
@@ -107,6 +140,12 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 			this.directAlgo = getPlanAlgoInstance();
 		} else {
 			initThreads();
+			if (this.queue != null) {
+				log.info("[" + this.name + "] starting " + this.threads.length + " threads, handling plans while they are collected");
+				for (Thread thread : this.threads) {
+					thread.start();
+				}
+			}
 		}
 		this.afterPrepareReplanningHook(replanningContextTmp);
 	}
@@ -117,11 +156,18 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 
 	@Override
 	public final void handlePlan(final Plan plan) {
-		if (this.directAlgo == null) {
-			this.algothreads[this.count % this.numOfThreads].addPlanToThread(plan);
+		if (this.directAlgo != null) {
+			this.directAlgo.run(plan);
+		} else if (this.queue != null) {
+			this.batch.add(plan);
+			if (this.batch.size() == BATCH_SIZE) {
+				this.queue.add(this.batch);
+				this.batch = new ArrayList<>(BATCH_SIZE);
+			}
 			this.count++;
 		} else {
-			this.directAlgo.run(plan);
+			this.algothreads[this.count % this.numOfThreads].addPlanToThread(plan);
+			this.count++;
 		}
 	}
 
@@ -138,11 +184,22 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 		
 		if (this.directAlgo == null) {
 			// only try to start threads if we did not directly work on all the plans
-			log.info("[" + this.name + "] starting " + this.threads.length + " threads, handling " + this.count + " plans");
+			if (this.queue != null) {
+				// the threads are already running, hand over the remaining plans and tell every thread to stop afterwards
+				if (!this.batch.isEmpty()) {
+					this.queue.add(this.batch);
+				}
+				for (int i = 0; i < this.threads.length; i++) {
+					this.queue.add(END_OF_PLANS);
+				}
+				log.info("[" + this.name + "] waiting for " + this.threads.length + " threads, handling " + this.count + " plans");
+			} else {
+				log.info("[" + this.name + "] starting " + this.threads.length + " threads, handling " + this.count + " plans");
 
-			// start threads
-			for (Thread thread : this.threads) {
-				thread.start();
+				// start threads
+				for (Thread thread : this.threads) {
+					thread.start();
+				}
 			}
 
 			// wait until each thread is finished
@@ -154,6 +211,7 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 				throw new RuntimeException(e);
 			}
 			log.info("[" + this.name + "] all " + this.threads.length + " threads finished.");
+			recordThreadTimes();
 			Throwable throwable = this.hadException.get();
 			if (throwable != null) {
 				throw new RuntimeException("Some threads crashed, thus not all plans may have been handled.", throwable);
@@ -162,6 +220,8 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 		// reset
 		this.algothreads = null;
 		this.threads = null;
+		this.queue = null;
+		this.batch = null;
 		this.replanningContext = null;
 		this.count = 0;
 		
@@ -176,6 +236,10 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 		this.hadException.set(null);
 		this.threads = new Thread[this.numOfThreads];
 		this.algothreads = new PlanAlgoThread[this.numOfThreads];
+		if (this.scheduling == ReplanningScheduling.dynamic) {
+			this.queue = new LinkedBlockingQueue<>();
+			this.batch = new ArrayList<>(BATCH_SIZE);
+		}
 
 		Counter counter = null;
 		// setup threads
@@ -185,14 +249,31 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 				this.name = algo.getClass().getSimpleName();
 				counter = new Counter("[" + this.name + "] handled plan # ");
 			}
-			PlanAlgoThread algothread = new PlanAlgoThread(algo, counter);
+			PlanAlgoThread algothread = new PlanAlgoThread(algo, counter, this.queue);
 			Thread thread = new Thread(algothread, this.name + "." + i);
 			thread.setUncaughtExceptionHandler(this.exceptionHandler);
+			// running threads must not keep the jvm alive if the replanning is aborted before finishReplanning()
+			thread.setDaemon(this.queue != null);
 			this.threads[i] = thread;
 			this.algothreads[i] = algothread;
 		}
 	}
 
+	private void recordThreadTimes() {
+		IterationStopWatch stopwatch = this.replanningContext == null ? null : this.replanningContext.getStopwatch();
+		for (int i = 0; i < this.algothreads.length; i++) {
+			PlanAlgoThread algothread = this.algothreads[i];
+			if (algothread.plansHandled == 0) {
+				continue;
+			}
+			log.info("[" + this.name + "] thread " + i + " handled " + algothread.plansHandled + " plans in "
+					+ (algothread.busyNanos / 1000000) + " ms");
+			if (stopwatch != null) {
+				stopwatch.addConcurrentOperation(this.name + "#" + this.moduleIndex + "." + i, algothread.firstPlanTime, algothread.lastPlanTime);
+			}
+		}
+	}
+
 	/* package (for a test) */ final int getNumOfThreads() {
 		return numOfThreads;
 	}
@@ -218,10 +299,19 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 		private final PlanAlgorithm planAlgo;
 		private final List<Plan> plans = new LinkedList<>();
 		private final Counter counter;
+		/* the plans of all threads if they are scheduled dynamically, null otherwise */
+		private final BlockingQueue<List<Plan>> queue;
+
+		/* only read after the thread was joined */
+		private int plansHandled = 0;
+		private long busyNanos = 0;
+		private long firstPlanTime = 0;
+		private long lastPlanTime = 0;
 
-		public PlanAlgoThread(final PlanAlgorithm algo, final Counter counter) {
+		public PlanAlgoThread(final PlanAlgorithm algo, final Counter counter, final BlockingQueue<List<Plan>> queue) {
 			this.planAlgo = algo;
 			this.counter = counter;
+			this.queue = queue;
 		}
 
 		public void addPlanToThread(final Plan plan) {
@@ -230,10 +320,35 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 
 		@Override
 		public void run() {
-			for (Plan plan : this.plans) {
+			if (this.queue == null) {
+				run(this.plans);
+			} else {
+				try {
+					List<Plan> batch;
+					while ((batch = this.queue.take()) != END_OF_PLANS) {
+						run(batch);
+					}
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		}
+
+		private void run(final List<Plan> batch) {
+			if (batch.isEmpty()) {
+				return;
+			}
+			long start = System.nanoTime();
+			if (this.plansHandled == 0) {
+				this.firstPlanTime = System.currentTimeMillis();
+			}
+			for (Plan plan : batch) {
 				this.planAlgo.run(plan);
 				this.counter.incCounter();
+				this.plansHandled++;
 			}
+			this.busyNanos += System.nanoTime() - start;
+			this.lastPlanTime = System.currentTimeMillis();
 		}
 	}
 }
@@ -0,0 +1,208 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ArrayAStarLandmarks.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.Arrays;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.core.router.util.PreProcessLandmarks;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.core.utils.geometry.CoordUtils;
+import org.matsim.core.utils.misc.Time;
+
+/**
+ * The A* with landmarks variant of {@link ArrayDijkstra}. The landmark travel times of the preprocessing are copied
+ * into arrays, and the active landmarks are selected and extended during the search exactly as in
+ * {@link AStarLandmarks}, so both return the same paths.
+ *
+ * @see ArrayAStarLandmarksFactory
+ */
+public class ArrayAStarLandmarks extends ArrayDijkstra {
+
+	private final LandmarksData landmarksData;
+	private final double overdoFactor;
+
+	private final int[] activeLandmarks;
+	private int activeLandmarkCount = 0;
+	private final double[] initialEstimates = new double[2];
+	private int controlCounter = 0;
+	private int[] nodesToBeUpdated = new int[64];
+	private double[] newEstimates = new double[64];
+
+	/*package*/ ArrayAStarLandmarks(final CompactGraph graph, final LandmarksData landmarksData,
+			final ThreadLocal<SearchState> searchStates, final TravelDisutility costFunction, final TravelTime timeFunction,
+			final double overdoFactor) {
+		super(graph, landmarksData.deadEndEntryNodes, searchStates, costFunction, timeFunction);
+		this.landmarksData = landmarksData;
+		this.overdoFactor = overdoFactor;
+		this.activeLandmarks = new int[landmarksData.landmarkCount];
+	}
+
+	@Override
+	void initSearch(final int fromNode, final int toNode) {
+		this.controlCounter = 0;
+		initializeActiveLandmarks(fromNode, toNode, Math.min(2, this.landmarksData.landmarkCount));
+	}
+
+	@Override
+	void visitNode(final int node, final double time, final double cost, final int link, final int toNode) {
+		this.state.estimate[node] = estimateRemainingTravelCost(node, toNode);
+		super.visitNode(node, time, cost, link, toNode);
+	}
+
+	@Override
+	double getPriority(final int node) {
+		return this.state.cost[node] + this.state.estimate[node];
+	}
+
+	@Override
+	void relaxNode(final int node, final int toNode) {
+		this.controlCounter++;
+		if (this.controlCounter == AStarLandmarks.controlInterval) {
+			int newLandmarkIndex = checkToAddLandmark(node, toNode);
+			if (newLandmarkIndex > 0) {
+				updatePendingNodes(newLandmarkIndex, toNode);
+			}
+			this.controlCounter = 0;
+		}
+		super.relaxNode(node, toNode);
+	}
+
+	private void initializeActiveLandmarks(final int fromNode, final int toNode, final int actLandmarkCount) {
+		double[] estTravelTimes = this.initialEstimates;
+		for (int i = 0; i < actLandmarkCount; i++) {
+			estTravelTimes[i] = Time.UNDEFINED_TIME;
+			this.activeLandmarks[i] = 0;
+		}
+		this.activeLandmarkCount = actLandmarkCount;
+		for (int i = 0; i < this.landmarksData.landmarkCount; i++) {
+			double tmpTravTime = estimateRemainingTravelCost(fromNode, toNode, i);
+			for (int j = 0; j < actLandmarkCount; j++) {
+				if (tmpTravTime > estTravelTimes[j]) {
+					for (int k = actLandmarkCount - 1; k > j; k--) {
+						estTravelTimes[k] = estTravelTimes[k - 1];
+						this.activeLandmarks[k] = this.activeLandmarks[k - 1];
+					}
+					estTravelTimes[j] = tmpTravTime;
+					this.activeLandmarks[j] = i;
+					break;
+				}
+			}
+		}
+	}
+
+	private int checkToAddLandmark(final int fromNode, final int toNode) {
+		double bestTravCostEst = estimateRemainingTravelCost(fromNode, toNode);
+		int bestIndex = -1;
+		for (int i = 0; i < this.landmarksData.landmarkCount; i++) {
+			double tmpTravTime = estimateRemainingTravelCost(fromNode, toNode, i);
+			if (tmpTravTime > bestTravCostEst) {
+				bestIndex = i;
+				bestTravCostEst = tmpTravTime;
+			}
+		}
+		if (bestIndex != -1) {
+			this.activeLandmarks[this.activeLandmarkCount++] = bestIndex;
+		}
+		return bestIndex;
+	}
+
+	private void updatePendingNodes(final int newLandmarkIndex, final int toNode) {
+		NodeMinHeap pendingNodes = this.state.heap;
+		double[] estimate = this.state.estimate;
+		int count = 0;
+		for (int i = 0, n = pendingNodes.size(); i < n; i++) {
+			int node = pendingNodes.get(i);
+			double newEstRemTravCost = estimateRemainingTravelCost(node, toNode, newLandmarkIndex);
+			if (newEstRemTravCost > estimate[node]) {
+				if (count == this.nodesToBeUpdated.length) {
+					this.nodesToBeUpdated = Arrays.copyOf(this.nodesToBeUpdated, 2 * count);
+					this.newEstimates = Arrays.copyOf(this.newEstimates, 2 * count);
+				}
+				this.nodesToBeUpdated[count] = node;
+				this.newEstimates[count] = newEstRemTravCost;
+				count++;
+			}
+		}
+		for (int i = 0; i < count; i++) {
+			int node = this.nodesToBeUpdated[i];
+			estimate[node] = this.newEstimates[i];
+			pendingNodes.insertOrUpdate(node, getPriority(node));
+		}
+	}
+
+	private double estimateRemainingTravelCost(final int fromNode, final int toNode) {
+		double travCost = 0;
+		for (int i = 0; i < this.activeLandmarkCount; i++) {
+			double tmpTravCost = estimateRemainingTravelCost(fromNode, toNode, this.activeLandmarks[i]);
+			if (tmpTravCost > travCost) {
+				travCost = tmpTravCost;
+			}
+		}
+		Coord fromCoord = this.graph.nodes[fromNode].getCoord();
+		Coord toCoord = this.graph.nodes[toNode].getCoord();
+		double euclideanCost = CoordUtils.calcEuclideanDistance(fromCoord, toCoord) * this.landmarksData.minTravelCostPerLength * this.overdoFactor;
+		return Math.max(travCost, euclideanCost);
+	}
+
+	private double estimateRemainingTravelCost(final int fromNode, final int toNode, final int landmark) {
+		int landmarkCount = this.landmarksData.landmarkCount;
+		double[] minTravelTimes = this.landmarksData.minLandmarkTravelTimes;
+		double[] maxTravelTimes = this.landmarksData.maxLandmarkTravelTimes;
+		double tmpTravTime = minTravelTimes[fromNode * landmarkCount + landmark] - maxTravelTimes[toNode * landmarkCount + landmark];
+		if (tmpTravTime < 0) {
+			tmpTravTime = minTravelTimes[toNode * landmarkCount + landmark] - maxTravelTimes[fromNode * landmarkCount + landmark];
+			if (tmpTravTime <= 0) {
+				return 0;
+			}
+		}
+		return tmpTravTime * this.overdoFactor;
+	}
+
+	/**
+	 * The results of {@link PreProcessLandmarks}, by node index of the graph.
+	 */
+	/*package*/ static final class LandmarksData {
+		final int landmarkCount;
+		final double[] minLandmarkTravelTimes;
+		final double[] maxLandmarkTravelTimes;
+		final int[] deadEndEntryNodes;
+		final double minTravelCostPerLength;
+
+		LandmarksData(final CompactGraph graph, final PreProcessLandmarks preProcessData) {
+			int nodeCount = graph.getNodeCount();
+			this.landmarkCount = preProcessData.getLandmarks().length;
+			this.minLandmarkTravelTimes = new double[nodeCount * this.landmarkCount];
+			this.maxLandmarkTravelTimes = new double[nodeCount * this.landmarkCount];
+			this.deadEndEntryNodes = new int[nodeCount];
+			for (int n = 0; n < nodeCount; n++) {
+				PreProcessLandmarks.LandmarksData data = preProcessData.getNodeData(graph.nodes[n]);
+				for (int i = 0; i < this.landmarkCount; i++) {
+					this.minLandmarkTravelTimes[n * this.landmarkCount + i] = data.getMinLandmarkTravelTime(i);
+					this.maxLandmarkTravelTimes[n * this.landmarkCount + i] = data.getMaxLandmarkTravelTime(i);
+				}
+				this.deadEndEntryNodes[n] = data.getDeadEndEntryNode() == null ? -1 : graph.getNodeIndex(data.getDeadEndEntryNode());
+			}
+			this.minTravelCostPerLength = preProcessData.getMinTravelCostPerLength();
+		}
+	}
+}
@@ -0,0 +1,79 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ArrayAStarLandmarksFactory.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.config.groups.GlobalConfigGroup;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculatorFactory;
+import org.matsim.core.router.util.PreProcessLandmarks;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+
+/**
+ * Creates {@link ArrayAStarLandmarks} instances. As in {@link FastAStarLandmarksFactory}, the landmarks are
+ * calculated once per network with the travel disutility of the first calculator requested for it.
+ */
+@Singleton
+public class ArrayAStarLandmarksFactory implements LeastCostPathCalculatorFactory {
+
+	private final Map<Network, CompactGraph> graphs = new HashMap<>();
+	private final Map<Network, ArrayAStarLandmarks.LandmarksData> landmarksData = new HashMap<>();
+	private final Map<Network, ThreadLocal<ArrayDijkstra.SearchState>> searchStates = new HashMap<>();
+
+	private final int nThreads;
+
+	@Inject
+	public ArrayAStarLandmarksFactory(final GlobalConfigGroup globalConfigGroup) {
+		this(globalConfigGroup.getNumberOfThreads());
+	}
+
+	public ArrayAStarLandmarksFactory(int nThreads) {
+		this.nThreads = nThreads;
+	}
+
+	@Override
+	public synchronized LeastCostPathCalculator createPathCalculator(final Network network,
+			final TravelDisutility travelCosts, final TravelTime travelTimes) {
+		CompactGraph graph = this.graphs.get(network);
+		if (graph == null) {
+			graph = new CompactGraph(network);
+
+			PreProcessLandmarks preProcessLandmarks = new PreProcessLandmarks(travelCosts);
+			preProcessLandmarks.setNumberOfThreads(this.nThreads);
+			preProcessLandmarks.run(network);
+			this.landmarksData.put(network, new ArrayAStarLandmarks.LandmarksData(graph, preProcessLandmarks));
+
+			int nodeCount = graph.getNodeCount();
+			this.searchStates.put(network, ThreadLocal.withInitial(() -> new ArrayDijkstra.SearchState(nodeCount)));
+			this.graphs.put(network, graph);
+		}
+		final double overdoFactor = 1.0;
+		return new ArrayAStarLandmarks(graph, this.landmarksData.get(network), this.searchStates.get(network),
+				travelCosts, travelTimes, overdoFactor);
+	}
+}
@@ -0,0 +1,247 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ArrayDijkstra.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * A Dijkstra implementation that keeps its complete search state in primitive arrays indexed by the node index
+ * of a {@link CompactGraph}. In contrast to {@link FastDijkstra}, a query does not create any node data or heap
+ * entries; the only objects allocated are the lists of the returned {@link Path}.
+ * <p></p>
+ * The search state is shared by all calculators of the same factory and network that are used in the same
+ * thread, so having one calculator per mode and {@link TripRouter} does not multiply the memory needed.
+ * Nevertheless, instances are not thread-safe.
+ * <p></p>
+ * The links are relaxed in the same order, ties are broken in the same way and nodes with the same cost are
+ * settled in the same order as in {@link FastDijkstra}, so both return the same paths.
+ *
+ * @see ArrayDijkstraFactory
+ */
+public class ArrayDijkstra implements LeastCostPathCalculator {
+
+	private final static Logger log = Logger.getLogger(ArrayDijkstra.class);
+
+	final CompactGraph graph;
+	final TravelDisutility costFunction;
+	final TravelTime timeFunction;
+	private final ThreadLocal<SearchState> searchStates;
+	/* the index of the dead end entry node per node, -1 if the node is not in a dead end; null if dead ends are not pruned */
+	private final int[] deadEndEntryNodes;
+
+	SearchState state = null;
+	private int targetDeadEndEntryNode = -1;
+	private Person person = null;
+	private Vehicle vehicle = null;
+
+	/*package*/ ArrayDijkstra(final CompactGraph graph, final int[] deadEndEntryNodes, final ThreadLocal<SearchState> searchStates,
+			final TravelDisutility costFunction, final TravelTime timeFunction) {
+		this.graph = graph;
+		this.deadEndEntryNodes = deadEndEntryNodes;
+		this.searchStates = searchStates;
+		this.costFunction = costFunction;
+		this.timeFunction = timeFunction;
+	}
+
+	@Override
+	public Path calcLeastCostPath(final Node fromNode, final Node toNode, final double startTime, final Person person, final Vehicle vehicle) {
+		int from = getNodeIndex(fromNode);
+		int to = getNodeIndex(toNode);
+
+		SearchState state = this.searchStates.get();
+		this.state = state;
+		state.nextIteration();
+		this.person = person;
+		this.vehicle = vehicle;
+		if (this.deadEndEntryNodes != null) {
+			this.targetDeadEndEntryNode = this.deadEndEntryNodes[to];
+		}
+
+		try {
+			initSearch(from, to);
+			visitNode(from, startTime, 0, -1, to);
+			NodeMinHeap pendingNodes = state.heap;
+			while (true) {
+				if (pendingNodes.isEmpty()) {
+					logNoRoute(fromNode, toNode);
+					return null;
+				}
+				int node = pendingNodes.poll();
+				if (node == to) {
+					break;
+				}
+				relaxNode(node, to);
+			}
+			return constructPath(from, to, startTime);
+		} finally {
+			this.person = null;
+			this.vehicle = null;
+		}
+	}
+
+	/**
+	 * Called before the origin is visited.
+	 */
+	void initSearch(final int fromNode, final int toNode) {
+	}
+
+	void relaxNode(final int node, final int toNode) {
+		SearchState state = this.state;
+		double currTime = state.time[node];
+		double currCost = state.cost[node];
+		int[] deadEnds = this.deadEndEntryNodes;
+		for (int l = this.graph.outStart[node], end = this.graph.outStart[node + 1]; l < end; l++) {
+			int n = this.graph.linkToNode[l];
+			if (deadEnds != null) {
+				/* only visit the node if it is not in a dead end, or if we are already in the dead end, or if the
+				 * target is in the same dead end, see Dijkstra.relaxNodeLogic() */
+				int deadEnd = deadEnds[n];
+				if (deadEnd >= 0 && deadEnds[node] < 0 && deadEnd != this.targetDeadEndEntryNode) {
+					continue;
+				}
+			}
+			Link link = this.graph.links[l];
+			double travelTime = this.timeFunction.getLinkTravelTime(link, currTime, this.person, this.vehicle);
+			double travelCost = this.costFunction.getLinkTravelDisutility(link, currTime, this.person, this.vehicle);
+			if (state.visited[n] != state.iterationId) {
+				visitNode(n, currTime + travelTime, currCost + travelCost, l, toNode);
+				continue;
+			}
+			double nCost = state.cost[n];
+			double totalCost = currCost + travelCost;
+			if (totalCost < nCost) {
+				revisitNode(n, currTime + travelTime, totalCost, l);
+			} else if (totalCost == nCost) {
+				int prevLink = state.prevLink[n];
+				if (prevLink >= 0 && this.graph.links[prevLink].getId().compareTo(link.getId()) > 0) {
+					revisitNode(n, currTime + travelTime, totalCost, l);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Called when a node is reached for the first time in the current search.
+	 */
+	void visitNode(final int node, final double time, final double cost, final int link, final int toNode) {
+		SearchState state = this.state;
+		state.visited[node] = state.iterationId;
+		state.time[node] = time;
+		state.cost[node] = cost;
+		state.prevLink[node] = link;
+		state.heap.insertOrUpdate(node, getPriority(node));
+	}
+
+	private void revisitNode(final int node, final double time, final double cost, final int link) {
+		SearchState state = this.state;
+		state.time[node] = time;
+		state.cost[node] = cost;
+		state.prevLink[node] = link;
+		state.heap.insertOrUpdate(node, getPriority(node));
+	}
+
+	double getPriority(final int node) {
+		return this.state.cost[node];
+	}
+
+	private Path constructPath(final int from, final int to, final double startTime) {
+		SearchState state = this.state;
+		int linkCount = 0;
+		for (int node = to; node != from; node = this.graph.linkFromNode[state.prevLink[node]]) {
+			linkCount++;
+		}
+		List<Node> nodes = new ArrayList<>(linkCount + 1);
+		List<Link> links = new ArrayList<>(linkCount);
+		nodes.add(this.graph.nodes[to]);
+		for (int node = to; node != from; ) {
+			int l = state.prevLink[node];
+			links.add(this.graph.links[l]);
+			node = this.graph.linkFromNode[l];
+			nodes.add(this.graph.nodes[node]);
+		}
+		Collections.reverse(nodes);
+		Collections.reverse(links);
+		return new Path(nodes, links, state.time[to] - startTime, state.cost[to]);
+	}
+
+	private int getNodeIndex(final Node node) {
+		int index = this.graph.getNodeIndex(node);
+		if (index < 0) {
+			throw new IllegalArgumentException("The nodes passed as parameters are not part of the network stored by "+
+					getClass().getSimpleName() + ": the validity of the results cannot be guaranteed. Aborting!");
+		}
+		return index;
+	}
+
+	private static void logNoRoute(final Node fromNode, final Node toNode) {
+		log.warn("No route was found from node " + fromNode.getId() + " to node " + toNode.getId() + ". Some possible reasons:");
+		log.warn("  * Network is not connected.  Run NetworkCleaner().") ;
+		log.warn("  * Network for considered mode does not even exist.  Modes need to be entered for each link in network.xml.");
+		log.warn("  * Network for considered mode is not connected to starting or ending point of route.  Setting insertingAccessEgressWalk to true may help.");
+		log.warn("This will now return null, but it may fail later with a null pointer exception.");
+	}
+
+	/**
+	 * The arrays used during a search, for one thread and network.
+	 */
+	/*package*/ static final class SearchState {
+		final double[] cost;
+		final double[] time;
+		final int[] prevLink;
+		final int[] visited;
+		/* the estimated remaining cost of A* searches, not used by Dijkstra */
+		final double[] estimate;
+		final NodeMinHeap heap;
+		int iterationId = Integer.MIN_VALUE;
+
+		SearchState(final int nodeCount) {
+			this.cost = new double[nodeCount];
+			this.time = new double[nodeCount];
+			this.prevLink = new int[nodeCount];
+			this.visited = new int[nodeCount];
+			this.estimate = new double[nodeCount];
+			this.heap = new NodeMinHeap(nodeCount, null);
+			Arrays.fill(this.visited, this.iterationId);
+		}
+
+		void nextIteration() {
+			this.iterationId++;
+			if (this.iterationId == Integer.MIN_VALUE) {
+				// wrapped around after 2^32 searches, reset the stamps
+				this.iterationId++;
+				Arrays.fill(this.visited, Integer.MIN_VALUE);
+			}
+			this.heap.clear();
+		}
+	}
+}
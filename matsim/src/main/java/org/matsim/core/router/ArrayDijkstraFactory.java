@@ -0,0 +1,79 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ArrayDijkstraFactory.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculatorFactory;
+import org.matsim.core.router.util.PreProcessDijkstra;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+
+/**
+ * Creates {@link ArrayDijkstra} instances. The graph, the optional dead end data and the per-thread search state
+ * are created once per network and shared by all calculators for that network.
+ */
+@Singleton
+public class ArrayDijkstraFactory implements LeastCostPathCalculatorFactory {
+
+	private final boolean usePreProcessData;
+	private final Map<Network, CompactGraph> graphs = new HashMap<>();
+	private final Map<Network, int[]> deadEndEntryNodes = new HashMap<>();
+	private final Map<Network, ThreadLocal<ArrayDijkstra.SearchState>> searchStates = new HashMap<>();
+
+	@Inject
+	public ArrayDijkstraFactory() {
+		this(false);
+	}
+
+	public ArrayDijkstraFactory(final boolean usePreProcessData) {
+		this.usePreProcessData = usePreProcessData;
+	}
+
+	@Override
+	public synchronized LeastCostPathCalculator createPathCalculator(final Network network,
+			final TravelDisutility travelCosts, final TravelTime travelTimes) {
+		CompactGraph graph = this.graphs.get(network);
+		if (graph == null) {
+			graph = new CompactGraph(network);
+			if (this.usePreProcessData) {
+				PreProcessDijkstra preProcessDijkstra = new PreProcessDijkstra();
+				preProcessDijkstra.run(network);
+				int[] deadEnds = new int[graph.getNodeCount()];
+				for (int n = 0; n < deadEnds.length; n++) {
+					PreProcessDijkstra.DeadEndData data = preProcessDijkstra.getNodeData(graph.nodes[n]);
+					deadEnds[n] = data.getDeadEndEntryNode() == null ? -1 : graph.getNodeIndex(data.getDeadEndEntryNode());
+				}
+				this.deadEndEntryNodes.put(network, deadEnds);
+			}
+			int nodeCount = graph.getNodeCount();
+			this.searchStates.put(network, ThreadLocal.withInitial(() -> new ArrayDijkstra.SearchState(nodeCount)));
+			this.graphs.put(network, graph);
+		}
+		return new ArrayDijkstra(graph, this.deadEndEntryNodes.get(network), this.searchStates.get(network), travelCosts, travelTimes);
+	}
+}
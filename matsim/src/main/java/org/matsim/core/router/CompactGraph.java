@@ -0,0 +1,92 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CompactGraph.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.Arrays;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+
+/**
+ * The network in a compact form, with the out-links of each node stored consecutively. The graph is immutable
+ * and can be shared between threads. Nodes are looked up by their id, so nodes of another network (e.g. the
+ * unfiltered one) can be used as origin or destinations. Nodes or links added to the network later are not part
+ * of the graph.
+ * <p></p>
+ * The nodes and out-links are numbered in the iteration order of the network, like in
+ * {@link org.matsim.core.router.util.ArrayRoutingNetwork}, so that searches which break ties by the node index
+ * settle the nodes in the same order as the routers based on it.
+ */
+/*package*/ final class CompactGraph {
+	final Node[] nodes;
+	final Link[] links;
+	final int[] outStart;
+	final int[] linkFromNode;
+	final int[] linkToNode;
+	private final int[] nodeIndexById;
+
+	CompactGraph(final Network network) {
+		int nodeCount = network.getNodes().size();
+		this.nodes = network.getNodes().values().toArray(new Node[nodeCount]);
+		this.nodeIndexById = new int[Id.getNumberOfIds(Node.class)];
+		Arrays.fill(this.nodeIndexById, -1);
+		for (int i = 0; i < nodeCount; i++) {
+			this.nodeIndexById[this.nodes[i].getId().index()] = i;
+		}
+
+		int linkCount = 0;
+		for (Node node : this.nodes) {
+			linkCount += node.getOutLinks().size();
+		}
+		this.links = new Link[linkCount];
+		this.outStart = new int[nodeCount + 1];
+		this.linkFromNode = new int[linkCount];
+		this.linkToNode = new int[linkCount];
+		int l = 0;
+		for (int i = 0; i < nodeCount; i++) {
+			this.outStart[i] = l;
+			for (Link link : this.nodes[i].getOutLinks().values()) {
+				this.links[l] = link;
+				this.linkFromNode[l] = i;
+				this.linkToNode[l] = getNodeIndex(link.getToNode());
+				l++;
+			}
+		}
+		this.outStart[nodeCount] = l;
+	}
+
+	int getNodeCount() {
+		return this.nodes.length;
+	}
+
+	/**
+	 * @return the index of the node with the same id as <code>node</code>, or -1 if the graph has no such node
+	 */
+	int getNodeIndex(final Node node) {
+		int id = node.getId().index();
+		if (id >= this.nodeIndexById.length) {
+			return -1;
+		}
+		return this.nodeIndexById[id];
+	}
+}
@@ -0,0 +1,314 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ContractionHierarchies.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.PreProcessContractionHierarchies;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * A least cost path router that uses a (customizable) contraction hierarchy to guide the search.
+ * <p></p>
+ * The search itself is an A* search on the network with the actual time- and person-dependent costs, where the
+ * remaining cost of a node is estimated by the exact cost to the target with the minimal link costs. This estimate is
+ * computed from the contraction hierarchy, by walking up the hierarchy from the target and from every node that is
+ * reached. Compared to Dijkstra, only few nodes apart from the ones on the least cost path are expanded when the actual
+ * costs are close to the minimal costs.
+ * <p></p>
+ * The links are evaluated at the same times and in the same way as in {@link Dijkstra}, and ties are broken by the
+ * link id in the same way, too. Thus the result is the same as the one of {@link FastDijkstra} as long as
+ * {@link TravelDisutility#getLinkMinimumTravelDisutility(Link)} really is a lower bound of the link costs (as required
+ * by {@link AStarLandmarks} as well).
+ * <p></p>
+ * Instances are not thread-safe, but may share the pre-processing data with instances in other threads.
+ *
+ * @see PreProcessContractionHierarchies
+ * @see ContractionHierarchiesFactory
+ */
+public class ContractionHierarchies implements LeastCostPathCalculator {
+
+	private static final Logger log = Logger.getLogger(ContractionHierarchies.class);
+
+	/* nodes slightly above the cost of the best path found so far are still expanded to find all ties despite rounding errors */
+	private static final double TIE_TOLERANCE = 1e-9;
+
+	private final PreProcessContractionHierarchies graph;
+	private final PreProcessContractionHierarchies.Customization metric;
+	private final TravelDisutility costFunction;
+	private final TravelTime timeFunction;
+
+	/* by node index */
+	private final double[] cost;
+	private final double[] time;
+	private final double[] potentialOfNode;
+	private final int[] prevLink;
+	private final int[] visited;
+
+	/* by rank */
+	private final double[] potential;
+	private final int[] potentialStamp;
+	private final double[] targetDistance;
+	private final int[] targetStamp;
+
+	private final NodeMinHeap heap;
+	private int[] stack = new int[64];
+	private int iterationId = 0;
+
+	ContractionHierarchies(final PreProcessContractionHierarchies graph, final PreProcessContractionHierarchies.Customization metric,
+			final TravelDisutility costFunction, final TravelTime timeFunction) {
+		this.graph = graph;
+		this.metric = metric;
+		this.costFunction = costFunction;
+		this.timeFunction = timeFunction;
+		int n = graph.getNodeCount();
+		this.cost = new double[n];
+		this.time = new double[n];
+		this.potentialOfNode = new double[n];
+		this.prevLink = new int[n];
+		this.visited = new int[n];
+		this.potential = new double[n];
+		this.potentialStamp = new int[n];
+		this.targetDistance = new double[n];
+		this.targetStamp = new int[n];
+		this.heap = new NodeMinHeap(n, this.cost);
+	}
+
+	/*package*/ PreProcessContractionHierarchies.Customization getCustomization() {
+		return this.metric;
+	}
+
+	@Override
+	public Path calcLeastCostPath(final Node fromNode, final Node toNode, final double startTime, final Person person, final Vehicle vehicle) {
+		int from = getNodeIndex(fromNode);
+		int to = getNodeIndex(toNode);
+		augmentIterationId();
+
+		initTargetDistances(this.graph.getRank(to));
+		if (getPotential(this.graph.getRank(from)) == Double.POSITIVE_INFINITY) {
+			logNoRoute(fromNode, toNode);
+			return null;
+		}
+
+		this.heap.clear();
+		visit(from, 0.0, startTime, -1);
+		boolean found = false;
+		double bound = Double.POSITIVE_INFINITY;
+		while (!this.heap.isEmpty()) {
+			if (found && this.heap.peekKey() > bound) {
+				break;
+			}
+			int node = this.heap.poll();
+			if (node == to) {
+				// like Dijkstra, do not expand the target, but look for more paths with the same cost
+				found = true;
+				bound = this.cost[to] + TIE_TOLERANCE * Math.max(1.0, Math.abs(this.cost[to]));
+				continue;
+			}
+			relaxNode(node, person, vehicle);
+		}
+		if (!found) {
+			logNoRoute(fromNode, toNode);
+			return null;
+		}
+		return constructPath(from, to, startTime);
+	}
+
+	private int getNodeIndex(final Node node) {
+		int index = this.graph.getNodeIndex(node);
+		if (index < 0) {
+			throw new IllegalArgumentException("The nodes passed as parameters are not part of the network stored by "+
+					getClass().getSimpleName() + ": the validity of the results cannot be guaranteed. Aborting!");
+		}
+		return index;
+	}
+
+	private void relaxNode(final int node, final Person person, final Vehicle vehicle) {
+		double currCost = this.cost[node];
+		double currTime = this.time[node];
+		for (int l = this.graph.getFirstOutLink(node), end = this.graph.getLastOutLink(node); l < end; l++) {
+			Link link = this.graph.getLink(l);
+			int toNode = this.graph.getLinkToNode(l);
+			double travelTime = this.timeFunction.getLinkTravelTime(link, currTime, person, vehicle);
+			double travelCost = this.costFunction.getLinkTravelDisutility(link, currTime, person, vehicle);
+			double totalCost = currCost + travelCost;
+			double arrivalTime = currTime + travelTime;
+
+			if (this.visited[toNode] != this.iterationId) {
+				visit(toNode, totalCost, arrivalTime, l);
+			} else if (this.prevLink[toNode] == l) {
+				// the node is expanded again after its arrival time changed, update the nodes reached from it
+				if (totalCost != this.cost[toNode] || arrivalTime != this.time[toNode]) {
+					revisit(toNode, totalCost, arrivalTime, l);
+				}
+			} else if (totalCost < this.cost[toNode]) {
+				revisit(toNode, totalCost, arrivalTime, l);
+			} else if (totalCost == this.cost[toNode]) {
+				// Special case: a node can be reached from two links with exactly the same costs.
+				// Decide based on the linkId which one to take, like Dijkstra does.
+				int prev = this.prevLink[toNode];
+				if (prev >= 0 && this.graph.getLink(prev).getId().compareTo(link.getId()) > 0) {
+					revisit(toNode, totalCost, arrivalTime, l);
+				}
+			}
+		}
+	}
+
+	private void visit(final int node, final double totalCost, final double arrivalTime, final int link) {
+		this.visited[node] = this.iterationId;
+		this.cost[node] = totalCost;
+		this.time[node] = arrivalTime;
+		this.prevLink[node] = link;
+		double p = getPotential(this.graph.getRank(node));
+		this.potentialOfNode[node] = p;
+		if (p != Double.POSITIVE_INFINITY) {
+			this.heap.insert(node, totalCost + p);
+		}
+	}
+
+	/**
+	 * Updates a node that was already reached before. If the node was already expanded, it is added to the heap
+	 * again, so that the nodes reached from it are updated as well.
+	 */
+	private void revisit(final int node, final double totalCost, final double arrivalTime, final int link) {
+		this.cost[node] = totalCost;
+		this.time[node] = arrivalTime;
+		this.prevLink[node] = link;
+		double p = this.potentialOfNode[node];
+		if (p != Double.POSITIVE_INFINITY) {
+			this.heap.insertOrUpdate(node, totalCost + p);
+		}
+	}
+
+	private Path constructPath(final int from, final int to, final double startTime) {
+		List<Node> nodes = new ArrayList<>();
+		List<Link> links = new ArrayList<>();
+		nodes.add(this.graph.getNode(to));
+		int node = to;
+		while (node != from) {
+			int l = this.prevLink[node];
+			links.add(this.graph.getLink(l));
+			node = this.graph.getLinkFromNode(l);
+			nodes.add(this.graph.getNode(node));
+		}
+		Collections.reverse(nodes);
+		Collections.reverse(links);
+		return new Path(nodes, links, this.time[to] - startTime, this.cost[to]);
+	}
+
+	/**
+	 * Computes the minimal cost from every node on the way up the hierarchy from the target to the target,
+	 * using only the edges on this way.
+	 */
+	private void initTargetDistances(final int target) {
+		for (int r = target; r >= 0; r = this.graph.getParent(r)) {
+			this.targetStamp[r] = this.iterationId;
+			this.targetDistance[r] = Double.POSITIVE_INFINITY;
+		}
+		this.targetDistance[target] = 0.0;
+		for (int r = target; r >= 0; r = this.graph.getParent(r)) {
+			double distance = this.targetDistance[r];
+			if (distance == Double.POSITIVE_INFINITY) {
+				continue;
+			}
+			for (int e = this.graph.getFirstUpEdge(r), end = this.graph.getLastUpEdge(r); e < end; e++) {
+				int upper = this.graph.getUpEdgeTarget(e);
+				double d = distance + this.metric.getDownWeight(e);
+				if (d < this.targetDistance[upper]) {
+					this.targetDistance[upper] = d;
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the minimal cost from the node to the target, i.e. the minimum over all nodes above the given one of
+	 * the cost to go up to that node and the cost to go down from it to the target.
+	 */
+	private double getPotential(final int rank) {
+		if (this.potentialStamp[rank] == this.iterationId) {
+			return this.potential[rank];
+		}
+		int top = 0;
+		this.stack[top++] = rank;
+		while (top > 0) {
+			int r = this.stack[top - 1];
+			if (this.potentialStamp[r] == this.iterationId) {
+				top--;
+				continue;
+			}
+			boolean ready = true;
+			int end = this.graph.getLastUpEdge(r);
+			for (int e = this.graph.getFirstUpEdge(r); e < end; e++) {
+				int upper = this.graph.getUpEdgeTarget(e);
+				if (this.potentialStamp[upper] != this.iterationId) {
+					if (top == this.stack.length) {
+						this.stack = Arrays.copyOf(this.stack, 2 * top);
+					}
+					this.stack[top++] = upper;
+					ready = false;
+				}
+			}
+			if (ready) {
+				double p = this.targetStamp[r] == this.iterationId ? this.targetDistance[r] : Double.POSITIVE_INFINITY;
+				for (int e = this.graph.getFirstUpEdge(r); e < end; e++) {
+					double viaUpper = this.metric.getUpWeight(e) + this.potential[this.graph.getUpEdgeTarget(e)];
+					if (viaUpper < p) {
+						p = viaUpper;
+					}
+				}
+				this.potential[r] = p;
+				this.potentialStamp[r] = this.iterationId;
+				top--;
+			}
+		}
+		return this.potential[rank];
+	}
+
+	private void augmentIterationId() {
+		if (this.iterationId == Integer.MAX_VALUE) {
+			this.iterationId = 1;
+			Arrays.fill(this.visited, 0);
+			Arrays.fill(this.potentialStamp, 0);
+			Arrays.fill(this.targetStamp, 0);
+		} else {
+			this.iterationId++;
+		}
+	}
+
+	private static void logNoRoute(final Node fromNode, final Node toNode) {
+		log.warn("No route was found from node " + fromNode.getId() + " to node " + toNode.getId() + ". Some possible reasons:");
+		log.warn("  * Network is not connected.  Run NetworkCleaner().") ;
+		log.warn("  * Network for considered mode does not even exist.  Modes need to be entered for each link in network.xml.");
+		log.warn("  * Network for considered mode is not connected to starting or ending point of route.  Setting insertingAccessEgressWalk to true may help.");
+		log.warn("This will now return null, but it may fail later with a null pointer exception.");
+	}
+}
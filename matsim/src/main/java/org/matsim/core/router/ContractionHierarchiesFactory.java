@@ -0,0 +1,92 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ContractionHierarchiesFactory.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculatorFactory;
+import org.matsim.core.router.util.PreProcessContractionHierarchies;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+
+/**
+ * Creates {@link ContractionHierarchies} routers.
+ * <p></p>
+ * The contraction of a network is done once, when the first router for it is requested. The customization is
+ * shared by all routers with the same minimal link costs, and is only repeated if they change, e.g. in the next
+ * iteration. The minimal link costs are only computed once per {@link TravelDisutility} instance, so its
+ * {@link TravelDisutility#getLinkMinimumTravelDisutility(org.matsim.api.core.v01.network.Link)} must not change
+ * afterwards. Further routers for the same instance are cheap to create, they only allocate their own search
+ * arrays.
+ */
+@Singleton
+public class ContractionHierarchiesFactory implements LeastCostPathCalculatorFactory {
+
+	private final Map<Network, PreProcessContractionHierarchies> preProcessData = new HashMap<>();
+	private final Map<Network, PreProcessContractionHierarchies.Customization> customizations = new HashMap<>();
+	/* weak keys, so the travel disutilities of past iterations are not kept */
+	private final Map<Network, Map<TravelDisutility, PreProcessContractionHierarchies.Customization>> customizationsByCosts = new HashMap<>();
+
+	@Inject
+	public ContractionHierarchiesFactory() {
+	}
+
+	@Override
+	public LeastCostPathCalculator createPathCalculator(final Network network,
+			final TravelDisutility travelCosts, final TravelTime travelTimes) {
+		PreProcessContractionHierarchies preProcessCH;
+		PreProcessContractionHierarchies.Customization customization;
+		synchronized (this) {
+			preProcessCH = this.preProcessData.get(network);
+			if (preProcessCH == null) {
+				preProcessCH = new PreProcessContractionHierarchies();
+				preProcessCH.run(network);
+				this.preProcessData.put(network, preProcessCH);
+			}
+			customization = getCustomization(network, preProcessCH, travelCosts);
+		}
+		return new ContractionHierarchies(preProcessCH, customization, travelCosts, travelTimes);
+	}
+
+	private PreProcessContractionHierarchies.Customization getCustomization(final Network network,
+			final PreProcessContractionHierarchies preProcessCH, final TravelDisutility travelCosts) {
+		Map<TravelDisutility, PreProcessContractionHierarchies.Customization> byCosts =
+				this.customizationsByCosts.computeIfAbsent(network, n -> new WeakHashMap<>());
+		PreProcessContractionHierarchies.Customization customization = byCosts.get(travelCosts);
+		if (customization == null) {
+			double[] linkWeights = preProcessCH.getLinkWeights(travelCosts);
+			customization = this.customizations.get(network);
+			if (customization == null || !customization.hasLinkWeights(linkWeights)) {
+				customization = preProcessCH.customize(linkWeights);
+				this.customizations.put(network, customization);
+			}
+			byCosts.put(travelCosts, customization);
+		}
+		return customization;
+	}
+}
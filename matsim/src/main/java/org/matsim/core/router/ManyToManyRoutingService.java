@@ -0,0 +1,292 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ManyToManyRoutingService.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.config.groups.GlobalConfigGroup;
+import org.matsim.core.controler.events.ShutdownEvent;
+import org.matsim.core.controler.listener.ShutdownListener;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.network.algorithms.TransportModeNetworkFilter;
+import org.matsim.core.router.costcalculators.TravelDisutilityFactory;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+
+/**
+ * Answers one-to-many and many-to-many travel time, travel disutility and distance queries on the network of a
+ * mode, using the {@link TravelTime} and {@link TravelDisutilityFactory} bound for that mode. When used within the
+ * controler, these are the travel times of the current iteration.
+ * <p></p>
+ * The compact graph of each mode is built once and shared by all callers. Many-to-many queries are distributed
+ * over <code>global.numberOfThreads</code> threads, one origin at a time; the results do not depend on the number
+ * of threads. Components that need the paths themselves or the complete least-cost path tree can get a
+ * {@link OneToManyPathCalculator} for their own thread with {@link #createOneToManyPathCalculator(String)}.
+ * <p></p>
+ * The queries are calculated without a person or vehicle, so travel disutilities that depend on the person (such
+ * as a randomized disutility) cannot be used with this service.
+ * <p></p>
+ * The threads are stopped when the controler shuts down. Outside of the controler, call
+ * {@link #notifyShutdown(ShutdownEvent)} when the service is no longer needed.
+ */
+@Singleton
+public final class ManyToManyRoutingService implements ShutdownListener {
+	private static final Logger log = Logger.getLogger(ManyToManyRoutingService.class);
+
+	private final Network network;
+	private final Map<String, TravelTime> travelTimes;
+	private final Map<String, TravelDisutilityFactory> travelDisutilityFactories;
+	private final SingleModeNetworksCache singleModeNetworksCache;
+	private final int numberOfThreads;
+
+	private final Map<String, CompactGraph> graphs = new ConcurrentHashMap<>();
+	private ExecutorService executor = null;
+
+	@Inject
+	public ManyToManyRoutingService(Network network, Map<String, TravelTime> travelTimes,
+			Map<String, TravelDisutilityFactory> travelDisutilityFactories, SingleModeNetworksCache singleModeNetworksCache,
+			GlobalConfigGroup globalConfigGroup) {
+		this.network = network;
+		this.travelTimes = travelTimes;
+		this.travelDisutilityFactories = travelDisutilityFactories;
+		this.singleModeNetworksCache = singleModeNetworksCache;
+		this.numberOfThreads = Math.max(1, globalConfigGroup.getNumberOfThreads());
+	}
+
+	/**
+	 * @return a new calculator for the network, travel time and travel disutility of <code>mode</code>.
+	 * The calculator is not thread-safe, but the underlying graph is shared with all other calculators of the mode.
+	 */
+	public OneToManyPathCalculator createOneToManyPathCalculator(final String mode) {
+		TravelTime travelTime = getTravelTime(mode);
+		return new OneToManyPathCalculator(getGraph(mode), travelTime, createTravelDisutility(mode, travelTime));
+	}
+
+	public TravelMatrix calcOneToMany(final String mode, final Node origin, final List<Node> destinations, final double departureTime) {
+		return calcManyToMany(mode, Collections.singletonList(origin), destinations, departureTime);
+	}
+
+	/**
+	 * Calculates the travel times, travel disutilities and distances of the least-cost paths from each origin to
+	 * each destination, all departing at <code>departureTime</code>.
+	 */
+	public TravelMatrix calcManyToMany(final String mode, final List<Node> origins, final List<Node> destinations, final double departureTime) {
+		TravelMatrix matrix = new TravelMatrix(origins, destinations);
+		CompactGraph graph = getGraph(mode);
+		TravelTime travelTime = getTravelTime(mode);
+
+		int nOfTasks = Math.min(origins.size(), this.numberOfThreads);
+		if (nOfTasks <= 1) {
+			new MatrixRow(matrix, graph, travelTime, createTravelDisutility(mode, travelTime), departureTime, new AtomicInteger()).call();
+			return matrix;
+		}
+		// the threads take the next origin from a shared counter, so that they all finish at about the same time
+		AtomicInteger nextOrigin = new AtomicInteger();
+		List<Callable<Void>> tasks = new ArrayList<>(nOfTasks);
+		for (int i = 0; i < nOfTasks; i++) {
+			tasks.add(new MatrixRow(matrix, graph, travelTime, createTravelDisutility(mode, travelTime), departureTime, nextOrigin));
+		}
+		try {
+			for (Future<Void> future : getExecutor().invokeAll(tasks)) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		}
+		return matrix;
+	}
+
+	private CompactGraph getGraph(final String mode) {
+		return this.graphs.computeIfAbsent(mode, m -> {
+			long start = System.currentTimeMillis();
+			CompactGraph graph = new CompactGraph(getModeNetwork(m));
+			log.info("built routing graph for mode " + m + " with " + graph.getNodeCount() + " nodes in " + (System.currentTimeMillis() - start) + " ms.");
+			return graph;
+		});
+	}
+
+	private Network getModeNetwork(final String mode) {
+		// same as in NetworkRoutingProvider, so that the filtered network is shared with the routing modules
+		synchronized (this.singleModeNetworksCache.getSingleModeNetworksCache()) {
+			Network filteredNetwork = this.singleModeNetworksCache.getSingleModeNetworksCache().get(mode);
+			if (filteredNetwork == null) {
+				TransportModeNetworkFilter filter = new TransportModeNetworkFilter(this.network);
+				Set<String> modes = new HashSet<>();
+				modes.add(mode);
+				filteredNetwork = NetworkUtils.createNetwork();
+				filter.filter(filteredNetwork, modes);
+				this.singleModeNetworksCache.getSingleModeNetworksCache().put(mode, filteredNetwork);
+			}
+			return filteredNetwork;
+		}
+	}
+
+	private TravelTime getTravelTime(final String mode) {
+		TravelTime travelTime = this.travelTimes.get(mode);
+		if (travelTime == null) {
+			throw new RuntimeException("No TravelTime bound for mode " + mode + ".");
+		}
+		return travelTime;
+	}
+
+	private TravelDisutility createTravelDisutility(final String mode, final TravelTime travelTime) {
+		TravelDisutilityFactory travelDisutilityFactory = this.travelDisutilityFactories.get(mode);
+		if (travelDisutilityFactory == null) {
+			throw new RuntimeException("No TravelDisutilityFactory bound for mode " + mode + ".");
+		}
+		return travelDisutilityFactory.createTravelDisutility(travelTime);
+	}
+
+	private synchronized ExecutorService getExecutor() {
+		if (this.executor == null) {
+			AtomicInteger threadCount = new AtomicInteger();
+			this.executor = Executors.newFixedThreadPool(this.numberOfThreads, runnable -> {
+				Thread thread = new Thread(runnable, "ManyToManyRouting_" + threadCount.getAndIncrement());
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		return this.executor;
+	}
+
+	/**
+	 * Stops the threads of the many-to-many queries. A later query starts new threads.
+	 */
+	@Override
+	public synchronized void notifyShutdown(final ShutdownEvent event) {
+		if (this.executor == null) {
+			return;
+		}
+		this.executor.shutdown();
+		try {
+			this.executor.awaitTermination(1, TimeUnit.MINUTES);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} finally {
+			this.executor = null;
+		}
+	}
+
+	private static final class MatrixRow implements Callable<Void> {
+		private final TravelMatrix matrix;
+		private final CompactGraph graph;
+		private final OneToManyPathCalculator calculator;
+		private final double departureTime;
+		private final AtomicInteger nextOrigin;
+
+		MatrixRow(TravelMatrix matrix, CompactGraph graph, TravelTime travelTime, TravelDisutility travelDisutility,
+				double departureTime, AtomicInteger nextOrigin) {
+			this.matrix = matrix;
+			this.graph = graph;
+			this.calculator = new OneToManyPathCalculator(graph, travelTime, travelDisutility);
+			this.departureTime = departureTime;
+			this.nextOrigin = nextOrigin;
+		}
+
+		@Override
+		public Void call() {
+			List<Node> destinations = this.matrix.destinations;
+			int o;
+			while ((o = this.nextOrigin.getAndIncrement()) < this.matrix.origins.size()) {
+				Node origin = this.matrix.origins.get(o);
+				if (this.graph.getNodeIndex(origin) < 0) {
+					// the origin is not part of the network of this mode
+					Arrays.fill(this.matrix.travelTimes[o], Double.POSITIVE_INFINITY);
+					Arrays.fill(this.matrix.travelDisutilities[o], Double.POSITIVE_INFINITY);
+					Arrays.fill(this.matrix.distances[o], Double.POSITIVE_INFINITY);
+					continue;
+				}
+				this.calculator.calculate(origin, this.departureTime, destinations, Double.POSITIVE_INFINITY, null, null);
+				for (int d = 0; d < destinations.size(); d++) {
+					Node destination = destinations.get(d);
+					this.matrix.travelTimes[o][d] = this.calculator.getTravelTime(destination);
+					this.matrix.travelDisutilities[o][d] = this.calculator.getTravelDisutility(destination);
+					this.matrix.distances[o][d] = this.calculator.getDistance(destination);
+				}
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * The results of a many-to-many query, indexed by the position of the origin and destination in the lists
+	 * of the query. Destinations that cannot be reached from an origin, or that are not part of the network of the
+	 * mode, have infinite values.
+	 */
+	public static final class TravelMatrix {
+		private final List<Node> origins;
+		private final List<Node> destinations;
+		private final double[][] travelTimes;
+		private final double[][] travelDisutilities;
+		private final double[][] distances;
+
+		TravelMatrix(List<Node> origins, List<Node> destinations) {
+			this.origins = origins;
+			this.destinations = destinations;
+			this.travelTimes = new double[origins.size()][destinations.size()];
+			this.travelDisutilities = new double[origins.size()][destinations.size()];
+			this.distances = new double[origins.size()][destinations.size()];
+		}
+
+		public List<Node> getOrigins() {
+			return Collections.unmodifiableList(this.origins);
+		}
+
+		public List<Node> getDestinations() {
+			return Collections.unmodifiableList(this.destinations);
+		}
+
+		public double getTravelTime(final int origin, final int destination) {
+			return this.travelTimes[origin][destination];
+		}
+
+		public double getTravelDisutility(final int origin, final int destination) {
+			return this.travelDisutilities[origin][destination];
+		}
+
+		public double getDistance(final int origin, final int destination) {
+			return this.distances[origin][destination];
+		}
+	}
+}
@@ -0,0 +1,153 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * NodeMinHeap.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.Arrays;
+
+/**
+ * A binary min-heap of node indices with decrease-key. If a cost array is given, nodes with the same key are
+ * ordered by their cost, so that in an A* search a node is expanded after all the nodes it can be reached from
+ * with the same estimated total cost. Remaining ties are broken by the node index, like in
+ * {@link org.matsim.core.router.priorityqueue.BinaryMinHeap}, so the order in which nodes are polled does not
+ * depend on the order in which they were inserted.
+ */
+final class NodeMinHeap {
+	private final int[] heap;
+	private final int[] position;
+	private final double[] key;
+	private final double[] cost;
+	private int size = 0;
+
+	NodeMinHeap(int capacity, double[] cost) {
+		this.heap = new int[capacity];
+		this.position = new int[capacity];
+		this.key = new double[capacity];
+		this.cost = cost;
+		Arrays.fill(this.position, -1);
+	}
+
+	boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	void clear() {
+		for (int i = 0; i < this.size; i++) {
+			this.position[this.heap[i]] = -1;
+		}
+		this.size = 0;
+	}
+
+	int size() {
+		return this.size;
+	}
+
+	/**
+	 * @return the node at position <code>i</code> of the heap's internal array, for iterating over all nodes in the heap
+	 */
+	int get(int i) {
+		return this.heap[i];
+	}
+
+	double peekKey() {
+		return this.key[this.heap[0]];
+	}
+
+	void insert(int node, double key) {
+		this.key[node] = key;
+		this.heap[this.size] = node;
+		this.position[node] = this.size;
+		this.size++;
+		siftUp(this.size - 1);
+	}
+
+	void insertOrUpdate(int node, double key) {
+		int pos = this.position[node];
+		if (pos < 0) {
+			insert(node, key);
+		} else {
+			this.key[node] = key;
+			siftUp(pos);
+			siftDown(this.position[node]);
+		}
+	}
+
+	int poll() {
+		int node = this.heap[0];
+		this.position[node] = -1;
+		this.size--;
+		if (this.size > 0) {
+			int last = this.heap[this.size];
+			this.heap[0] = last;
+			this.position[last] = 0;
+			siftDown(0);
+		}
+		return node;
+	}
+
+	private boolean less(int a, int b) {
+		double ka = this.key[a];
+		double kb = this.key[b];
+		if (ka != kb) {
+			return ka < kb;
+		}
+		if (this.cost != null && this.cost[a] != this.cost[b]) {
+			return this.cost[a] < this.cost[b];
+		}
+		return a < b;
+	}
+
+	private void siftUp(int pos) {
+		int node = this.heap[pos];
+		while (pos > 0) {
+			int parentPos = (pos - 1) >> 1;
+			int parent = this.heap[parentPos];
+			if (!less(node, parent)) {
+				break;
+			}
+			this.heap[pos] = parent;
+			this.position[parent] = pos;
+			pos = parentPos;
+		}
+		this.heap[pos] = node;
+		this.position[node] = pos;
+	}
+
+	private void siftDown(int pos) {
+		int node = this.heap[pos];
+		while (true) {
+			int child = 2 * pos + 1;
+			if (child >= this.size) {
+				break;
+			}
+			if (child + 1 < this.size && less(this.heap[child + 1], this.heap[child])) {
+				child++;
+			}
+			if (!less(this.heap[child], node)) {
+				break;
+			}
+			this.heap[pos] = this.heap[child];
+			this.position[this.heap[child]] = pos;
+			pos = child;
+		}
+		this.heap[pos] = node;
+		this.position[node] = pos;
+	}
+}
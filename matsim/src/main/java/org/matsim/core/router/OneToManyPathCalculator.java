@@ -0,0 +1,253 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * OneToManyPathCalculator.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.router.util.LeastCostPathCalculator.Path;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * Calculates the least-cost paths from one origin to many (or all) nodes of a network with a single, time-dependent
+ * Dijkstra search. As in {@link org.matsim.utils.leastcostpathtree.LeastCostPathTree}, the links are evaluated at
+ * the time they are entered. The search stops as soon as all requested destinations are settled, or if the least
+ * cost of the remaining nodes exceeds the given maximum.
+ * <p></p>
+ * The network is stored in a compact graph that can be shared by several calculators, e.g. one per thread.
+ * Apart from the paths returned by {@link #getPath(Node)}, a search does not allocate any objects. Instances are
+ * not thread-safe.
+ *
+ * @see ManyToManyRoutingService
+ */
+public final class OneToManyPathCalculator {
+
+	private final CompactGraph graph;
+	private final TravelTime travelTime;
+	private final TravelDisutility travelDisutility;
+
+	private final double[] cost;
+	private final double[] time;
+	private final double[] distance;
+	private final int[] prevLink;
+	private final int[] visited;
+	private final int[] settled;
+	private final int[] target;
+	private final NodeMinHeap heap;
+	private int iterationId = Integer.MIN_VALUE;
+
+	private int origin = -1;
+	private double departureTime;
+
+	public OneToManyPathCalculator(final Network network, final TravelTime travelTime, final TravelDisutility travelDisutility) {
+		this(new CompactGraph(network), travelTime, travelDisutility);
+	}
+
+	/*package*/ OneToManyPathCalculator(final CompactGraph graph, final TravelTime travelTime, final TravelDisutility travelDisutility) {
+		this.graph = graph;
+		this.travelTime = travelTime;
+		this.travelDisutility = travelDisutility;
+		int n = graph.getNodeCount();
+		this.cost = new double[n];
+		this.time = new double[n];
+		this.distance = new double[n];
+		this.prevLink = new int[n];
+		this.visited = new int[n];
+		this.settled = new int[n];
+		this.target = new int[n];
+		this.heap = new NodeMinHeap(n, this.cost);
+		Arrays.fill(this.visited, this.iterationId);
+		Arrays.fill(this.settled, this.iterationId);
+		Arrays.fill(this.target, this.iterationId);
+	}
+
+	/**
+	 * Calculates the least-cost path tree to all nodes reachable from <code>origin</code>.
+	 */
+	public void calculate(final Node origin, final double departureTime, final Person person, final Vehicle vehicle) {
+		calculate(origin, departureTime, null, Double.POSITIVE_INFINITY, person, vehicle);
+	}
+
+	/**
+	 * Calculates the least-cost paths from <code>origin</code> to the <code>destinations</code>. The paths to
+	 * other nodes are only available if these nodes were settled before the search stopped, see {@link #isReached(Node)}.
+	 *
+	 * @param destinations the nodes to which paths are required, or <code>null</code> for all nodes. Destinations
+	 * that are not part of the network are never reached.
+	 * @param maxCost the search stops when only nodes with a higher cost than this are left
+	 */
+	public void calculate(final Node origin, final double departureTime, final Collection<Node> destinations,
+			final double maxCost, final Person person, final Vehicle vehicle) {
+		int originIndex = getNodeIndex(origin);
+		nextIteration();
+		this.origin = originIndex;
+		this.departureTime = departureTime;
+
+		int remainingTargets = Integer.MAX_VALUE;
+		if (destinations != null) {
+			remainingTargets = 0;
+			for (Node destination : destinations) {
+				int index = this.graph.getNodeIndex(destination);
+				if (index >= 0 && this.target[index] != this.iterationId) {
+					this.target[index] = this.iterationId;
+					remainingTargets++;
+				}
+			}
+		}
+
+		this.heap.clear();
+		visit(originIndex, 0.0, departureTime, 0.0, -1);
+		while (remainingTargets > 0 && !this.heap.isEmpty()) {
+			if (this.heap.peekKey() > maxCost) {
+				break;
+			}
+			int node = this.heap.poll();
+			this.settled[node] = this.iterationId;
+			if (this.target[node] == this.iterationId) {
+				remainingTargets--;
+			}
+			relaxNode(node, person, vehicle);
+		}
+	}
+
+	private void nextIteration() {
+		this.iterationId++;
+		if (this.iterationId == Integer.MIN_VALUE) {
+			// wrapped around after 2^32 searches, reset the stamps
+			this.iterationId++;
+			Arrays.fill(this.visited, Integer.MIN_VALUE);
+			Arrays.fill(this.settled, Integer.MIN_VALUE);
+			Arrays.fill(this.target, Integer.MIN_VALUE);
+		}
+	}
+
+	private void relaxNode(final int node, final Person person, final Vehicle vehicle) {
+		double currCost = this.cost[node];
+		double currTime = this.time[node];
+		double currDistance = this.distance[node];
+		for (int l = this.graph.outStart[node], end = this.graph.outStart[node + 1]; l < end; l++) {
+			int toNode = this.graph.linkToNode[l];
+			if (this.settled[toNode] == this.iterationId) {
+				continue;
+			}
+			Link link = this.graph.links[l];
+			double totalCost = currCost + this.travelDisutility.getLinkTravelDisutility(link, currTime, person, vehicle);
+			if (this.visited[toNode] != this.iterationId || totalCost < this.cost[toNode]) {
+				double arrivalTime = currTime + this.travelTime.getLinkTravelTime(link, currTime, person, vehicle);
+				visit(toNode, totalCost, arrivalTime, currDistance + link.getLength(), l);
+			}
+		}
+	}
+
+	private void visit(final int node, final double cost, final double time, final double distance, final int link) {
+		this.visited[node] = this.iterationId;
+		this.cost[node] = cost;
+		this.time[node] = time;
+		this.distance[node] = distance;
+		this.prevLink[node] = link;
+		this.heap.insertOrUpdate(node, cost);
+	}
+
+	private int getNodeIndex(final Node node) {
+		int index = this.graph.getNodeIndex(node);
+		if (index < 0) {
+			throw new IllegalArgumentException("The node " + node.getId() + " is not part of the network stored by " +
+					getClass().getSimpleName() + ".");
+		}
+		return index;
+	}
+
+	private int getSettledNodeIndex(final Node node) {
+		if (this.origin < 0) {
+			throw new IllegalStateException("No least-cost paths have been calculated yet.");
+		}
+		int index = this.graph.getNodeIndex(node);
+		return index >= 0 && this.settled[index] == this.iterationId ? index : -1;
+	}
+
+	public Node getOrigin() {
+		return this.origin < 0 ? null : this.graph.nodes[this.origin];
+	}
+
+	public double getDepartureTime() {
+		return this.departureTime;
+	}
+
+	/**
+	 * @return <code>true</code> if the least-cost path to <code>node</code> is known
+	 */
+	public boolean isReached(final Node node) {
+		return getSettledNodeIndex(node) >= 0;
+	}
+
+	/**
+	 * @return the travel time from the origin to <code>node</code>, or {@link Double#POSITIVE_INFINITY} if the node was not reached.
+	 */
+	public double getTravelTime(final Node node) {
+		int index = getSettledNodeIndex(node);
+		return index < 0 ? Double.POSITIVE_INFINITY : this.time[index] - this.departureTime;
+	}
+
+	/**
+	 * @return the travel disutility from the origin to <code>node</code>, or {@link Double#POSITIVE_INFINITY} if the node was not reached.
+	 */
+	public double getTravelDisutility(final Node node) {
+		int index = getSettledNodeIndex(node);
+		return index < 0 ? Double.POSITIVE_INFINITY : this.cost[index];
+	}
+
+	/**
+	 * @return the length of the least-cost path from the origin to <code>node</code>, or {@link Double#POSITIVE_INFINITY} if the node was not reached.
+	 */
+	public double getDistance(final Node node) {
+		int index = getSettledNodeIndex(node);
+		return index < 0 ? Double.POSITIVE_INFINITY : this.distance[index];
+	}
+
+	/**
+	 * @return the least-cost path from the origin to <code>node</code>, or <code>null</code> if the node was not reached.
+	 */
+	public Path getPath(final Node node) {
+		int index = getSettledNodeIndex(node);
+		if (index < 0) {
+			return null;
+		}
+		List<Node> nodes = new ArrayList<>();
+		List<Link> links = new ArrayList<>();
+		nodes.add(this.graph.nodes[index]);
+		for (int l = this.prevLink[index]; l >= 0; l = this.prevLink[this.graph.linkFromNode[l]]) {
+			links.add(this.graph.links[l]);
+			nodes.add(this.graph.nodes[this.graph.linkFromNode[l]]);
+		}
+		Collections.reverse(nodes);
+		Collections.reverse(links);
+		return new Path(nodes, links, this.time[index] - this.departureTime, this.cost[index]);
+	}
+}
@@ -0,0 +1,566 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * PreProcessContractionHierarchies.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router.util;
+
+import java.util.Arrays;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+
+/**
+ * Pre-processes a network for {@link org.matsim.core.router.ContractionHierarchies}.
+ * <p></p>
+ * The pre-processing is split into two phases, as in customizable contraction hierarchies:
+ * <ol>
+ * <li>{@link #run(Network)} only looks at the topology of the network. It orders the nodes by nested dissection
+ * (recursively cutting the network along its coordinates, the nodes on the cut get the highest ranks) and contracts
+ * them in this order. The resulting hierarchy contains an edge between two nodes if there is a path between them
+ * that only uses nodes of lower rank.</li>
+ * <li>{@link #customize(double[])} computes the weights of the edges in the hierarchy for given link weights.
+ * This only takes a fraction of the time of the first phase and can be repeated whenever the link weights change.</li>
+ * </ol>
+ * Contraction hierarchies cannot represent time-dependent or person-dependent costs. The router thus uses the hierarchy
+ * only to compute exact lower bounds (based on {@link TravelDisutility#getLinkMinimumTravelDisutility(Link)}) of the
+ * remaining cost to the target, and searches the actual route on the network.
+ *
+ * @see org.matsim.core.router.ContractionHierarchies
+ */
+public class PreProcessContractionHierarchies {
+
+	private static final Logger log = Logger.getLogger(PreProcessContractionHierarchies.class);
+
+	/** parts with at most this number of nodes are not dissected further */
+	private static final int MIN_PART_SIZE = 4;
+
+	private Node[] nodes;
+	private int[] nodeIndexById;
+
+	/* the links of the network, sorted by from node */
+	private Link[] links;
+	private int[] outStart;
+	private int[] linkFromNode;
+	private int[] linkToNode;
+	/* the edge in the hierarchy that represents a link, 2 * edge for links towards the higher ranked node, 2 * edge + 1 for the others */
+	private int[] linkEdge;
+
+	private int[] rank;
+	/* everything below is indexed by rank */
+	private int[] parent;
+	private int[] upStart;
+	private int[] upTarget;
+
+	public void run(final Network network) {
+		long start = System.currentTimeMillis();
+		int n = network.getNodes().size();
+		this.nodes = network.getNodes().values().toArray(new Node[n]);
+		this.nodeIndexById = new int[Id.getNumberOfIds(Node.class)];
+		Arrays.fill(this.nodeIndexById, -1);
+		for (int i = 0; i < n; i++) {
+			this.nodeIndexById[this.nodes[i].getId().index()] = i;
+		}
+
+		int m = 0;
+		for (Node node : this.nodes) {
+			m += node.getOutLinks().size();
+		}
+		this.links = new Link[m];
+		this.outStart = new int[n + 1];
+		this.linkFromNode = new int[m];
+		this.linkToNode = new int[m];
+		int l = 0;
+		for (int i = 0; i < n; i++) {
+			this.outStart[i] = l;
+			for (Link link : this.nodes[i].getOutLinks().values()) {
+				this.links[l] = link;
+				this.linkFromNode[l] = i;
+				this.linkToNode[l] = getNodeIndex(link.getToNode());
+				l++;
+			}
+		}
+		this.outStart[n] = m;
+
+		// undirected adjacency, without duplicates and loops
+		int[] adjacencyStart = new int[n + 1];
+		int[] adjacency = buildAdjacency(n, adjacencyStart);
+
+		this.rank = computeNestedDissectionOrder(n, adjacencyStart, adjacency);
+		long ordered = System.currentTimeMillis();
+
+		contract(n, adjacencyStart, adjacency);
+
+		this.linkEdge = new int[m];
+		for (int i = 0; i < m; i++) {
+			int from = this.rank[this.linkFromNode[i]];
+			int to = this.rank[this.linkToNode[i]];
+			if (from < to) {
+				this.linkEdge[i] = 2 * findEdge(from, to);
+			} else if (from > to) {
+				this.linkEdge[i] = 2 * findEdge(to, from) + 1;
+			} else {
+				this.linkEdge[i] = -1;
+			}
+		}
+		log.info("contraction hierarchy: " + n + " nodes, " + m + " links, " + this.upTarget.length + " edges; ordering took "
+				+ (ordered - start) + "ms, contraction took " + (System.currentTimeMillis() - ordered) + "ms.");
+	}
+
+	private int[] buildAdjacency(final int n, final int[] adjacencyStart) {
+		int[] degree = new int[n];
+		for (int l = 0; l < this.links.length; l++) {
+			if (this.linkFromNode[l] != this.linkToNode[l]) {
+				degree[this.linkFromNode[l]]++;
+				degree[this.linkToNode[l]]++;
+			}
+		}
+		int[] adjacency = new int[2 * this.links.length];
+		int[] fill = new int[n];
+		int pos = 0;
+		for (int i = 0; i < n; i++) {
+			adjacencyStart[i] = pos;
+			fill[i] = pos;
+			pos += degree[i];
+		}
+		for (int l = 0; l < this.links.length; l++) {
+			int from = this.linkFromNode[l];
+			int to = this.linkToNode[l];
+			if (from != to) {
+				adjacency[fill[from]++] = to;
+				adjacency[fill[to]++] = from;
+			}
+		}
+		// remove duplicates (links in both directions, parallel links)
+		int[] compact = new int[pos];
+		int compactPos = 0;
+		for (int i = 0; i < n; i++) {
+			int start = adjacencyStart[i];
+			Arrays.sort(adjacency, start, fill[i]);
+			adjacencyStart[i] = compactPos;
+			for (int j = start; j < fill[i]; j++) {
+				if (j == start || adjacency[j] != adjacency[j - 1]) {
+					compact[compactPos++] = adjacency[j];
+				}
+			}
+		}
+		adjacencyStart[n] = compactPos;
+		return compact;
+	}
+
+	/*package*/ int[] computeNestedDissectionOrder(final int n, final int[] adjacencyStart, final int[] adjacency) {
+		double[] x = new double[n];
+		double[] y = new double[n];
+		for (int i = 0; i < n; i++) {
+			x[i] = this.nodes[i].getCoord().getX();
+			y[i] = this.nodes[i].getCoord().getY();
+		}
+		int[] order = new int[n];
+		for (int i = 0; i < n; i++) {
+			order[i] = i;
+		}
+		NestedDissection dissection = new NestedDissection(x, y, adjacencyStart, adjacency);
+		dissection.dissect(order, 0, n);
+		return dissection.rank;
+	}
+
+	private static final class NestedDissection {
+		private final double[] x;
+		private final double[] y;
+		private final int[] adjacencyStart;
+		private final int[] adjacency;
+		private final int[] rank;
+		private final int[] side;
+		private int nextRank = 0;
+		private int nextStamp = 0;
+
+		NestedDissection(double[] x, double[] y, int[] adjacencyStart, int[] adjacency) {
+			this.x = x;
+			this.y = y;
+			this.adjacencyStart = adjacencyStart;
+			this.adjacency = adjacency;
+			this.rank = new int[x.length];
+			this.side = new int[x.length];
+		}
+
+		/**
+		 * Assigns ranks to the nodes in <code>order[from, to)</code>: first to the two halves (recursively),
+		 * then to the separator.
+		 */
+		void dissect(final int[] order, final int from, final int to) {
+			int size = to - from;
+			if (size <= MIN_PART_SIZE) {
+				for (int i = from; i < to; i++) {
+					this.rank[order[i]] = this.nextRank++;
+				}
+				return;
+			}
+
+			double minX = Double.POSITIVE_INFINITY;
+			double minY = Double.POSITIVE_INFINITY;
+			double maxX = Double.NEGATIVE_INFINITY;
+			double maxY = Double.NEGATIVE_INFINITY;
+			for (int i = from; i < to; i++) {
+				int node = order[i];
+				minX = Math.min(minX, this.x[node]);
+				maxX = Math.max(maxX, this.x[node]);
+				minY = Math.min(minY, this.y[node]);
+				maxY = Math.max(maxY, this.y[node]);
+			}
+			int mid = from + size / 2;
+			select(order, from, to - 1, mid, (maxX - minX) >= (maxY - minY) ? this.x : this.y);
+
+			int left = ++this.nextStamp;
+			int right = ++this.nextStamp;
+			for (int i = from; i < mid; i++) {
+				this.side[order[i]] = left;
+			}
+			for (int i = mid; i < to; i++) {
+				this.side[order[i]] = right;
+			}
+			// the separator consists of the nodes on the smaller side of the cut
+			int leftBoundary = 0;
+			int rightBoundary = 0;
+			for (int i = from; i < to; i++) {
+				int node = order[i];
+				if (isBoundary(node, this.side[node] == left ? right : left)) {
+					if (this.side[node] == left) {
+						leftBoundary++;
+					} else {
+						rightBoundary++;
+					}
+				}
+			}
+			int separatorSide = leftBoundary <= rightBoundary ? left : right;
+			int otherSide = separatorSide == left ? right : left;
+
+			int[] parts = new int[size];
+			int leftCount = 0;
+			int rightCount = 0;
+			int separatorCount = 0;
+			for (int i = from; i < to; i++) {
+				int node = order[i];
+				if (this.side[node] == separatorSide && isBoundary(node, otherSide)) {
+					parts[size - 1 - separatorCount++] = node;
+				} else if (this.side[node] == left) {
+					parts[leftCount++] = node;
+				} else {
+					rightCount++;
+				}
+			}
+			int pos = leftCount;
+			for (int i = from; i < to; i++) {
+				int node = order[i];
+				if (this.side[node] == right && !(separatorSide == right && isBoundary(node, left))) {
+					parts[pos++] = node;
+				}
+			}
+			System.arraycopy(parts, 0, order, from, size);
+
+			dissect(order, from, from + leftCount);
+			dissect(order, from + leftCount, from + leftCount + rightCount);
+			for (int i = to - 1; i >= to - separatorCount; i--) {
+				this.rank[order[i]] = this.nextRank++;
+			}
+		}
+
+		private boolean isBoundary(int node, int otherSide) {
+			for (int j = this.adjacencyStart[node]; j < this.adjacencyStart[node + 1]; j++) {
+				if (this.side[this.adjacency[j]] == otherSide) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * Moves the k-th smallest node (by key, then by index) to position k, all smaller ones before and all larger
+		 * ones after it.
+		 */
+		private static void select(final int[] a, int left, int right, final int k, final double[] key) {
+			while (right > left) {
+				int pivotIndex = (left + right) >>> 1;
+				int pivot = a[pivotIndex];
+				a[pivotIndex] = a[right];
+				a[right] = pivot;
+				int store = left;
+				for (int i = left; i < right; i++) {
+					int node = a[i];
+					if (key[node] < key[pivot] || (key[node] == key[pivot] && node < pivot)) {
+						a[i] = a[store];
+						a[store] = node;
+						store++;
+					}
+				}
+				a[right] = a[store];
+				a[store] = pivot;
+				if (store == k) {
+					return;
+				} else if (k < store) {
+					right = store - 1;
+				} else {
+					left = store + 1;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Contracts the nodes in the order of their rank: the higher ranked neighbors of every node get connected.
+	 * Instead of adding all these edges directly, the neighbors are handed on to the lowest ranked of them (the
+	 * parent in the elimination tree), which results in the same edges.
+	 */
+	private void contract(final int n, final int[] adjacencyStart, final int[] adjacency) {
+		int[] nodeByRank = new int[n];
+		for (int i = 0; i < n; i++) {
+			nodeByRank[this.rank[i]] = i;
+		}
+		int[][] up = new int[n][];
+		int[] firstChild = new int[n];
+		int[] nextSibling = new int[n];
+		Arrays.fill(firstChild, -1);
+		this.parent = new int[n];
+		int[] mark = new int[n];
+		Arrays.fill(mark, -1);
+		int[] neighbors = new int[16];
+		int edges = 0;
+
+		for (int r = 0; r < n; r++) {
+			int count = 0;
+			int node = nodeByRank[r];
+			for (int j = adjacencyStart[node]; j < adjacencyStart[node + 1]; j++) {
+				int neighbor = this.rank[adjacency[j]];
+				if (neighbor > r && mark[neighbor] != r) {
+					mark[neighbor] = r;
+					if (count == neighbors.length) {
+						neighbors = Arrays.copyOf(neighbors, 2 * count);
+					}
+					neighbors[count++] = neighbor;
+				}
+			}
+			for (int child = firstChild[r]; child >= 0; child = nextSibling[child]) {
+				int[] childUp = up[child];
+				for (int j = 1; j < childUp.length; j++) {
+					int neighbor = childUp[j];
+					if (mark[neighbor] != r) {
+						mark[neighbor] = r;
+						if (count == neighbors.length) {
+							neighbors = Arrays.copyOf(neighbors, 2 * count);
+						}
+						neighbors[count++] = neighbor;
+					}
+				}
+			}
+			int[] upper = Arrays.copyOf(neighbors, count);
+			Arrays.sort(upper);
+			up[r] = upper;
+			edges += count;
+			if (count > 0) {
+				int p = upper[0];
+				this.parent[r] = p;
+				nextSibling[r] = firstChild[p];
+				firstChild[p] = r;
+			} else {
+				this.parent[r] = -1;
+			}
+		}
+
+		this.upStart = new int[n + 1];
+		this.upTarget = new int[edges];
+		int pos = 0;
+		for (int r = 0; r < n; r++) {
+			this.upStart[r] = pos;
+			System.arraycopy(up[r], 0, this.upTarget, pos, up[r].length);
+			pos += up[r].length;
+		}
+		this.upStart[n] = pos;
+	}
+
+	private int findEdge(final int lower, final int upper) {
+		int edge = Arrays.binarySearch(this.upTarget, this.upStart[lower], this.upStart[lower + 1], upper);
+		if (edge < 0) {
+			throw new IllegalStateException("missing edge in contraction hierarchy from rank " + lower + " to rank " + upper);
+		}
+		return edge;
+	}
+
+	/**
+	 * @return the lower bounds of the link costs, in the order of {@link #getLink(int)}.
+	 */
+	public double[] getLinkWeights(final TravelDisutility costFunction) {
+		double[] weights = new double[this.links.length];
+		for (int l = 0; l < this.links.length; l++) {
+			weights[l] = Math.max(0.0, costFunction.getLinkMinimumTravelDisutility(this.links[l]));
+		}
+		return weights;
+	}
+
+	/**
+	 * Computes the weights of all edges in the hierarchy, i.e. the cost of the cheapest path between the two nodes
+	 * of an edge which only uses lower ranked nodes.
+	 */
+	public Customization customize(final double[] linkWeights) {
+		long start = System.currentTimeMillis();
+		int edges = this.upTarget.length;
+		double[] upWeight = new double[edges];
+		double[] downWeight = new double[edges];
+		Arrays.fill(upWeight, Double.POSITIVE_INFINITY);
+		Arrays.fill(downWeight, Double.POSITIVE_INFINITY);
+		for (int l = 0; l < this.links.length; l++) {
+			int edge = this.linkEdge[l];
+			if (edge >= 0) {
+				double[] weights = (edge & 1) == 0 ? upWeight : downWeight;
+				int e = edge >> 1;
+				weights[e] = Math.min(weights[e], linkWeights[l]);
+			}
+		}
+
+		// lower triangles: the edges of a node are final once all lower ranked nodes have been processed
+		int n = this.parent.length;
+		for (int r = 0; r < n; r++) {
+			int end = this.upStart[r + 1];
+			for (int e1 = this.upStart[r]; e1 < end; e1++) {
+				int a = this.upTarget[e1];
+				double aToR = downWeight[e1];
+				double rToA = upWeight[e1];
+				if (aToR == Double.POSITIVE_INFINITY && rToA == Double.POSITIVE_INFINITY) {
+					continue;
+				}
+				int searchFrom = this.upStart[a];
+				for (int e2 = e1 + 1; e2 < end; e2++) {
+					int b = this.upTarget[e2];
+					int ab = Arrays.binarySearch(this.upTarget, searchFrom, this.upStart[a + 1], b);
+					searchFrom = ab + 1;
+					double aToB = aToR + upWeight[e2];
+					if (aToB < upWeight[ab]) {
+						upWeight[ab] = aToB;
+					}
+					double bToA = downWeight[e2] + rToA;
+					if (bToA < downWeight[ab]) {
+						downWeight[ab] = bToA;
+					}
+				}
+			}
+		}
+		log.info("customization of contraction hierarchy took " + (System.currentTimeMillis() - start) + "ms.");
+		return new Customization(linkWeights, upWeight, downWeight);
+	}
+
+	public int getNodeCount() {
+		return this.nodes.length;
+	}
+
+	/**
+	 * @return the index of the node, or <code>-1</code> if the node is not part of the network.
+	 */
+	public int getNodeIndex(final Node node) {
+		int idIndex = node.getId().index();
+		if (idIndex >= this.nodeIndexById.length) {
+			return -1;
+		}
+		int index = this.nodeIndexById[idIndex];
+		return index >= 0 && this.nodes[index] == node ? index : -1;
+	}
+
+	public Node getNode(final int index) {
+		return this.nodes[index];
+	}
+
+	public int getFirstOutLink(final int node) {
+		return this.outStart[node];
+	}
+
+	public int getLastOutLink(final int node) {
+		return this.outStart[node + 1];
+	}
+
+	public Link getLink(final int index) {
+		return this.links[index];
+	}
+
+	public int getLinkFromNode(final int link) {
+		return this.linkFromNode[link];
+	}
+
+	public int getLinkToNode(final int link) {
+		return this.linkToNode[link];
+	}
+
+	public int getRank(final int node) {
+		return this.rank[node];
+	}
+
+	/**
+	 * @return the lowest ranked of the higher ranked neighbors, or <code>-1</code>.
+	 */
+	public int getParent(final int rank) {
+		return this.parent[rank];
+	}
+
+	public int getFirstUpEdge(final int rank) {
+		return this.upStart[rank];
+	}
+
+	public int getLastUpEdge(final int rank) {
+		return this.upStart[rank + 1];
+	}
+
+	public int getUpEdgeTarget(final int edge) {
+		return this.upTarget[edge];
+	}
+
+	public int getEdgeCount() {
+		return this.upTarget.length;
+	}
+
+	/**
+	 * The weights of the edges of the hierarchy for one set of link weights.
+	 */
+	public static final class Customization {
+		private final double[] linkWeights;
+		private final double[] upWeight;
+		private final double[] downWeight;
+
+		Customization(double[] linkWeights, double[] upWeight, double[] downWeight) {
+			this.linkWeights = linkWeights;
+			this.upWeight = upWeight;
+			this.downWeight = downWeight;
+		}
+
+		public boolean hasLinkWeights(final double[] linkWeights) {
+			return Arrays.equals(this.linkWeights, linkWeights);
+		}
+
+		/**
+		 * @return the weight of the edge from the lower ranked to the higher ranked node.
+		 */
+		public double getUpWeight(final int edge) {
+			return this.upWeight[edge];
+		}
+
+		/**
+		 * @return the weight of the edge from the higher ranked to the lower ranked node.
+		 */
+		public double getDownWeight(final int edge) {
+			return this.downWeight[edge];
+		}
+	}
+}
@@ -49,7 +49,9 @@ import org.matsim.utils.objectattributes.attributable.Attributable;
 import org.matsim.vehicles.MatsimVehicleReader;
 
 
+import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.file.Paths;
 import java.util.*;
 
 import static org.matsim.core.config.groups.PlansConfigGroup.PERSON_ATTRIBUTES_DEPRECATION_MESSAGE;
@@ -134,13 +136,26 @@ class ScenarioLoaderImpl {
 			log.info("loading network from " + networkUrl);
 			String inputCRS = config.network().getInputCRS();
 
-			MatsimNetworkReader reader =
-					new MatsimNetworkReader(
-							inputCRS,
-							config.global().getCoordinateSystem(),
-							this.scenario.getNetwork());
-            reader.putAttributeConverters( attributeConverters );
-            reader.parse(networkUrl);
+			if (networkUrl.getPath().endsWith(NetworkUtils.MAPPED_NETWORK_FILE_EXTENSION)) {
+				// the file is mapped as it is, so its coordinates cannot be transformed
+				if (inputCRS != null && !inputCRS.equals(config.global().getCoordinateSystem())) {
+					throw new RuntimeException("The coordinates of a mapped network cannot be transformed, but the input CRS "
+							+ inputCRS + " differs from the global CRS " + config.global().getCoordinateSystem() + ".");
+				}
+				try {
+					this.scenario.setNetwork(NetworkUtils.readMappedNetwork(Paths.get(networkUrl.toURI()).toString()));
+				} catch (URISyntaxException e) {
+					throw new RuntimeException(e);
+				}
+			} else {
+				MatsimNetworkReader reader =
+						new MatsimNetworkReader(
+								inputCRS,
+								config.global().getCoordinateSystem(),
+								this.scenario.getNetwork());
+				reader.putAttributeConverters( attributeConverters );
+				reader.parse(networkUrl);
+			}
 
 			if ((this.config.network().getChangeEventsInputFile()!= null) && this.config.network().isTimeVariantNetwork()) {
 				log.info("loading network change events from " + this.config.network().getChangeEventsInputFileUrl(this.config.getContext()).getFile());
@@ -200,6 +215,9 @@ class ScenarioLoaderImpl {
             final PopulationReader reader = new PopulationReader(targetCRS, internalCRS, this.scenario);
             reader.putAttributeConverters( attributeConverters );
             reader.parse( populationFileName );
+            if ( this.config.plans().isCompactingNonSelectedPlans() ) {
+                PopulationUtils.compactNonSelectedPlans( this.scenario.getPopulation() );
+            }
 
 			PopulationUtils.printPlansCount(this.scenario.getPopulation()) ;
 		}
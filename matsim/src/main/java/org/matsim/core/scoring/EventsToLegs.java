@@ -20,13 +20,11 @@
 package org.matsim.core.scoring;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
 import java.util.List;
 
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.IdDoubleMap;
 import org.matsim.api.core.v01.IdMap;
 import org.matsim.api.core.v01.Scenario;
 import org.matsim.api.core.v01.events.LinkEnterEvent;
@@ -150,17 +148,17 @@ public final class EventsToLegs
 		this.transitSchedule = transitSchedule;
 	}
 
-	private Map<Id<Person>, Leg> legs = new HashMap<>();
-	private Map<Id<Person>, List<Id<Link>>> experiencedRoutes = new HashMap<>();
-	private Map<Id<Person>, Double> relPosOnDepartureLinkPerPerson = new HashMap<>();
-	private Map<Id<Person>, Double> relPosOnArrivalLinkPerPerson = new HashMap<>();
+	private IdMap<Person, Leg> legs = new IdMap<>(Person.class);
+	private IdMap<Person, List<Id<Link>>> experiencedRoutes = new IdMap<>(Person.class);
+	private IdDoubleMap<Person> relPosOnDepartureLinkPerPerson = new IdDoubleMap<>(Person.class);
+	private IdDoubleMap<Person> relPosOnArrivalLinkPerPerson = new IdDoubleMap<>(Person.class);
 
-	private Map<Id<Person>, TeleportationArrivalEvent> routelessTravels = new HashMap<>();
-	private Map<Id<Person>, PendingTransitTravel> transitTravels = new HashMap<>();
-	private Map<Id<Person>, PendingVehicleTravel> vehicleTravels = new HashMap<>();
+	private IdMap<Person, TeleportationArrivalEvent> routelessTravels = new IdMap<>(Person.class);
+	private IdMap<Person, PendingTransitTravel> transitTravels = new IdMap<>(Person.class);
+	private IdMap<Person, PendingVehicleTravel> vehicleTravels = new IdMap<>(Person.class);
 
-	private Map<Id<Vehicle>, LineAndRoute> transitVehicle2currentRoute = new HashMap<>();
-	private Map<Id<Vehicle>, VehicleRoute> vehicle2route = new HashMap<>();
+	private IdMap<Vehicle, LineAndRoute> transitVehicle2currentRoute = new IdMap<>(Vehicle.class);
+	private IdMap<Vehicle, VehicleRoute> vehicle2route = new IdMap<>(Vehicle.class);
 
 	private List<LegHandler> legHandlers = new ArrayList<>();
 
@@ -213,7 +211,11 @@ public final class EventsToLegs
 						new PendingTransitTravel(event.getVehicleId(), lineAndRoute.lastFacilityId));
 			}
 		} else {
-			VehicleRoute route = vehicle2route.computeIfAbsent(event.getVehicleId(), vehicleId -> new VehicleRoute());
+			VehicleRoute route = vehicle2route.get(event.getVehicleId());
+			if (route == null) {
+				route = new VehicleRoute();
+				vehicle2route.put(event.getVehicleId(), route);
+			}
 			int currentLinkIdx = Math.max(0, route.links.size() - 1);
 			PendingVehicleTravel vehicleTravel = new PendingVehicleTravel(route, currentLinkIdx);
 			vehicleTravels.put(event.getPersonId(), vehicleTravel);
@@ -286,9 +288,10 @@ public final class EventsToLegs
 			 * to calculate the correct route distance including the first/last link.
 			 * (see MATSIM-227) tt feb'16
 			 */
+			Gbl.assertIf(relPosOnDepartureLinkPerPerson.containsKey(event.getPersonId()));
 			double relPosOnDepartureLink = relPosOnDepartureLinkPerPerson.get(event.getPersonId());
-			Double relPosOnArrivalLink = relPosOnArrivalLinkPerPerson.get(event.getPersonId());
-			Gbl.assertNotNull(relPosOnArrivalLink);
+			Gbl.assertIf(relPosOnArrivalLinkPerPerson.containsKey(event.getPersonId()));
+			double relPosOnArrivalLink = relPosOnArrivalLinkPerPerson.get(event.getPersonId());
 			networkRoute.setDistance(
 					RouteUtils.calcDistance(networkRoute, relPosOnDepartureLink, relPosOnArrivalLink, network));
 
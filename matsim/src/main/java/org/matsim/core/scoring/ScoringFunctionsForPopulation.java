@@ -40,9 +40,12 @@ import org.matsim.api.core.v01.population.Plan;
 import org.matsim.api.core.v01.population.Population;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.api.internal.HasPersonId;
+import org.matsim.core.config.groups.PlanCalcScoreConfigGroup;
 import org.matsim.core.controler.ControlerListenerManager;
 import org.matsim.core.controler.events.IterationStartsEvent;
+import org.matsim.core.controler.events.ShutdownEvent;
 import org.matsim.core.controler.listener.IterationStartsListener;
+import org.matsim.core.controler.listener.ShutdownListener;
 import org.matsim.core.events.algorithms.Vehicle2DriverEventHandler;
 import org.matsim.core.events.handler.BasicEventHandler;
 import org.matsim.core.population.PopulationUtils;
@@ -55,6 +58,9 @@ import java.io.BufferedWriter;
 import java.io.IOException;
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static org.matsim.core.router.TripStructureUtils.Trip;
@@ -63,6 +69,15 @@ import static org.matsim.core.router.TripStructureUtils.Trip;
  * This class helps EventsToScore by keeping ScoringFunctions for the entire Population - one per Person -, and dispatching Activities
  * and Legs to the ScoringFunctions. It also gives out the ScoringFunctions, so they can be given other events by EventsToScore.
  * It is not independently useful. Please do not make public.
+ * <p></p>
+ * With more than one scoring thread (see {@link PlanCalcScoreConfigGroup#getNumberOfScoringThreads()}), the persons are
+ * distributed over the threads by the index of their id. The events thread then only finds out which person an event,
+ * leg or activity belongs to, and hands it over in batches to the thread of that person. Each thread processes the work
+ * of its persons in the order in which it was handed over, so every scoring function sees the same calls in the same
+ * order as with a single thread. {@link #finishScoringFunctions()} waits until the threads have processed everything.
+ * Until then, the scoring functions may still be changed by the threads, so the ones returned by
+ * {@link #getScoringFunctionForAgent(Id)} must only be read after {@link #finishScoringFunctions()}. The threads are
+ * stopped when the controler shuts down.
  * 
  * @author michaz
  *
@@ -91,9 +106,41 @@ import static org.matsim.core.router.TripStructureUtils.Trip;
 	
 	private Vehicle2DriverEventHandler vehicles2Drivers = new Vehicle2DriverEventHandler();
 
+	private final ScoringShard[] shards; // null if the scoring is done on the events thread
+	private final Thread[] shardThreads;
+
 	@Inject
+	ScoringFunctionsForPopulation( ControlerListenerManager controlerListenerManager, EventsManager eventsManager, EventsToActivities eventsToActivities, EventsToLegs eventsToLegs,
+						 Population population, ScoringFunctionFactory scoringFunctionFactory, PlanCalcScoreConfigGroup planCalcScoreConfigGroup ) {
+		this(controlerListenerManager, eventsManager, eventsToActivities, eventsToLegs, population, scoringFunctionFactory, planCalcScoreConfigGroup.getNumberOfScoringThreads());
+	}
+
 	ScoringFunctionsForPopulation( ControlerListenerManager controlerListenerManager, EventsManager eventsManager, EventsToActivities eventsToActivities, EventsToLegs eventsToLegs,
 						 Population population, ScoringFunctionFactory scoringFunctionFactory) {
+		this(controlerListenerManager, eventsManager, eventsToActivities, eventsToLegs, population, scoringFunctionFactory, 0);
+	}
+
+	ScoringFunctionsForPopulation( ControlerListenerManager controlerListenerManager, EventsManager eventsManager, EventsToActivities eventsToActivities, EventsToLegs eventsToLegs,
+						 Population population, ScoringFunctionFactory scoringFunctionFactory, int numberOfScoringThreads ) {
+		if (numberOfScoringThreads > 1) {
+			this.shards = new ScoringShard[numberOfScoringThreads];
+			this.shardThreads = new Thread[numberOfScoringThreads];
+			for (int i = 0; i < numberOfScoringThreads; i++) {
+				this.shards[i] = new ScoringShard();
+				this.shardThreads[i] = new Thread(this.shards[i], "ScoringShard-" + i);
+				this.shardThreads[i].setDaemon(true);
+				this.shardThreads[i].start();
+			}
+			controlerListenerManager.addControlerListener(new ShutdownListener() {
+				@Override
+				public void notifyShutdown(ShutdownEvent event) {
+					stopShards();
+				}
+			});
+		} else {
+			this.shards = null;
+			this.shardThreads = null;
+		}
 		controlerListenerManager.addControlerListener(new IterationStartsListener() {
 			@Override
 			public void notifyIterationStarts(IterationStartsEvent event) {
@@ -108,6 +155,8 @@ import static org.matsim.core.router.TripStructureUtils.Trip;
 	}
 
 	private void init() {
+		// the threads might still work on the previous iteration if it was never finished
+		awaitShards();
 		for (Person person : this.population.getPersons().values()) {
 			ScoringFunction data = this.scoringFunctionFactory.createNewScoringFunction(person);
 			this.agentScorers.put(person.getId(), data);
@@ -124,19 +173,13 @@ import static org.matsim.core.router.TripStructureUtils.Trip;
 		// link enter/leave events are NOT passed on, for performance reasons.
 		// kai/dominik, dec'12
 		if (o instanceof HasPersonId) {
-			ScoringFunction scoringFunction = getScoringFunctionForAgent(((HasPersonId) o).getPersonId());
-			if (scoringFunction != null) {
-				if (o instanceof PersonStuckEvent) {
-					scoringFunction.agentStuck(o.getTime());
-				} else if (o instanceof PersonMoneyEvent) {
-					scoringFunction.addMoney(((PersonMoneyEvent) o).getAmount());
-					// yy looking at this, I am a bit skeptic if it truly makes sense to not pass this additionally into the general events handling function below.
-					// A use case might be different utilities of money by money transaction type (e.g. toll, fare, reimbursement, ...).  kai, mar'17
-				} 
-//				else {
-					scoringFunction.handleEvent(o);
-					// passing this on in any case, see comment above.  kai, mar'17
-//				}
+			Id<Person> personId = ((HasPersonId) o).getPersonId();
+			if (this.shards != null) {
+				if (personId != null) {
+					getShard(personId).add(personId, o);
+				}
+			} else {
+				handleEventOfAgent(personId, o);
 			}
 		}
 
@@ -158,16 +201,45 @@ import static org.matsim.core.router.TripStructureUtils.Trip;
 		if ( o instanceof LinkEnterEvent ) {
 			Id<Vehicle> vehicleId = ((LinkEnterEvent)o).getVehicleId();
 			Id<Person> driverId = this.vehicles2Drivers.getDriverOfVehicle(vehicleId);
-			ScoringFunction scoringFunction = getScoringFunctionForAgent( driverId );
+			// (the driver is looked up here since it depends on the events of other persons.)
+			if (this.shards != null) {
+				if (driverId != null) {
+					getShard(driverId).add(driverId, o);
+				}
+			} else {
+				handleEventOfAgent(driverId, o);
+			}
 			// (this will NOT do the scoring function lookup twice since LinkEnterEvent is not an instance of HasPersonId.  kai, mar'17)
-			if (scoringFunction != null) {
-				scoringFunction.handleEvent(o);
+		}
+	}
+
+	private void handleEventOfAgent(Id<Person> agentId, Event o) {
+		ScoringFunction scoringFunction = getScoringFunctionForAgent(agentId);
+		if (scoringFunction != null) {
+			if (o instanceof PersonStuckEvent) {
+				scoringFunction.agentStuck(o.getTime());
+			} else if (o instanceof PersonMoneyEvent) {
+				scoringFunction.addMoney(((PersonMoneyEvent) o).getAmount());
+				// yy looking at this, I am a bit skeptic if it truly makes sense to not pass this additionally into the general events handling function below.
+				// A use case might be different utilities of money by money transaction type (e.g. toll, fare, reimbursement, ...).  kai, mar'17
 			}
+//			else {
+				scoringFunction.handleEvent(o);
+				// passing this on in any case, see comment above.  kai, mar'17
+//			}
 		}
 	}
 
 	@Override
 	synchronized public void handleLeg(PersonExperiencedLeg o) {
+		if (this.shards != null) {
+			getShard(o.getAgentId()).add(o.getAgentId(), o);
+		} else {
+			handleLegOfAgent(o);
+		}
+	}
+
+	private void handleLegOfAgent(PersonExperiencedLeg o) {
 		Id<Person> agentId = o.getAgentId();
 		Leg leg = o.getLeg();
 		ScoringFunction scoringFunction = ScoringFunctionsForPopulation.this.getScoringFunctionForAgent(agentId);
@@ -184,6 +256,14 @@ import static org.matsim.core.router.TripStructureUtils.Trip;
 
 	@Override
 	synchronized public void handleActivity(PersonExperiencedActivity o) {
+		if (this.shards != null) {
+			getShard(o.getAgentId()).add(o.getAgentId(), o);
+		} else {
+			handleActivityOfAgent(o);
+		}
+	}
+
+	private void handleActivityOfAgent(PersonExperiencedActivity o) {
 		Id<Person> agentId = o.getAgentId();
 		Activity activity = o.getActivity();
 		ScoringFunction scoringFunction = ScoringFunctionsForPopulation.this.getScoringFunctionForAgent(agentId);
@@ -230,6 +310,9 @@ import static org.matsim.core.router.TripStructureUtils.Trip;
 	 * already has a scoring function, that one is returned. If the agent does
 	 * not yet have a scoring function, a new one is created and assigned to the
 	 * agent and returned.
+	 * <p></p>
+	 * With more than one scoring thread, the scoring function may still be changed by its thread, so it must only be
+	 * read after {@link #finishScoringFunctions()}.
 	 *
 	 * @param agentId
 	 *            The id of the agent the scoring function is requested for.
@@ -240,6 +323,7 @@ import static org.matsim.core.router.TripStructureUtils.Trip;
 	}
 
 	public void finishScoringFunctions() {
+		awaitShards();
 		// Rethrow an exception in a scoring function (user code) if there was one.
 		Throwable throwable = this.exception.get();
 		if (throwable != null) {
@@ -278,4 +362,141 @@ import static org.matsim.core.router.TripStructureUtils.Trip;
 
 	}
 
+	private ScoringShard getShard(Id<Person> personId) {
+		return this.shards[personId.index() % this.shards.length];
+	}
+
+	/**
+	 * Hands the remaining work over to the scoring threads and waits until they have processed it.
+	 */
+	synchronized private void awaitShards() {
+		if (this.shards == null) {
+			return;
+		}
+		CountDownLatch processed = new CountDownLatch(this.shards.length);
+		for (ScoringShard shard : this.shards) {
+			shard.flush(processed);
+		}
+		try {
+			processed.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Processes the remaining work and stops the scoring threads.
+	 */
+	synchronized private void stopShards() {
+		for (ScoringShard shard : this.shards) {
+			shard.stop();
+		}
+		try {
+			for (Thread thread : this.shardThreads) {
+				thread.join();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Events, legs and activities for the persons of one scoring thread, in the order in which they arrived.
+	 */
+	private static final class Batch {
+		private static final int SIZE = 1024;
+		/* tells the thread to stop */
+		private static final Batch STOP = new Batch(0, null);
+
+		private final Id<?>[] personIds;
+		private final Object[] items;
+		private int size = 0;
+		private final CountDownLatch processed;
+
+		Batch(int capacity, CountDownLatch processed) {
+			this.personIds = new Id<?>[capacity];
+			this.items = new Object[capacity];
+			this.processed = processed;
+		}
+	}
+
+	private final class ScoringShard implements Runnable {
+		private final BlockingQueue<Batch> queue = new ArrayBlockingQueue<>(16);
+		private Batch current = new Batch(Batch.SIZE, null); // only accessed from the events thread
+
+		void add(Id<Person> personId, Object item) {
+			Batch batch = this.current;
+			batch.personIds[batch.size] = personId;
+			batch.items[batch.size] = item;
+			batch.size++;
+			if (batch.size == Batch.SIZE) {
+				put(batch);
+				this.current = new Batch(Batch.SIZE, null);
+			}
+		}
+
+		void flush(CountDownLatch processed) {
+			if (this.current.size > 0) {
+				put(this.current);
+				this.current = new Batch(Batch.SIZE, null);
+			}
+			put(new Batch(0, processed));
+		}
+
+		void stop() {
+			if (this.current.size > 0) {
+				put(this.current);
+				this.current = new Batch(Batch.SIZE, null);
+			}
+			put(Batch.STOP);
+		}
+
+		private void put(Batch batch) {
+			try {
+				this.queue.put(batch);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
+			}
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (true) {
+					Batch batch = this.queue.take();
+					if (batch == Batch.STOP) {
+						return;
+					}
+					for (int i = 0; i < batch.size; i++) {
+						try {
+							process(batch.personIds[i], batch.items[i]);
+						} catch (Throwable t) {
+							// remember the first one, it is rethrown in finishScoringFunctions()
+							exception.compareAndSet(null, t);
+						}
+					}
+					if (batch.processed != null) {
+						batch.processed.countDown();
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		private void process(Id<?> personId, Object item) {
+			if (item instanceof PersonExperiencedLeg) {
+				handleLegOfAgent((PersonExperiencedLeg) item);
+			} else if (item instanceof PersonExperiencedActivity) {
+				handleActivityOfAgent((PersonExperiencedActivity) item);
+			} else {
+				handleEventOfAgent((Id<Person>) personId, (Event) item);
+			}
+		}
+	}
+
 }
@@ -22,6 +22,7 @@ package org.matsim.core.trafficmonitoring;
 import com.google.inject.Inject;
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.IdSet;
 import org.matsim.api.core.v01.events.*;
 import org.matsim.api.core.v01.events.handler.*;
 import org.matsim.api.core.v01.network.Link;
@@ -40,7 +41,6 @@ import org.matsim.core.utils.collections.Tuple;
 import org.matsim.vehicles.Vehicle;
 import org.matsim.vehicles.VehicleType;
 
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -55,7 +55,8 @@ import java.util.concurrent.ConcurrentHashMap;
  * is stored in {@link TravelTimeData}-objects. If a short binSize is used, it is useful to
  * use {@link TravelTimeDataHashMap},}
  * as that one does not use any memory to time bins where no traffic occurred. By default,
- * {@link TravelTimeDataArray} is used.
+ * {@link TravelTimeDataArray} is used. With {@link TravelTimeDataFlatArrays}, the data of all links is
+ * stored in a few flat arrays indexed by the link ids, which avoids any map lookups in the event handler and the router.
  *
  * @author dgrether
  * @author mrieser
@@ -77,11 +78,13 @@ public final class TravelTimeCalculator implements LinkEnterEventHandler, LinkLe
 
 	private Map<Tuple<Id<Link>, Id<Link>>, TravelTimeData> linkToLinkData;
 
-	private final DataContainerProvider dataContainerProvider;
+	private DataContainerProvider dataContainerProvider;
+
+	private TravelTimeDataFlatArrays flatLinkData = null;
 
 	private final Map<Id<Vehicle>, LinkEnterEvent> linkEnterEvents;
 
-	private final Set<Id<Vehicle>> vehiclesToIgnore;
+	private final IdSet<Vehicle> vehiclesToIgnore;
 	private final Set<String> analyzedModes;
 
 	private final boolean filterAnalyzedModes;
@@ -114,6 +117,14 @@ public final class TravelTimeCalculator implements LinkEnterEventHandler, LinkLe
 			case TravelTimeCalculatorHashMap:
 				calculator.ttDataFactory = new TravelTimeDataHashMapFactory(network);
 				break;
+			case TravelTimeCalculatorFlatArray:
+				calculator.ttDataFactory = new TravelTimeDataArrayFactory(network, calculator.numSlots);
+				if (calculator.calculateLinkTravelTimes) {
+					// the link data of all links of the network are stored in flat arrays, only link-to-link data is created by the factory
+					calculator.flatLinkData = new TravelTimeDataFlatArrays(network, calculator.numSlots, calculator.linkData, calculator.ttDataFactory);
+					calculator.dataContainerProvider = calculator.flatLinkData;
+				}
+				break;
 			default:
 				throw new RuntimeException(config.getTravelTimeCalculatorType() + " is unknown!");
 		}
@@ -251,7 +262,7 @@ public final class TravelTimeCalculator implements LinkEnterEventHandler, LinkLe
 
 		// if we just look at one mode, we need to ignore all vehicles with a different mode. However, the info re the mode is only in
 		// the vehicleEntersTraffic event.  So we need to memorize the ignored vehicles from there ...
-		this.vehiclesToIgnore = new HashSet<>();
+		this.vehiclesToIgnore = new IdSet<>(Vehicle.class);
 
 
 		this.reset(0);
@@ -415,6 +426,9 @@ public final class TravelTimeCalculator implements LinkEnterEventHandler, LinkLe
 	@Override
 	public void reset(int iteration) {
 		if (this.calculateLinkTravelTimes) {
+			if (this.flatLinkData != null) {
+				this.flatLinkData.resetTravelTimes();
+			}
 			for (TravelTimeData data : this.linkData.values()){
 				data.resetTravelTimes();
 				data.setNeedsConsolidation( false );
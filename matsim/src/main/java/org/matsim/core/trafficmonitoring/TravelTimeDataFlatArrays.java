@@ -0,0 +1,167 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * TravelTimeDataFlatArrays.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.trafficmonitoring;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+
+/**
+ * Stores the travel times of all links of a network in two flat arrays with <code>numSlots</code> consecutive entries
+ * per link, i.e. the entry of a time slot is at <code>linkPosition * numSlots + timeSlot</code>.
+ * <p></p>
+ * The {@link TravelTimeData} objects of the links are only light-weight views on these arrays. They are created once
+ * for all links of the network and are found by the {@link Id#index() index} of the link id, both from the event handler
+ * (where only link ids are available) and from the router (for links of the network as well as of routing networks).
+ * Thus, in contrast to the {@link ArrayBasedDataContainerProvider}, neither adding nor looking up travel times requires
+ * a map lookup, and the data containers never need to be created while the data is read from several threads.
+ * <p></p>
+ * The values are exactly the same as the ones of {@link TravelTimeDataArray}, apart from the number of travel times per
+ * time slot not being limited to {@link Short#MAX_VALUE}. Links which are not part of the network are handled by a
+ * {@link MapBasedDataContainerProvider}.
+ * <p></p>
+ * Travel times are added by the events thread only, so adding them does not need any locks. Consolidating the data of
+ * a link, which may be triggered by several routers at once, still synchronizes on the link's view, like for all other
+ * data containers of the {@link TravelTimeCalculator}.
+ * <p></p>
+ * As Java arrays are limited to {@link Integer#MAX_VALUE} entries, the number of links times the number of time slots
+ * must not exceed it. Use a larger bin size or another data container type for larger networks.
+ */
+class TravelTimeDataFlatArrays implements DataContainerProvider {
+
+	/* some VMs reserve a few header words in arrays */
+	private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+	private final int numSlots;
+	private final int[] timeCnt;
+	private final double[] travelTimes;
+	/* by index of the link id */
+	private final LinkTravelTimeData[] linkData;
+	private final DataContainerProvider delegate;
+
+	TravelTimeDataFlatArrays(final Network network, final int numSlots, final Map<Id<Link>, TravelTimeData> otherLinkData,
+			final TravelTimeDataFactory ttDataFactory) {
+		this.numSlots = numSlots;
+		int numLinks = network.getLinks().size();
+		long size = (long) numLinks * numSlots;
+		if (size > MAX_ARRAY_SIZE) {
+			throw new IllegalArgumentException("Cannot store the travel times of " + numLinks + " links with " + numSlots
+					+ " time slots each in flat arrays, as this requires " + size + " entries, but at most " + MAX_ARRAY_SIZE
+					+ " are possible. Use a larger travelTimeBinSize or another travelTimeCalculator.");
+		}
+		this.timeCnt = new int[(int) size];
+		this.travelTimes = new double[(int) size];
+		int maxIndex = -1;
+		for (Id<Link> linkId : network.getLinks().keySet()) {
+			maxIndex = Math.max(maxIndex, linkId.index());
+		}
+		this.linkData = new LinkTravelTimeData[maxIndex + 1];
+		int position = 0;
+		for (Link link : network.getLinks().values()) {
+			// cannot overflow, as position * numSlots < size
+			this.linkData[link.getId().index()] = new LinkTravelTimeData(link, position * numSlots);
+			position++;
+		}
+		this.delegate = new MapBasedDataContainerProvider(otherLinkData, ttDataFactory);
+		resetTravelTimes();
+	}
+
+	/**
+	 * Resets the travel times of all links of the network at once.
+	 */
+	void resetTravelTimes() {
+		Arrays.fill(this.timeCnt, 0);
+		Arrays.fill(this.travelTimes, -1.0);
+		for (LinkTravelTimeData data : this.linkData) {
+			if (data != null) {
+				data.setNeedsConsolidation(false);
+			}
+		}
+	}
+
+	@Override
+	public TravelTimeData getTravelTimeData(final Id<Link> linkId, final boolean createIfMissing) {
+		int index = linkId.index();
+		if (index < this.linkData.length) {
+			LinkTravelTimeData data = this.linkData[index];
+			if (data != null) {
+				return data;
+			}
+		}
+		return this.delegate.getTravelTimeData(linkId, createIfMissing);
+	}
+
+	@Override
+	public TravelTimeData getTravelTimeData(final Link link, final boolean createIfMissing) {
+		return getTravelTimeData(link.getId(), createIfMissing);
+	}
+
+	private final class LinkTravelTimeData extends TravelTimeData {
+
+		private final Link link;
+		private final int offset;
+
+		LinkTravelTimeData(final Link link, final int offset) {
+			this.link = link;
+			this.offset = offset;
+		}
+
+		@Override
+		public void resetTravelTimes() {
+			Arrays.fill(timeCnt, this.offset, this.offset + numSlots, 0);
+			Arrays.fill(travelTimes, this.offset, this.offset + numSlots, -1.0);
+		}
+
+		@Override
+		void setTravelTime(final int timeSlot, final double traveltime) {
+			timeCnt[this.offset + timeSlot] = 1;
+			travelTimes[this.offset + timeSlot] = traveltime;
+		}
+
+		@Override
+		void addTravelTime(final int timeSlot, final double traveltime) {
+			int i = this.offset + timeSlot;
+			int cnt = timeCnt[i];
+			double sum = travelTimes[i] * cnt;
+
+			sum += traveltime;
+			cnt++;
+
+			travelTimes[i] = sum / cnt;
+			timeCnt[i] = cnt;
+		}
+
+		@Override
+		double getTravelTime(final int timeSlot, final double now) {
+			int i = this.offset + timeSlot;
+			double ttime = travelTimes[i];
+			if (ttime >= 0.0) return ttime; // negative values are invalid.
+
+			// no travel time was measured in this time slot, so just use freespeed
+			double freespeed = this.link.getLength() / this.link.getFreespeed(now);
+			travelTimes[i] = freespeed;
+			return freespeed;
+		}
+	}
+}
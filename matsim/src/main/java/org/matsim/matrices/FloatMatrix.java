@@ -0,0 +1,195 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * FloatMatrix.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.matrices;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.matsim.core.utils.io.IOUtils;
+
+/**
+ * A dense, square matrix of float values for a fixed set of zones, e.g. for skim matrices.
+ * <p></p>
+ * In contrast to {@link Matrix}, the values are stored in a primitive <code>float[][]</code>, which can be accessed
+ * directly with {@link #getData()}, using the indices of the zones. This needs a lot less memory and allows
+ * several threads to fill different rows at the same time. {@link #toMatrix(String, String)} converts it into a
+ * {@link Matrix}, e.g. to write it with the {@link MatricesWriter}.
+ *
+ * @param <T> the type of the zone ids
+ */
+public final class FloatMatrix<T> {
+
+	private static final int MAGIC = 0x464d4154; // "FMAT"
+	private static final int VERSION = 1;
+
+	private final List<T> zones;
+	private final Map<T, Integer> zoneIndices;
+	private final float[][] data;
+
+	public FloatMatrix(final Collection<T> zones, final float defaultValue) {
+		this.zones = Collections.unmodifiableList(new ArrayList<>(zones));
+		this.zoneIndices = new HashMap<>((int) (this.zones.size() / 0.75) + 1);
+		for (T zone : this.zones) {
+			if (this.zoneIndices.put(zone, this.zoneIndices.size()) != null) {
+				throw new IllegalArgumentException("zone " + zone + " is contained more than once.");
+			}
+		}
+		int size = this.zones.size();
+		this.data = new float[size][size];
+		if (defaultValue != 0.0f) {
+			for (float[] row : this.data) {
+				Arrays.fill(row, defaultValue);
+			}
+		}
+	}
+
+	public List<T> getZones() {
+		return this.zones;
+	}
+
+	/**
+	 * @return the row/column index of the zone, or -1 if the zone is not part of this matrix.
+	 */
+	public int getIndex(final T zone) {
+		Integer index = this.zoneIndices.get(zone);
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * @return the values, by the indices of the origin zone (row) and destination zone (column).
+	 */
+	public float[][] getData() {
+		return this.data;
+	}
+
+	public float get(final T from, final T to) {
+		return this.data[getExistingIndex(from)][getExistingIndex(to)];
+	}
+
+	public void set(final T from, final T to, final float value) {
+		this.data[getExistingIndex(from)][getExistingIndex(to)] = value;
+	}
+
+	public void add(final T from, final T to, final float value) {
+		this.data[getExistingIndex(from)][getExistingIndex(to)] += value;
+	}
+
+	public void multiply(final float factor) {
+		for (float[] row : this.data) {
+			for (int i = 0; i < row.length; i++) {
+				row[i] *= factor;
+			}
+		}
+	}
+
+	private int getExistingIndex(final T zone) {
+		Integer index = this.zoneIndices.get(zone);
+		if (index == null) {
+			throw new IllegalArgumentException("zone " + zone + " is not part of this matrix.");
+		}
+		return index;
+	}
+
+	/**
+	 * Creates a {@link Matrix} with an entry for every value which is not <code>NaN</code> or infinite.
+	 */
+	public Matrix toMatrix(final String id, final String desc) {
+		Matrix matrix = new Matrix(id, desc);
+		for (int from = 0; from < this.data.length; from++) {
+			String fromId = this.zones.get(from).toString();
+			float[] row = this.data[from];
+			for (int to = 0; to < row.length; to++) {
+				if (!Float.isNaN(row[to]) && !Float.isInfinite(row[to])) {
+					matrix.createAndAddEntry(fromId, this.zones.get(to).toString(), row[to]);
+				}
+			}
+		}
+		return matrix;
+	}
+
+	/**
+	 * Writes the matrix in a simple binary format: a header, the zone ids as strings, and the values row by row.
+	 * The file is compressed if its name ends with <code>.gz</code>.
+	 *
+	 * @see #readBinary(String)
+	 */
+	public void writeBinary(final String filename) {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				IOUtils.getOutputStream(IOUtils.getFileUrl(filename), false), 1 << 16))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(this.zones.size());
+			for (T zone : this.zones) {
+				out.writeUTF(zone.toString());
+			}
+			for (float[] row : this.data) {
+				for (float value : row) {
+					out.writeFloat(value);
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Reads a matrix written by {@link #writeBinary(String)}. As only the string representation of the zone ids is
+	 * stored in the file, the zones of the returned matrix are strings.
+	 */
+	public static FloatMatrix<String> readBinary(final String filename) {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+				IOUtils.getInputStream(IOUtils.resolveFileOrResource(filename)), 1 << 16))) {
+			if (in.readInt() != MAGIC) {
+				throw new IllegalArgumentException(filename + " is not a binary float matrix.");
+			}
+			int version = in.readInt();
+			if (version != VERSION) {
+				throw new IllegalArgumentException("unsupported version " + version + " of binary float matrix " + filename);
+			}
+			int size = in.readInt();
+			List<String> zones = new ArrayList<>(size);
+			for (int i = 0; i < size; i++) {
+				zones.add(in.readUTF());
+			}
+			FloatMatrix<String> matrix = new FloatMatrix<>(zones, 0.0f);
+			for (float[] row : matrix.data) {
+				for (int i = 0; i < size; i++) {
+					row[i] = in.readFloat();
+				}
+			}
+			return matrix;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+}
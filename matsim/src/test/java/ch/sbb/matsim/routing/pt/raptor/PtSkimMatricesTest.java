@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) Schweizerische Bundesbahnen SBB, 2018.
+ */
+
+package ch.sbb.matsim.routing.pt.raptor;
+
+import ch.sbb.matsim.routing.pt.raptor.PtSkimMatrices.PtIndicators;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.matrices.FloatMatrix;
+import org.matsim.matrices.Matrix;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.testcases.MatsimTestUtils;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Tests for the skim matrices calculated with SwissRailRaptor
+ */
+public class PtSkimMatricesTest {
+
+    @Rule
+    public MatsimTestUtils utils = new MatsimTestUtils();
+
+    @Test
+    public void testSingleDepartureTime() {
+        Fixture f = new Fixture();
+        f.init();
+        SwissRailRaptorData data = createData(f);
+        RaptorParameters parameters = RaptorUtils.createParameters(f.config);
+
+        double depTime = 7*3600 + 40*60;
+        PtIndicators<String> pti = PtSkimMatrices.calculateSkimMatrices(data, createZones(), depTime, depTime, 600, parameters, 1);
+
+        // from stop 23 by the green line, departing at 7:41 and arriving at stop 18 at 7:50
+        Assert.assertEquals(600, pti.travelTimeMatrix.get("N", "C"), 1e-3);
+        Assert.assertEquals(0, pti.accessTimeMatrix.get("N", "C"), 1e-3);
+        Assert.assertEquals(60, pti.waitingTimeMatrix.get("N", "C"), 1e-3);
+        Assert.assertEquals(540, pti.inVehicleTimeMatrix.get("N", "C"), 1e-3);
+        Assert.assertEquals(0, pti.egressTimeMatrix.get("N", "C"), 1e-3);
+        Assert.assertEquals(0, pti.transferCountMatrix.get("N", "C"), 1e-3);
+        Assert.assertEquals(1, pti.dataCountMatrix.get("N", "C"), 1e-3);
+
+        // transfer at C, 7:50/8:00 red, arriving at stop 12 at 8:09
+        Assert.assertEquals(29*60, pti.travelTimeMatrix.get("N", "G"), 1e-3);
+        Assert.assertEquals(1, pti.transferCountMatrix.get("N", "G"), 1e-3);
+        Assert.assertEquals(9*60 + 9*60, pti.inVehicleTimeMatrix.get("N", "G"), 1e-3);
+
+        // no pt needed within the zone
+        Assert.assertEquals(Float.POSITIVE_INFINITY, pti.travelTimeMatrix.get("N", "N"), 0.0);
+        Assert.assertEquals(0, pti.dataCountMatrix.get("N", "N"), 0.0);
+    }
+
+    @Test
+    public void testMultipleThreadsAndDepartureTimes() {
+        Fixture f = new Fixture();
+        f.init();
+        SwissRailRaptorData data = createData(f);
+        RaptorParameters parameters = RaptorUtils.createParameters(f.config);
+
+        PtIndicators<String> single = PtSkimMatrices.calculateSkimMatrices(data, createZones(), 7*3600, 8*3600, 300, parameters, 1);
+        PtIndicators<String> parallel = PtSkimMatrices.calculateSkimMatrices(data, createZones(), 7*3600, 8*3600, 300, parameters, 3);
+
+        assertSameData(single.travelTimeMatrix, parallel.travelTimeMatrix);
+        assertSameData(single.inVehicleTimeMatrix, parallel.inVehicleTimeMatrix);
+        assertSameData(single.waitingTimeMatrix, parallel.waitingTimeMatrix);
+        assertSameData(single.transferCountMatrix, parallel.transferCountMatrix);
+        assertSameData(single.inVehicleDistanceMatrix, parallel.inVehicleDistanceMatrix);
+
+        // the green line departs at stop 23 every 10 minutes at xx:x1, so we wait 1 minute when leaving at xx:x0
+        // and 6 minutes when leaving at xx:x5
+        double waitingTime = (7 * 60 + 6 * 360) / 13.0;
+        Assert.assertEquals(waitingTime, single.waitingTimeMatrix.get("N", "C"), 1e-3);
+        Assert.assertEquals(540 + waitingTime, single.travelTimeMatrix.get("N", "C"), 1e-3);
+    }
+
+    @Test
+    public void testMatrixOutput() {
+        Fixture f = new Fixture();
+        f.init();
+        SwissRailRaptorData data = createData(f);
+        RaptorParameters parameters = RaptorUtils.createParameters(f.config);
+
+        PtIndicators<String> pti = PtSkimMatrices.calculateSkimMatrices(data, createZones(), 7*3600, 8*3600, 600, parameters, 2);
+
+        String filename = this.utils.getOutputDirectory() + "travelTimes.bin.gz";
+        pti.travelTimeMatrix.writeBinary(filename);
+        FloatMatrix<String> read = FloatMatrix.readBinary(filename);
+        Assert.assertEquals(pti.travelTimeMatrix.getZones(), read.getZones());
+        assertSameData(pti.travelTimeMatrix, read);
+
+        Matrix matrix = pti.travelTimeMatrix.toMatrix("tt", "pt travel times");
+        Assert.assertEquals(pti.travelTimeMatrix.get("N", "G"), matrix.getEntry("N", "G").getValue(), 0.0);
+        Assert.assertNull("unreachable zones should not have an entry", matrix.getEntry("N", "N"));
+    }
+
+    @Test
+    public void testInvalidInput() {
+        Fixture f = new Fixture();
+        f.init();
+        RaptorParameters parameters = RaptorUtils.createParameters(f.config);
+
+        Map<String, Coord[]> zones = createZones();
+        zones.put("empty", new Coord[0]);
+        try {
+            PtSkimMatrices.calculateSkimMatrices(createData(f), zones, 7*3600, 8*3600, 600, parameters, 1);
+            Assert.fail("expected IllegalArgumentException for a zone without coordinates");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+
+        TransitSchedule emptySchedule = ScenarioUtils.createScenario(f.config).getTransitSchedule();
+        SwissRailRaptorData emptyData = SwissRailRaptorData.create(emptySchedule, RaptorUtils.createStaticConfig(f.config), f.scenario.getNetwork());
+        try {
+            PtSkimMatrices.calculateSkimMatrices(emptyData, createZones(), 7*3600, 8*3600, 600, parameters, 1);
+            Assert.fail("expected IllegalArgumentException for a schedule without stops");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    private static SwissRailRaptorData createData(Fixture f) {
+        RaptorStaticConfig config = RaptorUtils.createStaticConfig(f.config);
+        config.setOptimization(RaptorStaticConfig.RaptorOptimization.OneToAllRouting);
+        return SwissRailRaptorData.create(f.scenario.getTransitSchedule(), config, f.scenario.getNetwork());
+    }
+
+    private static Map<String, Coord[]> createZones() {
+        Map<String, Coord[]> zones = new LinkedHashMap<>();
+        zones.put("N", new Coord[] { new Coord(16000, 0) }); // stop 23
+        zones.put("C", new Coord[] { new Coord(12000, 5000) }); // stops 4, 5, 18
+        zones.put("G", new Coord[] { new Coord(28000, 5002) }); // stops 12, 13, 21
+        zones.put("AB", new Coord[] { new Coord(4000, 5000), new Coord(8000, 5000) }); // stops 0, 1 and 2, 3
+        return zones;
+    }
+
+    private static void assertSameData(FloatMatrix<String> expected, FloatMatrix<String> actual) {
+        for (int i = 0; i < expected.getData().length; i++) {
+            Assert.assertArrayEquals(Arrays.toString(expected.getData()[i]), expected.getData()[i], actual.getData()[i], 0.0f);
+        }
+    }
+}
@@ -5,15 +5,28 @@
 package ch.sbb.matsim.routing.pt.raptor;
 
 import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
 import org.matsim.api.core.v01.Id;
 import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+import org.matsim.testcases.MatsimTestUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
 
 /**
  * @author mrieser / SBB
  */
 public class SwissRailRaptorDataTest {
 
+    @Rule
+    public MatsimTestUtils utils = new MatsimTestUtils();
+
     @Test
     public void testTransfersFromSchedule() {
         Fixture f = new Fixture();
@@ -28,9 +41,9 @@ public class SwissRailRaptorDataTest {
         Id<TransitStopFacility> stopId9 = Id.create(9, TransitStopFacility.class);
         Id<TransitStopFacility> stopId18 = Id.create(18, TransitStopFacility.class);
         Id<TransitStopFacility> stopId19 = Id.create(19, TransitStopFacility.class);
-        for (SwissRailRaptorData.RTransfer t : data.transfers) {
-            TransitStopFacility fromStop = data.routeStops[t.fromRouteStop].routeStop.getStopFacility();
-            TransitStopFacility toStop = data.routeStops[t.toRouteStop].routeStop.getStopFacility();
+        for (int t = 0; t < data.transferToRouteStops.length; t++) {
+            TransitStopFacility fromStop = data.routeStops[findFromRouteStop(data, t)].routeStop.getStopFacility();
+            TransitStopFacility toStop = data.routeStops[data.transferToRouteStops[t]].routeStop.getStopFacility();
             if (fromStop.getId().equals(stopId19) && toStop.getId().equals(stopId9)) {
                 Assert.fail("There should not be any transfer between stop facilities 19 and 9.");
             }
@@ -41,45 +54,128 @@ public class SwissRailRaptorDataTest {
         f.schedule.getMinimalTransferTimes().set(stopId19, stopId9, 345);
         SwissRailRaptorData data2 = SwissRailRaptorData.create(f.schedule, raptorConfig, f.network);
         int foundTransferCount = 0;
-        for (SwissRailRaptorData.RTransfer t : data2.transfers) {
-            TransitStopFacility fromStop = data2.routeStops[t.fromRouteStop].routeStop.getStopFacility();
-            TransitStopFacility toStop = data2.routeStops[t.toRouteStop].routeStop.getStopFacility();
+        for (int t = 0; t < data2.transferToRouteStops.length; t++) {
+            TransitStopFacility fromStop = data2.routeStops[findFromRouteStop(data2, t)].routeStop.getStopFacility();
+            TransitStopFacility toStop = data2.routeStops[data2.transferToRouteStops[t]].routeStop.getStopFacility();
             if (fromStop.getId().equals(stopId19) && toStop.getId().equals(stopId9)) {
                 foundTransferCount++;
             }
         }
         Assert.assertEquals("wrong number of transfers between stop facilities 19 and 9.", 1, foundTransferCount);
-        Assert.assertEquals("number of transfers should have incrased.", data.transfers.length + 1, data2.transfers.length);
+        Assert.assertEquals("number of transfers should have incrased.", data.transferToRouteStops.length + 1, data2.transferToRouteStops.length);
 
         // assign a high transfer time to a "default" transfer
         f.schedule.getMinimalTransferTimes().set(stopId5, stopId18, 456);
         SwissRailRaptorData data3 = SwissRailRaptorData.create(f.schedule, raptorConfig, f.network);
         boolean foundCorrectTransfer = false;
-        for (SwissRailRaptorData.RTransfer t : data3.transfers) {
-            TransitStopFacility fromStop = data3.routeStops[t.fromRouteStop].routeStop.getStopFacility();
-            TransitStopFacility toStop = data3.routeStops[t.toRouteStop].routeStop.getStopFacility();
+        for (int t = 0; t < data3.transferToRouteStops.length; t++) {
+            TransitStopFacility fromStop = data3.routeStops[findFromRouteStop(data3, t)].routeStop.getStopFacility();
+            TransitStopFacility toStop = data3.routeStops[data3.transferToRouteStops[t]].routeStop.getStopFacility();
             if (fromStop.getId().equals(stopId5) && toStop.getId().equals(stopId18)) {
-                Assert.assertEquals("transfer has wrong transfer time.", 456, t.transferTime, 0.0);
+                Assert.assertEquals("transfer has wrong transfer time.", 456, data3.transferTimes[t], 0.0);
                 foundCorrectTransfer = true;
             }
         }
         Assert.assertTrue("did not find overwritten transfer", foundCorrectTransfer);
-        Assert.assertEquals("number of transfers should have stayed the same.", data2.transfers.length, data3.transfers.length);
+        Assert.assertEquals("number of transfers should have stayed the same.", data2.transferToRouteStops.length, data3.transferToRouteStops.length);
 
         // assign a low transfer time to a "default" transfer
         f.schedule.getMinimalTransferTimes().set(stopId5, stopId18, 0.2);
         SwissRailRaptorData data4 = SwissRailRaptorData.create(f.schedule, raptorConfig, f.network);
         foundCorrectTransfer = false;
-        for (SwissRailRaptorData.RTransfer t : data4.transfers) {
-            TransitStopFacility fromStop = data4.routeStops[t.fromRouteStop].routeStop.getStopFacility();
-            TransitStopFacility toStop = data4.routeStops[t.toRouteStop].routeStop.getStopFacility();
+        for (int t = 0; t < data4.transferToRouteStops.length; t++) {
+            TransitStopFacility fromStop = data4.routeStops[findFromRouteStop(data4, t)].routeStop.getStopFacility();
+            TransitStopFacility toStop = data4.routeStops[data4.transferToRouteStops[t]].routeStop.getStopFacility();
             if (fromStop.getId().equals(stopId5) && toStop.getId().equals(stopId18)) {
-                Assert.assertEquals("transfer has wrong transfer time.", 0.2, t.transferTime, 0.0);
+                Assert.assertEquals("transfer has wrong transfer time.", 0.2, data4.transferTimes[t], 0.0);
                 foundCorrectTransfer = true;
             }
         }
         Assert.assertTrue("did not find overwritten transfer", foundCorrectTransfer);
-        Assert.assertEquals("number of transfers should have stayed the same.", data2.transfers.length, data4.transfers.length);
+        Assert.assertEquals("number of transfers should have stayed the same.", data2.transferToRouteStops.length, data4.transferToRouteStops.length);
+    }
+
+    private static int findFromRouteStop(SwissRailRaptorData data, int transferIndex) {
+        for (int routeStopIndex = 0; routeStopIndex < data.countRouteStops; routeStopIndex++) {
+            int firstTransferIndex = data.routeStopFirstTransferIndices[routeStopIndex];
+            if (transferIndex >= firstTransferIndex && transferIndex < firstTransferIndex + data.routeStopCountTransfers[routeStopIndex]) {
+                return routeStopIndex;
+            }
+        }
+        throw new IllegalArgumentException("transfer " + transferIndex + " does not exist.");
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testWriteRead() {
+        Fixture f = new Fixture();
+        f.init();
+
+        RaptorStaticConfig raptorConfig = RaptorUtils.createStaticConfig(f.config);
+        SwissRailRaptorData data = SwissRailRaptorData.create(f.schedule, raptorConfig, f.network);
+        String filename = this.utils.getOutputDirectory() + "raptorData.bin";
+        data.write(filename);
+        SwissRailRaptorData read = SwissRailRaptorData.read(filename, f.schedule, raptorConfig);
+
+        Assert.assertEquals(data.countStops, read.countStops);
+        Assert.assertEquals(data.countRoutes, read.countRoutes);
+        Assert.assertEquals(data.stopFacilityIndices, read.stopFacilityIndices);
+        Assert.assertEquals(data.routeStopsPerStopFacility.keySet(), read.routeStopsPerStopFacility.keySet());
+        for (Map.Entry<TransitStopFacility, int[]> e : data.routeStopsPerStopFacility.entrySet()) {
+            Assert.assertArrayEquals(e.getValue(), read.routeStopsPerStopFacility.get(e.getKey()));
+        }
+        Assert.assertArrayEquals(data.departures, read.departures, 0.0);
+        Assert.assertEquals(data.routeStops.length, read.routeStops.length);
+        for (int i = 0; i < data.routeStops.length; i++) {
+            Assert.assertSame(data.routeStops[i].routeStop, read.routeStops[i].routeStop);
+            Assert.assertSame(data.routeStops[i].route, read.routeStops[i].route);
+            Assert.assertEquals(data.routeStops[i].mode, read.routeStops[i].mode);
+            Assert.assertEquals(i, read.routeStops[i].index);
+        }
+        Assert.assertArrayEquals(data.routeFirstRouteStopIndices, read.routeFirstRouteStopIndices);
+        Assert.assertArrayEquals(data.routeCountRouteStops, read.routeCountRouteStops);
+        Assert.assertArrayEquals(data.routeFirstDepartureIndices, read.routeFirstDepartureIndices);
+        Assert.assertArrayEquals(data.routeCountDepartures, read.routeCountDepartures);
+        Assert.assertArrayEquals(data.routeStopRouteIndices, read.routeStopRouteIndices);
+        Assert.assertArrayEquals(data.routeStopStopFacilityIndices, read.routeStopStopFacilityIndices);
+        Assert.assertArrayEquals(data.routeStopArrivalOffsets, read.routeStopArrivalOffsets, 0.0);
+        Assert.assertArrayEquals(data.routeStopDepartureOffsets, read.routeStopDepartureOffsets, 0.0);
+        Assert.assertArrayEquals(data.routeStopDistancesAlongRoute, read.routeStopDistancesAlongRoute, 0.0);
+        Assert.assertArrayEquals(data.routeStopFirstTransferIndices, read.routeStopFirstTransferIndices);
+        Assert.assertArrayEquals(data.routeStopCountTransfers, read.routeStopCountTransfers);
+        Assert.assertArrayEquals(data.transferToRouteStops, read.transferToRouteStops);
+        Assert.assertArrayEquals(data.transferTimes, read.transferTimes, 0.0);
+        Assert.assertArrayEquals(data.transferDistances, read.transferDistances, 0.0);
+        Assert.assertEquals(data.stopsQT.size(), read.stopsQT.size());
+
+        raptorConfig.setBeelineWalkConnectionDistance(raptorConfig.getBeelineWalkConnectionDistance() + 50);
+        try {
+            SwissRailRaptorData.read(filename, f.schedule, raptorConfig);
+            Assert.fail("expected an exception as the static configuration is different.");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void testReadInvalidTransfers() throws IOException {
+        Fixture f = new Fixture();
+        f.init();
+
+        RaptorStaticConfig raptorConfig = RaptorUtils.createStaticConfig(f.config);
+        SwissRailRaptorData data = SwissRailRaptorData.create(f.schedule, raptorConfig, f.network);
+        Assert.assertTrue(data.transferToRouteStops.length > 0);
+        String filename = this.utils.getOutputDirectory() + "raptorData.bin";
+        data.write(filename);
+
+        // the last sections are the from and to route stops, times and distances of the transfers
+        long fromRouteStopsPosition = Files.size(Paths.get(filename)) - (long) data.transferToRouteStops.length * (2 * Integer.BYTES + 2 * Double.BYTES);
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.WRITE)) {
+            ByteBuffer invalidIndex = ByteBuffer.allocate(Integer.BYTES).putInt(0, data.routeStops.length);
+            channel.write(invalidIndex, fromRouteStopsPosition + (long) (data.transferToRouteStops.length - 1) * Integer.BYTES);
+        }
+        try {
+            SwissRailRaptorData.read(filename, f.schedule, raptorConfig);
+            Assert.fail("expected an exception as a transfer starts at a route stop which does not exist.");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) Schweizerische Bundesbahnen SBB, 2018.
+ */
+
+package ch.sbb.matsim.routing.pt.raptor;
+
+import ch.sbb.matsim.routing.pt.raptor.SwissRailRaptorCore.ProfileEntry;
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.core.utils.misc.Time;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Tests for the profile-calculating functionality of SwissRailRaptor
+ */
+public class SwissRailRaptorProfileTest {
+
+    @Test
+    public void testSingleStop_dep0740to0800atN() {
+        Fixture f = new Fixture();
+        f.init();
+        SwissRailRaptor raptor = createRaptor(f);
+
+        // start with a stop on the green line
+        TransitStopFacility fromStop = f.schedule.getFacilities().get(Id.create(23, TransitStopFacility.class));
+        Map<Id<TransitStopFacility>, List<ProfileEntry>> map = raptor.calcProfile(fromStop, 7*3600 + 40*60, 8*3600, 4);
+
+        Assert.assertNull("the start stop should not be part of the profiles", map.get(fromStop.getId()));
+
+        // directly reachable
+        assertProfile(map, 18, "07:51:00 08:00:00 0", "07:41:00 07:50:00 0");
+        // transfer at C, 7:50/8:02 blue, 8:00/8:12 blue
+        assertProfile(map, 1, "07:51:00 08:14:00 1");
+        // transfer at C, 7:50/8:00 red, transfer at G, 8:09/8:12 is faster, but only for the earlier departure
+        assertProfile(map, 11, "07:51:00 08:23:06 1", "07:41:00 08:19:00 2");
+        assertProfile(map, 10, "07:51:00 08:23:00 1", "07:41:00 08:19:06 2");
+        assertProfile(map, 12, "07:51:00 08:28:00 1", "07:41:00 08:09:00 1");
+    }
+
+    @Test
+    public void testSingleStop_maxTransfers() {
+        Fixture f = new Fixture();
+        f.init();
+        SwissRailRaptor raptor = createRaptor(f);
+
+        TransitStopFacility fromStop = f.schedule.getFacilities().get(Id.create(23, TransitStopFacility.class));
+
+        Map<Id<TransitStopFacility>, List<ProfileEntry>> map = raptor.calcProfile(fromStop, 7*3600 + 40*60, 8*3600, 1);
+        assertProfile(map, 11, "07:51:00 08:23:06 1"); // departing earlier does not arrive earlier without a second transfer
+
+        map = raptor.calcProfile(fromStop, 7*3600 + 40*60, 8*3600, 0);
+        assertProfile(map, 18, "07:51:00 08:00:00 0", "07:41:00 07:50:00 0");
+        assertProfile(map, 4, "07:51:00 08:00:03 0", "07:41:00 07:50:03 0"); // walk 3 seconds at C
+        Assert.assertNull(map.get(Id.create(11, TransitStopFacility.class)));
+    }
+
+    @Test
+    public void testSameAsSingleDepartures() {
+        Fixture f = new Fixture();
+        f.init();
+        SwissRailRaptor raptor = createRaptor(f);
+
+        List<TransitStopFacility> fromStops = new ArrayList<>();
+        fromStops.add(f.schedule.getFacilities().get(Id.create(23, TransitStopFacility.class)));
+        fromStops.add(f.schedule.getFacilities().get(Id.create(6, TransitStopFacility.class)));
+        double earliestDepTime = 7*3600;
+        double latestDepTime = 9*3600;
+        Map<Id<TransitStopFacility>, List<ProfileEntry>> map = raptor.calcProfile(fromStops, earliestDepTime, latestDepTime, 4);
+
+        // departures at the start stops are full minutes, departures after walking to another stop not necessarily
+        TreeSet<Double> depTimes = new TreeSet<>();
+        for (double depTime = earliestDepTime; depTime <= latestDepTime; depTime += 60) {
+            depTimes.add(depTime);
+        }
+        for (List<ProfileEntry> profile : map.values()) {
+            for (ProfileEntry entry : profile) {
+                depTimes.add(entry.departureTime);
+            }
+        }
+        Map<Id<TransitStopFacility>, List<ProfileEntry>> expected = new HashMap<>();
+        for (double depTime : depTimes) {
+            for (Map.Entry<Id<TransitStopFacility>, List<ProfileEntry>> e : raptor.calcProfile(fromStops, depTime, depTime, 4).entrySet()) {
+                expected.computeIfAbsent(e.getKey(), k -> new ArrayList<>()).addAll(e.getValue());
+            }
+        }
+
+        Assert.assertEquals(expected.keySet(), map.keySet());
+        for (Map.Entry<Id<TransitStopFacility>, List<ProfileEntry>> e : map.entrySet()) {
+            List<ProfileEntry> profile = e.getValue();
+            for (ProfileEntry entry : profile) {
+                Assert.assertTrue(entry.departureTime >= earliestDepTime && entry.departureTime <= latestDepTime);
+                for (ProfileEntry other : profile) {
+                    Assert.assertFalse("stop " + e.getKey() + ": " + other + " dominates " + entry, other != entry && dominates(other, entry));
+                }
+            }
+            Assert.assertEquals("stop " + e.getKey(), toStrings(removeDominated(expected.get(e.getKey()))), toStrings(profile));
+        }
+    }
+
+    private static SwissRailRaptor createRaptor(Fixture f) {
+        RaptorStaticConfig config = RaptorUtils.createStaticConfig(f.config);
+        config.setOptimization(RaptorStaticConfig.RaptorOptimization.OneToAllRouting);
+        SwissRailRaptorData data = SwissRailRaptorData.create(f.scenario.getTransitSchedule(), config, f.scenario.getNetwork());
+        DefaultRaptorStopFinder stopFinder = new DefaultRaptorStopFinder(null, new DefaultRaptorIntermodalAccessEgress(), null);
+        return new SwissRailRaptor(data, new DefaultRaptorParametersForPerson(f.scenario.getConfig()),
+                new LeastCostRaptorRouteSelector(), stopFinder, null);
+    }
+
+    private static boolean dominates(ProfileEntry e1, ProfileEntry e2) {
+        return e1.departureTime >= e2.departureTime && e1.arrivalTime <= e2.arrivalTime && e1.transferCount <= e2.transferCount;
+    }
+
+    private static List<ProfileEntry> removeDominated(List<ProfileEntry> entries) {
+        List<ProfileEntry> result = new ArrayList<>();
+        for (ProfileEntry entry : entries) {
+            boolean dominated = false;
+            for (ProfileEntry other : entries) {
+                if (other != entry && dominates(other, entry)) {
+                    dominated = true;
+                    break;
+                }
+            }
+            if (!dominated) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+
+    private static TreeSet<String> toStrings(List<ProfileEntry> entries) {
+        TreeSet<String> strings = new TreeSet<>();
+        for (ProfileEntry entry : entries) {
+            strings.add(entry.toString());
+        }
+        return strings;
+    }
+
+    private static void assertProfile(Map<Id<TransitStopFacility>, List<ProfileEntry>> map, int stopId, String... expectedEntries) {
+        List<ProfileEntry> profile = map.get(Id.create(stopId, TransitStopFacility.class));
+        Assert.assertNotNull("stop " + stopId + " not reached.", profile);
+        List<String> entries = new ArrayList<>();
+        for (ProfileEntry entry : profile) {
+            entries.add(Time.writeTime(entry.departureTime) + " " + Time.writeTime(entry.arrivalTime) + " " + entry.transferCount);
+        }
+        Assert.assertEquals("wrong profile for stop " + stopId, Arrays.asList(expectedEntries), entries);
+    }
+}
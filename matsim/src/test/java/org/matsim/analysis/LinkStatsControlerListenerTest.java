@@ -319,6 +319,43 @@ public class LinkStatsControlerListenerTest {
 		Assert.assertFalse(new File(config.controler().getOutputDirectory() + "ITERS/it.7/7.linkstats.txt.gz").exists());
 	}
 	
+	@Test
+	public void test_writeLinkVolumesInterval() throws IOException {
+		Config config = this.util.loadConfig((String) null);
+		config.linkStats().setWriteLinkStatsInterval(0);
+		config.linkStats().setWriteLinkVolumesInterval(2);
+
+		final Controler controler = new Controler(ScenarioUtils.createScenario(config));
+		controler.addOverridingModule(new AbstractModule() {
+			@Override
+			public void install() {
+				bind(Mobsim.class).toProvider(DummyMobsimFactory.class);
+			}
+		});
+		config.controler().setMobsim("dummy");
+		config.controler().setFirstIteration(0);
+		config.controler().setLastIteration(3);
+		config.controler().setCreateGraphs(false);
+		config.controler().setDumpDataAtEnd(false);
+		config.controler().setWriteEventsInterval(0);
+		config.controler().setWritePlansInterval(0);
+		controler.run();
+
+		Assert.assertTrue(new File(config.controler().getOutputDirectory() + "ITERS/it.0/0.linkVolumes.txt.gz").exists());
+		Assert.assertFalse(new File(config.controler().getOutputDirectory() + "ITERS/it.1/1.linkVolumes.txt.gz").exists());
+		Assert.assertFalse(new File(config.controler().getOutputDirectory() + "ITERS/it.3/3.linkVolumes.txt.gz").exists());
+		Assert.assertFalse(new File(config.controler().getOutputDirectory() + "ITERS/it.2/2.linkstats.txt.gz").exists());
+		try (BufferedReader reader = IOUtils.getBufferedReader(config.controler().getOutputDirectory() + "ITERS/it.2/2.linkVolumes.txt.gz")) {
+			reader.readLine(); // header
+			// the dummy mobsim creates 3 link leave events in the third iteration, without modes
+			String[] row = reader.readLine().split("\t");
+			Assert.assertEquals("100", row[0]);
+			Assert.assertEquals("all", row[1]);
+			Assert.assertEquals("3", row[2]);
+			Assert.assertNull(reader.readLine());
+		}
+	}
+
 	@Test
 	public void testReset_CorrectlyExecuted() throws IOException {
 		Config config = this.util.loadConfig((String) null);
@@ -0,0 +1,162 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * LinkVolumesCounterTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.analysis;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.testcases.MatsimTestUtils;
+import org.matsim.vehicles.Vehicle;
+
+public class LinkVolumesCounterTest {
+
+	@Rule public MatsimTestUtils util = new MatsimTestUtils();
+
+	@Test
+	public void testCounts() {
+		LinkVolumesCounter counter = new LinkVolumesCounter(3600, 24 * 3600 - 1, 2);
+		Id<Link> link1 = Id.create("lvc1", Link.class);
+		Id<Link> link2 = Id.create("lvc2", Link.class);
+		Id<Vehicle> car = Id.create("lvcCar", Vehicle.class);
+		Id<Vehicle> bike = Id.create("lvcBike", Vehicle.class);
+		Id<Vehicle> truck = Id.create("lvcTruck", Vehicle.class);
+		Id<Person> person = Id.create("lvcPerson", Person.class);
+
+		counter.handleEvent(new VehicleEntersTrafficEvent(0, person, link1, car, "car", 1.0));
+		counter.handleEvent(new VehicleEntersTrafficEvent(0, person, link1, bike, "bike", 1.0));
+		counter.handleEvent(new VehicleEntersTrafficEvent(0, person, link1, truck, "truck", 1.0)); // more modes than specified
+		counter.handleEvent(new LinkLeaveEvent(100, car, link1));
+		counter.handleEvent(new LinkLeaveEvent(200, bike, link1));
+		counter.handleEvent(new LinkLeaveEvent(4000, car, link1));
+		counter.handleEvent(new LinkLeaveEvent(4100, truck, link1));
+		counter.handleEvent(new LinkLeaveEvent(100000, car, link1));
+
+		Assert.assertEquals(25, counter.getVolumesArraySize());
+		int[] volumes = counter.getVolumesForLink(link1);
+		Assert.assertEquals(2, volumes[0]);
+		Assert.assertEquals(2, volumes[1]);
+		Assert.assertEquals(1, volumes[24]);
+		Assert.assertEquals(1, counter.getVolumesForLink(link1, "car")[0]);
+		Assert.assertEquals(1, counter.getVolumesForLink(link1, "car")[1]);
+		Assert.assertEquals(1, counter.getVolumesForLink(link1, "bike")[0]);
+		Assert.assertEquals(0, counter.getVolumesForLink(link1, "bike")[1]);
+		Assert.assertNull(counter.getVolumesForLink(link1, "truck"));
+		Assert.assertNull(counter.getVolumesForLink(link2));
+		Assert.assertNull(counter.getVolumesForLink(link2, "car"));
+		Assert.assertEquals(2, counter.getModes().size());
+
+		counter.reset(1);
+		Assert.assertNull(counter.getVolumesForLink(link1));
+	}
+
+	@Test
+	public void testConcurrentIngestion() throws InterruptedException {
+		int threadCount = 4;
+		int vehiclesPerThread = 50;
+		LinkVolumesCounter counter = new LinkVolumesCounter(900, 24 * 3600 - 1, 4);
+		List<Id<Link>> links = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			links.add(Id.create("lvcLink" + i, Link.class));
+		}
+		String[] modes = {"car", "bike"};
+		Id<Person> person = Id.create("lvcPerson", Person.class);
+
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < threadCount; t++) {
+			final int thread = t;
+			threads.add(new Thread(() -> {
+				for (int v = 0; v < vehiclesPerThread; v++) {
+					Id<Vehicle> vehicleId = Id.create("lvcVeh" + thread + "_" + v, Vehicle.class);
+					counter.handleEvent(new VehicleEntersTrafficEvent(0, person, links.get(0), vehicleId, modes[v % 2], 1.0));
+					for (Id<Link> linkId : links) {
+						counter.handleEvent(new LinkLeaveEvent(v * 60.0, vehicleId, linkId));
+					}
+				}
+			}));
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		for (Id<Link> linkId : links) {
+			Assert.assertEquals(threadCount * vehiclesPerThread, sum(counter.getVolumesForLink(linkId)));
+			Assert.assertEquals(threadCount * vehiclesPerThread / 2, sum(counter.getVolumesForLink(linkId, "car")));
+			Assert.assertEquals(threadCount * vehiclesPerThread / 2, sum(counter.getVolumesForLink(linkId, "bike")));
+		}
+	}
+
+	@Test
+	public void testWriteFile() throws IOException {
+		LinkVolumesCounter counter = new LinkVolumesCounter(3600, 24 * 3600 - 1, 2);
+		Id<Link> link1 = Id.create("lvcWrite1", Link.class);
+		Id<Vehicle> car = Id.create("lvcCar", Vehicle.class);
+		Id<Person> person = Id.create("lvcPerson", Person.class);
+		counter.handleEvent(new VehicleEntersTrafficEvent(0, person, link1, car, "car", 1.0));
+		counter.handleEvent(new LinkLeaveEvent(100, car, link1));
+		counter.handleEvent(new LinkLeaveEvent(7300, car, link1));
+
+		String filename = this.util.getOutputDirectory() + "linkVolumes.txt.gz";
+		counter.writeFile(filename);
+
+		try (BufferedReader reader = IOUtils.getBufferedReader(filename)) {
+			String[] header = reader.readLine().split("\t");
+			Assert.assertEquals(2 + 25, header.length);
+			Assert.assertEquals("LINK", header[0]);
+			Assert.assertEquals("3600", header[3]);
+
+			String[] carRow = reader.readLine().split("\t");
+			Assert.assertEquals("lvcWrite1", carRow[0]);
+			Assert.assertEquals("car", carRow[1]);
+			Assert.assertEquals("1", carRow[2]);
+			Assert.assertEquals("0", carRow[3]);
+			Assert.assertEquals("1", carRow[4]);
+
+			String[] allRow = reader.readLine().split("\t");
+			Assert.assertEquals("lvcWrite1", allRow[0]);
+			Assert.assertEquals("all", allRow[1]);
+			Assert.assertEquals("1", allRow[2]);
+
+			Assert.assertNull(reader.readLine());
+		}
+	}
+
+	private static int sum(int[] values) {
+		int sum = 0;
+		for (int value : values) {
+			sum += value;
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,103 @@
+package org.matsim.api.core.v01;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.utils.collections.Tuple;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class IdDoubleMapTest {
+
+	@Test
+	public void testPutGetRemoveSize() {
+		IdDoubleMap<Person> map = new IdDoubleMap<>(Person.class, 10, -1.0);
+
+		Assert.assertEquals(0, map.size());
+		Assert.assertTrue(map.isEmpty());
+
+		Assert.assertEquals(-1.0, map.put(Id.create(1, Person.class), 1.0), 0.0);
+		Assert.assertEquals(1, map.size());
+		Assert.assertFalse(map.isEmpty());
+
+		Assert.assertEquals(-1.0, map.put(Id.create(2, Person.class), 2.0), 0.0);
+		Assert.assertEquals(2, map.size());
+
+		Assert.assertEquals(1.0, map.put(Id.create(1, Person.class), 1.5), 0.0);
+		Assert.assertEquals(2, map.size());
+
+		Assert.assertEquals(1.5, map.get(Id.create(1, Person.class)), 0.0);
+		Assert.assertEquals(2.0, map.get(Id.create(2, Person.class)), 0.0);
+		Assert.assertEquals(-1.0, map.get(Id.create(3, Person.class)), 0.0);
+		Assert.assertEquals(2.0, map.get(Id.create(2, Person.class).index()), 0.0);
+
+		Assert.assertEquals(2.0, map.remove(Id.create(2, Person.class)), 0.0);
+		Assert.assertEquals(1, map.size());
+		Assert.assertEquals(-1.0, map.remove(Id.create(2, Person.class)), 0.0);
+		Assert.assertEquals(1, map.size());
+		Assert.assertEquals(-1.0, map.get(Id.create(2, Person.class)), 0.0);
+	}
+
+	@Test
+	public void testContainsKey() {
+		IdDoubleMap<Person> map = new IdDoubleMap<>(Person.class);
+		Assert.assertTrue(Double.isNaN(map.getNoEntryValue()));
+
+		map.put(Id.create(1, Person.class), 0.0);
+		map.put(Id.create(2, Person.class), Double.NaN);
+
+		Assert.assertTrue(map.containsKey(Id.create(1, Person.class)));
+		Assert.assertTrue(map.containsKey(Id.create(2, Person.class)));
+		Assert.assertFalse(map.containsKey(Id.create(3, Person.class)));
+		Assert.assertTrue(map.containsKey(Id.create(1, Person.class).index()));
+		Assert.assertTrue(Double.isNaN(map.get(Id.create(3, Person.class))));
+	}
+
+	@Test
+	public void testAdd() {
+		IdDoubleMap<Person> map = new IdDoubleMap<>(Person.class, 10, 0.0);
+
+		Assert.assertEquals(2.0, map.add(Id.create(1, Person.class), 2.0), 0.0);
+		Assert.assertEquals(5.0, map.add(Id.create(1, Person.class), 3.0), 0.0);
+		Assert.assertEquals(1, map.size());
+
+		map.remove(Id.create(1, Person.class));
+		Assert.assertEquals(1.0, map.add(Id.create(1, Person.class), 1.0), 0.0);
+	}
+
+	@Test
+	public void testGrowAndClear() {
+		IdDoubleMap<Person> map = new IdDoubleMap<>(Person.class, 2, Double.NaN);
+		for (int i = 0; i < 500; i++) {
+			map.put(Id.create("grow" + i, Person.class), i);
+		}
+		Assert.assertEquals(500, map.size());
+		Assert.assertEquals(499.0, map.get(Id.create("grow499", Person.class)), 0.0);
+
+		map.clear();
+		Assert.assertEquals(0, map.size());
+		Assert.assertFalse(map.containsKey(Id.create("grow499", Person.class)));
+		Assert.assertTrue(Double.isNaN(map.get(Id.create("grow499", Person.class))));
+	}
+
+	@Test
+	public void testForEach() {
+		IdDoubleMap<Person> map = new IdDoubleMap<>(Person.class, 10, Double.NaN);
+
+		map.put(Id.create(1, Person.class), 1.0);
+		map.put(Id.create(2, Person.class), 2.0);
+		Id<Person> unused = Id.create(3, Person.class);
+		map.put(Id.create(4, Person.class), 4.0);
+
+		List<Tuple<Id<Person>, Double>> data = new ArrayList<>();
+		map.forEach((k, v) -> data.add(new Tuple<>(k, v)));
+
+		Assert.assertEquals(3, data.size());
+		Assert.assertEquals(Id.create(1, Person.class), data.get(0).getFirst());
+		Assert.assertEquals(1.0, data.get(0).getSecond(), 0.0);
+		Assert.assertEquals(Id.create(2, Person.class), data.get(1).getFirst());
+		Assert.assertEquals(Id.create(4, Person.class), data.get(2).getFirst());
+		Assert.assertEquals(4.0, data.get(2).getSecond(), 0.0);
+	}
+}
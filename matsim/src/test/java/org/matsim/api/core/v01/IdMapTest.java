@@ -136,6 +136,26 @@ public class IdMapTest {
 		Assert.assertFalse(map.containsKey((Object) Id.create(6, Person.class)));
 	}
 
+	@Test
+	public void testIndexAccess() {
+		IdMap<Person, String> map = new IdMap<>(Person.class, 10);
+
+		Id<Person> id1 = Id.create(1, Person.class);
+		Id<Person> id2 = Id.create(2, Person.class);
+		map.put(id1.index(), "one");
+
+		Assert.assertEquals(1, map.size());
+		Assert.assertEquals("one", map.get(id1));
+		Assert.assertEquals("one", map.get(id1.index()));
+		Assert.assertTrue(map.containsKey(id1.index()));
+		Assert.assertFalse(map.containsKey(id2.index()));
+		Assert.assertNull(map.get(id2.index()));
+
+		Assert.assertEquals("one", map.remove(id1.index()));
+		Assert.assertEquals(0, map.size());
+		Assert.assertFalse(map.containsKey(id1));
+	}
+
 	@Test
 	public void testContainsValue() {
 		IdMap<Person, String> map = new IdMap<>(Person.class, 10);
@@ -21,6 +21,13 @@
 
  package org.matsim.api.core.v01;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import org.junit.Assert;
 
 import org.junit.Test;
@@ -88,7 +95,52 @@ public class IdTest {
 //		} // FIXME temporarily deactivated
 	}
 	
+	@Test
+	public void testIndex_concurrentCreation() throws InterruptedException, ExecutionException {
+		// more ids than the initial capacity of the index, created by several threads at once
+		int numberOfIds = 5000;
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		List<Future<Integer>> results = new ArrayList<>();
+		for (int t = 0; t < 4; t++) {
+			results.add(executor.submit(() -> {
+				int mismatches = 0;
+				for (int i = 0; i < numberOfIds; i++) {
+					Id<TVehicle> id = Id.create(i, TVehicle.class);
+					if (Id.get(id.index(), TVehicle.class) != id) {
+						mismatches++;
+					}
+				}
+				return mismatches;
+			}));
+		}
+		executor.shutdown();
+		for (Future<Integer> result : results) {
+			Assert.assertEquals(0, result.get().intValue());
+		}
+
+		Assert.assertEquals(numberOfIds, Id.getNumberOfIds(TVehicle.class));
+		boolean[] seen = new boolean[numberOfIds];
+		for (int i = 0; i < numberOfIds; i++) {
+			Id<TVehicle> id = Id.create(i, TVehicle.class);
+			Assert.assertSame(id, Id.get(Integer.toString(i), TVehicle.class));
+			Assert.assertFalse(seen[id.index()]);
+			seen[id.index()] = true;
+		}
+	}
+
+	@Test
+	public void testGetByIndex_unknownIndex() {
+		Id<TNode> nodeId = Id.create("unknownIndexTest", TNode.class);
+		Assert.assertSame(nodeId, Id.get(nodeId.index(), TNode.class));
+		Assert.assertNull(Id.get(-1, TNode.class));
+		Assert.assertNull(Id.get(Id.getNumberOfIds(TNode.class), TNode.class));
+		Assert.assertNull(Id.get(Integer.MAX_VALUE, TNode.class));
+		Assert.assertNull(Id.get(0, TUnused.class));
+	}
+
 	private static class TLink {}
 	private static class TNode {}
+	private static class TVehicle {}
+	private static class TUnused {}
 	
 }
@@ -63,6 +63,45 @@ public class EventsManagerImplTest {
 		}
 	}
 
+	@Test
+	public void testProcessEvent_ErrorInEventHandler() {
+		EventsManager manager = EventsUtils.createEventsManager();
+		manager.addHandler((MyEventHandler) e -> {
+			throw new AssertionError("crash");
+		});
+		try {
+			manager.processEvent(new MyEvent(123.45));
+			Assert.fail("expected exception, but got none.");
+		} catch (final RuntimeException e) {
+			log.info("Catched expected exception.", e);
+			Assert.assertTrue(e.getCause() instanceof AssertionError);
+		}
+	}
+
+	@Test
+	public void testProcessEvent_HandlerAddedAndRemoved() {
+		EventsManager manager = EventsUtils.createEventsManager();
+		CountingMyEventHandler handler1 = new CountingMyEventHandler();
+		CountingMyEventHandler handler2 = new CountingMyEventHandler();
+		manager.addHandler(handler1);
+		manager.addHandler(handler2);
+		manager.processEvent(new MyEvent(1.0));
+		manager.removeHandler(handler1);
+		manager.processEvent(new MyEvent(2.0));
+		Assert.assertEquals(1, handler1.counter);
+		Assert.assertEquals(2, handler2.counter);
+	}
+
+	@Test
+	public void testProcessEvent_SubclassOfCustomEvent() {
+		EventsManager manager = EventsUtils.createEventsManager();
+		CountingMyEventHandler handler = new CountingMyEventHandler();
+		manager.addHandler(handler);
+		manager.processEvent(new MySubEvent(1.0));
+		manager.processEvent(new MyEvent(2.0));
+		Assert.assertEquals(2, handler.counter);
+	}
+
 	/*package*/ static class MyEvent extends Event {
 		public MyEvent(final double time) {
 			super(time);
@@ -73,6 +112,12 @@ public class EventsManagerImplTest {
 		}
 	}
 
+	/*package*/ static class MySubEvent extends MyEvent {
+		public MySubEvent(final double time) {
+			super(time);
+		}
+	}
+
 	/*package*/ static interface MyEventHandler extends EventHandler {
 		public void handleEvent(final MyEvent e);
 	}
@@ -0,0 +1,317 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * EventsReaderBinaryTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.ActivityEndEvent;
+import org.matsim.api.core.v01.events.ActivityStartEvent;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.GenericEvent;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.PersonArrivalEvent;
+import org.matsim.api.core.v01.events.PersonDepartureEvent;
+import org.matsim.api.core.v01.events.PersonEntersVehicleEvent;
+import org.matsim.api.core.v01.events.PersonLeavesVehicleEvent;
+import org.matsim.api.core.v01.events.PersonMoneyEvent;
+import org.matsim.api.core.v01.events.PersonStuckEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.api.experimental.events.TeleportationArrivalEvent;
+import org.matsim.core.events.algorithms.EventWriterBinary;
+import org.matsim.core.events.algorithms.EventWriterXML;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.testcases.MatsimTestUtils;
+import org.matsim.testcases.utils.EventsCollector;
+import org.matsim.vehicles.Vehicle;
+
+public class EventsReaderBinaryTest {
+
+	@Rule
+	public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testBinaryEventsAreReadLikeXmlEvents() {
+		List<Event> events = createEvents(3 * EventWriterBinary.BLOCK_SIZE + 17);
+
+		ByteArrayOutputStream xml = new ByteArrayOutputStream();
+		EventWriterXML xmlWriter = new EventWriterXML(xml);
+		ByteArrayOutputStream binary = new ByteArrayOutputStream();
+		EventWriterBinary binaryWriter = new EventWriterBinary(binary);
+		for (Event event : events) {
+			xmlWriter.handleEvent(event);
+			binaryWriter.handleEvent(event);
+		}
+		xmlWriter.closeFile();
+		binaryWriter.closeFile();
+
+		List<Event> fromXml = read(manager -> new MatsimEventsReader(manager).readStream(new ByteArrayInputStream(xml.toByteArray())));
+		List<Event> fromBinary = read(manager -> new EventsReaderBinary(manager).parse(new ByteArrayInputStream(binary.toByteArray())));
+
+		Assert.assertEquals(events.size(), fromXml.size());
+		Assert.assertEquals(fromXml.size(), fromBinary.size());
+		for (int i = 0; i < fromXml.size(); i++) {
+			Assert.assertEquals(fromXml.get(i).getClass(), fromBinary.get(i).getClass());
+			Assert.assertEquals(fromXml.get(i).getAttributes(), fromBinary.get(i).getAttributes());
+		}
+		Assert.assertTrue("binary events should be much smaller than xml events", binary.size() * 5 < xml.size());
+	}
+
+	@Test
+	public void testDirectlyCreatedEventsEqualXmlEvents() {
+		List<Event> events = new ArrayList<>();
+		Id<Person> person = Id.createPersonId("p");
+		Id<Vehicle> vehicle = Id.createVehicleId("v");
+		Id<Link> link = Id.createLinkId("17");
+		Id<ActivityFacility> facility = Id.create("f", ActivityFacility.class);
+		events.add(new ActivityEndEvent(1.0, person, link, facility, "home"));
+		events.add(new ActivityEndEvent(1.0, person, link, null, "home"));
+		events.add(new PersonDepartureEvent(2.0, person, link, "car"));
+		events.add(new PersonEntersVehicleEvent(3.0, person, vehicle));
+		events.add(new VehicleEntersTrafficEvent(4.0, person, link, vehicle, "car", 0.25));
+		events.add(new VehicleEntersTrafficEvent(4.0, person, link, vehicle, null, 1.0));
+		events.add(new LinkLeaveEvent(5.5, vehicle, link));
+		events.add(new LinkEnterEvent(5.5, vehicle, Id.createLinkId("18")));
+		events.add(new VehicleLeavesTrafficEvent(6.0, person, Id.createLinkId("18"), vehicle, "car", 0.75));
+		events.add(new VehicleLeavesTrafficEvent(6.0, person, Id.createLinkId("18"), null, "car", 1.0));
+		events.add(new PersonLeavesVehicleEvent(7.0, person, vehicle));
+		events.add(new PersonArrivalEvent(8.0, person, Id.createLinkId("18"), "car"));
+		events.add(new ActivityStartEvent(9.0, person, Id.createLinkId("18"), facility, "work"));
+		events.add(new ActivityStartEvent(9.0, person, Id.createLinkId("18"), null, "work"));
+		events.add(new TeleportationArrivalEvent(10.0, person, 1234.5));
+		// ids which look like numbers are stored in numeric columns
+		events.add(new LinkEnterEvent(11.0, Id.createVehicleId("1.5"), Id.createLinkId("2.25")));
+		events.add(new PersonArrivalEvent(12.0, Id.createPersonId("3.0"), Id.createLinkId("2.25"), "walk"));
+
+		ByteArrayOutputStream xml = new ByteArrayOutputStream();
+		EventWriterXML xmlWriter = new EventWriterXML(xml);
+		ByteArrayOutputStream binary = new ByteArrayOutputStream();
+		EventWriterBinary binaryWriter = new EventWriterBinary(binary);
+		for (Event event : events) {
+			xmlWriter.handleEvent(event);
+			binaryWriter.handleEvent(event);
+		}
+		xmlWriter.closeFile();
+		binaryWriter.closeFile();
+
+		List<Event> fromXml = read(manager -> new MatsimEventsReader(manager).readStream(new ByteArrayInputStream(xml.toByteArray())));
+		List<Event> fromBinary = read(manager -> new EventsReaderBinary(manager).parse(new ByteArrayInputStream(binary.toByteArray())));
+		Assert.assertEquals(events.size(), fromXml.size());
+		Assert.assertEquals(events.size(), fromBinary.size());
+		for (int i = 0; i < events.size(); i++) {
+			assertSameFields(fromXml.get(i), fromBinary.get(i));
+		}
+	}
+
+	private static void assertSameFields(Event expected, Event actual) {
+		Assert.assertEquals(expected.getClass(), actual.getClass());
+		Assert.assertEquals(expected.getTime(), actual.getTime(), 0.0);
+		if (expected instanceof LinkLeaveEvent) {
+			LinkLeaveEvent e = (LinkLeaveEvent) expected;
+			LinkLeaveEvent a = (LinkLeaveEvent) actual;
+			Assert.assertSame(e.getVehicleId(), a.getVehicleId());
+			Assert.assertSame(e.getLinkId(), a.getLinkId());
+		} else if (expected instanceof LinkEnterEvent) {
+			LinkEnterEvent e = (LinkEnterEvent) expected;
+			LinkEnterEvent a = (LinkEnterEvent) actual;
+			Assert.assertSame(e.getVehicleId(), a.getVehicleId());
+			Assert.assertSame(e.getLinkId(), a.getLinkId());
+		} else if (expected instanceof VehicleEntersTrafficEvent) {
+			VehicleEntersTrafficEvent e = (VehicleEntersTrafficEvent) expected;
+			VehicleEntersTrafficEvent a = (VehicleEntersTrafficEvent) actual;
+			Assert.assertSame(e.getPersonId(), a.getPersonId());
+			Assert.assertSame(e.getLinkId(), a.getLinkId());
+			Assert.assertSame(e.getVehicleId(), a.getVehicleId());
+			Assert.assertEquals(e.getNetworkMode(), a.getNetworkMode());
+			Assert.assertEquals(e.getRelativePositionOnLink(), a.getRelativePositionOnLink(), 0.0);
+		} else if (expected instanceof VehicleLeavesTrafficEvent) {
+			VehicleLeavesTrafficEvent e = (VehicleLeavesTrafficEvent) expected;
+			VehicleLeavesTrafficEvent a = (VehicleLeavesTrafficEvent) actual;
+			Assert.assertSame(e.getPersonId(), a.getPersonId());
+			Assert.assertSame(e.getLinkId(), a.getLinkId());
+			Assert.assertSame(e.getVehicleId(), a.getVehicleId());
+			Assert.assertEquals(e.getNetworkMode(), a.getNetworkMode());
+			Assert.assertEquals(e.getRelativePositionOnLink(), a.getRelativePositionOnLink(), 0.0);
+		} else if (expected instanceof ActivityEndEvent) {
+			ActivityEndEvent e = (ActivityEndEvent) expected;
+			ActivityEndEvent a = (ActivityEndEvent) actual;
+			Assert.assertSame(e.getPersonId(), a.getPersonId());
+			Assert.assertSame(e.getLinkId(), a.getLinkId());
+			Assert.assertSame(e.getFacilityId(), a.getFacilityId());
+			Assert.assertEquals(e.getActType(), a.getActType());
+		} else if (expected instanceof ActivityStartEvent) {
+			ActivityStartEvent e = (ActivityStartEvent) expected;
+			ActivityStartEvent a = (ActivityStartEvent) actual;
+			Assert.assertSame(e.getPersonId(), a.getPersonId());
+			Assert.assertSame(e.getLinkId(), a.getLinkId());
+			Assert.assertSame(e.getFacilityId(), a.getFacilityId());
+			Assert.assertEquals(e.getActType(), a.getActType());
+		} else if (expected instanceof PersonArrivalEvent) {
+			PersonArrivalEvent e = (PersonArrivalEvent) expected;
+			PersonArrivalEvent a = (PersonArrivalEvent) actual;
+			Assert.assertSame(e.getPersonId(), a.getPersonId());
+			Assert.assertSame(e.getLinkId(), a.getLinkId());
+			Assert.assertSame(e.getLegMode(), a.getLegMode()); // interned by both readers
+		} else if (expected instanceof PersonDepartureEvent) {
+			PersonDepartureEvent e = (PersonDepartureEvent) expected;
+			PersonDepartureEvent a = (PersonDepartureEvent) actual;
+			Assert.assertSame(e.getPersonId(), a.getPersonId());
+			Assert.assertSame(e.getLinkId(), a.getLinkId());
+			Assert.assertSame(e.getLegMode(), a.getLegMode());
+		} else if (expected instanceof PersonEntersVehicleEvent) {
+			PersonEntersVehicleEvent e = (PersonEntersVehicleEvent) expected;
+			PersonEntersVehicleEvent a = (PersonEntersVehicleEvent) actual;
+			Assert.assertSame(e.getPersonId(), a.getPersonId());
+			Assert.assertSame(e.getVehicleId(), a.getVehicleId());
+		} else if (expected instanceof PersonLeavesVehicleEvent) {
+			PersonLeavesVehicleEvent e = (PersonLeavesVehicleEvent) expected;
+			PersonLeavesVehicleEvent a = (PersonLeavesVehicleEvent) actual;
+			Assert.assertSame(e.getPersonId(), a.getPersonId());
+			Assert.assertSame(e.getVehicleId(), a.getVehicleId());
+		} else if (expected instanceof TeleportationArrivalEvent) {
+			TeleportationArrivalEvent e = (TeleportationArrivalEvent) expected;
+			TeleportationArrivalEvent a = (TeleportationArrivalEvent) actual;
+			Assert.assertSame(e.getPersonId(), a.getPersonId());
+			Assert.assertEquals(e.getDistance(), a.getDistance(), 0.0);
+		} else {
+			Assert.fail("unexpected event type " + expected.getEventType());
+		}
+		Assert.assertEquals(expected.getAttributes(), actual.getAttributes());
+	}
+
+	@Test
+	public void testMatsimEventsReaderRecognizesBinaryFiles() {
+		List<Event> events = createEvents(1000);
+		String filename = this.utils.getOutputDirectory() + "events.bin.gz";
+		EventWriterBinary writer = new EventWriterBinary(filename);
+		for (Event event : events) {
+			writer.handleEvent(event);
+		}
+		writer.closeFile();
+
+		EventsReaderXMLv1.CustomEventMapper<GenericEvent> mapper = event -> {
+			event.getAttributes().put("mapped", "true");
+			return event;
+		};
+		List<Event> fromFile = read(manager -> {
+			MatsimEventsReader reader = new MatsimEventsReader(manager);
+			reader.addCustomEventMapper("custom", mapper);
+			reader.readFile(filename);
+		});
+		Assert.assertEquals(events.size(), fromFile.size());
+		for (int i = 0; i < events.size(); i++) {
+			Assert.assertEquals(events.get(i).getTime(), fromFile.get(i).getTime(), 0.0);
+			Assert.assertEquals(events.get(i).getEventType(), fromFile.get(i).getEventType());
+			if (events.get(i) instanceof GenericEvent) {
+				Assert.assertEquals("true", fromFile.get(i).getAttributes().get("mapped"));
+			} else {
+				Assert.assertEquals(events.get(i).getAttributes(), fromFile.get(i).getAttributes());
+			}
+		}
+	}
+
+	@Test
+	public void testEmptyFile() {
+		ByteArrayOutputStream binary = new ByteArrayOutputStream();
+		new EventWriterBinary(binary).closeFile();
+		List<Event> fromBinary = read(manager -> new EventsReaderBinary(manager).parse(new ByteArrayInputStream(binary.toByteArray())));
+		Assert.assertTrue(fromBinary.isEmpty());
+	}
+
+	private interface ReadAction {
+		void read(EventsManager manager);
+	}
+
+	private static List<Event> read(ReadAction action) {
+		EventsManager manager = EventsUtils.createEventsManager();
+		EventsCollector collector = new EventsCollector();
+		manager.addHandler(collector);
+		action.read(manager);
+		return new ArrayList<>(collector.getEvents());
+	}
+
+	private static List<Event> createEvents(int count) {
+		List<Event> events = new ArrayList<>(count);
+		double time = 6 * 3600;
+		for (int i = 0; events.size() < count; i++) {
+			Id<Person> person = Id.createPersonId("p" + (i % 97));
+			Id<Vehicle> vehicle = Id.createVehicleId("v" + (i % 97));
+			Id<Link> link = Id.createLinkId(i % 31);
+			switch (i % 12) {
+			case 0:
+				events.add(new ActivityEndEvent(time, person, link, i % 2 == 0 ? null : Id.create("f" + i, ActivityFacility.class), "home"));
+				break;
+			case 1:
+				events.add(new PersonDepartureEvent(time, person, link, "car"));
+				break;
+			case 2:
+				events.add(new VehicleEntersTrafficEvent(time, person, link, vehicle, "car", 1.0));
+				break;
+			case 3:
+				events.add(new LinkLeaveEvent(time, vehicle, link));
+				break;
+			case 4:
+				events.add(new LinkEnterEvent(time, vehicle, link));
+				break;
+			case 5:
+				events.add(new VehicleLeavesTrafficEvent(time, person, link, vehicle, "car", 0.5));
+				break;
+			case 6:
+				events.add(new PersonArrivalEvent(time, person, link, "car"));
+				break;
+			case 7:
+				events.add(new ActivityStartEvent(time, person, link, null, "work & <fun>"));
+				break;
+			case 8:
+				events.add(new PersonMoneyEvent(time, person, -1.25 * i));
+				break;
+			case 9:
+				events.add(new TeleportationArrivalEvent(time, person, 1234.5678 + i));
+				break;
+			case 10:
+				events.add(new PersonStuckEvent(time, person, i % 4 == 0 ? null : link, "walk"));
+				break;
+			default:
+				GenericEvent generic = new GenericEvent("custom", time + 0.25);
+				generic.getAttributes().put("name", "äöü " + (i % 5));
+				if (i % 3 == 0) {
+					generic.getAttributes().put("value", Integer.toString(i));
+				}
+				events.add(generic);
+			}
+			if (i % 5 == 0) {
+				time += i % 7;
+			}
+		}
+		return events;
+	}
+}
@@ -0,0 +1,202 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RingBufferEventsManagerTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events;
+
+import static org.hamcrest.collection.IsIterableContainingInOrder.contains;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.PersonStuckEvent;
+import org.matsim.api.core.v01.events.handler.LinkEnterEventHandler;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.controler.Injector;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.testcases.utils.EventsCollector;
+
+public class RingBufferEventsManagerTest {
+
+	@Test
+	public void testEventHandlerCanProduceAdditionalEventLateInSimStep() {
+		final RingBufferEventsManager events = new RingBufferEventsManager(4, true);
+		events.addHandler(new LinkEnterEventHandler() {
+			@Override
+			public void handleEvent(LinkEnterEvent event) {
+				try {
+					Thread.sleep(10);
+				} catch (InterruptedException e) {
+					e.printStackTrace();
+				}
+				events.processEvent(new PersonStuckEvent(event.getTime(), Id.createPersonId(0), Id.createLinkId(0), "car"));
+			}
+
+			@Override
+			public void reset(int iteration) {}
+		});
+		EventsCollector collector = new EventsCollector();
+		events.addHandler(collector);
+		events.initProcessing();
+		events.processEvent(new LinkEnterEvent(0.0, Id.createVehicleId(0), Id.createLinkId(0)));
+		events.processEvent(new LinkLeaveEvent(0.0, Id.createVehicleId(0), Id.createLinkId(0)));
+		events.afterSimStep(0.0);
+		events.processEvent(new LinkEnterEvent(1.0, Id.createVehicleId(0), Id.createLinkId(0)));
+		events.processEvent(new LinkLeaveEvent(1.0, Id.createVehicleId(0), Id.createLinkId(0)));
+		events.afterSimStep(1.0);
+		events.finishProcessing();
+		assertThat(collector.getEvents(), contains(
+				new LinkEnterEvent(0.0, Id.createVehicleId(0), Id.createLinkId(0)),
+				new LinkLeaveEvent(0.0, Id.createVehicleId(0), Id.createLinkId(0)),
+				new PersonStuckEvent(0.0, Id.createPersonId(0), Id.createLinkId(0), "car"),
+				new LinkEnterEvent(1.0, Id.createVehicleId(0), Id.createLinkId(0)),
+				new LinkLeaveEvent(1.0, Id.createVehicleId(0), Id.createLinkId(0)),
+				new PersonStuckEvent(1.0, Id.createPersonId(0), Id.createLinkId(0), "car")
+		));
+	}
+
+	@Test
+	public void testAllHandlersSeeSameOrderWithManyProducers() throws InterruptedException {
+		// a small ring buffer makes sure that the producers have to wait for the consumers
+		final RingBufferEventsManager events = new RingBufferEventsManager(3, true, 64);
+		List<RecordingHandler> handlers = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			RecordingHandler handler = new RecordingHandler();
+			handlers.add(handler);
+			events.addHandler(handler);
+		}
+		events.initProcessing();
+
+		int numberOfProducers = 4;
+		int eventsPerProducerAndStep = 500;
+		for (int step = 0; step < 3; step++) {
+			final double time = step;
+			Thread[] producers = new Thread[numberOfProducers];
+			for (int p = 0; p < numberOfProducers; p++) {
+				final int producer = p;
+				producers[p] = new Thread(() -> {
+					for (int i = 0; i < eventsPerProducerAndStep; i++) {
+						events.processEvent(new LinkEnterEvent(time, Id.createVehicleId(producer), Id.createLinkId(i)));
+					}
+				});
+				producers[p].start();
+			}
+			for (Thread producer : producers) {
+				producer.join();
+			}
+			events.afterSimStep(time);
+			// all events of the time step must have been processed
+			for (RecordingHandler handler : handlers) {
+				Assert.assertEquals((step + 1) * numberOfProducers * eventsPerProducerAndStep, handler.events.size());
+			}
+		}
+		events.finishProcessing();
+
+		List<Event> reference = handlers.get(0).events;
+		for (RecordingHandler handler : handlers) {
+			Assert.assertEquals(reference.size(), handler.events.size());
+			for (int i = 0; i < reference.size(); i++) {
+				Assert.assertSame(reference.get(i), handler.events.get(i));
+			}
+		}
+		Assert.assertTrue(events.getNumberOfBlockedPublications() > 0);
+		Assert.assertTrue(events.getMaxQueueDepth() <= 64);
+	}
+
+	@Test
+	public void testEventsAfterFinishProcessingAreHandledDirectly() {
+		RingBufferEventsManager events = new RingBufferEventsManager(2, false);
+		RecordingHandler handler = new RecordingHandler();
+		events.addHandler(handler);
+		events.initProcessing();
+		events.processEvent(new LinkEnterEvent(0.0, Id.createVehicleId(0), Id.createLinkId(0)));
+		events.afterSimStep(0.0);
+		events.finishProcessing();
+		Assert.assertEquals(1, handler.events.size());
+
+		events.processEvent(new LinkLeaveEvent(1.0, Id.createVehicleId(0), Id.createLinkId(0)));
+		Assert.assertEquals(2, handler.events.size());
+	}
+
+	@Test
+	public void testExceptionInHandlerIsReported() {
+		RingBufferEventsManager events = new RingBufferEventsManager(2, true, 16);
+		events.addHandler(new LinkEnterEventHandler() {
+			@Override
+			public void handleEvent(LinkEnterEvent event) {
+				throw new IllegalStateException("expected");
+			}
+
+			@Override
+			public void reset(int iteration) {}
+		});
+		events.addHandler(new RecordingHandler());
+		events.initProcessing();
+		for (int i = 0; i < 100; i++) {
+			events.processEvent(new LinkEnterEvent(0.0, Id.createVehicleId(0), Id.createLinkId(i)));
+		}
+		events.afterSimStep(0.0);
+		try {
+			events.finishProcessing();
+			Assert.fail("expected exception, but got none.");
+		} catch (RuntimeException e) {
+			Assert.assertTrue(e.getCause() instanceof RuntimeException);
+		}
+	}
+
+	@Test
+	public void testModuleBindsRingBufferOnlyIfEnabled() {
+		Config config = ConfigUtils.createConfig();
+		config.parallelEventHandling().setNumberOfThreads(2);
+		Assert.assertEquals(SimStepParallelEventsManagerImpl.class, getBoundEventsManager(config).getClass());
+
+		config.parallelEventHandling().setSynchronizeOnSimSteps(false);
+		Assert.assertEquals(ParallelEventsManagerImpl.class, getBoundEventsManager(config).getClass());
+
+		config.parallelEventHandling().setUseRingBuffer(true);
+		Assert.assertEquals(RingBufferEventsManager.class, getBoundEventsManager(config).getClass());
+	}
+
+	private static EventsManager getBoundEventsManager(Config config) {
+		return Injector.createInjector(config, new EventsManagerModule()).getInstance(EventsManager.class);
+	}
+
+	private static class RecordingHandler implements BasicEventHandler {
+		private final List<Event> events = new ArrayList<>();
+
+		@Override
+		public void handleEvent(Event event) {
+			this.events.add(event);
+		}
+
+		@Override
+		public void reset(int iteration) {
+			this.events.clear();
+		}
+	}
+}
@@ -45,6 +45,22 @@ public class TestDESStarter_equilPlans100 extends AbstractJDEQSimTest {
 		super.checkAscendingTimeStamps();
 		super.checkEventsCorrespondToPlans(scenario.getPopulation());
 	}
+
+	@Test
+	public void test_equilPlans100_highThroughputScheduler() {
+		Config config = ConfigUtils.loadConfig("test/scenarios/equil/config.xml");
+		MatsimRandom.reset(config.global().getRandomSeed());
+		ConfigUtils.addOrGetModule(config, JDEQSimConfigGroup.NAME, JDEQSimConfigGroup.class).setScheduler(JDEQSimConfigGroup.SchedulerType.highThroughput);
+		Scenario scenario = ScenarioUtils.createScenario(config);
+		ScenarioUtils.loadScenario(scenario);
+
+		this.runJDEQSim(scenario);
+
+		assertEquals(scenario.getPopulation().getPersons().size(), super.eventsByPerson.size());
+		super.checkAscendingTimeStamps();
+		super.checkEventsCorrespondToPlans(scenario.getPopulation());
+		assertEquals(0, MessageFactory.getEnterRoadMessageQueue().size());
+	}
 	
 	/* 
 	 * This test is turned off, because it cannot pass.
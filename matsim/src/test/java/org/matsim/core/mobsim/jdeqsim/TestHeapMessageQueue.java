@@ -0,0 +1,115 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * TestHeapMessageQueue.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.jdeqsim;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.core.mobsim.jdeqsim.util.DummyMessage;
+
+public class TestHeapMessageQueue {
+
+	@Test
+	public void testOrderOfMessages() {
+		Random random = new Random(4711);
+		HeapMessageQueue mq = new HeapMessageQueue();
+		List<Message> expected = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			Message m = new DummyMessage();
+			m.setMessageArrivalTime(random.nextInt(100));
+			m.setPriority(random.nextInt(3));
+			mq.putMessage(m);
+			expected.add(m);
+		}
+		// stable, so messages with the same time and priority stay in the order in which they were put
+		expected.sort(Message::compareTo);
+
+		Assert.assertEquals(1000, mq.getQueueSize());
+		for (Message m : expected) {
+			Assert.assertSame(m, mq.getNextMessage());
+		}
+		Assert.assertTrue(mq.isEmpty());
+		Assert.assertEquals(0, mq.getQueueSize());
+		Assert.assertNull(mq.getNextMessage());
+	}
+
+	@Test
+	public void testInterleavedPutAndGet() {
+		Random random = new Random(4711);
+		HeapMessageQueue mq = new HeapMessageQueue();
+		double now = 0;
+		for (int i = 0; i < 1000; i++) {
+			Message m = new DummyMessage();
+			m.setMessageArrivalTime(now + random.nextInt(50));
+			mq.putMessage(m);
+			if (i % 3 == 0) {
+				Message next = mq.getNextMessage();
+				Assert.assertTrue(next.getMessageArrivalTime() >= now);
+				now = next.getMessageArrivalTime();
+			}
+		}
+		while (!mq.isEmpty()) {
+			Message next = mq.getNextMessage();
+			Assert.assertTrue(next.getMessageArrivalTime() >= now);
+			now = next.getMessageArrivalTime();
+		}
+	}
+
+	@Test
+	public void testRemoveMessage() {
+		HeapMessageQueue mq = new HeapMessageQueue();
+		Message m1 = new DummyMessage();
+		m1.setMessageArrivalTime(1);
+		Message m2 = new DummyMessage();
+		m2.setMessageArrivalTime(2);
+		Message m3 = new DummyMessage();
+		m3.setMessageArrivalTime(2);
+		m3.setPriority(10);
+
+		mq.putMessage(m1);
+		mq.putMessage(m2);
+		mq.putMessage(m3);
+		mq.removeMessage(m1);
+		Assert.assertEquals(2, mq.getQueueSize());
+		Assert.assertSame(m3, mq.getNextMessage());
+		Assert.assertSame(m2, mq.getNextMessage());
+		Assert.assertEquals(0, mq.getQueueSize());
+	}
+
+	@Test
+	public void testRemoveLastMessage() {
+		HeapMessageQueue mq = new HeapMessageQueue();
+		Message m1 = new DummyMessage();
+		m1.setMessageArrivalTime(1);
+
+		mq.putMessage(m1);
+		mq.removeMessage(m1);
+		Assert.assertEquals(0, mq.getQueueSize());
+		// like the MessageQueue, the removed message is only dropped when the queue is polled
+		Assert.assertFalse(mq.isEmpty());
+		Assert.assertNull(mq.getNextMessage());
+		Assert.assertTrue(mq.isEmpty());
+	}
+
+}
@@ -0,0 +1,285 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * AgentCalendarQueueTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.mobsim.framework.MobsimAgent;
+import org.matsim.core.utils.misc.Time;
+
+public class AgentCalendarQueueTest {
+
+	@Test
+	public void testOrder() {
+		AgentCalendarQueue queue = new AgentCalendarQueue();
+		MobsimAgent a1 = createAgent("1");
+		MobsimAgent a2 = createAgent("2");
+		MobsimAgent a3 = createAgent("3");
+		MobsimAgent a4 = createAgent("4");
+		MobsimAgent a5 = createAgent("5");
+		queue.add(a1, 100.0);
+		queue.add(a2, 100.0);
+		queue.add(a3, 99.5);
+		queue.add(a4, 200000.0); // same bucket as 100 + 2^16, but a later slot
+		queue.add(a5, Time.UNDEFINED_TIME);
+		Assert.assertEquals(5, queue.size());
+
+		Assert.assertSame(a5, queue.poll(99.0));
+		Assert.assertNull(queue.poll(99.0));
+		Assert.assertSame(a3, queue.poll(100.0));
+		Assert.assertSame(a2, queue.poll(100.0));
+		Assert.assertSame(a1, queue.poll(100.0));
+		Assert.assertNull(queue.poll(100.0));
+		Assert.assertNull(queue.poll(199999.0));
+		Assert.assertSame(a4, queue.poll(200000.0));
+		Assert.assertEquals(0, queue.size());
+	}
+
+	@Test
+	public void testAddAndRemoveWhilePolling() {
+		AgentCalendarQueue queue = new AgentCalendarQueue();
+		MobsimAgent a1 = createAgent("1");
+		MobsimAgent a2 = createAgent("2");
+		MobsimAgent a3 = createAgent("3");
+		queue.add(a1, 10.0);
+		queue.add(a2, 10.0);
+		Assert.assertSame(a2, queue.poll(10.0));
+
+		// an agent added for the current time step is still returned in this time step, one in the past first
+		queue.add(a3, 10.5);
+		queue.add(a2, 5.0);
+		Assert.assertSame(a2, queue.poll(10.0));
+		Assert.assertSame(a1, queue.poll(10.0));
+		Assert.assertNull(queue.poll(10.0));
+
+		Assert.assertTrue(queue.remove(a3));
+		Assert.assertFalse(queue.remove(a3));
+		Assert.assertNull(queue.poll(11.0));
+		Assert.assertEquals(0, queue.size());
+
+		// re-adding an agent replaces its previous entry
+		queue.add(a1, 20.0);
+		queue.add(a1, 15.0);
+		Assert.assertEquals(1, queue.size());
+		Assert.assertSame(a1, queue.poll(15.0));
+		Assert.assertNull(queue.poll(20.0));
+	}
+
+	@Test
+	public void testGetNextTime() {
+		AgentCalendarQueue queue = new AgentCalendarQueue();
+		MobsimAgent a1 = createAgent("1");
+		MobsimAgent a2 = createAgent("2");
+		MobsimAgent a3 = createAgent("3");
+		Assert.assertEquals(Double.POSITIVE_INFINITY, queue.getNextTime(), 0.0);
+		queue.add(a1, 100.5);
+		queue.add(a2, 100.2);
+		queue.add(a3, 300000.0); // more than one round of buckets later
+		Assert.assertEquals(100.2, queue.getNextTime(), 0.0);
+
+		Assert.assertNull(queue.poll(100.0));
+		Assert.assertSame(a2, queue.poll(100.4));
+		Assert.assertEquals(100.5, queue.getNextTime(), 0.0);
+		Assert.assertTrue(queue.remove(a1));
+		Assert.assertEquals(300000.0, queue.getNextTime(), 0.0);
+
+		// an agent due in the past is clamped into the current slot, but keeps its time
+		queue.add(a1, 50.0);
+		Assert.assertEquals(50.0, queue.getNextTime(), 0.0);
+		Assert.assertSame(a1, queue.poll(101.0));
+		Assert.assertEquals(300000.0, queue.getNextTime(), 0.0);
+	}
+
+	@Test
+	public void testAddInDescendingOrder() {
+		// like at the start of the simulation, when the agents are not inserted in the order of their activity end times
+		AgentCalendarQueue queue = new AgentCalendarQueue();
+		int count = 100000;
+		List<MobsimAgent> agents = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			agents.add(createAgent("desc" + i));
+			queue.add(agents.get(i), count - i);
+		}
+		Assert.assertEquals(1.0, queue.getNextTime(), 0.0);
+
+		for (int time = 1; time <= count; time++) {
+			List<AgentCalendarQueue.Entry> entries = queue.pollEntries(time);
+			Assert.assertEquals(1, entries.size());
+			AgentCalendarQueue.Entry entry = entries.get(0);
+			Assert.assertSame(agents.get(count - time), entry.agent);
+			// every agent is in the slot of its own time, not in the one of the first agent added
+			Assert.assertEquals(time, entry.slot);
+		}
+		Assert.assertEquals(0, queue.size());
+	}
+
+	@Test
+	public void testAddInDescendingOrderWhilePolling() {
+		AgentCalendarQueue queue = new AgentCalendarQueue();
+		MobsimAgent a0 = createAgent("0");
+		queue.add(a0, 1000.0);
+		Assert.assertNull(queue.poll(1000.0 - 1));
+		Assert.assertSame(a0, queue.poll(1000.0));
+
+		// agents due in the past are added to the current slot
+		queue.add(a0, 2000.0);
+		List<MobsimAgent> agents = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			agents.add(createAgent("late" + i));
+			queue.add(agents.get(i), 999.0 - i);
+		}
+		for (int i = 999; i >= 0; i--) {
+			Assert.assertSame(agents.get(i), queue.poll(1000.0));
+		}
+		Assert.assertNull(queue.poll(1000.0));
+		Assert.assertEquals(2000.0, queue.getNextTime(), 0.0);
+	}
+
+	@Test
+	public void testGetNextTimeFarAhead() {
+		AgentCalendarQueue queue = new AgentCalendarQueue();
+		MobsimAgent a1 = createAgent("1");
+		MobsimAgent a2 = createAgent("2");
+		queue.add(a1, 10.0);
+		queue.add(a2, 10.0 * (1 << 16));
+		Assert.assertSame(a1, queue.poll(10.0));
+		for (int i = 0; i < 1000; i++) {
+			Assert.assertEquals(10.0 * (1 << 16), queue.getNextTime(), 0.0);
+		}
+		Assert.assertNull(queue.poll(20.0));
+		queue.add(a1, 30.0);
+		Assert.assertEquals(30.0, queue.getNextTime(), 0.0);
+		Assert.assertSame(a1, queue.poll(30.0));
+		Assert.assertEquals(10.0 * (1 << 16), queue.getNextTime(), 0.0);
+		Assert.assertSame(a2, queue.poll(10.0 * (1 << 16)));
+	}
+
+	@Test
+	public void testInfiniteTimes() {
+		AgentCalendarQueue queue = new AgentCalendarQueue();
+		MobsimAgent a1 = createAgent("1");
+		MobsimAgent a2 = createAgent("2");
+		MobsimAgent a3 = createAgent("3");
+		queue.add(a1, Double.POSITIVE_INFINITY);
+		queue.add(a2, Double.POSITIVE_INFINITY);
+		Assert.assertEquals(Double.POSITIVE_INFINITY, queue.getNextTime(), 0.0);
+		Assert.assertNull(queue.poll(10.0));
+
+		// finite agents added later are still found in their own slot
+		queue.add(a3, 10.0);
+		Assert.assertEquals(10.0, queue.getNextTime(), 0.0);
+		Assert.assertSame(a3, queue.poll(10.0));
+		Assert.assertEquals(Double.POSITIVE_INFINITY, queue.getNextTime(), 0.0);
+		Assert.assertNull(queue.poll(1e9));
+		queue.add(a3, 1e9 + 20.0);
+		Assert.assertEquals(1e9 + 20.0, queue.getNextTime(), 0.0);
+		Assert.assertSame(a3, queue.poll(1e9 + 20.0));
+
+		Assert.assertTrue(queue.remove(a1));
+		Assert.assertEquals(1, queue.size());
+		Assert.assertEquals(Double.POSITIVE_INFINITY, queue.getNextTime(), 0.0);
+		Assert.assertSame(a2, queue.poll(Double.POSITIVE_INFINITY));
+		Assert.assertEquals(0, queue.size());
+
+		queue.add(a1, Double.POSITIVE_INFINITY);
+		queue.add(a2, 5.0);
+		List<AgentCalendarQueue.Entry> all = queue.clear();
+		Assert.assertEquals(2, all.size());
+		Assert.assertSame(a2, all.get(0).agent);
+		Assert.assertSame(a1, all.get(1).agent);
+		Assert.assertEquals(Double.POSITIVE_INFINITY, queue.getNextTime(), 0.0);
+	}
+
+	@Test
+	public void testSameOrderAsPriorityQueue() {
+		Random random = new Random(4711);
+		List<MobsimAgent> agents = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			agents.add(createAgent(Integer.toString(i)));
+		}
+		Map<MobsimAgent, Double> times = new HashMap<>();
+		Comparator<MobsimAgent> order = (a0, a1) -> {
+			int cmp = Double.compare(times.get(a0), times.get(a1));
+			return cmp == 0 ? a1.getId().compareTo(a0.getId()) : cmp;
+		};
+		PriorityQueue<MobsimAgent> expected = new PriorityQueue<>(order);
+		AgentCalendarQueue queue = new AgentCalendarQueue();
+
+		for (double now = 0.0; now < 200000.0; now += random.nextInt(3) == 0 ? 5000.0 : 1.0) {
+			for (int i = 0; i < 3; i++) {
+				MobsimAgent agent = agents.get(random.nextInt(agents.size()));
+				if (times.containsKey(agent)) {
+					Assert.assertTrue(queue.remove(agent));
+					Assert.assertTrue(expected.remove(agent));
+				}
+				double time = random.nextInt(10) == 0 ? now - random.nextInt(100) : now + random.nextInt(100000) / 10.0;
+				times.put(agent, time);
+				expected.add(agent);
+				queue.add(agent, time);
+			}
+			MobsimAgent agent;
+			while ((agent = queue.poll(now)) != null) {
+				Assert.assertSame(expected.poll(), agent);
+				times.remove(agent);
+			}
+			Assert.assertTrue(expected.isEmpty() || times.get(expected.peek()) > now);
+			Assert.assertEquals(expected.size(), queue.size());
+		}
+
+		List<MobsimAgent> remaining = new ArrayList<>(expected);
+		Collections.sort(remaining, order);
+		List<AgentCalendarQueue.Entry> entries = queue.clear();
+		Assert.assertEquals(remaining.size(), entries.size());
+		for (int i = 0; i < entries.size(); i++) {
+			Assert.assertSame(remaining.get(i), entries.get(i).agent);
+		}
+		Assert.assertEquals(0, queue.size());
+	}
+
+	private static MobsimAgent createAgent(final String id) {
+		Id<Person> personId = Id.createPersonId(id);
+		return (MobsimAgent) Proxy.newProxyInstance(AgentCalendarQueueTest.class.getClassLoader(), new Class<?>[] { MobsimAgent.class },
+				(proxy, method, args) -> {
+					switch (method.getName()) {
+						case "getId":
+							return personId;
+						case "hashCode":
+							return System.identityHashCode(proxy);
+						case "equals":
+							return proxy == args[0];
+						default:
+							throw new UnsupportedOperationException(method.getName());
+					}
+				});
+	}
+}
@@ -0,0 +1,115 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ParallelAgentStateTransitionsTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.api.core.v01.population.Route;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.testcases.utils.EventsCollector;
+
+public class ParallelAgentStateTransitionsTest {
+
+	@Test
+	public void testSameEventsAsSequential() {
+		List<String> expected = runQSim(1, false, true);
+		Assert.assertTrue(expected.size() > 4000);
+		Assert.assertEquals(expected, runQSim(2, true, true));
+		Assert.assertEquals(expected, runQSim(3, true, false));
+	}
+
+	private static List<String> runQSim(int numberOfThreads, boolean parallelTransitions, boolean usingThreadpool) {
+		Config config = ConfigUtils.createConfig();
+		config.qsim().setNumberOfThreads(numberOfThreads);
+		config.qsim().setUsingParallelAgentStateTransitions(parallelTransitions);
+		config.qsim().setUsingThreadpool(usingThreadpool);
+		Scenario scenario = ScenarioUtils.createScenario(config);
+
+		Network network = scenario.getNetwork();
+		Node node1 = NetworkUtils.createAndAddNode(network, Id.create("1", Node.class), new Coord(0, 0));
+		Node node2 = NetworkUtils.createAndAddNode(network, Id.create("2", Node.class), new Coord(1000, 0));
+		Node node3 = NetworkUtils.createAndAddNode(network, Id.create("3", Node.class), new Coord(2000, 0));
+		Link link1 = NetworkUtils.createAndAddLink(network, Id.create("1", Link.class), node1, node2, 1000, 10, 2000, 1);
+		Link link2 = NetworkUtils.createAndAddLink(network, Id.create("2", Link.class), node2, node3, 1000, 10, 2000, 1);
+
+		Population population = scenario.getPopulation();
+		PopulationFactory factory = population.getFactory();
+		for (int i = 0; i < 1000; i++) {
+			Person person = factory.createPerson(Id.createPersonId(i));
+			Plan plan = factory.createPlan();
+			Activity home = factory.createActivityFromLinkId("home", link1.getId());
+			home.setEndTime(6 * 3600 + i % 7); // many agents leave at the same time
+			plan.addActivity(home);
+			plan.addLeg(createLeg(factory, link1, link2, 100 + i % 13));
+			Activity work = factory.createActivityFromLinkId("work", link2.getId());
+			work.setMaximumDuration(i % 2 == 0 ? 0.0 : 8 * 3600); // some activities end immediately
+			plan.addActivity(work);
+			plan.addLeg(createLeg(factory, link2, link1, 0)); // some teleportations arrive immediately
+			plan.addActivity(factory.createActivityFromLinkId("home", link1.getId()));
+			person.addPlan(plan);
+			population.addPerson(person);
+		}
+
+		EventsManager events = EventsUtils.createEventsManager();
+		EventsCollector collector = new EventsCollector();
+		events.addHandler(collector);
+		events.initProcessing();
+		new QSimBuilder(config).useDefaults().build(scenario, events).run();
+		events.finishProcessing();
+
+		List<String> result = new ArrayList<>();
+		for (Event event : collector.getEvents()) {
+			result.add(event.toString());
+		}
+		return result;
+	}
+
+	private static Leg createLeg(PopulationFactory factory, Link from, Link to, double travelTime) {
+		Leg leg = factory.createLeg(TransportMode.walk);
+		Route route = factory.getRouteFactories().createRoute(Route.class, from.getId(), to.getId());
+		route.setTravelTime(travelTime);
+		route.setDistance(1000.0);
+		leg.setRoute(route);
+		return leg;
+	}
+}
@@ -0,0 +1,186 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * SkippingIdleTimeStepsTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.api.core.v01.population.Route;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.controler.PrepareForSimUtils;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.mobsim.framework.events.MobsimBeforeSimStepEvent;
+import org.matsim.core.mobsim.framework.listeners.MobsimBeforeSimStepListener;
+import org.matsim.core.mobsim.qsim.interfaces.HasNextWakeUpTime;
+import org.matsim.core.network.NetworkChangeEvent;
+import org.matsim.core.network.NetworkChangeEvent.ChangeType;
+import org.matsim.core.network.NetworkChangeEvent.ChangeValue;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.testcases.utils.EventsCollector;
+
+public class SkippingIdleTimeStepsTest {
+
+	@Test
+	public void testSameEventsWithFewerTimeSteps() {
+		StepCounter withoutSkipping = new StepCounter();
+		List<String> expected = runQSim(false, withoutSkipping, null);
+		StepCounter withSkipping = new StepCounter();
+		Assert.assertEquals(expected, runQSim(true, withSkipping, null));
+
+		Assert.assertTrue(withSkipping.steps > 0);
+		Assert.assertTrue("skipped too few time steps: " + withSkipping.steps + " of " + withoutSkipping.steps,
+				withSkipping.steps * 2 < withoutSkipping.steps);
+	}
+
+	@Test
+	public void testListenerNeedsEveryTimeStep() {
+		StepCounter withoutSkipping = new StepCounter();
+		List<String> expected = runQSim(false, withoutSkipping, null);
+		StepCounter withSkipping = new StepCounter();
+		MobsimBeforeSimStepListener listener = e -> {};
+		Assert.assertEquals(expected, runQSim(true, withSkipping, listener));
+		Assert.assertEquals(withoutSkipping.steps, withSkipping.steps);
+	}
+
+	private static List<String> runQSim(boolean skippingIdleTimeSteps, StepCounter counter, MobsimBeforeSimStepListener listener) {
+		Config config = ConfigUtils.createConfig();
+		config.qsim().setSkippingIdleTimeSteps(skippingIdleTimeSteps);
+		config.network().setTimeVariantNetwork(true);
+		Scenario scenario = ScenarioUtils.createScenario(config);
+
+		Network network = scenario.getNetwork();
+		Node node1 = NetworkUtils.createAndAddNode(network, Id.create("1", Node.class), new Coord(0, 0));
+		Node node2 = NetworkUtils.createAndAddNode(network, Id.create("2", Node.class), new Coord(1000, 0));
+		Node node3 = NetworkUtils.createAndAddNode(network, Id.create("3", Node.class), new Coord(2000, 0));
+		Node node4 = NetworkUtils.createAndAddNode(network, Id.create("4", Node.class), new Coord(3000, 0));
+		Link link1 = NetworkUtils.createAndAddLink(network, Id.create("1", Link.class), node1, node2, 1000, 10, 2000, 1);
+		Link link2 = NetworkUtils.createAndAddLink(network, Id.create("2", Link.class), node2, node3, 1000, 10, 2000, 1);
+		Link link3 = NetworkUtils.createAndAddLink(network, Id.create("3", Link.class), node3, node4, 1000, 10, 2000, 1);
+		Link link4 = NetworkUtils.createAndAddLink(network, Id.create("4", Link.class), node4, node1, 3000, 10, 2000, 1);
+
+		// while nobody is on the network
+		NetworkChangeEvent changeEvent = new NetworkChangeEvent(10 * 3600 + 0.5);
+		changeEvent.addLink(link4);
+		changeEvent.setFreespeedChange(new ChangeValue(ChangeType.ABSOLUTE_IN_SI_UNITS, 5));
+		NetworkUtils.addNetworkChangeEvent(network, changeEvent);
+
+		Population population = scenario.getPopulation();
+		PopulationFactory factory = population.getFactory();
+		for (int i = 0; i < 60; i++) {
+			Person person = factory.createPerson(Id.createPersonId(i));
+			Plan plan = factory.createPlan();
+			Activity home = factory.createActivityFromLinkId("home", link1.getId());
+			home.setEndTime(6 * 3600 + i * 97.3);
+			plan.addActivity(home);
+			if (i % 3 == 0) {
+				plan.addLeg(createTeleportationLeg(factory, link1, link3, 300 + i));
+			} else {
+				plan.addLeg(createCarLeg(factory, link1, link3, link2));
+			}
+			Activity work = factory.createActivityFromLinkId("work", link3.getId());
+			work.setEndTime(16 * 3600 + i * 61.7);
+			plan.addActivity(work);
+			if (i % 4 == 0) {
+				plan.addLeg(createTeleportationLeg(factory, link3, link1, 900));
+			} else {
+				plan.addLeg(createCarLeg(factory, link3, link1, link4));
+			}
+			plan.addActivity(factory.createActivityFromLinkId("home", link1.getId()));
+			person.addPlan(plan);
+			population.addPerson(person);
+		}
+
+		PrepareForSimUtils.createDefaultPrepareForSim(scenario).run();
+
+		EventsManager events = EventsUtils.createEventsManager();
+		EventsCollector collector = new EventsCollector();
+		events.addHandler(collector);
+		events.initProcessing();
+		QSim qsim = new QSimBuilder(config).useDefaults().build(scenario, events);
+		qsim.addQueueSimulationListeners(counter);
+		if (listener != null) {
+			qsim.addQueueSimulationListeners(listener);
+		}
+		qsim.run();
+		events.finishProcessing();
+
+		List<String> result = new ArrayList<>();
+		for (Event event : collector.getEvents()) {
+			result.add(event.toString());
+		}
+		return result;
+	}
+
+	private static Leg createCarLeg(PopulationFactory factory, Link from, Link to, Link via) {
+		Leg leg = factory.createLeg(TransportMode.car);
+		NetworkRoute route = factory.getRouteFactories().createRoute(NetworkRoute.class, from.getId(), to.getId());
+		route.setLinkIds(from.getId(), Collections.singletonList(via.getId()), to.getId());
+		leg.setRoute(route);
+		return leg;
+	}
+
+	private static Leg createTeleportationLeg(PopulationFactory factory, Link from, Link to, double travelTime) {
+		Leg leg = factory.createLeg(TransportMode.walk);
+		Route route = factory.getRouteFactories().createRoute(Route.class, from.getId(), to.getId());
+		route.setTravelTime(travelTime);
+		route.setDistance(1000.0);
+		leg.setRoute(route);
+		return leg;
+	}
+
+	/**
+	 * Counts the time steps which are simulated, without preventing any from being skipped.
+	 */
+	private static class StepCounter implements MobsimBeforeSimStepListener, HasNextWakeUpTime {
+		int steps = 0;
+
+		@Override
+		public void notifyMobsimBeforeSimStep(MobsimBeforeSimStepEvent e) {
+			this.steps++;
+		}
+
+		@Override
+		public double getNextWakeUpTime() {
+			return Double.POSITIVE_INFINITY;
+		}
+	}
+}
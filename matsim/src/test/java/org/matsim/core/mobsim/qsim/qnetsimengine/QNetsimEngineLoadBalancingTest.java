@@ -0,0 +1,113 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * QNetsimEngineLoadBalancingTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.core.mobsim.qsim.qnetsimengine;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.events.PersonArrivalEvent;
+import org.matsim.api.core.v01.events.handler.PersonArrivalEventHandler;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.config.groups.QSimConfigGroup.NetsimLoadBalancing;
+import org.matsim.core.config.groups.QSimConfigGroup.NetsimPartitioning;
+import org.matsim.core.controler.PrepareForSimUtils;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.mobsim.qsim.QSimBuilder;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.examples.ExamplesUtils;
+
+/**
+ * Checks that partitioning the network and moving the netsim chunks between the runners does not lose or
+ * duplicate any vehicles.
+ */
+public class QNetsimEngineLoadBalancingTest {
+
+	@Test
+	public void testAllAgentsArriveWithLoadBalancing() {
+		Map<Id<Person>, Integer> reference = runEquil(1, NetsimLoadBalancing.off);
+		Map<Id<Person>, Integer> balanced = runEquil(4, NetsimLoadBalancing.byExecutedSimSteps);
+
+		Assert.assertFalse(reference.isEmpty());
+		Assert.assertEquals(reference, balanced);
+	}
+
+	@Test
+	public void testLoadBalancingWithThreadpool() {
+		Map<Id<Person>, Integer> reference = runEquil(1, NetsimLoadBalancing.off);
+		Map<Id<Person>, Integer> balanced = runEquil(3, NetsimLoadBalancing.byExecutedSimSteps, true);
+
+		Assert.assertEquals(reference, balanced);
+	}
+
+	@Test
+	public void testAllAgentsArriveWithSpatialPartitioning() {
+		Map<Id<Person>, Integer> reference = runEquil(1, NetsimLoadBalancing.off);
+		Map<Id<Person>, Integer> partitioned = runEquil(2, NetsimLoadBalancing.off, false, NetsimPartitioning.recursiveCoordinateBisection);
+		Map<Id<Person>, Integer> balanced = runEquil(4, NetsimLoadBalancing.byExecutedSimSteps, false, NetsimPartitioning.recursiveCoordinateBisection);
+
+		Assert.assertEquals(reference, partitioned);
+		Assert.assertEquals(reference, balanced);
+	}
+
+	private static Map<Id<Person>, Integer> runEquil(int numberOfThreads, NetsimLoadBalancing loadBalancing) {
+		return runEquil(numberOfThreads, loadBalancing, false);
+	}
+
+	private static Map<Id<Person>, Integer> runEquil(int numberOfThreads, NetsimLoadBalancing loadBalancing, boolean usingThreadpool) {
+		return runEquil(numberOfThreads, loadBalancing, usingThreadpool, NetsimPartitioning.roundRobin);
+	}
+
+	private static Map<Id<Person>, Integer> runEquil(int numberOfThreads, NetsimLoadBalancing loadBalancing, boolean usingThreadpool,
+			NetsimPartitioning partitioning) {
+		Config config = ConfigUtils.loadConfig(IOUtils.extendUrl(ExamplesUtils.getTestScenarioURL("equil"), "config.xml"));
+		config.qsim().setNumberOfThreads(numberOfThreads);
+		config.qsim().setUsingThreadpool(usingThreadpool);
+		config.qsim().setNetsimLoadBalancing(loadBalancing);
+		config.qsim().setNetsimLoadBalancingInterval(60.);
+		config.qsim().setNetsimChunksPerThread(3);
+		config.qsim().setNetsimPartitioning(partitioning);
+		Scenario scenario = ScenarioUtils.loadScenario(config);
+
+		final Map<Id<Person>, Integer> arrivalCounts = new HashMap<>();
+		EventsManager events = EventsUtils.createEventsManager();
+		events.addHandler(new PersonArrivalEventHandler() {
+			@Override
+			public void handleEvent(PersonArrivalEvent event) {
+				arrivalCounts.merge(event.getPersonId(), 1, Integer::sum);
+			}
+		});
+
+		PrepareForSimUtils.createDefaultPrepareForSim(scenario).run();
+		new QSimBuilder(config) //
+			.useDefaults() //
+			.build(scenario, events) //
+			.run();
+
+		return arrivalCounts;
+	}
+}
@@ -0,0 +1,267 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * MappedNetworkTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.network;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.PersonArrivalEvent;
+import org.matsim.api.core.v01.events.handler.LinkEnterEventHandler;
+import org.matsim.api.core.v01.events.handler.PersonArrivalEventHandler;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.config.groups.PlanCalcScoreConfigGroup;
+import org.matsim.core.controler.PrepareForSimUtils;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.mobsim.qsim.QSimBuilder;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.router.DijkstraFactory;
+import org.matsim.core.router.costcalculators.FreespeedTravelTimeAndDisutility;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculator.Path;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.testcases.MatsimTestUtils;
+
+public class MappedNetworkTest {
+
+	@Rule
+	public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testWriteAndRead() {
+		Network network = createNetwork();
+		String file = this.utils.getOutputDirectory() + "network" + NetworkUtils.MAPPED_NETWORK_FILE_EXTENSION;
+		NetworkUtils.writeMappedNetwork(network, file);
+		Network mapped = NetworkUtils.readMappedNetwork(file);
+
+		Assert.assertTrue(NetworkUtils.compare(network, mapped));
+		Assert.assertEquals(network.getNodes().size(), mapped.getNodes().size());
+		Assert.assertEquals(network.getLinks().size(), mapped.getLinks().size());
+		Assert.assertEquals("test", mapped.getName());
+		Assert.assertEquals(1800.0, mapped.getCapacityPeriod(), 0.0);
+		Assert.assertEquals(network.getEffectiveCellSize(), mapped.getEffectiveCellSize(), 0.0);
+		Assert.assertEquals(network.getEffectiveLaneWidth(), mapped.getEffectiveLaneWidth(), 0.0);
+
+		for (Node node : network.getNodes().values()) {
+			Node mappedNode = mapped.getNodes().get(node.getId());
+			Assert.assertEquals(node.getCoord(), mappedNode.getCoord());
+			Assert.assertEquals(new ArrayList<>(node.getInLinks().keySet()), new ArrayList<>(mappedNode.getInLinks().keySet()));
+			Assert.assertEquals(new ArrayList<>(node.getOutLinks().keySet()), new ArrayList<>(mappedNode.getOutLinks().keySet()));
+			for (Link link : mappedNode.getOutLinks().values()) {
+				Assert.assertEquals(mappedNode, link.getFromNode());
+			}
+		}
+		for (Link link : network.getLinks().values()) {
+			Link mappedLink = mapped.getLinks().get(link.getId());
+			Assert.assertEquals(link.getAllowedModes(), mappedLink.getAllowedModes());
+			Assert.assertEquals(link.getFlowCapacityPerSec(), mappedLink.getFlowCapacityPerSec(), 0.0);
+			Assert.assertEquals(link.getCoord(), mappedLink.getCoord());
+		}
+
+		Link link = mapped.getLinks().get(Id.createLinkId("2"));
+		Assert.assertSame(link, mapped.getLinks().get(Id.createLinkId("2")));
+		Assert.assertNotEquals(link, mapped.getLinks().get(Id.createLinkId("3")));
+		Assert.assertSame(link, link.getFromNode().getOutLinks().get(link.getId()));
+		Assert.assertSame(mapped.getLinks().get(Id.createLinkId("1")).getToNode(), link.getFromNode());
+		Assert.assertSame(mapped.getNodes().get(Id.createNodeId("3")), link.getToNode());
+		Assert.assertTrue(link.getToNode().getInLinks().containsKey(link.getId()));
+		Assert.assertFalse(link.getToNode().getOutLinks().containsKey(link.getId()));
+		Assert.assertNull(mapped.getLinks().get(Id.createLinkId("unknown")));
+		Assert.assertNull(mapped.getNodes().get(Id.createNodeId("2_unknown")));
+	}
+
+	@Test
+	public void testChangesAreNotWrittenToFile() {
+		String file = this.utils.getOutputDirectory() + "network" + NetworkUtils.MAPPED_NETWORK_FILE_EXTENSION;
+		NetworkUtils.writeMappedNetwork(createNetwork(), file);
+		Network mapped = NetworkUtils.readMappedNetwork(file);
+
+		Link link = mapped.getLinks().get(Id.createLinkId("1"));
+		link.setCapacity(500.0);
+		link.setAllowedModes(new HashSet<>(Arrays.asList(TransportMode.bike)));
+		link.getAttributes().putAttribute("type", "cycleway");
+		Node node = mapped.getNodes().get(Id.createNodeId("1"));
+		node.setCoord(new Coord(-1.0, -2.0));
+
+		Link sameLink = mapped.getLinks().get(Id.createLinkId("1"));
+		Assert.assertEquals(500.0, sameLink.getCapacity(), 0.0);
+		Assert.assertEquals(new HashSet<>(Arrays.asList(TransportMode.bike)), sameLink.getAllowedModes());
+		Assert.assertEquals("cycleway", sameLink.getAttributes().getAttribute("type"));
+		Assert.assertEquals(new Coord(-1.0, -2.0), sameLink.getFromNode().getCoord());
+
+		Network mappedAgain = NetworkUtils.readMappedNetwork(file);
+		Link original = mappedAgain.getLinks().get(Id.createLinkId("1"));
+		Assert.assertEquals(2000.0, original.getCapacity(), 0.0);
+		Assert.assertEquals(new HashSet<>(Arrays.asList(TransportMode.car)), original.getAllowedModes());
+		Assert.assertNull(original.getAttributes().getAttribute("type"));
+		Assert.assertEquals(new Coord(0.0, 0.0), original.getFromNode().getCoord());
+	}
+
+	@Test
+	public void testStructureCannotBeChanged() {
+		String file = this.utils.getOutputDirectory() + "network" + NetworkUtils.MAPPED_NETWORK_FILE_EXTENSION;
+		NetworkUtils.writeMappedNetwork(createNetwork(), file);
+		Network mapped = NetworkUtils.readMappedNetwork(file);
+
+		Node node = mapped.getFactory().createNode(Id.createNodeId("new"), new Coord(5.0, 5.0));
+		try {
+			mapped.addNode(node);
+			Assert.fail("expected UnsupportedOperationException");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+		try {
+			mapped.removeLink(Id.createLinkId("1"));
+			Assert.fail("expected UnsupportedOperationException");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+		Assert.assertEquals(3, mapped.getLinks().size());
+	}
+
+	@Test
+	public void testNearestNodesAndLinks() {
+		String file = this.utils.getOutputDirectory() + "network" + NetworkUtils.MAPPED_NETWORK_FILE_EXTENSION;
+		NetworkUtils.writeMappedNetwork(createNetwork(), file);
+		Network mapped = NetworkUtils.readMappedNetwork(file);
+
+		Node node2 = mapped.getNodes().get(Id.createNodeId("2"));
+		Assert.assertSame(node2, NetworkUtils.getNearestNode(mapped, new Coord(900.0, 100.0)));
+		Assert.assertSame(node2.getCoord(), node2.getCoord());
+		Assert.assertEquals(2, NetworkUtils.getNearestNodes(mapped, new Coord(500.0, 0.0), 600.0).size());
+		Assert.assertSame(mapped.getLinks().get(Id.createLinkId("2")), NetworkUtils.getNearestLinkExactly(mapped, new Coord(1010.0, 500.0)));
+
+		// moving a node must be reflected by the searches
+		mapped.getNodes().get(Id.createNodeId("1")).setCoord(new Coord(900.0, 50.0));
+		Assert.assertEquals(new Coord(900.0, 50.0), mapped.getNodes().get(Id.createNodeId("1")).getCoord());
+		Assert.assertSame(mapped.getNodes().get(Id.createNodeId("1")), NetworkUtils.getNearestNode(mapped, new Coord(900.0, 100.0)));
+	}
+
+	@Test
+	public void testLoadScenario() {
+		String file = this.utils.getOutputDirectory() + "network" + NetworkUtils.MAPPED_NETWORK_FILE_EXTENSION;
+		Network network = createNetwork();
+		NetworkUtils.writeMappedNetwork(network, file);
+
+		Config config = ConfigUtils.createConfig();
+		config.network().setInputFile(file);
+		Scenario scenario = ScenarioUtils.loadScenario(config);
+
+		Assert.assertTrue(scenario.getNetwork() instanceof MappedNetwork);
+		Assert.assertTrue(NetworkUtils.compare(network, scenario.getNetwork()));
+	}
+
+	@Test
+	public void testRoute() {
+		String file = this.utils.getOutputDirectory() + "network" + NetworkUtils.MAPPED_NETWORK_FILE_EXTENSION;
+		NetworkUtils.writeMappedNetwork(createNetwork(), file);
+		Network mapped = NetworkUtils.readMappedNetwork(file);
+
+		FreespeedTravelTimeAndDisutility travelTimeCostCalculator = new FreespeedTravelTimeAndDisutility(new PlanCalcScoreConfigGroup());
+		LeastCostPathCalculator dijkstra = new DijkstraFactory().createPathCalculator(mapped, travelTimeCostCalculator, travelTimeCostCalculator);
+		Node from = mapped.getNodes().get(Id.createNodeId("1"));
+		Node to = mapped.getNodes().get(Id.createNodeId("3"));
+		Path path = dijkstra.calcLeastCostPath(from, to, 8.0 * 3600, null, null);
+
+		Assert.assertNotNull(path);
+		Assert.assertEquals(Arrays.asList(from, mapped.getNodes().get(Id.createNodeId("2")), to), path.nodes);
+		Assert.assertEquals(2, path.links.size());
+		Assert.assertSame(mapped.getLinks().get(Id.createLinkId("1")), path.links.get(0));
+		Assert.assertSame(mapped.getLinks().get(Id.createLinkId("2")), path.links.get(1));
+		Assert.assertEquals(1000.0 / 10.0 + 1200.0 / 15.0, path.travelTime, 1e-8);
+	}
+
+	@Test
+	public void testQSim() {
+		String file = this.utils.getOutputDirectory() + "network" + NetworkUtils.MAPPED_NETWORK_FILE_EXTENSION;
+		NetworkUtils.writeMappedNetwork(createNetwork(), file);
+
+		Config config = ConfigUtils.createConfig();
+		config.network().setInputFile(file);
+		Scenario scenario = ScenarioUtils.loadScenario(config);
+		Population population = scenario.getPopulation();
+		PopulationFactory pf = population.getFactory();
+		Person person = pf.createPerson(Id.createPersonId("1"));
+		Plan plan = pf.createPlan();
+		Activity home = pf.createActivityFromLinkId("h", Id.createLinkId("1"));
+		home.setEndTime(6 * 3600);
+		plan.addActivity(home);
+		Leg leg = pf.createLeg(TransportMode.car);
+		NetworkRoute route = pf.getRouteFactories().createRoute(NetworkRoute.class, Id.createLinkId("1"), Id.createLinkId("3"));
+		route.setLinkIds(Id.createLinkId("1"), Arrays.asList(Id.createLinkId("2")), Id.createLinkId("3"));
+		leg.setRoute(route);
+		plan.addLeg(leg);
+		plan.addActivity(pf.createActivityFromLinkId("w", Id.createLinkId("3")));
+		person.addPlan(plan);
+		population.addPerson(person);
+
+		EventsManager events = EventsUtils.createEventsManager();
+		List<LinkEnterEvent> linkEnterEvents = new ArrayList<>();
+		List<PersonArrivalEvent> arrivalEvents = new ArrayList<>();
+		events.addHandler((LinkEnterEventHandler) linkEnterEvents::add);
+		events.addHandler((PersonArrivalEventHandler) arrivalEvents::add);
+		PrepareForSimUtils.createDefaultPrepareForSim(scenario).run();
+		new QSimBuilder(config).useDefaults().build(scenario, events).run();
+
+		Assert.assertEquals(2, linkEnterEvents.size());
+		Assert.assertEquals(Id.createLinkId("2"), linkEnterEvents.get(0).getLinkId());
+		Assert.assertEquals(Id.createLinkId("3"), linkEnterEvents.get(1).getLinkId());
+		Assert.assertEquals(1, arrivalEvents.size());
+		Assert.assertEquals(Id.createLinkId("3"), arrivalEvents.get(0).getLinkId());
+	}
+
+	private static Network createNetwork() {
+		Network network = NetworkUtils.createNetwork();
+		network.setName("test");
+		network.setCapacityPeriod(1800.0);
+		Node node1 = NetworkUtils.createAndAddNode(network, Id.createNodeId("1"), new Coord(0.0, 0.0));
+		Node node2 = NetworkUtils.createAndAddNode(network, Id.createNodeId("2"), new Coord(1000.0, 0.0, 12.5));
+		Node node3 = NetworkUtils.createAndAddNode(network, Id.createNodeId("3"), new Coord(1000.0, 1000.0));
+		Link link1 = NetworkUtils.createAndAddLink(network, Id.createLinkId("1"), node1, node2, 1000.0, 10.0, 2000.0, 1.0);
+		Link link2 = NetworkUtils.createAndAddLink(network, Id.createLinkId("2"), node2, node3, 1200.0, 15.0, 3600.0, 2.0);
+		Link link3 = NetworkUtils.createAndAddLink(network, Id.createLinkId("3"), node3, node1, 1500.0, 20.0, 1000.0, 1.5);
+		link1.setAllowedModes(new HashSet<>(Arrays.asList(TransportMode.car)));
+		List<String> modes = Arrays.asList(TransportMode.car, TransportMode.bike);
+		link2.setAllowedModes(new HashSet<>(modes));
+		link3.setAllowedModes(new HashSet<>(modes));
+		return network;
+	}
+}
@@ -0,0 +1,135 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RecursiveCoordinateBisectionTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.network.algorithms;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.IdMap;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.NetworkFactory;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.network.NetworkUtils;
+
+public class RecursiveCoordinateBisectionTest {
+
+	@Test
+	public void testGridIsSplitIntoQuadrants() {
+		Network net = createGrid(4);
+
+		IdMap<Node, Integer> partitions = new RecursiveCoordinateBisection(node -> 1).partition(net.getNodes().values(), 4);
+
+		Assert.assertEquals(16, partitions.size());
+		int[] sizes = new int[4];
+		for (Node node : net.getNodes().values()) {
+			int partition = partitions.get(node.getId());
+			sizes[partition]++;
+			int quadrant = (node.getCoord().getX() < 200 ? 0 : 1) * 2 + (node.getCoord().getY() < 200 ? 0 : 1);
+			// all nodes of a quadrant must be in the same partition as the lower left node of that quadrant
+			Node reference = net.getNodes().get(Id.create((quadrant / 2) * 2 + "_" + (quadrant % 2) * 2, Node.class));
+			Assert.assertEquals(partitions.get(reference.getId()), partitions.get(node.getId()));
+		}
+		for (int size : sizes) {
+			Assert.assertEquals(4, size);
+		}
+
+		int borderLinks = 0;
+		for (Link link : net.getLinks().values()) {
+			if (!partitions.get(link.getFromNode().getId()).equals(partitions.get(link.getToNode().getId()))) {
+				borderLinks++;
+			}
+		}
+		// only the links crossing the two cut lines (2 x 4 links in each direction)
+		Assert.assertEquals(16, borderLinks);
+	}
+
+	@Test
+	public void testUnevenNumberOfPartitions() {
+		Network net = createGrid(6);
+
+		IdMap<Node, Integer> partitions = new RecursiveCoordinateBisection(node -> 1).partition(net.getNodes().values(), 3);
+
+		int[] sizes = new int[3];
+		for (int partition : partitions.values()) {
+			sizes[partition]++;
+		}
+		Assert.assertEquals(12, sizes[0]);
+		Assert.assertEquals(12, sizes[1]);
+		Assert.assertEquals(12, sizes[2]);
+	}
+
+	@Test
+	public void testResultDoesNotDependOnNodeOrder() {
+		Network net = createGrid(5);
+		List<Node> nodes = new ArrayList<>(net.getNodes().values());
+
+		IdMap<Node, Integer> partitions1 = new RecursiveCoordinateBisection().partition(nodes, 5);
+		Collections.reverse(nodes);
+		IdMap<Node, Integer> partitions2 = new RecursiveCoordinateBisection().partition(nodes, 5);
+
+		for (Node node : nodes) {
+			Assert.assertEquals(partitions1.get(node.getId()), partitions2.get(node.getId()));
+		}
+	}
+
+	@Test
+	public void testMorePartitionsThanNodes() {
+		Network net = createGrid(2);
+
+		IdMap<Node, Integer> partitions = new RecursiveCoordinateBisection().partition(net.getNodes().values(), 7);
+
+		Assert.assertEquals(4, partitions.size());
+		for (int partition : partitions.values()) {
+			Assert.assertTrue(partition >= 0 && partition < 7);
+		}
+	}
+
+	private static Network createGrid(int size) {
+		Network net = NetworkUtils.createNetwork();
+		NetworkFactory nf = net.getFactory();
+		Node[][] nodes = new Node[size][size];
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				nodes[x][y] = nf.createNode(Id.create(x + "_" + y, Node.class), new Coord(x * 100., y * 100.));
+				net.addNode(nodes[x][y]);
+			}
+		}
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				if (x + 1 < size) {
+					net.addLink(nf.createLink(Id.create(x + "_" + y + "_x", Link.class), nodes[x][y], nodes[x + 1][y]));
+					net.addLink(nf.createLink(Id.create(x + "_" + y + "_xr", Link.class), nodes[x + 1][y], nodes[x][y]));
+				}
+				if (y + 1 < size) {
+					net.addLink(nf.createLink(Id.create(x + "_" + y + "_y", Link.class), nodes[x][y], nodes[x][y + 1]));
+					net.addLink(nf.createLink(Id.create(x + "_" + y + "_yr", Link.class), nodes[x][y + 1], nodes[x][y]));
+				}
+			}
+		}
+		return net;
+	}
+}
@@ -0,0 +1,203 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CompactPlanTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.api.core.v01.population.PopulationWriter;
+import org.matsim.api.core.v01.population.Route;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.network.io.MatsimNetworkReader;
+import org.matsim.core.population.io.PopulationReader;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.examples.ExamplesUtils;
+import org.matsim.pt.routes.ExperimentalTransitRoute;
+
+public class CompactPlanTest {
+
+	@Test
+	public void testSamePopulation() {
+		Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		new MatsimNetworkReader(scenario.getNetwork()).readURL(IOUtils.extendUrl(ExamplesUtils.getTestScenarioURL("berlin"), "network.xml.gz"));
+		new PopulationReader(scenario).readURL(IOUtils.extendUrl(ExamplesUtils.getTestScenarioURL("berlin"), "plans_hwh_1pct.xml.gz"));
+		Population population = scenario.getPopulation();
+		int i = 0;
+		for (Person person : population.getPersons().values()) {
+			Plan selectedPlan = person.getSelectedPlan();
+			selectedPlan.setScore(i % 2 == 0 ? null : 0.1 * i);
+			Plan plan = person.createCopyOfSelectedPlanAndMakeSelected();
+			plan.setScore(123.456 + i);
+			plan.setType("copy");
+			plan.getAttributes().putAttribute("number", i);
+			for (Leg leg : PopulationUtils.getLegs(plan)) {
+				leg.setTravelTime(600.0 + i);
+				leg.getAttributes().putAttribute("comment", "leg " + i);
+			}
+			Activity act = PopulationUtils.getFirstActivity(plan);
+			act.setCoord(new Coord(act.getCoord().getX() + 0.1, act.getCoord().getY(), 42.0));
+			person.setSelectedPlan(selectedPlan);
+			i++;
+		}
+		String expected = toXml(population);
+
+		PopulationUtils.compactNonSelectedPlans(population);
+		for (Person person : population.getPersons().values()) {
+			Assert.assertEquals(2, person.getPlans().size());
+			Assert.assertFalse(person.getSelectedPlan() instanceof CompactPlan);
+			Plan compactPlan = person.getPlans().get(1);
+			Assert.assertTrue(compactPlan instanceof CompactPlan);
+			Assert.assertTrue(((CompactPlan) compactPlan).isCompact());
+			Assert.assertSame(person, compactPlan.getPerson());
+		}
+		Assert.assertEquals(expected, toXml(population));
+
+		// writing decodes the plans, but does not change the population
+		for (Person person : population.getPersons().values()) {
+			Assert.assertFalse(((CompactPlan) person.getPlans().get(1)).isCompact());
+		}
+		Assert.assertEquals(expected, toXml(population));
+
+		// and selecting them keeps them decoded, as they may be changed
+		for (Person person : population.getPersons().values()) {
+			person.setSelectedPlan(person.getPlans().get(1));
+		}
+		toXml(population);
+		for (Person person : population.getPersons().values()) {
+			Assert.assertFalse(((CompactPlan) person.getPlans().get(1)).isCompact());
+		}
+	}
+
+	@Test
+	public void testChangesAreKept() {
+		Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		Population population = scenario.getPopulation();
+		Person person = population.getFactory().createPerson(Id.createPersonId("1"));
+		population.addPerson(person);
+		Plan selectedPlan = PopulationUtils.createPlan();
+		PopulationUtils.createAndAddActivityFromLinkId(selectedPlan, "home", Id.createLinkId("1"));
+		person.addPlan(selectedPlan);
+
+		Plan plan = PopulationUtils.createPlan();
+		Activity home = PopulationUtils.createAndAddActivityFromLinkId(plan, "home", Id.createLinkId("1"));
+		home.setEndTime(8 * 3600.0);
+		Leg leg = PopulationUtils.createAndAddLeg(plan, "car");
+		NetworkRoute route = population.getFactory().getRouteFactories().createRoute(NetworkRoute.class, Id.createLinkId("1"), Id.createLinkId("4"));
+		route.setLinkIds(Id.createLinkId("1"), Arrays.asList(Id.createLinkId("2"), Id.createLinkId("3")), Id.createLinkId("4"));
+		route.setVehicleId(Id.createVehicleId("car1"));
+		route.setDistance(1234.5);
+		route.setTravelCost(12.3);
+		leg.setRoute(route);
+		Activity work = PopulationUtils.createAndAddActivityFromLinkId(plan, "work", Id.createLinkId("4"));
+		work.setFacilityId(Id.create("f", org.matsim.facilities.ActivityFacility.class));
+		work.setMaximumDuration(1.0 / 3.0);
+		Leg ptLeg = PopulationUtils.createAndAddLeg(plan, "pt");
+		Route ptRoute = population.getFactory().getRouteFactories().createRoute(ExperimentalTransitRoute.class, Id.createLinkId("4"), Id.createLinkId("1"));
+		ptRoute.setRouteDescription("PT1===stop4===line1===route1===stop1");
+		ptLeg.setRoute(ptRoute);
+		PopulationUtils.createAndAddActivityFromLinkId(plan, "home", Id.createLinkId("1"));
+		person.addPlan(plan);
+
+		PopulationUtils.compactNonSelectedPlans(population);
+		CompactPlan compactPlan = (CompactPlan) person.getPlans().get(1);
+		Assert.assertTrue(compactPlan.isCompact());
+		Assert.assertEquals(5, compactPlan.getPlanElements().size());
+		Assert.assertFalse(compactPlan.isCompact());
+
+		Leg decodedLeg = (Leg) compactPlan.getPlanElements().get(1);
+		NetworkRoute decodedRoute = (NetworkRoute) decodedLeg.getRoute();
+		Assert.assertEquals(Id.createLinkId("1"), decodedRoute.getStartLinkId());
+		Assert.assertEquals(Id.createLinkId("4"), decodedRoute.getEndLinkId());
+		Assert.assertEquals(route.getLinkIds(), decodedRoute.getLinkIds());
+		Assert.assertEquals(Id.createVehicleId("car1"), decodedRoute.getVehicleId());
+		Assert.assertEquals(1234.5, decodedRoute.getDistance(), 0.0);
+		Assert.assertEquals(12.3, decodedRoute.getTravelCost(), 0.0);
+		Assert.assertEquals(1.0 / 3.0, ((Activity) compactPlan.getPlanElements().get(2)).getMaximumDuration(), 0.0);
+		Assert.assertEquals("f", ((Activity) compactPlan.getPlanElements().get(2)).getFacilityId().toString());
+		Route decodedPtRoute = ((Leg) compactPlan.getPlanElements().get(3)).getRoute();
+		Assert.assertTrue(decodedPtRoute instanceof ExperimentalTransitRoute);
+		Assert.assertEquals(ptRoute.getRouteDescription(), decodedPtRoute.getRouteDescription());
+
+		decodedLeg.setMode("bike");
+		decodedLeg.setRoute(null);
+		PopulationUtils.compactNonSelectedPlans(population);
+		Assert.assertTrue(compactPlan.isCompact());
+		Assert.assertSame(compactPlan, person.getPlans().get(1));
+		Assert.assertEquals("bike", ((Leg) compactPlan.getPlanElements().get(1)).getMode());
+		Assert.assertNull(((Leg) compactPlan.getPlanElements().get(1)).getRoute());
+		Assert.assertEquals(8 * 3600.0, ((Activity) compactPlan.getPlanElements().get(0)).getEndTime(), 0.0);
+	}
+
+	@Test
+	public void testUnsupportedPlanElements() {
+		Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		Population population = scenario.getPopulation();
+		Person person = population.getFactory().createPerson(Id.createPersonId("1"));
+		population.addPerson(person);
+		person.addPlan(PopulationUtils.createPlan());
+		Plan plan = PopulationUtils.createPlan();
+		plan.addActivity(PopulationUtils.unmodifiableActivity(PopulationUtils.createActivityFromLinkId("home", Id.create("1", Link.class))));
+		person.addPlan(plan);
+
+		PopulationUtils.compactNonSelectedPlans(population);
+		Assert.assertSame(plan, person.getPlans().get(1));
+	}
+
+	@Test
+	public void testCustomAttributes() {
+		Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		Population population = scenario.getPopulation();
+		Person person = population.getFactory().createPerson(Id.createPersonId("1"));
+		population.addPerson(person);
+		person.addPlan(PopulationUtils.createPlan());
+		Plan plain = PopulationUtils.createPlan();
+		plain.addActivity(PopulationUtils.createActivityFromLinkId("home", Id.create("1", Link.class)));
+		person.addPlan(plain);
+		Plan custom = PopulationUtils.createPlan();
+		custom.addActivity(PopulationUtils.createActivityFromLinkId("home", Id.create("1", Link.class)));
+		custom.getCustomAttributes().put("key", "value");
+		person.addPlan(custom);
+
+		PopulationUtils.compactNonSelectedPlans(population);
+		Assert.assertTrue(person.getPlans().get(1) instanceof CompactPlan);
+		Assert.assertFalse(((PlanImpl) plain).hasCustomAttributes());
+		Assert.assertSame(custom, person.getPlans().get(2));
+	}
+
+	private static String toXml(final Population population) {
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		new PopulationWriter(population).write(stream);
+		return stream.toString();
+	}
+}
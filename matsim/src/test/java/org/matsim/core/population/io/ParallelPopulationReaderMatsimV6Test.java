@@ -0,0 +1,174 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ParallelPopulationReaderMatsimV6Test.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population.io;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.network.io.MatsimNetworkReader;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.examples.ExamplesUtils;
+import org.matsim.testcases.MatsimTestUtils;
+import org.matsim.utils.objectattributes.AttributeConverter;
+
+public class ParallelPopulationReaderMatsimV6Test {
+
+	@Rule
+	public final MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testSameAsSequentialReader() {
+		String plansFile = writeTestPopulation();
+
+		Scenario sequential = readPopulation(plansFile, false);
+		Scenario parallel = readPopulation(plansFile, true);
+
+		Assert.assertEquals(sequential.getPopulation().getPersons().size(), parallel.getPopulation().getPersons().size());
+		Assert.assertEquals(new ArrayList<>(sequential.getPopulation().getPersons().keySet()),
+				new ArrayList<>(parallel.getPopulation().getPersons().keySet()));
+		Assert.assertEquals(sequential.getPopulation().getAttributes().toString(), parallel.getPopulation().getAttributes().toString());
+		Assert.assertEquals(toXml(sequential), toXml(parallel));
+		for (Person person : parallel.getPopulation().getPersons().values()) {
+			Assert.assertEquals(sequential.getPopulation().getPersons().get(person.getId()).getAttributes().getAttribute("home"),
+					person.getAttributes().getAttribute("home"));
+		}
+	}
+
+	@Test
+	public void testStreaming() {
+		String plansFile = writeTestPopulation();
+		Scenario sequential = readPopulation(plansFile, false);
+
+		Config config = createConfig(true);
+		Scenario scenario = ScenarioUtils.createScenario(config);
+		List<Id<Person>> personIds = new ArrayList<>();
+		List<Integer> numberOfPlanElements = new ArrayList<>();
+		StreamingPopulationReader reader = new StreamingPopulationReader(scenario);
+		reader.addAlgorithm(person -> {
+			personIds.add(person.getId());
+			numberOfPlanElements.add(person.getSelectedPlan().getPlanElements().size());
+		});
+		reader.readFile(plansFile);
+
+		Assert.assertEquals(new ArrayList<>(sequential.getPopulation().getPersons().keySet()), personIds);
+		for (int i = 0; i < personIds.size(); i++) {
+			Person person = sequential.getPopulation().getPersons().get(personIds.get(i));
+			Assert.assertEquals(person.getSelectedPlan().getPlanElements().size(), numberOfPlanElements.get(i).intValue());
+		}
+	}
+
+	private String writeTestPopulation() {
+		Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		new MatsimNetworkReader(scenario.getNetwork()).readURL(IOUtils.extendUrl(ExamplesUtils.getTestScenarioURL("berlin"), "network.xml.gz"));
+		new PopulationReader(scenario).readURL(IOUtils.extendUrl(ExamplesUtils.getTestScenarioURL("berlin"), "plans_hwh_1pct.xml.gz"));
+		scenario.getPopulation().getAttributes().putAttribute("description", "test population");
+		int i = 0;
+		for (Person person : scenario.getPopulation().getPersons().values()) {
+			i++;
+			person.getAttributes().putAttribute("number", i);
+			if (i % 3 == 0) {
+				person.getAttributes().putAttribute("home", new Home("home of " + person.getId()));
+			}
+			Plan plan = person.getSelectedPlan();
+			plan.getAttributes().putAttribute("planNumber", (double) i);
+			for (PlanElement pe : plan.getPlanElements()) {
+				if (pe instanceof Activity && i % 2 == 0) {
+					((Activity) pe).getAttributes().putAttribute("visited", true);
+				} else if (pe instanceof Leg && i % 5 == 0) {
+					((Leg) pe).getAttributes().putAttribute("comment", "leg of " + person.getId());
+				}
+			}
+		}
+		String plansFile = this.utils.getOutputDirectory() + "plans_v6.xml.gz";
+		PopulationWriter writer = new PopulationWriter(scenario.getPopulation(), scenario.getNetwork());
+		writer.putAttributeConverter(Home.class, new HomeConverter());
+		writer.writeV6(plansFile);
+		return plansFile;
+	}
+
+	private static Config createConfig(boolean parallel) {
+		Config config = ConfigUtils.createConfig();
+		config.plans().setParallelReading(parallel);
+		config.global().setNumberOfThreads(4);
+		return config;
+	}
+
+	private static Scenario readPopulation(String plansFile, boolean parallel) {
+		Scenario scenario = ScenarioUtils.createScenario(createConfig(parallel));
+		new MatsimNetworkReader(scenario.getNetwork()).readURL(IOUtils.extendUrl(ExamplesUtils.getTestScenarioURL("berlin"), "network.xml.gz"));
+		PopulationReader reader = new PopulationReader(scenario);
+		reader.putAttributeConverter(Home.class, new HomeConverter());
+		reader.readFile(plansFile);
+		return scenario;
+	}
+
+	private static String toXml(Scenario scenario) {
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		PopulationWriter writer = new PopulationWriter(scenario.getPopulation(), scenario.getNetwork());
+		writer.putAttributeConverter(Home.class, new HomeConverter());
+		writer.writeV6(stream);
+		return stream.toString();
+	}
+
+	private static class Home {
+		private final String description;
+
+		Home(String description) {
+			this.description = description;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Home && ((Home) o).description.equals(this.description);
+		}
+
+		@Override
+		public int hashCode() {
+			return this.description.hashCode();
+		}
+	}
+
+	private static class HomeConverter implements AttributeConverter<Home> {
+		@Override
+		public Home convert(String value) {
+			return new Home(value);
+		}
+
+		@Override
+		public String convertToString(Object o) {
+			return ((Home) o).description;
+		}
+	}
+}
@@ -0,0 +1,108 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ParallelPopulationWriterV6Test.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.network.io.MatsimNetworkReader;
+import org.matsim.core.population.PopulationUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.examples.ExamplesUtils;
+import org.matsim.testcases.MatsimTestUtils;
+
+public class ParallelPopulationWriterV6Test {
+
+	@Rule
+	public final MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testSameAsSequentialWriter() throws IOException {
+		Scenario scenario = loadScenario();
+		scenario.getPopulation().getAttributes().putAttribute("description", "test population");
+		int i = 0;
+		for (Person person : scenario.getPopulation().getPersons().values()) {
+			person.getAttributes().putAttribute("number", i++);
+		}
+
+		String sequentialFile = this.utils.getOutputDirectory() + "sequential.xml";
+		new PopulationWriter(scenario.getPopulation(), scenario.getNetwork()).writeV6(sequentialFile);
+		String expected = readFile(sequentialFile);
+
+		for (String extension : new String[] { ".xml", ".xml.gz", ".xml.zst" }) {
+			String parallelFile = this.utils.getOutputDirectory() + "parallel" + extension;
+			PopulationWriter writer = new PopulationWriter(scenario.getPopulation(), scenario.getNetwork());
+			writer.setNumberOfThreads(4);
+			writer.writeV6(parallelFile);
+			Assert.assertEquals("different content of " + parallelFile, expected, readFile(parallelFile));
+		}
+
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		PopulationWriter writer = new PopulationWriter(scenario.getPopulation(), scenario.getNetwork());
+		writer.setNumberOfThreads(4);
+		writer.writeV6(stream);
+		Assert.assertEquals(expected, new String(stream.toByteArray(), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testReadGzippedMembers() {
+		Scenario scenario = loadScenario();
+		String file = this.utils.getOutputDirectory() + "plans.xml.gz";
+		PopulationWriter writer = new PopulationWriter(scenario.getPopulation(), scenario.getNetwork());
+		writer.setNumberOfThreads(2);
+		writer.writeV6(file);
+
+		Scenario scenario2 = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		new PopulationReader(scenario2).readFile(file);
+		// the persons are written sorted by id
+		Assert.assertEquals(new ArrayList<>(PopulationUtils.getSortedPersons(scenario.getPopulation()).keySet()),
+				new ArrayList<>(scenario2.getPopulation().getPersons().keySet()));
+		for (Person person : scenario2.getPopulation().getPersons().values()) {
+			Assert.assertEquals(scenario.getPopulation().getPersons().get(person.getId()).getSelectedPlan().getPlanElements().size(),
+					person.getSelectedPlan().getPlanElements().size());
+		}
+	}
+
+	private static Scenario loadScenario() {
+		Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		new MatsimNetworkReader(scenario.getNetwork()).readURL(IOUtils.extendUrl(ExamplesUtils.getTestScenarioURL("berlin"), "network.xml.gz"));
+		new PopulationReader(scenario).readURL(IOUtils.extendUrl(ExamplesUtils.getTestScenarioURL("berlin"), "plans_hwh_1pct.xml.gz"));
+		return scenario;
+	}
+
+	private static String readFile(final String filename) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (InputStream in = IOUtils.getInputStream(IOUtils.getFileUrl(filename))) {
+			IOUtils.copyStream(in, bytes);
+		}
+		return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+	}
+}
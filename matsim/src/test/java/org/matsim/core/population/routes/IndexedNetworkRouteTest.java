@@ -0,0 +1,115 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * IndexedNetworkRouteTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population.routes;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.population.PopulationUtils;
+
+public class IndexedNetworkRouteTest extends AbstractNetworkRouteTest {
+
+	@Override
+	public NetworkRoute getNetworkRouteInstance(final Id<Link> fromLinkId, final Id<Link> toLinkId, final Network network) {
+		return (NetworkRoute) new IndexedNetworkRouteFactory().createRoute(fromLinkId, toLinkId);
+	}
+
+	@Test
+	public void testClone() {
+		Id<Link> id1 = Id.create(1, Link.class);
+		Id<Link> id2 = Id.create(2, Link.class);
+		NetworkRoute route1 = getNetworkRouteInstance(id1, id2, null);
+		List<Id<Link>> srcRoute = new ArrayList<>();
+		srcRoute.add(Id.create(3, Link.class));
+		srcRoute.add(Id.create(4, Link.class));
+		route1.setLinkIds(id1, srcRoute, id2);
+
+		NetworkRoute route2 = (NetworkRoute) route1.clone();
+		Assert.assertSame(route1.getLinkIds(), route2.getLinkIds());
+
+		srcRoute.add(Id.create(5, Link.class));
+		route1.setLinkIds(id1, srcRoute, id2);
+
+		Assert.assertEquals(3, route1.getLinkIds().size());
+		Assert.assertEquals(2, route2.getLinkIds().size());
+	}
+
+	@Test
+	public void testPackedLinks() {
+		IndexedNetworkRouteFactory factory = new IndexedNetworkRouteFactory(true);
+		Id<Link> startLinkId = Id.create("packed-start", Link.class);
+		Id<Link> endLinkId = Id.create("packed-end", Link.class);
+		List<Id<Link>> linkIds = new ArrayList<>();
+		for (int i = 0; i < 200; i++) {
+			// mix of small and large differences between the indices, including negative ones
+			linkIds.add(Id.create("packed-" + (i % 3 == 0 ? 1000 - i : i), Link.class));
+		}
+		linkIds.add(Id.create("packed-7", Link.class));
+
+		NetworkRoute route1 = (NetworkRoute) factory.createRoute(startLinkId, endLinkId);
+		route1.setLinkIds(startLinkId, new ArrayList<>(linkIds), endLinkId);
+		Assert.assertEquals(linkIds, route1.getLinkIds());
+		Assert.assertEquals(linkIds.hashCode(), route1.getLinkIds().hashCode());
+		Assert.assertEquals(route1.getLinkIds(), linkIds);
+
+		// sequential and random access
+		for (int i = 0; i < linkIds.size(); i++) {
+			Assert.assertEquals(linkIds.get(i), route1.getLinkIds().get(i));
+		}
+		for (int i : new int[] { 150, 3, 3, 200, 0, 199 }) {
+			Assert.assertEquals(linkIds.get(i), route1.getLinkIds().get(i));
+		}
+		// a second sequential pass, e.g. by the next driver of a shared route
+		for (int i = 0; i < linkIds.size(); i++) {
+			Assert.assertEquals(linkIds.get(i), route1.getLinkIds().get(i));
+		}
+
+		// routes with the same links share them
+		NetworkRoute route2 = (NetworkRoute) factory.createRoute(startLinkId, endLinkId);
+		route2.setLinkIds(startLinkId, new ArrayList<>(linkIds), endLinkId);
+		Assert.assertSame(route1.getLinkIds(), route2.getLinkIds());
+
+		NetworkRoute subRoute = route1.getSubRoute(linkIds.get(10), linkIds.get(20));
+		Assert.assertEquals(linkIds.subList(11, 20), subRoute.getLinkIds());
+		Assert.assertEquals(Arrays.asList(linkIds.get(1), linkIds.get(2)), route1.getSubRoute(linkIds.get(0), linkIds.get(3)).getLinkIds());
+		Assert.assertEquals(linkIds, route1.getSubRoute(startLinkId, endLinkId).getLinkIds());
+		Assert.assertEquals(linkIds.subList(0, 5), route1.getSubRoute(startLinkId, linkIds.get(5)).getLinkIds());
+		Assert.assertEquals(linkIds.subList(196, 201), route1.getSubRoute(linkIds.get(195), endLinkId).getLinkIds());
+		// packed-7 is in the route twice, the sub route starts after the first one
+		Assert.assertEquals(linkIds.subList(8, 10), route1.getSubRoute(linkIds.get(7), linkIds.get(10)).getLinkIds());
+		Assert.assertEquals(0, route1.getSubRoute(endLinkId, endLinkId).getLinkIds().size());
+	}
+
+	@Test
+	public void testDefaultNetworkRouteType() {
+		NetworkRoute route = PopulationUtils.createPopulation(ConfigUtils.createConfig()).getFactory().getRouteFactories()
+				.createRoute(NetworkRoute.class, Id.create(1, Link.class), Id.create(2, Link.class));
+		Assert.assertTrue(route instanceof IndexedNetworkRouteImpl);
+	}
+
+}
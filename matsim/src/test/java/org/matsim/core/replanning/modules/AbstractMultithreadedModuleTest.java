@@ -20,13 +20,27 @@
 
 package org.matsim.core.replanning.modules;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
 import org.apache.log4j.Logger;
 import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
+import org.matsim.analysis.IterationStopWatch;
 import org.matsim.api.core.v01.population.Plan;
 import org.matsim.core.config.Config;
 import org.matsim.core.config.groups.GlobalConfigGroup;
+import org.matsim.core.config.groups.GlobalConfigGroup.ReplanningScheduling;
+import org.matsim.core.population.PopulationUtils;
 import org.matsim.core.population.algorithms.PlanAlgorithm;
+import org.matsim.core.replanning.ReplanningContext;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.testcases.MatsimTestUtils;
 
 /**
  * @author mrieser
@@ -35,6 +49,9 @@ public class AbstractMultithreadedModuleTest {
 
 	private final static Logger log = Logger.getLogger(AbstractMultithreadedModuleTest.class);
 
+	@Rule
+	public MatsimTestUtils utils = new MatsimTestUtils();
+
 	@Test
 	public void testGetNumOfThreads() {
 		Config config = new Config();
@@ -60,6 +77,143 @@ public class AbstractMultithreadedModuleTest {
 
 	}
 
+	@Test
+	public void testDynamicScheduling() {
+		for (ReplanningScheduling scheduling : ReplanningScheduling.values()) {
+			Map<Plan, PlanAlgorithm> handledBy = Collections.synchronizedMap(new IdentityHashMap<>());
+			Set<PlanAlgorithm> algos = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+			AbstractMultithreadedModule testee = new AbstractMultithreadedModule(3, scheduling) {
+				@Override
+				public PlanAlgorithm getPlanAlgoInstance() {
+					PlanAlgorithm algo = new PlanAlgorithm() {
+						@Override
+						public void run(Plan plan) {
+							Assert.assertNull("plan handled twice", handledBy.put(plan, this));
+						}
+					};
+					algos.add(algo);
+					return algo;
+				}
+			};
+
+			IterationStopWatch stopwatch = new IterationStopWatch();
+			stopwatch.beginIteration(0);
+			stopwatch.beginOperation("replanning");
+			testee.prepareReplanning(new ReplanningContext() {
+				@Override
+				public int getIteration() {
+					return 0;
+				}
+				@Override
+				public IterationStopWatch getStopwatch() {
+					return stopwatch;
+				}
+			});
+			Plan[] plans = new Plan[1000];
+			for (int i = 0; i < plans.length; i++) {
+				plans[i] = PopulationUtils.createPlan();
+				testee.handlePlan(plans[i]);
+			}
+			testee.finishReplanning();
+			stopwatch.endOperation("replanning");
+			stopwatch.endIteration();
+
+			Assert.assertEquals(3, algos.size());
+			Assert.assertEquals(plans.length, handledBy.size());
+			for (Plan plan : plans) {
+				Assert.assertTrue(algos.contains(handledBy.get(plan)));
+			}
+			stopwatch.writeTextFile(this.utils.getOutputDirectory() + "stopwatch_" + scheduling);
+			stopwatch.writeGraphFile(this.utils.getOutputDirectory() + "stopwatch_" + scheduling);
+		}
+	}
+
+	@Test
+	public void testStopwatchWithoutIteration() {
+		AbstractMultithreadedModule testee = new AbstractMultithreadedModule(2) {
+			@Override
+			public PlanAlgorithm getPlanAlgoInstance() {
+				return plan -> {};
+			}
+		};
+		IterationStopWatch stopwatch = new IterationStopWatch();
+		testee.prepareReplanning(new ReplanningContext() {
+			@Override
+			public int getIteration() {
+				return 0;
+			}
+			@Override
+			public IterationStopWatch getStopwatch() {
+				return stopwatch;
+			}
+		});
+		testee.handlePlan(PopulationUtils.createPlan());
+		testee.handlePlan(PopulationUtils.createPlan());
+		testee.finishReplanning(); // must not fail although the stop watch has no iteration to record the threads in
+	}
+
+	@Test
+	public void testStopwatchWithModulesOfSameAlgorithm() throws IOException {
+		IterationStopWatch stopwatch = new IterationStopWatch();
+		ReplanningContext context = new ReplanningContext() {
+			@Override
+			public int getIteration() {
+				return 0;
+			}
+			@Override
+			public IterationStopWatch getStopwatch() {
+				return stopwatch;
+			}
+		};
+		stopwatch.beginIteration(0);
+		for (int m = 0; m < 2; m++) {
+			AbstractMultithreadedModule testee = new AbstractMultithreadedModule(2) {
+				@Override
+				public PlanAlgorithm getPlanAlgoInstance() {
+					return new DummyPlanAlgo();
+				}
+			};
+			testee.prepareReplanning(context);
+			testee.handlePlan(PopulationUtils.createPlan());
+			testee.handlePlan(PopulationUtils.createPlan());
+			testee.finishReplanning();
+		}
+		stopwatch.endIteration();
+
+		String filename = this.utils.getOutputDirectory() + "stopwatch";
+		stopwatch.writeTextFile(filename);
+		try (BufferedReader reader = IOUtils.getBufferedReader(filename + ".txt")) {
+			int threadOperations = 0;
+			for (String identifier : reader.readLine().split("\t")) {
+				if (identifier.startsWith("BEGIN " + DummyPlanAlgo.class.getSimpleName())) {
+					threadOperations++;
+				}
+			}
+			// two threads of each module
+			Assert.assertEquals(4, threadOperations);
+		}
+	}
+
+	@Test
+	public void testCrashingThread_dynamicScheduling() {
+		try {
+			AbstractMultithreadedModule testee = new AbstractMultithreadedModule(2, ReplanningScheduling.dynamic) {
+				@Override
+				public PlanAlgorithm getPlanAlgoInstance() {
+					return new CrashingPlanAlgo();
+				}
+			};
+			testee.prepareReplanning(null);
+			for (int i = 0; i < 100; i++) {
+				testee.handlePlan(null);
+			}
+			testee.finishReplanning();
+			Assert.fail("expected exception, got none.");
+		} catch (RuntimeException e) {
+			log.info("Catched expected exception.", e);
+		}
+	}
+
 	private static class DummyAbstractMultithreadedModule extends AbstractMultithreadedModule {
 		public DummyAbstractMultithreadedModule(GlobalConfigGroup globalConfigGroup) {
 			super(globalConfigGroup);
@@ -80,6 +234,12 @@ public class AbstractMultithreadedModuleTest {
 		}
 	}
 
+	private static class DummyPlanAlgo implements PlanAlgorithm {
+		@Override
+		public void run(Plan plan) {
+		}
+	}
+
 	private static class CrashingPlanAlgo implements PlanAlgorithm {
 		@Override
 		public void run(Plan plan) {
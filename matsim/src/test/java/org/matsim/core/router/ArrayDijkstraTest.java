@@ -0,0 +1,138 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ArrayDijkstraTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.config.groups.PlanCalcScoreConfigGroup;
+import org.matsim.core.network.io.MatsimNetworkReader;
+import org.matsim.core.router.costcalculators.FreespeedTravelTimeAndDisutility;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculator.Path;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.examples.ExamplesUtils;
+import org.matsim.vehicles.Vehicle;
+
+public class ArrayDijkstraTest extends AbstractLeastCostPathCalculatorTest {
+
+	@Override
+	protected LeastCostPathCalculator getLeastCostPathCalculator(final Network network) {
+		FreespeedTravelTimeAndDisutility travelTimeCostCalculator = new FreespeedTravelTimeAndDisutility(new PlanCalcScoreConfigGroup());
+		return new ArrayDijkstraFactory().createPathCalculator(network, travelTimeCostCalculator, travelTimeCostCalculator);
+	}
+
+	public void testSameResultsAsFastDijkstra() {
+		Network network = loadBerlinNetwork();
+		CongestedTravelTime travelTimeCostCalculator = new CongestedTravelTime();
+		assertSameResults(network,
+				new FastDijkstraFactory(false).createPathCalculator(network, travelTimeCostCalculator, travelTimeCostCalculator),
+				new ArrayDijkstraFactory(false).createPathCalculator(network, travelTimeCostCalculator, travelTimeCostCalculator));
+	}
+
+	public void testSameResultsAsFastDijkstra_deadEndPruning() {
+		Network network = loadBerlinNetwork();
+		CongestedTravelTime travelTimeCostCalculator = new CongestedTravelTime();
+		assertSameResults(network,
+				new FastDijkstraFactory(true).createPathCalculator(network, travelTimeCostCalculator, travelTimeCostCalculator),
+				new ArrayDijkstraFactory(true).createPathCalculator(network, travelTimeCostCalculator, travelTimeCostCalculator));
+	}
+
+	public void testCalculatorsShareSearchState() {
+		Network network = loadBerlinNetwork();
+		ArrayDijkstraFactory factory = new ArrayDijkstraFactory();
+		FreespeedTravelTimeAndDisutility freespeed = new FreespeedTravelTimeAndDisutility(new PlanCalcScoreConfigGroup());
+		CongestedTravelTime congested = new CongestedTravelTime();
+		ArrayDijkstra router1 = (ArrayDijkstra) factory.createPathCalculator(network, freespeed, freespeed);
+		ArrayDijkstra router2 = (ArrayDijkstra) factory.createPathCalculator(network, congested, congested);
+		LeastCostPathCalculator reference1 = new FastDijkstraFactory().createPathCalculator(network, freespeed, freespeed);
+		LeastCostPathCalculator reference2 = new FastDijkstraFactory().createPathCalculator(network, congested, congested);
+
+		List<Node> nodes = new ArrayList<>(network.getNodes().values());
+		Random random = new Random(1234);
+		for (int i = 0; i < 50; i++) {
+			Node from = nodes.get(random.nextInt(nodes.size()));
+			Node to = nodes.get(random.nextInt(nodes.size()));
+			assertSamePath(reference1.calcLeastCostPath(from, to, 8 * 3600, null, null), router1.calcLeastCostPath(from, to, 8 * 3600, null, null));
+			assertSamePath(reference2.calcLeastCostPath(from, to, 8 * 3600, null, null), router2.calcLeastCostPath(from, to, 8 * 3600, null, null));
+			assertSame(router1.state, router2.state);
+		}
+	}
+
+	/*package*/ static Network loadBerlinNetwork() {
+		Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		new MatsimNetworkReader(scenario.getNetwork()).readURL(IOUtils.extendUrl(ExamplesUtils.getTestScenarioURL("berlin"), "network.xml.gz"));
+		return scenario.getNetwork();
+	}
+
+	/*package*/ static void assertSameResults(final Network network, final LeastCostPathCalculator expectedRouter, final LeastCostPathCalculator actualRouter) {
+		List<Node> nodes = new ArrayList<>(network.getNodes().values());
+		Random random = new Random(4711);
+		for (int i = 0; i < 500; i++) {
+			Node from = nodes.get(random.nextInt(nodes.size()));
+			Node to = nodes.get(random.nextInt(nodes.size()));
+			double time = random.nextInt(24 * 3600);
+			assertSamePath(expectedRouter.calcLeastCostPath(from, to, time, null, null), actualRouter.calcLeastCostPath(from, to, time, null, null));
+		}
+	}
+
+	private static void assertSamePath(final Path expected, final Path actual) {
+		if (expected == null) {
+			assertNull(actual);
+			return;
+		}
+		assertEquals(expected.links, actual.links);
+		assertEquals(expected.nodes, actual.nodes);
+		assertEquals(expected.travelCost, actual.travelCost, 0.0);
+		assertEquals(expected.travelTime, actual.travelTime, 0.0);
+	}
+
+	/**
+	 * Travel times that are up to three times the free speed travel time, depending on the link and the time of day.
+	 */
+	/*package*/ static class CongestedTravelTime implements TravelTime, TravelDisutility {
+		@Override
+		public double getLinkTravelTime(Link link, double time, Person person, Vehicle vehicle) {
+			double freespeedTravelTime = link.getLength() / link.getFreespeed();
+			return freespeedTravelTime * (1 + (Math.abs(link.getId().hashCode()) + (int) (time / 900)) % 3);
+		}
+
+		@Override
+		public double getLinkTravelDisutility(Link link, double time, Person person, Vehicle vehicle) {
+			return getLinkTravelTime(link, time, person, vehicle);
+		}
+
+		@Override
+		public double getLinkMinimumTravelDisutility(Link link) {
+			return link.getLength() / link.getFreespeed();
+		}
+	}
+}
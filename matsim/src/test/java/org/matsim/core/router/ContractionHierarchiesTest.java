@@ -0,0 +1,178 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ContractionHierarchiesTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.config.groups.PlanCalcScoreConfigGroup;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.router.costcalculators.FreespeedTravelTimeAndDisutility;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculator.Path;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.vehicles.Vehicle;
+
+public class ContractionHierarchiesTest extends AbstractLeastCostPathCalculatorTest {
+
+	@Override
+	protected LeastCostPathCalculator getLeastCostPathCalculator(Network network) {
+		FreespeedTravelTimeAndDisutility travelTimeCostCalculator = new FreespeedTravelTimeAndDisutility(new PlanCalcScoreConfigGroup());
+		return new ContractionHierarchiesFactory().createPathCalculator(network, travelTimeCostCalculator, travelTimeCostCalculator);
+	}
+
+	public void testSameResultsAsFastDijkstra_freespeed() {
+		Network network = createGridNetwork(25, 20);
+		FreespeedTravelTimeAndDisutility travelTimeCostCalculator = new FreespeedTravelTimeAndDisutility(new PlanCalcScoreConfigGroup());
+		assertSameResults(network, travelTimeCostCalculator, travelTimeCostCalculator);
+	}
+
+	public void testSameResultsAsFastDijkstra_timeDependent() {
+		Network network = createGridNetwork(25, 20);
+		CongestedTravelTime travelTimeCostCalculator = new CongestedTravelTime();
+		assertSameResults(network, travelTimeCostCalculator, travelTimeCostCalculator);
+	}
+
+	public void testCustomizationIsReused() {
+		Network network = createGridNetwork(5, 5);
+		ContractionHierarchiesFactory factory = new ContractionHierarchiesFactory();
+		CongestedTravelTime travelTimeCostCalculator = new CongestedTravelTime();
+		LeastCostPathCalculator router1 = factory.createPathCalculator(network, travelTimeCostCalculator, travelTimeCostCalculator);
+		LeastCostPathCalculator router2 = factory.createPathCalculator(network, new CongestedTravelTime(), new CongestedTravelTime());
+		assertSame(((ContractionHierarchies) router1).getCustomization(), ((ContractionHierarchies) router2).getCustomization());
+
+		FreespeedTravelTimeAndDisutility otherCosts = new FreespeedTravelTimeAndDisutility(new PlanCalcScoreConfigGroup());
+		LeastCostPathCalculator router3 = factory.createPathCalculator(network, otherCosts, otherCosts);
+		assertNotSame(((ContractionHierarchies) router1).getCustomization(), ((ContractionHierarchies) router3).getCustomization());
+	}
+
+	public void testLinkWeightsAreComputedOncePerTravelDisutility() {
+		Network network = createGridNetwork(5, 5);
+		ContractionHierarchiesFactory factory = new ContractionHierarchiesFactory();
+		int[] minimumCalls = new int[1];
+		CongestedTravelTime travelTimeCostCalculator = new CongestedTravelTime() {
+			@Override
+			public double getLinkMinimumTravelDisutility(Link link) {
+				minimumCalls[0]++;
+				return super.getLinkMinimumTravelDisutility(link);
+			}
+		};
+		LeastCostPathCalculator router1 = factory.createPathCalculator(network, travelTimeCostCalculator, travelTimeCostCalculator);
+		int callsForFirstRouter = minimumCalls[0];
+		assertEquals(network.getLinks().size(), callsForFirstRouter);
+		LeastCostPathCalculator router2 = factory.createPathCalculator(network, travelTimeCostCalculator, travelTimeCostCalculator);
+		assertEquals(callsForFirstRouter, minimumCalls[0]);
+		assertNotSame(router1, router2);
+		assertSame(((ContractionHierarchies) router1).getCustomization(), ((ContractionHierarchies) router2).getCustomization());
+	}
+
+	public void testNoRoute() {
+		Network network = createGridNetwork(3, 3);
+		Node isolated = NetworkUtils.createAndAddNode(network, Id.createNodeId("isolated"), new Coord(1000, 1000));
+		Node other = network.getNodes().get(Id.createNodeId("0_0"));
+		NetworkUtils.createAndAddLink(network, Id.createLinkId("oneway"), isolated, other, 100, 10, 1000, 1);
+		FreespeedTravelTimeAndDisutility travelTimeCostCalculator = new FreespeedTravelTimeAndDisutility(new PlanCalcScoreConfigGroup());
+		LeastCostPathCalculator router = new ContractionHierarchiesFactory().createPathCalculator(network, travelTimeCostCalculator, travelTimeCostCalculator);
+		assertNull(router.calcLeastCostPath(other, isolated, 0.0, null, null));
+		assertEquals(4, router.calcLeastCostPath(isolated, network.getNodes().get(Id.createNodeId("2_2")), 0.0, null, null).links.size() - 1);
+	}
+
+	private static void assertSameResults(Network network, TravelDisutility travelCosts, TravelTime travelTimes) {
+		LeastCostPathCalculator dijkstra = new FastDijkstraFactory().createPathCalculator(network, travelCosts, travelTimes);
+		LeastCostPathCalculator ch = new ContractionHierarchiesFactory().createPathCalculator(network, travelCosts, travelTimes);
+		List<Node> nodes = new ArrayList<>(network.getNodes().values());
+		Random random = new Random(4711);
+		for (int i = 0; i < 500; i++) {
+			Node from = nodes.get(random.nextInt(nodes.size()));
+			Node to = nodes.get(random.nextInt(nodes.size()));
+			double time = random.nextInt(24 * 3600);
+			Path expected = dijkstra.calcLeastCostPath(from, to, time, null, null);
+			Path actual = ch.calcLeastCostPath(from, to, time, null, null);
+			String message = "route " + i + " from " + from.getId() + " to " + to.getId() + " at " + time;
+			assertEquals(message, expected.links, actual.links);
+			assertEquals(message, expected.nodes, actual.nodes);
+			assertEquals(message, expected.travelCost, actual.travelCost, 0.0);
+			assertEquals(message, expected.travelTime, actual.travelTime, 0.0);
+		}
+	}
+
+	/**
+	 * A grid with links of equal length in both directions, so there are many routes with the same cost.
+	 * The link ids are not related to the position of the links.
+	 */
+	private static Network createGridNetwork(int width, int height) {
+		Network network = NetworkUtils.createNetwork();
+		Node[][] nodes = new Node[width][height];
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				nodes[x][y] = NetworkUtils.createAndAddNode(network, Id.createNodeId(x + "_" + y), new Coord(100 * x, 100 * y));
+			}
+		}
+		Random random = new Random(42);
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				if (x + 1 < width) {
+					addLinks(network, nodes[x][y], nodes[x + 1][y], random);
+				}
+				if (y + 1 < height) {
+					addLinks(network, nodes[x][y], nodes[x][y + 1], random);
+				}
+			}
+		}
+		return network;
+	}
+
+	private static void addLinks(Network network, Node a, Node b, Random random) {
+		// most links have the same speed, some are faster
+		double freespeed = random.nextInt(5) == 0 ? 20.0 : 10.0;
+		NetworkUtils.createAndAddLink(network, Id.createLinkId(random.nextInt(1000000) + "_" + a.getId() + "_" + b.getId()), a, b, 100, freespeed, 1000, 1);
+		NetworkUtils.createAndAddLink(network, Id.createLinkId(random.nextInt(1000000) + "_" + b.getId() + "_" + a.getId()), b, a, 100, freespeed, 1000, 1);
+	}
+
+	/**
+	 * Travel times that are up to three times the free speed travel time, depending on the link and the time of day.
+	 */
+	private static class CongestedTravelTime implements TravelTime, TravelDisutility {
+		@Override
+		public double getLinkTravelTime(Link link, double time, Person person, Vehicle vehicle) {
+			double freespeedTravelTime = link.getLength() / link.getFreespeed();
+			return freespeedTravelTime * (1 + (Math.abs(link.getId().hashCode()) + (int) (time / 900)) % 3);
+		}
+
+		@Override
+		public double getLinkTravelDisutility(Link link, double time, Person person, Vehicle vehicle) {
+			return getLinkTravelTime(link, time, person, vehicle);
+		}
+
+		@Override
+		public double getLinkMinimumTravelDisutility(Link link) {
+			return link.getLength() / link.getFreespeed();
+		}
+	}
+}
@@ -0,0 +1,141 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ManyToManyRoutingServiceTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.config.groups.GlobalConfigGroup;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.router.ManyToManyRoutingService.TravelMatrix;
+import org.matsim.core.router.costcalculators.OnlyTimeDependentTravelDisutilityFactory;
+import org.matsim.core.router.costcalculators.TravelDisutilityFactory;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.core.trafficmonitoring.FreeSpeedTravelTime;
+
+public class ManyToManyRoutingServiceTest {
+
+	@Test
+	public void testManyToMany() {
+		Network network = NetworkUtils.createNetwork();
+		List<Node> nodes = new ArrayList<>();
+		for (int x = 0; x < 10; x++) {
+			for (int y = 0; y < 10; y++) {
+				nodes.add(NetworkUtils.createAndAddNode(network, Id.createNodeId(x + "_" + y), new Coord(100 * x, 100 * y)));
+			}
+		}
+		for (int x = 0; x < 10; x++) {
+			for (int y = 0; y < 10; y++) {
+				Node node = nodes.get(10 * x + y);
+				if (x < 9) {
+					Node other = nodes.get(10 * (x + 1) + y);
+					NetworkUtils.createAndAddLink(network, Id.createLinkId(node.getId() + "-" + other.getId()), node, other, 100, 10 + y, 1000, 1);
+					NetworkUtils.createAndAddLink(network, Id.createLinkId(other.getId() + "-" + node.getId()), other, node, 100, 10 + y, 1000, 1);
+				}
+				if (y < 9) {
+					Node other = nodes.get(10 * x + y + 1);
+					NetworkUtils.createAndAddLink(network, Id.createLinkId(node.getId() + "-" + other.getId()), node, other, 100, 10 + x, 1000, 1);
+					NetworkUtils.createAndAddLink(network, Id.createLinkId(other.getId() + "-" + node.getId()), other, node, 100, 10 + x, 1000, 1);
+				}
+			}
+		}
+		Node isolated = NetworkUtils.createAndAddNode(network, Id.createNodeId("isolated"), new Coord(-100, -100));
+		List<Node> destinations = new ArrayList<>(nodes.subList(0, 30));
+		destinations.add(isolated);
+
+		ManyToManyRoutingService service = createService(network, 4);
+		TravelMatrix matrix = service.calcManyToMany(TransportMode.car, nodes, destinations, 8 * 3600);
+		service.notifyShutdown(null);
+		OneToManyPathCalculator calculator = createService(network, 1).createOneToManyPathCalculator(TransportMode.car);
+		for (int o = 0; o < nodes.size(); o++) {
+			calculator.calculate(nodes.get(o), 8 * 3600, null, null);
+			for (int d = 0; d < destinations.size(); d++) {
+				Node destination = destinations.get(d);
+				Assert.assertEquals(calculator.getTravelTime(destination), matrix.getTravelTime(o, d), 0.0);
+				Assert.assertEquals(calculator.getTravelDisutility(destination), matrix.getTravelDisutility(o, d), 0.0);
+				Assert.assertEquals(calculator.getDistance(destination), matrix.getDistance(o, d), 0.0);
+			}
+			Assert.assertEquals(Double.POSITIVE_INFINITY, matrix.getTravelTime(o, destinations.size() - 1), 0.0);
+		}
+		Assert.assertEquals(0.0, matrix.getTravelTime(0, 0), 0.0);
+		Assert.assertEquals(200.0, matrix.getDistance(0, 2), 0.0);
+
+		TravelMatrix row = service.calcOneToMany(TransportMode.car, nodes.get(5), destinations, 8 * 3600);
+		for (int d = 0; d < destinations.size(); d++) {
+			Assert.assertEquals(matrix.getTravelTime(5, d), row.getTravelTime(0, d), 0.0);
+		}
+	}
+
+	@Test
+	public void testShutdownStopsThreads() throws InterruptedException {
+		Network network = OneToManyPathCalculatorTest.createNetwork();
+		List<Node> nodes = new ArrayList<>(network.getNodes().values());
+		ManyToManyRoutingService service = createService(network, 2);
+		service.calcManyToMany(TransportMode.car, nodes, nodes, 8 * 3600);
+		List<Thread> threads = getRoutingThreads();
+		Assert.assertFalse(threads.isEmpty());
+
+		service.notifyShutdown(null);
+		for (Thread thread : threads) {
+			thread.join(10000);
+			Assert.assertFalse(thread.isAlive());
+		}
+
+		// the service can still be used after a shutdown
+		TravelMatrix matrix = service.calcManyToMany(TransportMode.car, nodes, nodes, 8 * 3600);
+		Assert.assertEquals(0.0, matrix.getTravelTime(0, 0), 0.0);
+		service.notifyShutdown(null);
+	}
+
+	private static List<Thread> getRoutingThreads() {
+		List<Thread> threads = new ArrayList<>();
+		for (Thread thread : Thread.getAllStackTraces().keySet()) {
+			if (thread.getName().startsWith("ManyToManyRouting_")) {
+				threads.add(thread);
+			}
+		}
+		return threads;
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void testUnknownMode() {
+		createService(OneToManyPathCalculatorTest.createNetwork(), 1).calcOneToMany(TransportMode.bike,
+				null, Collections.emptyList(), 0.0);
+	}
+
+	private static ManyToManyRoutingService createService(Network network, int numberOfThreads) {
+		GlobalConfigGroup globalConfigGroup = new GlobalConfigGroup();
+		globalConfigGroup.setNumberOfThreads(numberOfThreads);
+		Map<String, TravelTime> travelTimes = Collections.singletonMap(TransportMode.car, new FreeSpeedTravelTime());
+		Map<String, TravelDisutilityFactory> travelDisutilityFactories =
+				Collections.singletonMap(TransportMode.car, new OnlyTimeDependentTravelDisutilityFactory());
+		return new ManyToManyRoutingService(network, travelTimes, travelDisutilityFactories, new SingleModeNetworksCache(), globalConfigGroup);
+	}
+}
@@ -0,0 +1,131 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * OneToManyPathCalculatorTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.config.groups.PlanCalcScoreConfigGroup;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.router.costcalculators.FreespeedTravelTimeAndDisutility;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculator.Path;
+
+public class OneToManyPathCalculatorTest {
+
+	@Test
+	public void testSameResultsAsDijkstra() {
+		Network network = createNetwork();
+		FreespeedTravelTimeAndDisutility travelTimeCostCalculator = new FreespeedTravelTimeAndDisutility(new PlanCalcScoreConfigGroup());
+		LeastCostPathCalculator dijkstra = new DijkstraFactory().createPathCalculator(network, travelTimeCostCalculator, travelTimeCostCalculator);
+		OneToManyPathCalculator calculator = new OneToManyPathCalculator(network, travelTimeCostCalculator, travelTimeCostCalculator);
+
+		for (Node origin : network.getNodes().values()) {
+			calculator.calculate(origin, 7 * 3600, null, null);
+			Assert.assertSame(origin, calculator.getOrigin());
+			for (Node destination : network.getNodes().values()) {
+				Path expected = dijkstra.calcLeastCostPath(origin, destination, 7 * 3600, null, null);
+				Path actual = calculator.getPath(destination);
+				Assert.assertEquals(expected.links, actual.links);
+				Assert.assertEquals(expected.nodes, actual.nodes);
+				Assert.assertEquals(expected.travelCost, calculator.getTravelDisutility(destination), 1e-9);
+				Assert.assertEquals(expected.travelTime, calculator.getTravelTime(destination), 1e-9);
+				double distance = 0;
+				for (Link link : expected.links) {
+					distance += link.getLength();
+				}
+				Assert.assertEquals(distance, calculator.getDistance(destination), 1e-9);
+			}
+		}
+	}
+
+	@Test
+	public void testDestinationsAndMaxCost() {
+		Network network = createNetwork();
+		FreespeedTravelTimeAndDisutility travelTimeCostCalculator = new FreespeedTravelTimeAndDisutility(new PlanCalcScoreConfigGroup());
+		OneToManyPathCalculator calculator = new OneToManyPathCalculator(network, travelTimeCostCalculator, travelTimeCostCalculator);
+		Node n1 = network.getNodes().get(Id.createNodeId(1));
+		Node n2 = network.getNodes().get(Id.createNodeId(2));
+		Node n4 = network.getNodes().get(Id.createNodeId(4));
+
+		calculator.calculate(n1, 0.0, Collections.singleton(n2), Double.POSITIVE_INFINITY, null, null);
+		Assert.assertTrue(calculator.isReached(n2));
+		Assert.assertFalse("the search should stop once the destination is settled", calculator.isReached(n4));
+		Assert.assertNull(calculator.getPath(n4));
+		Assert.assertEquals(Double.POSITIVE_INFINITY, calculator.getTravelTime(n4), 0.0);
+
+		double maxCost = 1.5 * calculator.getTravelDisutility(n2);
+		calculator.calculate(n1, 0.0, Arrays.asList(n2, n4), maxCost, null, null);
+		Assert.assertEquals(10.0, calculator.getTravelTime(n2), 1e-9);
+		Assert.assertFalse("the destination is too expensive", calculator.isReached(n4));
+	}
+
+	@Test
+	public void testUnreachableNode() {
+		Network network = createNetwork();
+		Node n5 = NetworkUtils.createAndAddNode(network, Id.createNodeId(5), new Coord(500, 500));
+		Node n1 = network.getNodes().get(Id.createNodeId(1));
+		FreespeedTravelTimeAndDisutility travelTimeCostCalculator = new FreespeedTravelTimeAndDisutility(new PlanCalcScoreConfigGroup());
+		OneToManyPathCalculator calculator = new OneToManyPathCalculator(network, travelTimeCostCalculator, travelTimeCostCalculator);
+		calculator.calculate(n1, 0.0, Collections.singleton(n5), Double.POSITIVE_INFINITY, null, null);
+		Assert.assertFalse(calculator.isReached(n5));
+		Assert.assertEquals(Double.POSITIVE_INFINITY, calculator.getTravelDisutility(n5), 0.0);
+		Assert.assertEquals(Double.POSITIVE_INFINITY, calculator.getDistance(n5), 0.0);
+		Assert.assertTrue(calculator.isReached(n1));
+		Assert.assertEquals(0.0, calculator.getTravelTime(n1), 0.0);
+		Assert.assertEquals(0, calculator.getPath(n1).links.size());
+	}
+
+	/**
+	 * <pre>
+	 *   (3)---3---(4)
+	 *    |         |
+	 *    2         4
+	 *    |         |
+	 *   (1)---1---(2)
+	 * </pre>
+	 * All links are bidirectional, the reverse links have an id increased by 10.
+	 */
+	/*package*/ static Network createNetwork() {
+		Network network = NetworkUtils.createNetwork();
+		Node n1 = NetworkUtils.createAndAddNode(network, Id.createNodeId(1), new Coord(0, 0));
+		Node n2 = NetworkUtils.createAndAddNode(network, Id.createNodeId(2), new Coord(100, 0));
+		Node n3 = NetworkUtils.createAndAddNode(network, Id.createNodeId(3), new Coord(0, 100));
+		Node n4 = NetworkUtils.createAndAddNode(network, Id.createNodeId(4), new Coord(100, 100));
+		addLinks(network, 1, n1, n2, 100, 10);
+		addLinks(network, 2, n1, n3, 100, 5);
+		addLinks(network, 3, n3, n4, 300, 10);
+		addLinks(network, 4, n2, n4, 200, 10);
+		return network;
+	}
+
+	private static void addLinks(Network network, int id, Node a, Node b, double length, double freespeed) {
+		NetworkUtils.createAndAddLink(network, Id.createLinkId(id), a, b, length, freespeed, 1000, 1);
+		NetworkUtils.createAndAddLink(network, Id.createLinkId(id + 10), b, a, length, freespeed, 1000, 1);
+	}
+}
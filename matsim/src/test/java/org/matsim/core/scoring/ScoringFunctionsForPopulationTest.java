@@ -27,6 +27,7 @@ import org.matsim.api.core.v01.Coord;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.Scenario;
 import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.PersonMoneyEvent;
 import org.matsim.api.core.v01.population.Activity;
 import org.matsim.api.core.v01.population.Leg;
 import org.matsim.api.core.v01.population.Person;
@@ -90,6 +91,157 @@ public class ScoringFunctionsForPopulationTest {
 		Assert.assertEquals("transit_walk", ((Leg) rs.lastTrip.getTripElements().get(4)).getMode());
 	}
 
+	@Test
+	public void testParallelScoring_sameScores() {
+		Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		Population population = scenario.getPopulation();
+		PopulationFactory pf = population.getFactory();
+		for (int i = 0; i < 100; i++) {
+			population.addPerson(pf.createPerson(Id.create(i, Person.class)));
+		}
+
+		double[] inline = scoreParallel(scenario, 0);
+		double[] parallel = scoreParallel(scenario, 4);
+		for (int i = 0; i < inline.length; i++) {
+			Assert.assertEquals("different score for person " + i, inline[i], parallel[i], 0.0);
+		}
+	}
+
+	@Test
+	public void testParallelScoring_exceptionIsRethrown() {
+		Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		Population population = scenario.getPopulation();
+		PopulationFactory pf = population.getFactory();
+		Id<Person> personId = Id.create(1, Person.class);
+		population.addPerson(pf.createPerson(personId));
+
+		ControlerListenerManagerImpl controlerListenerManager = new ControlerListenerManagerImpl();
+		ScoringFunctionFactory scoringFunctionFactory = agentId -> new RecordingScoringFunction() {
+			@Override
+			public void handleLeg(Leg leg) {
+				throw new IllegalStateException("expected");
+			}
+		};
+		ScoringFunctionsForPopulation sf = new ScoringFunctionsForPopulation(controlerListenerManager, EventsUtils.createEventsManager(),
+				new EventsToActivities(), new EventsToLegs(scenario), population, scoringFunctionFactory, 2);
+		controlerListenerManager.fireControlerIterationStartsEvent(0);
+
+		sf.handleLeg(new PersonExperiencedLeg(personId, pf.createLeg("walk")));
+		try {
+			sf.finishScoringFunctions();
+			Assert.fail("expected an exception from the scoring function");
+		} catch (IllegalStateException e) {
+			Assert.assertEquals("expected", e.getMessage());
+		}
+		controlerListenerManager.fireControlerShutdownEvent(false);
+	}
+
+	@Test
+	public void testParallelScoring_threadsStopOnShutdown() {
+		Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		Population population = scenario.getPopulation();
+		PopulationFactory pf = population.getFactory();
+		Id<Person> personId = Id.create(1, Person.class);
+		population.addPerson(pf.createPerson(personId));
+		int threadsBefore = countScoringThreads();
+
+		ControlerListenerManagerImpl controlerListenerManager = new ControlerListenerManagerImpl();
+		ScoringFunctionsForPopulation sf = new ScoringFunctionsForPopulation(controlerListenerManager, EventsUtils.createEventsManager(),
+				new EventsToActivities(), new EventsToLegs(scenario), population, agentId -> new RecordingScoringFunction(), 3);
+		Assert.assertEquals(threadsBefore + 3, countScoringThreads());
+		controlerListenerManager.fireControlerIterationStartsEvent(0);
+		sf.handleLeg(new PersonExperiencedLeg(personId, pf.createLeg("walk")));
+		sf.finishScoringFunctions();
+
+		controlerListenerManager.fireControlerShutdownEvent(false);
+		Assert.assertEquals(threadsBefore, countScoringThreads());
+	}
+
+	private static int countScoringThreads() {
+		int count = 0;
+		for (Thread thread : Thread.getAllStackTraces().keySet()) {
+			if (thread.getName().startsWith("ScoringShard-") && thread.isAlive()) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private static double[] scoreParallel(Scenario scenario, int numberOfThreads) {
+		Population population = scenario.getPopulation();
+		PopulationFactory pf = population.getFactory();
+		ControlerListenerManagerImpl controlerListenerManager = new ControlerListenerManagerImpl();
+		ScoringFunctionFactory scoringFunctionFactory = agentId -> new OrderSensitiveScoringFunction();
+		ScoringFunctionsForPopulation sf = new ScoringFunctionsForPopulation(controlerListenerManager, EventsUtils.createEventsManager(),
+				new EventsToActivities(), new EventsToLegs(scenario), population, scoringFunctionFactory, numberOfThreads);
+		controlerListenerManager.fireControlerIterationStartsEvent(0);
+
+		int count = population.getPersons().size();
+		String[] modes = {"walk", "car", "pt", "bike"};
+		for (int round = 0; round < 20; round++) {
+			for (int i = 0; i < count; i++) {
+				Id<Person> personId = Id.create(i, Person.class);
+				double time = round * 1000.0 + i;
+				sf.handleActivity(new PersonExperiencedActivity(personId, pf.createActivityFromCoord("act" + (round % 3), new Coord(i, round))));
+				sf.handleEvent(new PersonMoneyEvent(time, personId, -round - i * 0.01));
+				sf.handleLeg(new PersonExperiencedLeg(personId, pf.createLeg(modes[(round + i) % modes.length])));
+			}
+		}
+		sf.finishScoringFunctions();
+
+		double[] scores = new double[count];
+		for (int i = 0; i < count; i++) {
+			scores[i] = sf.getScoringFunctionForAgent(Id.create(i, Person.class)).getScore();
+		}
+		controlerListenerManager.fireControlerShutdownEvent(false);
+		return scores;
+	}
+
+	/**
+	 * Gives a different score as soon as the calls arrive in a different order.
+	 */
+	private static class OrderSensitiveScoringFunction implements ScoringFunction {
+
+		private double score = 0;
+
+		@Override
+		public void handleActivity(Activity activity) {
+			this.score = this.score * 1.1 + activity.getType().hashCode() % 97;
+		}
+
+		@Override
+		public void handleLeg(Leg leg) {
+			this.score = this.score * 1.1 + leg.getMode().hashCode() % 89;
+		}
+
+		@Override
+		public void handleTrip(TripStructureUtils.Trip trip) {
+			this.score = this.score * 1.1 + trip.getTripElements().size();
+		}
+
+		@Override
+		public void agentStuck(double time) {
+		}
+
+		@Override
+		public void addMoney(double amount) {
+			this.score = this.score * 1.1 + amount;
+		}
+
+		@Override
+		public void finish() {
+		}
+
+		@Override
+		public double getScore() {
+			return this.score;
+		}
+
+		@Override
+		public void handleEvent(Event event) {
+		}
+	}
+
 	private static class RecordingScoringFunction implements ScoringFunction {
 
 		int tripCounter = 0;
@@ -319,6 +319,86 @@ public class TravelTimeCalculatorTest extends MatsimTestCase {
 		assertEquals(linkTravelTime2, ttcalc.getLinkTravelTimes().getLinkTravelTime(link1, firstTimeBinStart + 2.5*timeBinSize, null, null), EPSILON);
 	}
 
+	/**
+	 * Tests that the travel times stored in flat arrays are exactly the same as the ones of the default array
+	 * implementation, also for the next iteration.
+	 */
+	public void testTravelTimeCalculator_FlatArray_SameAsArray() {
+		for (String getterType : new String[] { "average", "linearinterpolation" }) {
+			Config config = ConfigUtils.createConfig();
+			config.travelTimeCalculator().setTravelTimeGetterType(getterType);
+			Scenario scenario = ScenarioUtils.createScenario(config);
+			Network network = scenario.getNetwork();
+			new MatsimNetworkReader(network).readFile(getClassInputDirectory() + "link10_network.xml");
+
+			EventsManager events = EventsUtils.createEventsManager();
+			EventsCollector collector = new EventsCollector();
+			events.addHandler(collector);
+			new MatsimEventsReader(events).readFile(getClassInputDirectory() + "link10_events.xml");
+
+			TravelTimeCalculatorConfigGroup arrayConfig = config.travelTimeCalculator();
+			arrayConfig.setTravelTimeCalculatorType(TravelTimeCalculatorConfigGroup.TravelTimeCalculatorType.TravelTimeCalculatorArray.name());
+			TravelTimeCalculator.Builder builder = new TravelTimeCalculator.Builder(network);
+			builder.configure(arrayConfig);
+			TravelTimeCalculator arrayCalc = builder.build();
+
+			TravelTimeCalculatorConfigGroup flatConfig = new TravelTimeCalculatorConfigGroup();
+			flatConfig.setTravelTimeGetterType(getterType);
+			flatConfig.setTravelTimeCalculatorType(TravelTimeCalculatorConfigGroup.TravelTimeCalculatorType.TravelTimeCalculatorFlatArray.name());
+			builder = new TravelTimeCalculator.Builder(network);
+			builder.configure(flatConfig);
+			TravelTimeCalculator flatCalc = builder.build();
+
+			EventsManager arrayEvents = EventsUtils.createEventsManager();
+			arrayEvents.addHandler(arrayCalc);
+			EventsManager flatEvents = EventsUtils.createEventsManager();
+			flatEvents.addHandler(flatCalc);
+			for (int iteration = 0; iteration < 2; iteration++) {
+				arrayCalc.reset(iteration);
+				flatCalc.reset(iteration);
+				int eventNumber = 0;
+				for (Event e : collector.getEvents()) {
+					// skip some events in the second iteration so that the travel times differ from the first one
+					if (iteration == 0 || eventNumber++ % 3 != 0 || !(e instanceof LinkLeaveEvent)) {
+						arrayEvents.processEvent(e);
+						flatEvents.processEvent(e);
+					}
+				}
+				for (Link link : network.getLinks().values()) {
+					for (double time = 0; time < 30 * 3600; time += 5 * 60) {
+						assertEquals(arrayCalc.getLinkTravelTimes().getLinkTravelTime(link, time, null, null),
+								flatCalc.getLinkTravelTimes().getLinkTravelTime(link, time, null, null), 0.0);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Tests that the flat arrays fail with a clear message instead of an overflow if they would become too large.
+	 */
+	public void testTravelTimeCalculator_FlatArray_TooManySlots() {
+		Network network = NetworkUtils.createNetwork();
+		final Node fromNode = NetworkUtils.createAndAddNode(network, Id.create("1", Node.class), new Coord(0, 0));
+		final Node toNode = NetworkUtils.createAndAddNode(network, Id.create("2", Node.class), new Coord(1000, 0));
+		NetworkUtils.createAndAddLink(network, Id.create("1", Link.class), fromNode, toNode, 1000.0, 100.0, 3600.0, 1.0);
+		NetworkUtils.createAndAddLink(network, Id.create("2", Link.class), toNode, fromNode, 1000.0, 100.0, 3600.0, 1.0);
+
+		// 2 links with 2^30 time slots each
+		TravelTimeCalculatorConfigGroup flatConfig = new TravelTimeCalculatorConfigGroup();
+		flatConfig.setTravelTimeCalculatorType(TravelTimeCalculatorConfigGroup.TravelTimeCalculatorType.TravelTimeCalculatorFlatArray.name());
+		TravelTimeCalculator.Builder builder = new TravelTimeCalculator.Builder(network);
+		builder.setTimeslice(1);
+		builder.setMaxTime(Integer.MAX_VALUE / 2);
+		builder.configure(flatConfig);
+		try {
+			builder.build();
+			fail("expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			log.info("caught expected exception: " + e.getMessage());
+		}
+	}
+
 	/**
 	 * Tests that calculating LinkTravelTimes works also without reading in a complete scenario including population.
 	 *